@@ -0,0 +1,53 @@
+package org.EduardoMango.benchmarks;
+
+import org.EduardoMango.database.DatabaseSeeder;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Base SQLite temporaria, generada con {@link DatabaseSeeder} antes de cada trial.
+ * <p>
+ * La escala se elige con el parámetro {@code prestamos} (por ejemplo {@code -p prestamos=10000,1000000,10000000}).
+ * Cada combinación de parámetros corre en su propio fork, así la configuración de
+ * {@code DatabaseConnection} (que se lee una sola vez por JVM) apunta siempre a la base recién generada.
+ * Con {@code -p statementCacheSize=0,64} se compara cualquier benchmark con y sin caché de statements.
+ */
+@State(Scope.Benchmark)
+public class BenchmarkDatabase {
+
+    @Param({"10000"})
+    public int prestamos;
+
+    @Param({"64"})
+    public int statementCacheSize;
+
+    public int libros;
+    public int usuarios;
+
+    private Path archivo;
+
+    @Setup(Level.Trial)
+    public void crear() throws Exception {
+        archivo = Files.createTempFile("biblioteca-bench-", ".db");
+        System.setProperty("biblioteca.db.url", "jdbc:sqlite:" + archivo);
+        System.setProperty("biblioteca.db.statementCacheSize", String.valueOf(statementCacheSize));
+        DatabaseSeeder.seed(prestamos, 42);
+        libros = DatabaseSeeder.libros(prestamos);
+        usuarios = DatabaseSeeder.usuarios(prestamos);
+    }
+
+    @TearDown(Level.Trial)
+    public void borrar() throws IOException {
+        Files.deleteIfExists(archivo);
+        Files.deleteIfExists(Path.of(archivo + "-wal"));
+        Files.deleteIfExists(Path.of(archivo + "-shm"));
+    }
+}
@@ -0,0 +1,62 @@
+package org.EduardoMango.benchmarks;
+
+import org.EduardoMango.entities.LibroEntity;
+import org.EduardoMango.entities.PrestamoEntity;
+import org.EduardoMango.services.LibroService;
+import org.EduardoMango.services.PrestamoService;
+import org.EduardoMango.services.UsuarioService;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Carga mixta con 8 hilos: lecturas por el pool de lectura y préstamos/devoluciones
+ * por la única conexión de escritura, corriendo al mismo tiempo.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+public class ConcurrentBenchmark {
+
+    private LibroService libroService;
+    private UsuarioService usuarioService;
+    private PrestamoService prestamoService;
+
+    @Setup(Level.Trial)
+    public void setUp(BenchmarkDatabase db) {
+        libroService = LibroService.getInstance();
+        usuarioService = UsuarioService.getInstance();
+        prestamoService = PrestamoService.getInstance();
+    }
+
+    @Benchmark
+    @Group("mixta")
+    @GroupThreads(6)
+    public LibroEntity lecturas(BenchmarkDatabase db, Ids ids) {
+        usuarioService.isBelowMaxPrestamos(ids.usuario(db));
+        List<PrestamoEntity> activos = prestamoService.findPageActivos(ids.prestamo(db), 20);
+        return activos.isEmpty() ? null : libroService.findById(activos.getFirst().getLibro_id());
+    }
+
+    @Benchmark
+    @Group("mixta")
+    @GroupThreads(2)
+    public PrestamoEntity escrituras(ServiceBenchmark servicio, ServiceBenchmark.Prestatario prestatario) {
+        return servicio.prestamoSaveYReturn(prestatario);
+    }
+
+    @Benchmark
+    public LibroEntity libroFindById(BenchmarkDatabase db, Ids ids) {
+        return libroService.findById(ids.libro(db));
+    }
+
+    @Benchmark
+    public boolean usuarioIsBelowMaxPrestamos(BenchmarkDatabase db, Ids ids) {
+        return usuarioService.isBelowMaxPrestamos(ids.usuario(db));
+    }
+}
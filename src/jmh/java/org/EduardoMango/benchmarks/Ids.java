@@ -0,0 +1,27 @@
+package org.EduardoMango.benchmarks;
+
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.SplittableRandom;
+
+/**
+ * Ids aleatorios por hilo, para no medir siempre la misma fila.
+ */
+@State(Scope.Thread)
+public class Ids {
+
+    private final SplittableRandom random = new SplittableRandom();
+
+    public int libro(BenchmarkDatabase db) {
+        return 1 + random.nextInt(db.libros);
+    }
+
+    public int usuario(BenchmarkDatabase db) {
+        return 1 + random.nextInt(db.usuarios);
+    }
+
+    public int prestamo(BenchmarkDatabase db) {
+        return 1 + random.nextInt(db.prestamos);
+    }
+}
@@ -0,0 +1,141 @@
+package org.EduardoMango.benchmarks;
+
+import org.EduardoMango.entities.LibroEntity;
+import org.EduardoMango.entities.PrestamoEntity;
+import org.EduardoMango.entities.RankingEntity;
+import org.EduardoMango.entities.UsuarioEntity;
+import org.EduardoMango.repositories.LibroRepository;
+import org.EduardoMango.repositories.PrestamoRepository;
+import org.EduardoMango.repositories.ResumenPrestamosRepository;
+import org.EduardoMango.repositories.UsuarioRepository;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * Throughput y latencia (percentiles de SampleTime) de los métodos de los repositorios.
+ * <p>
+ * Por defecto corre con un hilo; para medir concurrencia se agrega {@code -t N} al ejecutar
+ * (ver también {@link ConcurrentBenchmark}).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RepositoryBenchmark {
+
+    private LibroRepository libroRepository;
+    private UsuarioRepository usuarioRepository;
+    private PrestamoRepository prestamoRepository;
+    private ResumenPrestamosRepository resumenRepository;
+    /** El último mes completo, dentro de los dos años de préstamos que genera el seeder. */
+    private final YearMonth mesAnterior = YearMonth.now().minusMonths(1);
+    private final AtomicInteger nuevosUsuarios = new AtomicInteger();
+
+    @Setup(Level.Trial)
+    public void setUp(BenchmarkDatabase db) {
+        libroRepository = LibroRepository.getInstance();
+        usuarioRepository = UsuarioRepository.getInstance();
+        prestamoRepository = PrestamoRepository.getInstance();
+        resumenRepository = ResumenPrestamosRepository.getInstance();
+    }
+
+    @Benchmark
+    public Optional<LibroEntity> libroFindById(BenchmarkDatabase db, Ids ids) throws SQLException {
+        return libroRepository.findById(ids.libro(db));
+    }
+
+    @Benchmark
+    public Optional<UsuarioEntity> usuarioFindById(BenchmarkDatabase db, Ids ids) throws SQLException {
+        return usuarioRepository.findById(ids.usuario(db));
+    }
+
+    @Benchmark
+    public Optional<PrestamoEntity> prestamoFindById(BenchmarkDatabase db, Ids ids) throws SQLException {
+        return prestamoRepository.findById(ids.prestamo(db));
+    }
+
+    @Benchmark
+    public List<LibroEntity> libroFindPage(BenchmarkDatabase db, Ids ids) throws SQLException {
+        return libroRepository.findPage(ids.libro(db), 100);
+    }
+
+    @Benchmark
+    public List<PrestamoEntity> prestamoFindPageActivos(BenchmarkDatabase db, Ids ids) throws SQLException {
+        return prestamoRepository.findPageActivos(ids.prestamo(db), 100);
+    }
+
+    @Benchmark
+    public List<UsuarioEntity> usuarioFindPageConPrestamosActivos(BenchmarkDatabase db, Ids ids) throws SQLException {
+        return usuarioRepository.findPageConPrestamosActivos(ids.usuario(db), 100);
+    }
+
+    @Benchmark
+    public int prestamoCountActiveByUsuario(BenchmarkDatabase db, Ids ids) throws SQLException {
+        return prestamoRepository.countActiveByUsuario(ids.usuario(db));
+    }
+
+    @Benchmark
+    public List<PrestamoEntity> prestamoFindAllActiveByUsuario(BenchmarkDatabase db, Ids ids) throws SQLException {
+        return prestamoRepository.findAllActiveByUsuario(ids.usuario(db));
+    }
+
+    @Benchmark
+    public List<RankingEntity<LibroEntity>> prestamoFindTopLibros() throws SQLException {
+        return prestamoRepository.findTopLibros(10, null, null);
+    }
+
+    @Benchmark
+    public List<RankingEntity<UsuarioEntity>> prestamoFindTopUsuarios() throws SQLException {
+        return prestamoRepository.findTopUsuarios(10, null, null);
+    }
+
+    @Benchmark
+    public List<RankingEntity<LibroEntity>> prestamoFindTopLibrosMes() throws SQLException {
+        return prestamoRepository.findTopLibros(10, mesAnterior.atDay(1), mesAnterior.atEndOfMonth());
+    }
+
+    @Benchmark
+    public List<RankingEntity<LibroEntity>> resumenFindTopLibrosMes() throws SQLException {
+        return resumenRepository.findTopLibros(10, mesAnterior.atDay(1), mesAnterior.atEndOfMonth());
+    }
+
+    @Benchmark
+    public double resumenPromedioPorUsuarioActivo30Dias() throws SQLException {
+        LocalDate hoy = LocalDate.now();
+        return resumenRepository.promedioPorUsuarioActivo(hoy.minusDays(29), hoy);
+    }
+
+    @Benchmark
+    public void prestamoStreamAll(Blackhole bh) throws SQLException {
+        try (Stream<PrestamoEntity> prestamos = prestamoRepository.streamAll()) {
+            prestamos.forEach(bh::consume);
+        }
+    }
+
+    @Benchmark
+    public void libroStreamAll(Blackhole bh) throws SQLException {
+        try (Stream<LibroEntity> libros = libroRepository.streamAll()) {
+            libros.forEach(bh::consume);
+        }
+    }
+
+    @Benchmark
+    public UsuarioEntity usuarioSave() throws SQLException {
+        int n = nuevosUsuarios.incrementAndGet();
+        return usuarioRepository.save(UsuarioEntity.builder()
+                .nombre("Bench " + n)
+                .email("bench" + n + "-" + System.nanoTime() + "@biblioteca.test")
+                .build());
+    }
+}
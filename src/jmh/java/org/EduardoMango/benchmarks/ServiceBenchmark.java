@@ -0,0 +1,103 @@
+package org.EduardoMango.benchmarks;
+
+import org.EduardoMango.entities.LibroEntity;
+import org.EduardoMango.entities.PrestamoEntity;
+import org.EduardoMango.entities.UsuarioEntity;
+import org.EduardoMango.services.LibroService;
+import org.EduardoMango.services.PrestamoService;
+import org.EduardoMango.services.UsuarioService;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput y latencia de las consultas agregadas y de las operaciones de préstamo de los servicios.
+ * <p>
+ * El ciclo préstamo + devolución usa un libro con stock suficiente y un usuario por hilo creados
+ * en el setup, para no chocar con el límite de préstamos activos ni con libros sin stock.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ServiceBenchmark {
+
+    private LibroService libroService;
+    private UsuarioService usuarioService;
+    private PrestamoService prestamoService;
+    int libroConStock;
+
+    @State(Scope.Thread)
+    public static class Prestatario {
+        int usuarioId;
+
+        @Setup(Level.Trial)
+        public void crear(ServiceBenchmark benchmark) {
+            usuarioId = benchmark.usuarioService.save(UsuarioEntity.builder()
+                    .nombre("Prestatario " + Thread.currentThread().threadId())
+                    .email("prestatario" + Thread.currentThread().threadId() + "-" + System.nanoTime() + "@biblioteca.test")
+                    .build()).orElseThrow().getId();
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp(BenchmarkDatabase db) {
+        libroService = LibroService.getInstance();
+        usuarioService = UsuarioService.getInstance();
+        prestamoService = PrestamoService.getInstance();
+        libroConStock = libroService.save(LibroEntity.builder()
+                .titulo("Libro de benchmark")
+                .autor("JMH")
+                .anio_publicacion(2025)
+                .unidades_disponibles(Integer.MAX_VALUE / 2)
+                .build()).orElseThrow().getId();
+    }
+
+    @Benchmark
+    public LibroEntity libroFindByMaxPrestamos() {
+        return libroService.findByMaxPrestamos();
+    }
+
+    @Benchmark
+    public UsuarioEntity usuarioFindByMaxPrestamos() {
+        return usuarioService.findByMaxPrestamos();
+    }
+
+    @Benchmark
+    public List<UsuarioEntity> usuarioFindAllConPrestamosActivos() {
+        return usuarioService.findAllConPrestamosActivos();
+    }
+
+    @Benchmark
+    public double prestamoPromedioPorUsuarioConPrestamos() {
+        return prestamoService.promedioPrestamoPorUsuarioConPrestamos();
+    }
+
+    @Benchmark
+    public long libroTotalLibrosDisponibles() {
+        return libroService.totalLibrosDisponibles();
+    }
+
+    @Benchmark
+    public boolean usuarioIsBelowMaxPrestamos(BenchmarkDatabase db, Ids ids) {
+        return usuarioService.isBelowMaxPrestamos(ids.usuario(db));
+    }
+
+    @Benchmark
+    public LibroEntity libroFindById(BenchmarkDatabase db, Ids ids) {
+        return libroService.findById(ids.libro(db));
+    }
+
+    @Benchmark
+    public PrestamoEntity prestamoSaveYReturn(Prestatario prestatario) {
+        PrestamoEntity prestamo = prestamoService.save(PrestamoEntity.builder()
+                .usuario_id(prestatario.usuarioId)
+                .libro_id(libroConStock)
+                .build()).orElseThrow();
+        prestamoService.returnPrestamo(prestamo.getId());
+        return prestamo;
+    }
+}
@@ -0,0 +1,69 @@
+package org.EduardoMango.benchmarks;
+
+import org.EduardoMango.database.DatabaseConnection;
+import org.EduardoMango.database.StatementCache;
+import org.openjdk.jmh.annotations.*;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latencia por llamada de las consultas más frecuentes preparando el statement en cada llamada
+ * ({@code conn.prepareStatement}) contra reutilizarlo con {@link StatementCache}.
+ * Ambas variantes toman y devuelven la conexión al pool en cada operación, como los repositorios.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StatementCacheBenchmark {
+
+    private static final String FIND_BY_ID = "SELECT * FROM prestamos WHERE id = ?";
+    private static final String UPDATE_STOCK = "UPDATE libros SET unidades_disponibles = unidades_disponibles WHERE id = ?";
+
+    @Benchmark
+    public int findByIdPrepareCadaVez(BenchmarkDatabase db, Ids ids) throws SQLException {
+        try (Connection conn = DatabaseConnection.getReadConnection();
+             PreparedStatement ps = conn.prepareStatement(FIND_BY_ID)) {
+            return consultar(ps, ids.prestamo(db));
+        }
+    }
+
+    @Benchmark
+    public int findByIdCacheado(BenchmarkDatabase db, Ids ids) throws SQLException {
+        try (Connection conn = DatabaseConnection.getReadConnection();
+             PreparedStatement ps = StatementCache.prepare(conn, FIND_BY_ID)) {
+            return consultar(ps, ids.prestamo(db));
+        }
+    }
+
+    @Benchmark
+    public int updateStockPrepareCadaVez(BenchmarkDatabase db, Ids ids) throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement ps = conn.prepareStatement(UPDATE_STOCK)) {
+            ps.setInt(1, ids.libro(db));
+            return ps.executeUpdate();
+        }
+    }
+
+    @Benchmark
+    public int updateStockCacheado(BenchmarkDatabase db, Ids ids) throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement ps = StatementCache.prepare(conn, UPDATE_STOCK)) {
+            ps.setInt(1, ids.libro(db));
+            return ps.executeUpdate();
+        }
+    }
+
+    private static int consultar(PreparedStatement ps, int id) throws SQLException {
+        ps.setInt(1, id);
+        try (ResultSet rs = ps.executeQuery()) {
+            return rs.next() ? rs.getInt("libro_id") : 0;
+        }
+    }
+}
@@ -0,0 +1,231 @@
+package org.EduardoMango.benchmarks;
+
+import org.EduardoMango.database.DatabaseSeeder;
+import org.EduardoMango.entities.PrestamoEntity;
+import org.EduardoMango.services.IndiceDisponibilidad;
+import org.EduardoMango.services.LibroService;
+import org.EduardoMango.services.PrestamoService;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntConsumer;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Prueba de estrés de los préstamos concurrentes sobre el stock de los libros.
+ * <p>
+ * Verifica que nunca se presten más unidades de las que hay y mide cómo escala la reserva de
+ * unidades en {@link IndiceDisponibilidad} con préstamos de libros distintos y del mismo libro:
+ * <ol>
+ * <li>Muchos hilos reservan unidades del mismo libro en el índice: solo tienen éxito tantas reservas como unidades.</li>
+ * <li>Muchos préstamos concurrentes del mismo libro con {@link PrestamoService#save}: en la base se registran
+ * exactamente tantos préstamos como unidades tenía el libro, y el stock queda en cero en la base y en el índice.</li>
+ * <li>Reservas y liberaciones por segundo en el índice con 1, 2, 4, ... hilos, cada uno sobre su propio libro
+ * y todos sobre el mismo.</li>
+ * <li>Préstamos por segundo con {@link PrestamoService#save} (cada uno seguido de su devolución, para no agotar
+ * el stock ni el límite de préstamos del usuario), con los mismos hilos y libros. Todos comparten la única
+ * conexión de escritura, así que muestran cuánto del escalado del índice llega a los préstamos.</li>
+ * </ol>
+ * Sale con código 1 si alguna verificación falla. Usa una base temporaria generada con {@link DatabaseSeeder}.
+ * <p>
+ * Uso: {@code java -cp target/benchmarks.jar org.EduardoMango.benchmarks.StockStress [hilos] [segundosPorMedicion]}
+ */
+public class StockStress {
+
+    private static final int UNIDADES = 40;
+    private static final int INTENTOS = 100;
+
+    private StockStress() {}
+
+    public static void main(String[] args) throws Exception {
+        int hilos = args.length > 0 ? Integer.parseInt(args[0]) : Math.max(4, Runtime.getRuntime().availableProcessors());
+        double segundos = args.length > 1 ? Double.parseDouble(args[1]) : 1;
+
+        Path archivo = Files.createTempFile("biblioteca-stress-", ".db");
+        System.setProperty("biblioteca.db.url", "jdbc:sqlite:" + archivo);
+        boolean ok;
+        try {
+            // Sin préstamos previos: 100 libros y 100 usuarios sin préstamos activos.
+            DatabaseSeeder.seed(0, 42);
+            ok = reservasMismoLibro(hilos) & prestamosMismoLibro();
+            escalado(hilos, segundos);
+            escaladoPrestamos(hilos, segundos);
+        } finally {
+            Files.deleteIfExists(archivo);
+            Files.deleteIfExists(Path.of(archivo + "-wal"));
+            Files.deleteIfExists(Path.of(archivo + "-shm"));
+        }
+        System.out.println(ok ? "OK" : "FALLÓ");
+        System.exit(ok ? 0 : 1);
+    }
+
+    /**
+     * Cada hilo intenta reservar muchas veces una unidad del mismo libro.
+     */
+    private static boolean reservasMismoLibro(int hilos) throws InterruptedException {
+        IndiceDisponibilidad indice = IndiceDisponibilidad.getInstance();
+        int libroId = 2;
+        Integer enBase = LibroService.getInstance().findById(libroId).getUnidades_disponibles();
+        indice.registrar(libroId, UNIDADES);
+        AtomicInteger exitosas = new AtomicInteger();
+        correr(hilos, h -> {
+            for (int i = 0; i < 1000; i++) {
+                if (indice.reservar(libroId)) exitosas.incrementAndGet();
+            }
+        });
+        boolean ok = exitosas.get() == UNIDADES && indice.getUnidades(libroId) == 0 && !indice.isDisponible(libroId);
+        System.out.printf("Reservas del mismo libro: %d hilos x 1000 intentos, %d unidades, %d reservas, quedan %d -> %s%n",
+                hilos, UNIDADES, exitosas.get(), indice.getUnidades(libroId), ok ? "ok" : "SOBREVENTA");
+        // Las reservas no tocaron la base: el índice vuelve a su stock.
+        indice.registrar(libroId, enBase == null ? 0 : enBase);
+        return ok;
+    }
+
+    /**
+     * {@value #INTENTOS} usuarios distintos piden al mismo tiempo el mismo libro, que tiene {@value #UNIDADES} unidades.
+     */
+    private static boolean prestamosMismoLibro() throws InterruptedException {
+        LibroService libroService = LibroService.getInstance();
+        PrestamoService prestamoService = PrestamoService.getInstance();
+        int libroId = 1;
+        Integer actuales = libroService.findById(libroId).getUnidades_disponibles();
+        libroService.ajustarStock(libroId, UNIDADES - (actuales == null ? 0 : actuales));
+
+        AtomicInteger exitosos = new AtomicInteger();
+        correr(INTENTOS, usuario -> {
+            if (prestamoService.save(PrestamoEntity.builder().libro_id(libroId).usuario_id(usuario + 1).build()).isPresent()) {
+                exitosos.incrementAndGet();
+            }
+        });
+
+        long enBase = prestamoService.findAllActivos().stream().filter(p -> p.getLibro_id() == libroId).count();
+        Integer stockBase = libroService.findById(libroId).getUnidades_disponibles();
+        int stockIndice = IndiceDisponibilidad.getInstance().getUnidades(libroId);
+        boolean ok = exitosos.get() == UNIDADES && enBase == UNIDADES && stockBase == 0 && stockIndice == 0;
+        System.out.printf("Préstamos del mismo libro: %d pedidos, %d unidades, %d exitosos, %d en la base, stock %d (índice %d) -> %s%n",
+                INTENTOS, UNIDADES, exitosos.get(), enBase, stockBase, stockIndice, ok ? "ok" : "SOBREVENTA");
+        return ok;
+    }
+
+    /**
+     * Reservas y liberaciones por segundo, con libros distintos por hilo y con el mismo libro para todos.
+     */
+    private static void escalado(int maxHilos, double segundos) throws InterruptedException {
+        IndiceDisponibilidad indice = IndiceDisponibilidad.getInstance();
+        LibroService libroService = LibroService.getInstance();
+        int[] enBase = new int[maxHilos];
+        for (int id = 10; id < 10 + maxHilos; id++) {
+            Integer unidades = libroService.findById(id).getUnidades_disponibles();
+            enBase[id - 10] = unidades == null ? 0 : unidades;
+            indice.registrar(id, 1_000);
+        }
+        System.out.printf("%nReservas y liberaciones por segundo (%d CPUs)%n", Runtime.getRuntime().availableProcessors());
+        System.out.printf("%6s %16s %8s %16s %8s%n", "hilos", "libros distintos", "escala", "mismo libro", "escala");
+        double baseDistintos = 0;
+        double baseMismo = 0;
+        for (int hilos = 1; hilos <= maxHilos; hilos *= 2) {
+            double distintos = medir(hilos, segundos, h -> 10 + h);
+            double mismo = medir(hilos, segundos, h -> 10);
+            if (hilos == 1) {
+                baseDistintos = distintos;
+                baseMismo = mismo;
+            }
+            System.out.printf("%6d %16.0f %7.2fx %16.0f %7.2fx%n",
+                    hilos, distintos, distintos / baseDistintos, mismo, mismo / baseMismo);
+        }
+        for (int id = 10; id < 10 + maxHilos; id++) {
+            indice.registrar(id, enBase[id - 10]);
+        }
+    }
+
+    /**
+     * Préstamos y devoluciones por segundo con {@link PrestamoService}, con libros distintos por hilo y con el mismo
+     * libro para todos. Cada hilo presta con su propio usuario y devuelve el préstamo antes del siguiente.
+     */
+    private static void escaladoPrestamos(int maxHilos, double segundos) throws InterruptedException {
+        LibroService libroService = LibroService.getInstance();
+        for (int id = 10; id < 10 + maxHilos; id++) {
+            Integer actuales = libroService.findById(id).getUnidades_disponibles();
+            libroService.ajustarStock(id, 1_000 - (actuales == null ? 0 : actuales));
+        }
+        System.out.printf("%nPréstamos y devoluciones por segundo con PrestamoService%n");
+        System.out.printf("%6s %16s %8s %16s %8s%n", "hilos", "libros distintos", "escala", "mismo libro", "escala");
+        double baseDistintos = 0;
+        double baseMismo = 0;
+        for (int hilos = 1; hilos <= maxHilos; hilos *= 2) {
+            double distintos = medirPrestamos(hilos, segundos, h -> 10 + h);
+            double mismo = medirPrestamos(hilos, segundos, h -> 10);
+            if (hilos == 1) {
+                baseDistintos = distintos;
+                baseMismo = mismo;
+            }
+            System.out.printf("%6d %16.0f %7.2fx %16.0f %7.2fx%n",
+                    hilos, distintos, distintos / baseDistintos, mismo, mismo / baseMismo);
+        }
+    }
+
+    private static double medirPrestamos(int hilos, double segundos, IntUnaryOperator libroDeHilo) throws InterruptedException {
+        PrestamoService prestamoService = PrestamoService.getInstance();
+        LongAdder prestamos = new LongAdder();
+        long fin = System.nanoTime() + (long) (segundos * 1e9);
+        long inicio = System.nanoTime();
+        correr(hilos, h -> {
+            int libroId = libroDeHilo.applyAsInt(h);
+            int usuarioId = h % 100 + 1;
+            long cantidad = 0;
+            while (System.nanoTime() < fin) {
+                PrestamoEntity prestamo = prestamoService.save(PrestamoEntity.builder().libro_id(libroId).usuario_id(usuarioId).build())
+                        .orElseThrow(() -> new IllegalStateException("No se pudo registrar el préstamo del libro " + libroId));
+                prestamoService.returnPrestamo(prestamo.getId());
+                cantidad++;
+            }
+            prestamos.add(cantidad);
+        });
+        return prestamos.sum() / ((System.nanoTime() - inicio) / 1e9);
+    }
+
+    private static double medir(int hilos, double segundos, IntUnaryOperator libroDeHilo) throws InterruptedException {
+        IndiceDisponibilidad indice = IndiceDisponibilidad.getInstance();
+        LongAdder operaciones = new LongAdder();
+        long fin = System.nanoTime() + (long) (segundos * 1e9);
+        long inicio = System.nanoTime();
+        correr(hilos, h -> {
+            int libroId = libroDeHilo.applyAsInt(h);
+            long cantidad = 0;
+            while ((cantidad & 1023) != 0 || System.nanoTime() < fin) {
+                if (indice.reservar(libroId)) indice.liberar(libroId);
+                cantidad++;
+            }
+            operaciones.add(cantidad);
+        });
+        return operaciones.sum() / ((System.nanoTime() - inicio) / 1e9);
+    }
+
+    /**
+     * Corre {@code tarea} en {@code hilos} hilos de plataforma que arrancan a la vez, y espera a que terminen.
+     */
+    private static void correr(int hilos, IntConsumer tarea) throws InterruptedException {
+        CountDownLatch largada = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>(hilos);
+        for (int h = 0; h < hilos; h++) {
+            int numero = h;
+            threads.add(Thread.ofPlatform().start(() -> {
+                try {
+                    largada.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                tarea.accept(numero);
+            }));
+        }
+        largada.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+    }
+}
@@ -1,9 +1,21 @@
 package org.EduardoMango;
 
+import org.EduardoMango.metrics.MetricsExporter;
+import org.EduardoMango.services.BarridoReservas;
+import org.EduardoMango.vencimientos.EscaneoVencidos;
 import org.EduardoMango.view.Menu;
 
+import java.io.IOException;
+
 public class Main {
-    public static void main(String[] args) {
-        Menu.run();
+    public static void main(String[] args) throws IOException {
+        try (MetricsExporter metricsExporter = MetricsExporter.fromConfig();
+             EscaneoVencidos escaneoVencidos = EscaneoVencidos.fromConfig();
+             BarridoReservas barridoReservas = BarridoReservas.fromConfig()) {
+            metricsExporter.start();
+            escaneoVencidos.start();
+            barridoReservas.start();
+            Menu.run();
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,425 @@
+package org.EduardoMango.api;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.EduardoMango.database.DatabaseConfig;
+import org.EduardoMango.entities.BusquedaLibros;
+import org.EduardoMango.entities.LibroEntity;
+import org.EduardoMango.entities.PrestamoEntity;
+import org.EduardoMango.entities.ReservaEntity;
+import org.EduardoMango.entities.UsuarioEntity;
+import org.EduardoMango.executor.ServiceExecutor;
+import org.EduardoMango.executor.SobrecargaException;
+import org.EduardoMango.metrics.MeterId;
+import org.EduardoMango.metrics.MetricsExporter;
+import org.EduardoMango.metrics.MetricsRegistry;
+import org.EduardoMango.repositories.UncheckedSQLException;
+import org.EduardoMango.services.BarridoReservas;
+import org.EduardoMango.services.EstadisticasPrestamos;
+import org.EduardoMango.services.LibroService;
+import org.EduardoMango.services.NotificacionService;
+import org.EduardoMango.services.PrestamoService;
+import org.EduardoMango.services.ReservaService;
+import org.EduardoMango.services.UsuarioService;
+import org.EduardoMango.vencimientos.EscaneoVencidos;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * API HTTP/JSON sobre los servicios, para usar la biblioteca desde otros programas y medirla bajo carga.
+ * <p>
+ * Cada solicitud se atiende en el {@link ServiceExecutor}: con más solicitudes concurrentes que lugares
+ * se responde 503, y si una solicitud supera su timeout, 504. Un error de la base en una modificación se
+ * responde 500. Los listados completos se escriben en la respuesta a medida que se leen de la base, sin
+ * cargarlos en memoria. Las rutas:
+ * <pre>
+ * GET    /libros                    todos (o una página con ?afterId=&amp;limite=)
+ * GET    /libros/disponibles        con unidades disponibles (o una página con ?afterId=&amp;limite=)
+ * GET    /libros/buscar?q=          búsqueda por título y autor (&amp;anioDesde=&amp;anioHasta=&amp;disponibles=true&amp;offset=&amp;limite=)
+ * GET    /libros/top?limite=        más prestados (&amp;desde=&amp;hasta= en formato 2025-01-31, o &amp;mes=2025-03)
+ * GET    /libros/mas-prestado       de todos los tiempos (o de un mes con ?mes=2025-03)
+ * GET    /libros/{id}
+ * POST   /libros                    {"titulo", "autor", "anio_publicacion", "unidades_disponibles"}
+ * POST   /libros/{id}/stock         {"delta"}: suma o resta unidades disponibles
+ * DELETE /libros/{id}
+ * GET    /usuarios                  todos (o una página con ?afterId=&amp;limite=)
+ * GET    /usuarios/con-prestamos-activos   (página con ?afterId=&amp;limite=)
+ * GET    /usuarios/top?limite=      con más préstamos (&amp;desde=&amp;hasta=, o &amp;mes=)
+ * GET    /usuarios/mas-prestamos    de todos los tiempos (o de un mes con ?mes=)
+ * GET    /usuarios/{id}
+ * GET    /usuarios/{id}/reservas    reservas pendientes del usuario
+ * POST   /usuarios                  {"nombre", "email"}
+ * DELETE /usuarios/{id}
+ * GET    /prestamos                 todos (o una página con ?afterId=&amp;limite=, o por fecha con ?desde=&amp;hasta=)
+ * GET    /prestamos/activos         sin devolver (o una página con ?afterId=&amp;limite=)
+ * GET    /prestamos/vencidos        sin devolver después del plazo
+ * GET    /prestamos/{id}
+ * POST   /prestamos                 {"usuario_id", "libro_id"}
+ * POST   /prestamos/{id}/devolucion
+ * DELETE /prestamos/{id}
+ * GET    /reservas/{id}
+ * POST   /reservas                  {"usuario_id", "libro_id"}: lista de espera de un libro sin unidades
+ * DELETE /reservas/{id}             cancela la reserva
+ * GET    /notificaciones/pendientes sin enviar (página con ?afterId=&amp;limite=)
+ * POST   /notificaciones/{id}/enviada
+ * GET    /estadisticas              incluye el promedio por usuario activo de los últimos ?dias= (30 por defecto)
+ * </pre>
+ * El puerto se configura con {@code biblioteca.api.port} (8080 por defecto).
+ * <p>
+ * Uso: {@code java org.EduardoMango.api.ApiServer}
+ */
+public class ApiServer implements AutoCloseable {
+
+    @FunctionalInterface
+    private interface Endpoint {
+        void atender(Solicitud solicitud) throws IOException;
+    }
+
+    private record Ruta(String metodo, String patron, String[] segmentos, Endpoint endpoint) {}
+
+    private static final int LIMITE_POR_DEFECTO = 100;
+
+    static {
+        // Sin TCP_NODELAY, HttpServer envía los encabezados y el cuerpo en paquetes separados y el cliente
+        // demora el ACK: cada respuesta sobre una conexión keep-alive espera unos 40 ms (algoritmo de Nagle).
+        // Se lee una sola vez, al crear el primer HttpServer del proceso.
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+
+    private final LibroService libroService = LibroService.getInstance();
+    private final UsuarioService usuarioService = UsuarioService.getInstance();
+    private final PrestamoService prestamoService = PrestamoService.getInstance();
+    private final ReservaService reservaService = ReservaService.getInstance();
+    private final NotificacionService notificacionService = NotificacionService.getInstance();
+    private final EstadisticasPrestamos estadisticas = EstadisticasPrestamos.getInstance();
+    private final ServiceExecutor executor = ServiceExecutor.getInstance();
+
+    private final List<Ruta> rutas = new ArrayList<>();
+    private final int puerto;
+    private final ExecutorService conexiones = Executors.newVirtualThreadPerTaskExecutor();
+    private HttpServer server;
+
+    public ApiServer(int puerto) {
+        this.puerto = puerto;
+
+        get("/libros", s -> {
+            if (s.tiene("afterId") || s.tiene("limite")) lista(s, libroService.findPage(s.entero("afterId", 0), limite(s)), EntidadesJson::escribir);
+            else stream(s, libroService::forEachOrThrow, EntidadesJson::escribir);
+        });
+        get("/libros/disponibles", s -> {
+            if (s.tiene("afterId") || s.tiene("limite")) lista(s, libroService.findPageDisponibles(s.entero("afterId", 0), limite(s)), EntidadesJson::escribir);
+            else lista(s, libroService.findAllDisponible(), EntidadesJson::escribir);
+        });
+        get("/libros/buscar", s -> lista(s, libroService.search(BusquedaLibros.builder()
+                .texto(s.texto("q"))
+                .anioDesde(s.entero("anioDesde"))
+                .anioHasta(s.entero("anioHasta"))
+                .soloDisponibles(Boolean.parseBoolean(s.texto("disponibles")))
+                .offset(offset(s))
+                .limite(limite(s, 20))
+                .build()), EntidadesJson::escribir));
+        get("/libros/top", s -> lista(s, s.tiene("mes")
+                        ? libroService.findTopPrestados(s.entero("limite", 10), s.mes("mes").atDay(1), s.mes("mes").atEndOfMonth())
+                        : s.tiene("desde") || s.tiene("hasta")
+                        ? libroService.findTopPrestados(s.entero("limite", 10), s.fecha("desde"), s.fecha("hasta"))
+                        : libroService.findTopPrestados(s.entero("limite", 10)),
+                (json, posicion) -> EntidadesJson.escribir(json, posicion, EntidadesJson::escribir)));
+        get("/libros/mas-prestado", s -> objeto(s, 200, s.tiene("mes")
+                ? libroService.findByMaxPrestamos(s.mes("mes"))
+                : libroService.findByMaxPrestamos(), EntidadesJson::escribir));
+        get("/libros/{id}", s -> objeto(s, 200, libroService.findById(s.id()), EntidadesJson::escribir));
+        post("/libros", s -> {
+            LibroEntity libro = EntidadesJson.leerLibro(s.cuerpo());
+            objeto(s, 201, libroService.saveOrThrow(libro).orElseThrow(() -> new HttpError(409, "No se pudo guardar el libro")), EntidadesJson::escribir);
+        });
+        post("/libros/{id}/stock", s -> {
+            String delta = s.cuerpo().get("delta");
+            if (delta == null) throw new IllegalArgumentException("Falta la propiedad delta");
+            libroService.ajustarStockOrThrow(s.id(), Integer.parseInt(delta));
+            s.sinContenido();
+        });
+        delete("/libros/{id}", s -> {
+            libroService.deleteOrThrow(s.id());
+            s.sinContenido();
+        });
+
+        get("/usuarios", s -> {
+            if (s.tiene("afterId") || s.tiene("limite")) lista(s, usuarioService.findPage(s.entero("afterId", 0), limite(s)), EntidadesJson::escribir);
+            else stream(s, usuarioService::forEachOrThrow, EntidadesJson::escribir);
+        });
+        get("/usuarios/con-prestamos-activos", s -> lista(s,
+                usuarioService.findPageConPrestamosActivos(s.entero("afterId", 0), limite(s)), EntidadesJson::escribir));
+        get("/usuarios/top", s -> lista(s, s.tiene("mes")
+                        ? usuarioService.findTopPrestamos(s.entero("limite", 10), s.mes("mes").atDay(1), s.mes("mes").atEndOfMonth())
+                        : s.tiene("desde") || s.tiene("hasta")
+                        ? usuarioService.findTopPrestamos(s.entero("limite", 10), s.fecha("desde"), s.fecha("hasta"))
+                        : usuarioService.findTopPrestamos(s.entero("limite", 10)),
+                (json, posicion) -> EntidadesJson.escribir(json, posicion, EntidadesJson::escribir)));
+        get("/usuarios/mas-prestamos", s -> objeto(s, 200, s.tiene("mes")
+                ? usuarioService.findByMaxPrestamos(s.mes("mes"))
+                : usuarioService.findByMaxPrestamos(), EntidadesJson::escribir));
+        get("/usuarios/{id}", s -> objeto(s, 200, usuarioService.findById(s.id()), EntidadesJson::escribir));
+        get("/usuarios/{id}/reservas", s -> lista(s, reservaService.findPendientesByUsuario(s.id()), EntidadesJson::escribir));
+        post("/usuarios", s -> {
+            UsuarioEntity usuario = EntidadesJson.leerUsuario(s.cuerpo());
+            objeto(s, 201, usuarioService.saveOrThrow(usuario).orElseThrow(() -> new HttpError(409, "No se pudo guardar el usuario")), EntidadesJson::escribir);
+        });
+        delete("/usuarios/{id}", s -> {
+            usuarioService.deleteOrThrow(s.id());
+            s.sinContenido();
+        });
+
+        get("/prestamos", s -> {
+            if (s.tiene("desde") || s.tiene("hasta")) lista(s, prestamoService.findByFechaPrestamo(
+                    s.tiene("desde") ? s.fecha("desde") : LocalDate.MIN, s.tiene("hasta") ? s.fecha("hasta") : LocalDate.MAX), EntidadesJson::escribir);
+            else if (s.tiene("afterId") || s.tiene("limite")) lista(s, prestamoService.findPage(s.entero("afterId", 0), limite(s)), EntidadesJson::escribir);
+            else stream(s, prestamoService::forEachOrThrow, EntidadesJson::escribir);
+        });
+        get("/prestamos/activos", s -> {
+            if (s.tiene("afterId") || s.tiene("limite")) lista(s, prestamoService.findPageActivos(s.entero("afterId", 0), limite(s)), EntidadesJson::escribir);
+            else stream(s, prestamoService::forEachActivoOrThrow, EntidadesJson::escribir);
+        });
+        get("/prestamos/vencidos", s -> stream(s, prestamoService::forEachVencidoOrThrow, EntidadesJson::escribir));
+        get("/prestamos/{id}", s -> objeto(s, 200, prestamoService.findById(s.id()), EntidadesJson::escribir));
+        post("/prestamos", s -> {
+            PrestamoEntity prestamo = EntidadesJson.leerPrestamo(s.cuerpo());
+            objeto(s, 201, prestamoService.saveOrThrow(prestamo).orElseThrow(() -> new HttpError(409,
+                    "No se pudo registrar el préstamo: el libro no está disponible o el usuario alcanzó el máximo de préstamos")),
+                    EntidadesJson::escribir);
+        });
+        post("/prestamos/{id}/devolucion", s -> {
+            prestamoService.returnPrestamoOrThrow(s.id());
+            s.sinContenido();
+        });
+        delete("/prestamos/{id}", s -> {
+            prestamoService.deleteOrThrow(s.id());
+            s.sinContenido();
+        });
+
+        get("/reservas/{id}", s -> objeto(s, 200, reservaService.findById(s.id()), EntidadesJson::escribir));
+        post("/reservas", s -> {
+            ReservaEntity reserva = EntidadesJson.leerReserva(s.cuerpo());
+            objeto(s, 201, reservaService.reservarOrThrow(reserva.getUsuario_id(), reserva.getLibro_id()).orElseThrow(() -> new HttpError(409,
+                    "No se pudo registrar la reserva: el usuario ya tiene una reserva pendiente de ese libro")),
+                    EntidadesJson::escribir);
+        });
+        delete("/reservas/{id}", s -> {
+            reservaService.cancelarOrThrow(s.id());
+            s.sinContenido();
+        });
+
+        get("/notificaciones/pendientes", s -> lista(s,
+                notificacionService.findPagePendientes(s.entero("afterId", 0), limite(s)), EntidadesJson::escribir));
+        post("/notificaciones/{id}/enviada", s -> {
+            notificacionService.marcarEnviadaOrThrow(s.id());
+            s.sinContenido();
+        });
+
+        get("/estadisticas", s -> s.json(200, json -> json.beginObject()
+                .name("total_prestamos").value(estadisticas.getTotalPrestamos())
+                .name("usuarios_con_prestamos").value(estadisticas.getUsuariosConPrestamos())
+                .name("promedio_prestamos_por_usuario").value(prestamoService.promedioPrestamoPorUsuarioConPrestamos())
+                .name("dias").value(s.entero("dias", 30))
+                .name("promedio_prestamos_por_usuario_activo").value(prestamoService.promedioPrestamoPorUsuarioActivo(s.entero("dias", 30)))
+                .name("unidades_disponibles").value(libroService.totalLibrosDisponibles())
+                .endObject()));
+    }
+
+    public static void main(String[] args) throws IOException {
+        MetricsExporter metricsExporter = MetricsExporter.fromConfig();
+        EscaneoVencidos escaneoVencidos = EscaneoVencidos.fromConfig();
+        BarridoReservas barridoReservas = BarridoReservas.fromConfig();
+        ApiServer api = new ApiServer(Integer.parseInt(DatabaseConfig.get("biblioteca.api.port", "8080")));
+        metricsExporter.start();
+        escaneoVencidos.start();
+        barridoReservas.start();
+        api.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            api.close();
+            barridoReservas.close();
+            escaneoVencidos.close();
+            metricsExporter.close();
+        }));
+        System.out.println("API escuchando en http://localhost:" + api.puerto);
+    }
+
+    public void start() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(puerto), 0);
+        server.setExecutor(conexiones);
+        server.createContext("/", this::despachar);
+        server.start();
+    }
+
+    /**
+     * Deja de aceptar conexiones y espera a que terminen las solicitudes en curso.
+     */
+    @Override
+    public void close() {
+        if (server != null) server.stop(1);
+        conexiones.close();
+    }
+
+    private void despachar(HttpExchange exchange) {
+        long inicio = System.nanoTime();
+        String patron = "desconocida";
+        try (exchange) {
+            String metodo = exchange.getRequestMethod();
+            String[] segmentos = segmentos(exchange.getRequestURI().getPath());
+            List<Integer> ids = new ArrayList<>(1);
+            Ruta ruta = null;
+            boolean otroMetodo = false;
+            for (Ruta r : rutas) {
+                ids.clear();
+                if (!coincide(r.segmentos(), segmentos, ids)) continue;
+                if (r.metodo().equals(metodo)) {
+                    ruta = r;
+                    break;
+                }
+                otroMetodo = true;
+            }
+
+            Solicitud solicitud = new Solicitud(exchange, List.copyOf(ids));
+            if (ruta == null) {
+                solicitud.error(otroMetodo ? 405 : 404, otroMetodo ? "Método no permitido" : "Ruta inexistente");
+                return;
+            }
+            patron = ruta.metodo() + " " + ruta.patron();
+            atender(ruta, solicitud);
+        } catch (IOException | UncheckedIOException e) {
+            // El cliente cerró la conexión: no hay a quién responder.
+        } finally {
+            MetricsRegistry.getInstance()
+                    .timer(MeterId.of("biblioteca_http_seconds", "ruta", patron, "status", String.valueOf(exchange.getResponseCode())))
+                    .record(System.nanoTime() - inicio);
+        }
+    }
+
+    private void atender(Ruta ruta, Solicitud solicitud) throws IOException {
+        try {
+            executor.call(() -> {
+                ruta.endpoint().atender(solicitud);
+                return null;
+            });
+        } catch (SobrecargaException e) {
+            solicitud.error(503, e.getMessage());
+        } catch (TimeoutException e) {
+            solicitud.error(504, e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            solicitud.error(503, "El servidor se está deteniendo");
+        } catch (ExecutionException e) {
+            Throwable causa = e.getCause();
+            switch (causa) {
+                case HttpError error -> solicitud.error(error.getStatus(), error.getMessage());
+                case NoSuchElementException error -> solicitud.error(404, error.getMessage() == null ? "No encontrado" : error.getMessage());
+                case IllegalArgumentException error -> solicitud.error(400, error.getMessage());
+                case DateTimeParseException error -> solicitud.error(400, error.getMessage());
+                case UncheckedSQLException error -> {
+                    System.out.println(ruta.metodo() + " " + ruta.patron() + ": " + error.getMessage());
+                    solicitud.error(500, "Error de la base de datos: " + error.getMessage());
+                }
+                case IOException error -> throw error;
+                case UncheckedIOException error -> throw error;
+                default -> {
+                    System.out.println(ruta.metodo() + " " + ruta.patron() + ": " + causa);
+                    solicitud.error(500, String.valueOf(causa.getMessage()));
+                }
+            }
+        }
+    }
+
+    private static <T> void lista(Solicitud s, List<T> entidades, BiConsumer<JsonWriter, T> escritor) throws IOException {
+        s.json(200, json -> {
+            json.beginArray();
+            for (T entidad : entidades) escritor.accept(json, entidad);
+            json.endArray();
+        });
+    }
+
+    /**
+     * Recorre las entidades con {@code forEach} del servicio y escribe cada una en la respuesta
+     * apenas se lee, mientras la conexión de lectura sigue abierta.
+     * Si la base falla a mitad del recorrido, el estado 200 ya se envió: la excepción llega a
+     * {@link #atender} y el arreglo JSON queda sin cerrar, así el cliente ve que la respuesta está incompleta.
+     */
+    private static <T> void stream(Solicitud s, Consumer<Consumer<T>> forEach,
+                                   BiConsumer<JsonWriter, T> escritor) throws IOException {
+        s.json(200, json -> {
+            json.beginArray();
+            forEach.accept(entidad -> escritor.accept(json, entidad));
+            json.endArray();
+        });
+    }
+
+    private static <T> void objeto(Solicitud s, int status, T entidad, BiConsumer<JsonWriter, T> escritor) throws IOException {
+        s.json(status, json -> escritor.accept(json, entidad));
+    }
+
+    private static int limite(Solicitud s) {
+        return limite(s, LIMITE_POR_DEFECTO);
+    }
+
+    private static int limite(Solicitud s, int porDefecto) {
+        int limite = s.entero("limite", porDefecto);
+        if (limite < 1 || limite > 10_000) throw new IllegalArgumentException("limite debe estar entre 1 y 10000");
+        return limite;
+    }
+
+    private static int offset(Solicitud s) {
+        int offset = s.entero("offset", 0);
+        if (offset < 0) throw new IllegalArgumentException("offset no puede ser negativo");
+        return offset;
+    }
+
+    private void get(String patron, Endpoint endpoint) {
+        rutas.add(new Ruta("GET", patron, segmentos(patron), endpoint));
+    }
+
+    private void post(String patron, Endpoint endpoint) {
+        rutas.add(new Ruta("POST", patron, segmentos(patron), endpoint));
+    }
+
+    private void delete(String patron, Endpoint endpoint) {
+        rutas.add(new Ruta("DELETE", patron, segmentos(patron), endpoint));
+    }
+
+    private static String[] segmentos(String path) {
+        return Arrays.stream(path.split("/")).filter(p -> !p.isEmpty()).toArray(String[]::new);
+    }
+
+    /**
+     * Compara la ruta pedida con un patrón; cada {@code {id}} del patrón debe ser un entero
+     * y se agrega a {@code ids}.
+     */
+    private static boolean coincide(String[] patron, String[] segmentos, List<Integer> ids) {
+        if (patron.length != segmentos.length) return false;
+        for (int i = 0; i < patron.length; i++) {
+            if (patron[i].equals("{id}")) {
+                try {
+                    ids.add(Integer.parseInt(segmentos[i]));
+                } catch (NumberFormatException e) {
+                    return false;
+                }
+            } else if (!patron[i].equals(segmentos[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
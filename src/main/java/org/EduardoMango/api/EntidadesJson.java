@@ -0,0 +1,120 @@
+package org.EduardoMango.api;
+
+import org.EduardoMango.entities.LibroEntity;
+import org.EduardoMango.entities.NotificacionEntity;
+import org.EduardoMango.entities.PrestamoEntity;
+import org.EduardoMango.entities.RankingEntity;
+import org.EduardoMango.entities.ReservaEntity;
+import org.EduardoMango.entities.UsuarioEntity;
+
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * Conversión entre las entidades y JSON. Las propiedades se llaman igual que los campos
+ * de las entidades; las fechas se escriben en formato ISO ({@code 2025-03-14}).
+ */
+public class EntidadesJson {
+
+    private EntidadesJson() {}
+
+    public static void escribir(JsonWriter json, LibroEntity libro) {
+        json.beginObject()
+                .name("id").value(libro.getId())
+                .name("titulo").value(libro.getTitulo())
+                .name("autor").value(libro.getAutor())
+                .name("anio_publicacion").value(libro.getAnio_publicacion())
+                .name("unidades_disponibles").value(libro.getUnidades_disponibles())
+                .endObject();
+    }
+
+    public static void escribir(JsonWriter json, UsuarioEntity usuario) {
+        json.beginObject()
+                .name("id").value(usuario.getId())
+                .name("nombre").value(usuario.getNombre())
+                .name("email").value(usuario.getEmail())
+                .endObject();
+    }
+
+    public static void escribir(JsonWriter json, PrestamoEntity prestamo) {
+        json.beginObject()
+                .name("id").value(prestamo.getId())
+                .name("usuario_id").value(prestamo.getUsuario_id())
+                .name("libro_id").value(prestamo.getLibro_id())
+                .name("fecha_prestamo").valueOf(prestamo.getFecha_prestamo())
+                .name("fecha_devolucion").valueOf(prestamo.getFecha_devolucion())
+                .name("fecha_vencimiento").valueOf(prestamo.getFecha_vencimiento())
+                .endObject();
+    }
+
+    public static void escribir(JsonWriter json, NotificacionEntity notificacion) {
+        json.beginObject()
+                .name("id").value(notificacion.getId())
+                .name("tipo").value(notificacion.getTipo())
+                .name("prestamo_id").value(notificacion.getPrestamo_id())
+                .name("usuario_id").value(notificacion.getUsuario_id())
+                .name("libro_id").value(notificacion.getLibro_id())
+                .name("fecha_vencimiento").valueOf(notificacion.getFecha_vencimiento())
+                .name("creada").valueOf(notificacion.getCreada())
+                .name("enviada").valueOf(notificacion.getEnviada())
+                .endObject();
+    }
+
+    public static void escribir(JsonWriter json, ReservaEntity reserva) {
+        json.beginObject()
+                .name("id").value(reserva.getId())
+                .name("libro_id").value(reserva.getLibro_id())
+                .name("usuario_id").value(reserva.getUsuario_id())
+                .name("fecha_reserva").valueOf(reserva.getFecha_reserva())
+                .name("estado").valueOf(reserva.getEstado())
+                .name("vence").valueOf(reserva.getVence())
+                .endObject();
+    }
+
+    public static <T> void escribir(JsonWriter json, RankingEntity<T> posicion, BiConsumer<JsonWriter, T> entidad) {
+        json.beginObject().name("entidad");
+        entidad.accept(json, posicion.getEntidad());
+        json.name("cantidad_prestamos").value(posicion.getCantidad_prestamos()).endObject();
+    }
+
+    public static LibroEntity leerLibro(Map<String, String> json) {
+        return LibroEntity.builder()
+                .titulo(requerido(json, "titulo"))
+                .autor(requerido(json, "autor"))
+                .anio_publicacion(entero(json, "anio_publicacion"))
+                .unidades_disponibles(entero(json, "unidades_disponibles"))
+                .build();
+    }
+
+    public static UsuarioEntity leerUsuario(Map<String, String> json) {
+        return UsuarioEntity.builder()
+                .nombre(requerido(json, "nombre"))
+                .email(requerido(json, "email"))
+                .build();
+    }
+
+    public static PrestamoEntity leerPrestamo(Map<String, String> json) {
+        return PrestamoEntity.builder()
+                .usuario_id(Integer.parseInt(requerido(json, "usuario_id")))
+                .libro_id(Integer.parseInt(requerido(json, "libro_id")))
+                .build();
+    }
+
+    public static ReservaEntity leerReserva(Map<String, String> json) {
+        return ReservaEntity.builder()
+                .usuario_id(Integer.parseInt(requerido(json, "usuario_id")))
+                .libro_id(Integer.parseInt(requerido(json, "libro_id")))
+                .build();
+    }
+
+    private static String requerido(Map<String, String> json, String nombre) {
+        String valor = json.get(nombre);
+        if (valor == null) throw new IllegalArgumentException("Falta la propiedad " + nombre);
+        return valor;
+    }
+
+    private static Integer entero(Map<String, String> json, String nombre) {
+        String valor = json.get(nombre);
+        return valor == null ? null : Integer.valueOf(valor);
+    }
+}
@@ -0,0 +1,17 @@
+package org.EduardoMango.api;
+
+import lombok.Getter;
+
+/**
+ * Error de una solicitud a la API con el código HTTP que debe responderse.
+ */
+@Getter
+public class HttpError extends RuntimeException {
+
+    private final int status;
+
+    public HttpError(int status, String message) {
+        super(message);
+        this.status = status;
+    }
+}
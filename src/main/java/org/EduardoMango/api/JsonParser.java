@@ -0,0 +1,121 @@
+package org.EduardoMango.api;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Lee los cuerpos JSON de las solicitudes: un único objeto plano, cuyos valores son textos,
+ * números, booleanos o null. Es todo lo que necesitan las altas de la API; no admite objetos
+ * ni arreglos anidados.
+ */
+public class JsonParser {
+
+    private final String texto;
+    private int pos;
+
+    private JsonParser(String texto) {
+        this.texto = texto;
+    }
+
+    /**
+     * @return Las propiedades del objeto, con los números y booleanos como texto
+     * y null para los valores null.
+     * @throws IllegalArgumentException Si el texto no es un objeto JSON plano válido.
+     */
+    public static Map<String, String> leerObjeto(String texto) {
+        JsonParser parser = new JsonParser(texto);
+        Map<String, String> objeto = parser.objeto();
+        parser.espacios();
+        if (parser.pos != texto.length()) throw parser.error("se esperaba el fin del documento");
+        return objeto;
+    }
+
+    private Map<String, String> objeto() {
+        Map<String, String> objeto = new LinkedHashMap<>();
+        esperar('{');
+        espacios();
+        if (consumir('}')) return objeto;
+        do {
+            espacios();
+            String nombre = cadena();
+            espacios();
+            esperar(':');
+            espacios();
+            objeto.put(nombre, valor());
+            espacios();
+        } while (consumir(','));
+        esperar('}');
+        return objeto;
+    }
+
+    private String valor() {
+        if (pos >= texto.length()) throw error("se esperaba un valor");
+        char c = texto.charAt(pos);
+        if (c == '"') return cadena();
+        if (texto.startsWith("null", pos)) {
+            pos += 4;
+            return null;
+        }
+        int desde = pos;
+        while (pos < texto.length() && "+-.eE0123456789truefals".indexOf(texto.charAt(pos)) >= 0) pos++;
+        String literal = texto.substring(desde, pos);
+        if (literal.equals("true") || literal.equals("false")) return literal;
+        try {
+            Double.parseDouble(literal);
+        } catch (NumberFormatException e) {
+            pos = desde;
+            throw error("valor inválido");
+        }
+        return literal;
+    }
+
+    private String cadena() {
+        esperar('"');
+        StringBuilder sb = new StringBuilder();
+        while (pos < texto.length()) {
+            char c = texto.charAt(pos++);
+            if (c == '"') return sb.toString();
+            if (c != '\\') {
+                sb.append(c);
+                continue;
+            }
+            if (pos >= texto.length()) break;
+            char e = texto.charAt(pos++);
+            switch (e) {
+                case '"', '\\', '/' -> sb.append(e);
+                case 'n' -> sb.append('\n');
+                case 'r' -> sb.append('\r');
+                case 't' -> sb.append('\t');
+                case 'b' -> sb.append('\b');
+                case 'f' -> sb.append('\f');
+                case 'u' -> {
+                    if (pos + 4 > texto.length()) throw error("escape \\u incompleto");
+                    sb.append((char) Integer.parseInt(texto.substring(pos, pos + 4), 16));
+                    pos += 4;
+                }
+                default -> throw error("escape inválido");
+            }
+        }
+        throw error("texto sin cerrar");
+    }
+
+    private void espacios() {
+        while (pos < texto.length() && Character.isWhitespace(texto.charAt(pos))) pos++;
+    }
+
+    private boolean consumir(char c) {
+        if (pos < texto.length() && texto.charAt(pos) == c) {
+            pos++;
+            return true;
+        }
+        return false;
+    }
+
+    private void esperar(char c) {
+        if (!consumir(c)) throw error("se esperaba '" + c + "'");
+    }
+
+    private IllegalArgumentException error(String motivo) {
+        return new IllegalArgumentException("JSON inválido en la posición " + pos + ": " + motivo);
+    }
+}
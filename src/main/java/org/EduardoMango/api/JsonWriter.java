@@ -0,0 +1,175 @@
+package org.EduardoMango.api;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+
+/**
+ * Escribe JSON directamente sobre un {@link Writer}, elemento por elemento, sin armar
+ * el documento en memoria: una lista de un millón de préstamos se envía a medida que se lee de la base.
+ * <p>
+ * Las comas entre elementos se agregan solas; solo hay que abrir y cerrar objetos y arreglos en orden:
+ * <pre>{@code
+ * json.beginObject().name("id").value(1).name("titulo").value("Rayuela").endObject();
+ * }</pre>
+ * Los errores de escritura se lanzan como {@link UncheckedIOException}, para poder escribir
+ * desde un {@code forEach}.
+ */
+public class JsonWriter implements Flushable {
+
+    private static final int MAX_PROFUNDIDAD = 64;
+
+    private final Writer out;
+    /** Por cada nivel abierto, si ya se escribió algún elemento (y el próximo lleva coma). */
+    private final boolean[] conElementos = new boolean[MAX_PROFUNDIDAD];
+    private int profundidad;
+    /** Si lo último escrito fue un nombre de propiedad, el valor siguiente no lleva coma. */
+    private boolean despuesDeNombre;
+
+    public JsonWriter(Writer out) {
+        this.out = out;
+    }
+
+    public JsonWriter beginObject() {
+        return abrir('{');
+    }
+
+    public JsonWriter endObject() {
+        return cerrar('}');
+    }
+
+    public JsonWriter beginArray() {
+        return abrir('[');
+    }
+
+    public JsonWriter endArray() {
+        return cerrar(']');
+    }
+
+    public JsonWriter name(String nombre) {
+        separar();
+        cadena(nombre);
+        escribir(':');
+        despuesDeNombre = true;
+        return this;
+    }
+
+    public JsonWriter value(String valor) {
+        separar();
+        if (valor == null) escribir("null");
+        else cadena(valor);
+        return this;
+    }
+
+    public JsonWriter value(long valor) {
+        separar();
+        escribir(Long.toString(valor));
+        return this;
+    }
+
+    public JsonWriter value(double valor) {
+        separar();
+        escribir(Double.isFinite(valor) ? Double.toString(valor) : "null");
+        return this;
+    }
+
+    public JsonWriter value(boolean valor) {
+        separar();
+        escribir(valor ? "true" : "false");
+        return this;
+    }
+
+    /**
+     * Escribe un número que puede ser null.
+     */
+    public JsonWriter value(Integer valor) {
+        separar();
+        escribir(valor == null ? "null" : valor.toString());
+        return this;
+    }
+
+    /**
+     * Escribe el valor como texto ({@code toString()}), o null.
+     */
+    public JsonWriter valueOf(Object valor) {
+        return value(valor == null ? null : valor.toString());
+    }
+
+    @Override
+    public void flush() {
+        try {
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private JsonWriter abrir(char c) {
+        separar();
+        if (profundidad == MAX_PROFUNDIDAD) throw new IllegalStateException("JSON demasiado anidado");
+        conElementos[profundidad++] = false;
+        escribir(c);
+        return this;
+    }
+
+    private JsonWriter cerrar(char c) {
+        if (profundidad == 0) throw new IllegalStateException("No hay ningún objeto o arreglo abierto");
+        profundidad--;
+        escribir(c);
+        return this;
+    }
+
+    private void separar() {
+        if (despuesDeNombre) {
+            despuesDeNombre = false;
+            return;
+        }
+        if (profundidad == 0) return;
+        if (conElementos[profundidad - 1]) escribir(',');
+        conElementos[profundidad - 1] = true;
+    }
+
+    private void cadena(String s) {
+        escribir('"');
+        int desde = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            String escape = switch (c) {
+                case '"' -> "\\\"";
+                case '\\' -> "\\\\";
+                case '\n' -> "\\n";
+                case '\r' -> "\\r";
+                case '\t' -> "\\t";
+                default -> c < 0x20 ? String.format("\\u%04x", (int) c) : null;
+            };
+            if (escape != null) {
+                escribir(s, desde, i);
+                escribir(escape);
+                desde = i + 1;
+            }
+        }
+        escribir(s, desde, s.length());
+        escribir('"');
+    }
+
+    private void escribir(char c) {
+        try {
+            out.write(c);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void escribir(String s) {
+        escribir(s, 0, s.length());
+    }
+
+    private void escribir(String s, int desde, int hasta) {
+        try {
+            out.write(s, desde, hasta - desde);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package org.EduardoMango.api;
+
+import org.EduardoMango.database.DatabaseSeeder;
+import org.EduardoMango.metrics.Timer;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Generador de carga para la {@link ApiServer}: varios clientes concurrentes (uno por virtual thread)
+ * envían solicitudes sin pausa durante un tiempo fijo, con una mezcla de lecturas y préstamos.
+ * Al terminar imprime, por operación y en total, la cantidad de solicitudes, el throughput,
+ * los percentiles p50 y p99 de latencia y los errores.
+ * <p>
+ * Se usa contra una base generada con {@link DatabaseSeeder}; la cantidad de préstamos indica
+ * el rango de ids de libros y usuarios a pedir:
+ * <pre>
+ * java -Dbiblioteca.db.url=jdbc:sqlite:carga.db org.EduardoMango.database.DatabaseSeeder 100000
+ * java -Dbiblioteca.db.url=jdbc:sqlite:carga.db org.EduardoMango.api.ApiServer
+ * java org.EduardoMango.api.LoadGenerator http://localhost:8080 30 64 100000
+ * </pre>
+ * Argumentos: URL base, segundos, clientes concurrentes y préstamos de la base.
+ */
+public class LoadGenerator {
+
+    private record Operacion(String nombre, int peso) {}
+
+    /** Mezcla de operaciones y su peso relativo. */
+    private static final List<Operacion> MEZCLA = List.of(
+            new Operacion("GET /libros/{id}", 35),
+            new Operacion("GET /usuarios/{id}", 20),
+            new Operacion("GET /prestamos?afterId&limite=50", 10),
+            new Operacion("GET /libros/buscar", 10),
+            new Operacion("GET /libros/top", 10),
+            new Operacion("GET /estadisticas", 5),
+            new Operacion("POST /prestamos + devolucion", 10));
+
+    private final HttpClient client = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(5))
+            .executor(Executors.newVirtualThreadPerTaskExecutor())
+            .build();
+    private final String base;
+    private final int libros;
+    private final int usuarios;
+    private final int prestamos;
+    private final Map<String, Timer> timers = new TreeMap<>();
+    private final Timer total = new Timer();
+    private final Map<String, LongAdder> errores = new TreeMap<>();
+    private final int pesoTotal = MEZCLA.stream().mapToInt(Operacion::peso).sum();
+
+    public LoadGenerator(String base, int prestamos) {
+        this.base = base;
+        this.prestamos = prestamos;
+        this.libros = DatabaseSeeder.libros(prestamos);
+        this.usuarios = DatabaseSeeder.usuarios(prestamos);
+        for (Operacion op : MEZCLA) {
+            timers.put(op.nombre(), new Timer());
+            errores.put(op.nombre(), new LongAdder());
+        }
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        String base = args.length > 0 ? args[0] : "http://localhost:8080";
+        int segundos = args.length > 1 ? Integer.parseInt(args[1]) : 30;
+        int clientes = args.length > 2 ? Integer.parseInt(args[2]) : 64;
+        int prestamos = args.length > 3 ? Integer.parseInt(args[3]) : 100_000;
+
+        LoadGenerator generador = new LoadGenerator(base, prestamos);
+        System.out.printf("%d clientes durante %d s contra %s%n", clientes, segundos, base);
+        generador.ejecutar(clientes, Duration.ofSeconds(segundos));
+    }
+
+    /**
+     * Ejecuta la carga y al terminar imprime el reporte.
+     */
+    public void ejecutar(int clientes, Duration duracion) throws InterruptedException {
+        long inicio = System.nanoTime();
+        long fin = inicio + duracion.toNanos();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < clientes; i++) {
+                long semilla = ThreadLocalRandom.current().nextLong();
+                executor.submit(() -> cliente(new SplittableRandom(semilla), fin));
+            }
+        }
+        reporte((System.nanoTime() - inicio) / 1e9);
+    }
+
+    private void cliente(SplittableRandom random, long fin) {
+        while (System.nanoTime() < fin && !Thread.currentThread().isInterrupted()) {
+            Operacion op = elegir(random);
+            long inicio = System.nanoTime();
+            boolean ok;
+            try {
+                ok = ejecutar(op.nombre(), random);
+            } catch (IOException e) {
+                ok = false;
+            } catch (InterruptedException e) {
+                return;
+            }
+            long duracion = System.nanoTime() - inicio;
+            timers.get(op.nombre()).record(duracion);
+            total.record(duracion);
+            if (!ok) errores.get(op.nombre()).increment();
+        }
+    }
+
+    private Operacion elegir(SplittableRandom random) {
+        int r = random.nextInt(pesoTotal);
+        for (Operacion op : MEZCLA) {
+            r -= op.peso();
+            if (r < 0) return op;
+        }
+        return MEZCLA.getLast();
+    }
+
+    /**
+     * @return Si la operación terminó con un código de éxito. Un préstamo rechazado por falta de stock
+     * o por el máximo de préstamos del usuario (409) también cuenta como éxito.
+     */
+    private boolean ejecutar(String operacion, SplittableRandom random) throws IOException, InterruptedException {
+        return switch (operacion) {
+            case "GET /libros/{id}" -> get("/libros/" + (1 + random.nextInt(libros))) == 200;
+            case "GET /usuarios/{id}" -> get("/usuarios/" + (1 + random.nextInt(usuarios))) == 200;
+            case "GET /prestamos?afterId&limite=50" -> get("/prestamos?limite=50&afterId=" + random.nextInt(prestamos)) == 200;
+            case "GET /libros/buscar" -> get("/libros/buscar?limite=20&q=libro+" + (1 + random.nextInt(libros))) == 200;
+            case "GET /libros/top" -> get("/libros/top?limite=10") == 200;
+            case "GET /estadisticas" -> get("/estadisticas") == 200;
+            case "POST /prestamos + devolucion" -> prestarYDevolver(random);
+            default -> throw new IllegalArgumentException(operacion);
+        };
+    }
+
+    private boolean prestarYDevolver(SplittableRandom random) throws IOException, InterruptedException {
+        String cuerpo = "{\"usuario_id\": " + (1 + random.nextInt(usuarios)) + ", \"libro_id\": " + (1 + random.nextInt(libros)) + "}";
+        HttpResponse<String> prestamo = client.send(HttpRequest.newBuilder(URI.create(base + "/prestamos"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(cuerpo))
+                .build(), HttpResponse.BodyHandlers.ofString());
+        if (prestamo.statusCode() == 409) return true;
+        if (prestamo.statusCode() != 201) return false;
+
+        Map<String, String> creado = JsonParser.leerObjeto(prestamo.body());
+        HttpResponse<Void> devolucion = client.send(HttpRequest.newBuilder(URI.create(base + "/prestamos/" + creado.get("id") + "/devolucion"))
+                .POST(HttpRequest.BodyPublishers.noBody())
+                .build(), HttpResponse.BodyHandlers.discarding());
+        return devolucion.statusCode() == 204;
+    }
+
+    private int get(String ruta) throws IOException, InterruptedException {
+        return client.send(HttpRequest.newBuilder(URI.create(base + ruta)).GET().build(),
+                HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+
+    private void reporte(double segundos) {
+        long erroresTotales = 0;
+        List<String> lineas = new ArrayList<>();
+        String formato = "%-36s %9s %10s %10s %10s %8s";
+        lineas.add(String.format(formato, "operación", "solicit.", "req/s", "p50 ms", "p99 ms", "errores"));
+        for (Map.Entry<String, Timer> e : timers.entrySet()) {
+            Timer timer = e.getValue();
+            long cantidadErrores = errores.get(e.getKey()).sum();
+            erroresTotales += cantidadErrores;
+            lineas.add(linea(formato, e.getKey(), timer, segundos, cantidadErrores));
+        }
+        lineas.add(linea(formato, "total", total, segundos, erroresTotales));
+        lineas.forEach(System.out::println);
+    }
+
+    private static String linea(String formato, String nombre, Timer timer, double segundos, long errores) {
+        return String.format(formato, nombre, timer.getCount(),
+                String.format("%.1f", timer.getCount() / segundos),
+                String.format("%.2f", timer.percentile(0.5) / 1e6),
+                String.format("%.2f", timer.percentile(0.99) / 1e6),
+                errores);
+    }
+}
@@ -0,0 +1,123 @@
+package org.EduardoMango.api;
+
+import com.sun.net.httpserver.HttpExchange;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Una solicitud a la API: los parámetros de la ruta y de la query, el cuerpo,
+ * y los métodos para responder.
+ */
+public class Solicitud {
+
+    private static final int MAX_CUERPO = 64 * 1024;
+
+    private final HttpExchange exchange;
+    private final List<Integer> ids;
+    private final Map<String, String> query;
+
+    Solicitud(HttpExchange exchange, List<Integer> ids) {
+        this.exchange = exchange;
+        this.ids = ids;
+        this.query = parsearQuery(exchange.getRequestURI().getRawQuery());
+    }
+
+    /**
+     * El id que ocupa la posición {@code {id}} de la ruta.
+     */
+    public int id() {
+        return ids.getFirst();
+    }
+
+    public boolean tiene(String parametro) {
+        return query.containsKey(parametro);
+    }
+
+    public String texto(String parametro) {
+        return query.get(parametro);
+    }
+
+    public int entero(String parametro, int porDefecto) {
+        String valor = query.get(parametro);
+        return valor == null ? porDefecto : Integer.parseInt(valor);
+    }
+
+    public Integer entero(String parametro) {
+        String valor = query.get(parametro);
+        return valor == null ? null : Integer.valueOf(valor);
+    }
+
+    public LocalDate fecha(String parametro) {
+        String valor = query.get(parametro);
+        return valor == null ? null : LocalDate.parse(valor);
+    }
+
+    /**
+     * Lee un mes con formato aaaa-mm.
+     */
+    public YearMonth mes(String parametro) {
+        String valor = query.get(parametro);
+        return valor == null ? null : YearMonth.parse(valor);
+    }
+
+    /**
+     * Lee el cuerpo como un objeto JSON plano.
+     *
+     * @throws HttpError 413 si el cuerpo supera los 64 KiB.
+     */
+    public Map<String, String> cuerpo() throws IOException {
+        try (InputStream in = exchange.getRequestBody()) {
+            byte[] bytes = in.readNBytes(MAX_CUERPO + 1);
+            if (bytes.length > MAX_CUERPO) throw new HttpError(413, "El cuerpo supera los " + MAX_CUERPO + " bytes");
+            return JsonParser.leerObjeto(new String(bytes, StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * Responde con un documento JSON que se escribe a medida que se genera (transferencia por chunks),
+     * sin conocer su largo de antemano.
+     */
+    public void json(int status, Consumer<JsonWriter> documento) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, 0);
+        try (Writer out = new BufferedWriter(new OutputStreamWriter(exchange.getResponseBody(), StandardCharsets.UTF_8), 16 * 1024)) {
+            documento.accept(new JsonWriter(out));
+        }
+    }
+
+    /**
+     * Responde un error como {@code {"error": mensaje}}, si todavía no se envió otra respuesta.
+     */
+    public void error(int status, String mensaje) throws IOException {
+        if (exchange.getResponseCode() != -1) return;
+        json(status, json -> json.beginObject().name("error").value(mensaje).endObject());
+    }
+
+    public void sinContenido() throws IOException {
+        exchange.sendResponseHeaders(204, -1);
+    }
+
+    private static Map<String, String> parsearQuery(String raw) {
+        Map<String, String> query = new HashMap<>();
+        if (raw == null || raw.isEmpty()) return query;
+        for (String par : raw.split("&")) {
+            int igual = par.indexOf('=');
+            String clave = igual < 0 ? par : par.substring(0, igual);
+            String valor = igual < 0 ? "" : par.substring(igual + 1);
+            query.put(URLDecoder.decode(clave, StandardCharsets.UTF_8), URLDecoder.decode(valor, StandardCharsets.UTF_8));
+        }
+        return query;
+    }
+}
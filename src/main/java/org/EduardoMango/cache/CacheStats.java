@@ -0,0 +1,27 @@
+package org.EduardoMango.cache;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Contadores de una {@link EntityCache} en un momento dado.
+ */
+@Getter
+@AllArgsConstructor
+@ToString
+public class CacheStats {
+
+    private String nombre;
+    private int size;
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long expirations;
+    private long invalidations;
+
+    public double getHitRate() {
+        long total = hits + misses;
+        return total == 0 ? 0 : (double) hits / total;
+    }
+}
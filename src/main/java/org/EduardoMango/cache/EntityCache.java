@@ -0,0 +1,159 @@
+package org.EduardoMango.cache;
+
+import org.EduardoMango.metrics.MeterId;
+import org.EduardoMango.metrics.MetricsRegistry;
+
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Caché de entidades por id, de lectura directa (read-through), acotada y con vencimiento.
+ * <p>
+ * <ul>
+ * <li>Tamaño máximo: al superarlo se descarta la entrada usada hace más tiempo (LRU).</li>
+ * <li>TTL: una entrada vence pasado {@code ttlMillis} desde que se cargó, aunque se siga usando.</li>
+ * <li>Invalidación: los repositorios llaman a {@link #invalidate(int)} al escribir. Una carga que
+ * empezó antes de una invalidación no se guarda, para no volver a cachear un valor viejo.</li>
+ * </ul>
+ * Con {@code maxSize} 0 la caché queda deshabilitada y cada lectura va a la base.
+ * Los contadores se publican en el {@link MetricsRegistry} como {@code biblioteca_cache_*{cache=nombre}}.
+ *
+ * @param <T> El tipo de entidad cacheada.
+ */
+public class EntityCache<T> {
+
+    @FunctionalInterface
+    public interface Loader<T> {
+        Optional<T> load(int id) throws SQLException;
+    }
+
+    private record Entrada<T>(T valor, long vence) {}
+
+    private final String nombre;
+    private final int maxSize;
+    private final long ttlNanos;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final LinkedHashMap<Integer, Entrada<T>> entradas;
+    /** Se incrementa en cada invalidación; una carga solo se guarda si no cambió mientras se leía. */
+    private final AtomicLong version = new AtomicLong();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    public EntityCache(String nombre, int maxSize, long ttlMillis) {
+        this.nombre = nombre;
+        this.maxSize = maxSize;
+        this.ttlNanos = ttlMillis * 1_000_000;
+        this.entradas = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Entrada<T>> eldest) {
+                if (size() > EntityCache.this.maxSize) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+
+        MetricsRegistry registry = MetricsRegistry.getInstance();
+        registry.gauge(MeterId.of("biblioteca_cache_entradas", "cache", nombre), this::size);
+        registry.gauge(MeterId.of("biblioteca_cache_hits", "cache", nombre), hits::sum);
+        registry.gauge(MeterId.of("biblioteca_cache_misses", "cache", nombre), misses::sum);
+        registry.gauge(MeterId.of("biblioteca_cache_evictions", "cache", nombre), evictions::sum);
+        registry.gauge(MeterId.of("biblioteca_cache_expirations", "cache", nombre), expirations::sum);
+        registry.gauge(MeterId.of("biblioteca_cache_invalidations", "cache", nombre), invalidations::sum);
+    }
+
+    /**
+     * Devuelve la entidad cacheada o, si no está o venció, la carga con {@code loader} y la guarda.
+     * La carga se hace fuera del lock, así una lectura lenta no bloquea al resto de la caché.
+     */
+    public Optional<T> get(int id, Loader<T> loader) throws SQLException {
+        if (maxSize <= 0) return loader.load(id);
+
+        long ahora = System.nanoTime();
+        lock.lock();
+        try {
+            Entrada<T> entrada = entradas.get(id);
+            if (entrada != null) {
+                if (entrada.vence() - ahora > 0) {
+                    hits.increment();
+                    return Optional.of(entrada.valor());
+                }
+                entradas.remove(id);
+                expirations.increment();
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        misses.increment();
+        long versionAntes = version.get();
+        Optional<T> cargado = loader.load(id);
+        cargado.ifPresent(valor -> put(id, valor, versionAntes));
+        return cargado;
+    }
+
+    private void put(int id, T valor, long versionAntes) {
+        lock.lock();
+        try {
+            if (version.get() == versionAntes) {
+                entradas.put(id, new Entrada<>(valor, System.nanoTime() + ttlNanos));
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Descarta la entidad con ese id. Debe llamarse después de cualquier escritura que la modifique.
+     */
+    public void invalidate(int id) {
+        if (maxSize <= 0) return;
+        lock.lock();
+        try {
+            version.incrementAndGet();
+            entradas.remove(id);
+            invalidations.increment();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Descarta todas las entidades, por ejemplo después de una escritura masiva o en cascada.
+     */
+    public void invalidateAll() {
+        if (maxSize <= 0) return;
+        lock.lock();
+        try {
+            version.incrementAndGet();
+            entradas.clear();
+            invalidations.increment();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return entradas.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public CacheStats getStats() {
+        return new CacheStats(nombre, size(), hits.sum(), misses.sum(),
+                evictions.sum(), expirations.sum(), invalidations.sum());
+    }
+}
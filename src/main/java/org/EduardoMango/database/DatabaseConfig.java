@@ -0,0 +1,130 @@
+package org.EduardoMango.database;
+
+import lombok.Getter;
+import lombok.ToString;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.Properties;
+
+/**
+ * Configuración de la conexión a la base de datos.
+ * <p>
+ * Cada valor se busca, en este orden, en:
+ * <ol>
+ * <li>Las propiedades del sistema ({@code -Dbiblioteca.db.url=...}).</li>
+ * <li>Las variables de entorno, con la clave en mayúsculas y '_' en lugar de '.'
+ * ({@code BIBLIOTECA_DB_URL}, {@code BIBLIOTECA_DB_READPOOLSIZE}).</li>
+ * <li>El archivo {@code biblioteca.properties} del directorio de trabajo, si existe.</li>
+ * <li>El valor por defecto.</li>
+ * </ol>
+ */
+@Getter
+@ToString
+public class DatabaseConfig {
+
+    private static final String ARCHIVO = "biblioteca.properties";
+
+    /** URL JDBC de la base SQLite. */
+    private final String url;
+    /** Cantidad de conexiones del pool de lectura. La escritura siempre usa una sola conexión. */
+    private final int readPoolSize;
+    /** Milisegundos que se espera a obtener una conexión del pool antes de fallar. */
+    private final long connectionTimeout;
+    /** Cantidad de filas que se piden por vez al recorrer un resultado como stream. */
+    private final int fetchSize;
+    /** Cantidad de filas que se envían por batch en las inserciones masivas. */
+    private final int batchSize;
+    /** Cantidad máxima de entidades por caché de repositorio (0 la deshabilita). */
+    private final int entityCacheMaxSize;
+    /** Milisegundos que una entidad permanece en la caché de repositorio desde que se cargó. */
+    private final long entityCacheTtlMillis;
+    /** Cantidad máxima de prepared statements cacheados por conexión (0 deshabilita la caché). */
+    private final int statementCacheSize;
+    /**
+     * Si es true, las devoluciones y ajustes de stock se confirman al escribirse en un log local
+     * y se aplican a la base en segundo plano (ver {@code WriteBehind}).
+     */
+    private final boolean writeBehind;
+    /** Archivo del log de escritura diferida. */
+    private final String writeBehindLog;
+    /** Cantidad máxima de operaciones diferidas que se aplican en una transacción. */
+    private final int writeBehindMaxBatch;
+    /** Reintentos seguidos de un lote que la base rechaza antes de dar por fallida la escritura diferida. */
+    private final int writeBehindMaxRetries;
+    /** PRAGMA journal_mode. WAL permite leer mientras otra conexión escribe. */
+    private final String journalMode;
+    /** PRAGMA synchronous. NORMAL es seguro ante caídas de la aplicación en modo WAL. */
+    private final String synchronous;
+    /** PRAGMA mmap_size, en bytes. */
+    private final long mmapSize;
+    /** PRAGMA cache_size. Un valor negativo indica KiB en lugar de páginas. */
+    private final int cacheSize;
+    /** PRAGMA busy_timeout, en milisegundos. */
+    private final int busyTimeout;
+
+    private DatabaseConfig(Properties archivo) {
+        url = get(archivo, "biblioteca.db.url", "jdbc:sqlite:biblioteca.db");
+        readPoolSize = Integer.parseInt(get(archivo, "biblioteca.db.readPoolSize",
+                String.valueOf(Math.max(2, Runtime.getRuntime().availableProcessors()))));
+        connectionTimeout = Long.parseLong(get(archivo, "biblioteca.db.connectionTimeout", "30000"));
+        fetchSize = Integer.parseInt(get(archivo, "biblioteca.db.fetchSize", "1000"));
+        batchSize = Integer.parseInt(get(archivo, "biblioteca.db.batchSize", "1000"));
+        entityCacheMaxSize = Integer.parseInt(get(archivo, "biblioteca.cache.maxSize", "10000"));
+        entityCacheTtlMillis = Long.parseLong(get(archivo, "biblioteca.cache.ttlMillis", "300000"));
+        statementCacheSize = Integer.parseInt(get(archivo, "biblioteca.db.statementCacheSize", "64"));
+        writeBehind = Boolean.parseBoolean(get(archivo, "biblioteca.writeBehind.enabled", "false"));
+        writeBehindLog = get(archivo, "biblioteca.writeBehind.log", "biblioteca-write-behind.log");
+        writeBehindMaxBatch = Integer.parseInt(get(archivo, "biblioteca.writeBehind.maxBatch", "1000"));
+        writeBehindMaxRetries = Integer.parseInt(get(archivo, "biblioteca.writeBehind.maxRetries", "10"));
+        journalMode = get(archivo, "biblioteca.db.journalMode", "WAL").toUpperCase(Locale.ROOT);
+        synchronous = get(archivo, "biblioteca.db.synchronous", "NORMAL").toUpperCase(Locale.ROOT);
+        mmapSize = Long.parseLong(get(archivo, "biblioteca.db.mmapSize", String.valueOf(256L * 1024 * 1024)));
+        cacheSize = Integer.parseInt(get(archivo, "biblioteca.db.cacheSize", "-65536"));
+        busyTimeout = Integer.parseInt(get(archivo, "biblioteca.db.busyTimeout", "5000"));
+    }
+
+    /**
+     * Lee la configuración desde las propiedades del sistema, el entorno y {@code biblioteca.properties}.
+     *
+     * @return La configuración resultante.
+     * @throws IllegalStateException Si el archivo de propiedades existe pero no se puede leer.
+     */
+    public static DatabaseConfig load() {
+        return new DatabaseConfig(leerArchivo());
+    }
+
+    /**
+     * Lee una propiedad suelta con el mismo orden de búsqueda, para componentes que
+     * no dependen de la base (por ejemplo, las métricas).
+     *
+     * @param clave      La clave, en formato de propiedad del sistema ({@code biblioteca.metrics.exporter}).
+     * @param porDefecto El valor si la clave no está definida en ningún lado.
+     */
+    public static String get(String clave, String porDefecto) {
+        return get(leerArchivo(), clave, porDefecto);
+    }
+
+    private static Properties leerArchivo() {
+        Properties archivo = new Properties();
+        Path path = Path.of(ARCHIVO);
+        if (Files.isRegularFile(path)) {
+            try (InputStream in = Files.newInputStream(path)) {
+                archivo.load(in);
+            } catch (IOException e) {
+                throw new IllegalStateException("No se pudo leer " + ARCHIVO, e);
+            }
+        }
+        return archivo;
+    }
+
+    private static String get(Properties archivo, String clave, String porDefecto) {
+        String valor = System.getProperty(clave);
+        if (valor == null) valor = System.getenv(clave.replace('.', '_').toUpperCase(Locale.ROOT));
+        if (valor == null) valor = archivo.getProperty(clave);
+        return valor == null ? porDefecto : valor.trim();
+    }
+}
@@ -2,25 +2,114 @@ package org.EduardoMango.database;
 
 import com.zaxxer.hikari.HikariConfig;
 import com.zaxxer.hikari.HikariDataSource;
+import lombok.Getter;
+import org.EduardoMango.metrics.HikariMetricsTracker;
+import org.sqlite.SQLiteConfig;
 
-import javax.sql.DataSource;
 import java.sql.Connection;
 import java.sql.SQLException;
 
+/**
+ * Punto de acceso a las conexiones de la base SQLite.
+ * <p>
+ * Mantiene dos pools sobre el mismo archivo:
+ * <ul>
+ * <li>Un pool de escritura de una sola conexión ({@link #getConnection()}): SQLite admite un único
+ * escritor a la vez, así que las escrituras se encolan en el pool en lugar de competir
+ * por el lock del archivo y fallar con SQLITE_BUSY.</li>
+ * <li>Un pool de lectura de varias conexiones ({@link #getReadConnection()}), en modo solo consulta.
+ * Con journal_mode=WAL las lecturas no se bloquean mientras se escribe.</li>
+ * </ul>
+ * Los PRAGMA y tamaños de pool se toman de {@link DatabaseConfig}.
+ */
 public class DatabaseConnection {
 
-    private static final String URL = "jdbc:sqlite:biblioteca.db";
-    private static final DataSource datasource;
+    @Getter
+    private static final DatabaseConfig config = DatabaseConfig.load();
+    private static final HikariDataSource writeDatasource;
+    private static final HikariDataSource readDatasource;
 
     static {
 
-        HikariConfig config = new HikariConfig();
-        config.setJdbcUrl(URL);
-        config.setConnectionInitSql("PRAGMA foreign_keys = ON;");
-        datasource = new HikariDataSource(config);
+        writeDatasource = crearPool("biblioteca-write", 1, false);
+
+        try (Connection conn = writeDatasource.getConnection()) {
+            SchemaMigrations.migrate(conn);
+        } catch (SQLException e) {
+            writeDatasource.close();
+            throw new ExceptionInInitializerError(e);
+        }
+
+        readDatasource = crearPool("biblioteca-read", config.getReadPoolSize(), true);
+    }
+
+    private static HikariDataSource crearPool(String nombre, int size, boolean soloLectura) {
+        SQLiteConfig sqlite = new SQLiteConfig();
+        sqlite.enforceForeignKeys(true);
+        sqlite.setJournalMode(SQLiteConfig.JournalMode.valueOf(config.getJournalMode()));
+        sqlite.setSynchronous(SQLiteConfig.SynchronousMode.valueOf(config.getSynchronous()));
+        sqlite.setPragma(SQLiteConfig.Pragma.MMAP_SIZE, String.valueOf(config.getMmapSize()));
+        sqlite.setCacheSize(config.getCacheSize());
+        sqlite.setBusyTimeout(config.getBusyTimeout());
+        // Las transacciones toman el lock de escritura al comenzar (BEGIN IMMEDIATE),
+        // así dos transacciones concurrentes no quedan bloqueadas al querer escribir.
+        sqlite.setTransactionMode(SQLiteConfig.TransactionMode.IMMEDIATE);
+
+        HikariConfig hikari = new HikariConfig();
+        hikari.setPoolName(nombre);
+        hikari.setDataSource(new SqliteDataSource(config.getUrl(), sqlite));
+        hikari.setMaximumPoolSize(size);
+        hikari.setMinimumIdle(size);
+        hikari.setConnectionTimeout(config.getConnectionTimeout());
+        hikari.setMetricsTrackerFactory(HikariMetricsTracker.FACTORY);
+        if (soloLectura) {
+            hikari.setConnectionInitSql("PRAGMA query_only = ON;");
+        }
+        return new HikariDataSource(hikari);
     }
 
+    /**
+     * Obtiene una conexión del pool de escritura. Es la conexión a usar para
+     * cualquier INSERT, UPDATE o DELETE; solo hay una, así que debe devolverse cuanto antes.
+     */
     public static Connection getConnection() throws SQLException {
-        return datasource.getConnection();
+        return writeDatasource.getConnection();
+    }
+
+    /**
+     * Obtiene una conexión del pool de lectura. Solo admite consultas.
+     */
+    public static Connection getReadConnection() throws SQLException {
+        return readDatasource.getConnection();
+    }
+
+    /**
+     * Ejecuta una unidad de trabajo dentro de una única transacción, sobre una sola conexión.
+     * Si la unidad de trabajo termina normalmente se hace commit; si lanza cualquier
+     * excepción se hace rollback y la excepción se propaga.
+     *
+     * @param transaccion La unidad de trabajo a ejecutar.
+     * @return El valor devuelto por la unidad de trabajo.
+     * @throws SQLException Si falla la unidad de trabajo o el commit.
+     */
+    public static <T> T inTransaction(Transaccion<T> transaccion) throws SQLException {
+        try (Connection conn = getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                T resultado = transaccion.ejecutar(conn);
+                conn.commit();
+                return resultado;
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+    }
+
+    @FunctionalInterface
+    public interface Transaccion<T> {
+        T ejecutar(Connection conn) throws SQLException;
     }
 }
@@ -0,0 +1,104 @@
+package org.EduardoMango.database;
+
+import org.EduardoMango.entities.LibroEntity;
+import org.EduardoMango.entities.PrestamoEntity;
+import org.EduardoMango.entities.UsuarioEntity;
+import org.EduardoMango.repositories.LibroRepository;
+import org.EduardoMango.repositories.PrestamoRepository;
+import org.EduardoMango.repositories.UsuarioRepository;
+
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Genera datos sintéticos en la base configurada, para benchmarks y pruebas de carga.
+ * <p>
+ * A partir de la cantidad de préstamos se derivan {@code prestamos / 50} libros y
+ * {@code prestamos / 20} usuarios (con un mínimo de 100 de cada uno). Las fechas de préstamo
+ * se reparten en los últimos dos años y cerca del 10% de los préstamos queda activo.
+ * Con la misma semilla se generan siempre los mismos datos.
+ * <p>
+ * Uso: {@code java -Dbiblioteca.db.url=jdbc:sqlite:carga.db org.EduardoMango.database.DatabaseSeeder 1000000}
+ */
+public class DatabaseSeeder {
+
+    private static final int BLOQUE = 50_000;
+
+    private DatabaseSeeder() {}
+
+    public static void main(String[] args) throws SQLException {
+        int prestamos = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        long inicio = System.nanoTime();
+        seed(prestamos, 42);
+        System.out.printf("%d préstamos generados en %.1f s en %s%n",
+                prestamos, (System.nanoTime() - inicio) / 1e9, DatabaseConnection.getConfig().getUrl());
+    }
+
+    public static int libros(int prestamos) {
+        return Math.max(100, prestamos / 50);
+    }
+
+    public static int usuarios(int prestamos) {
+        return Math.max(100, prestamos / 20);
+    }
+
+    /**
+     * Inserta libros, usuarios y préstamos en proporción a {@code prestamos}.
+     * Se espera una base vacía: los ids generados se asumen a partir de 1.
+     */
+    public static void seed(int prestamos, long semilla) throws SQLException {
+        SplittableRandom random = new SplittableRandom(semilla);
+        int cantidadLibros = libros(prestamos);
+        int cantidadUsuarios = usuarios(prestamos);
+
+        List<LibroEntity> libros = new ArrayList<>(BLOQUE);
+        for (int i = 1; i <= cantidadLibros; i++) {
+            libros.add(LibroEntity.builder()
+                    .titulo("Libro " + i)
+                    .autor("Autor " + random.nextInt(Math.max(1, cantidadLibros / 10)))
+                    .anio_publicacion(1900 + random.nextInt(125))
+                    .unidades_disponibles(random.nextInt(20))
+                    .build());
+            if (libros.size() == BLOQUE) flush(LibroRepository.getInstance()::saveAll, libros);
+        }
+        flush(LibroRepository.getInstance()::saveAll, libros);
+
+        List<UsuarioEntity> usuarios = new ArrayList<>(BLOQUE);
+        for (int i = 1; i <= cantidadUsuarios; i++) {
+            usuarios.add(UsuarioEntity.builder()
+                    .nombre("Usuario " + i)
+                    .email("usuario" + i + "@biblioteca.test")
+                    .build());
+            if (usuarios.size() == BLOQUE) flush(UsuarioRepository.getInstance()::saveAll, usuarios);
+        }
+        flush(UsuarioRepository.getInstance()::saveAll, usuarios);
+
+        LocalDate hoy = LocalDate.now();
+        List<PrestamoEntity> bloque = new ArrayList<>(BLOQUE);
+        for (int i = 0; i < prestamos; i++) {
+            LocalDate fechaPrestamo = hoy.minusDays(random.nextInt(730));
+            bloque.add(PrestamoEntity.builder()
+                    .usuario_id(1 + random.nextInt(cantidadUsuarios))
+                    .libro_id(1 + random.nextInt(cantidadLibros))
+                    .fecha_prestamo(fechaPrestamo)
+                    .fecha_devolucion(random.nextInt(10) == 0 ? null : fechaPrestamo.plusDays(1 + random.nextInt(30)))
+                    .build());
+            if (bloque.size() == BLOQUE) flush(PrestamoRepository.getInstance()::saveAll, bloque);
+        }
+        flush(PrestamoRepository.getInstance()::saveAll, bloque);
+    }
+
+    @FunctionalInterface
+    private interface SaveAll<T> {
+        List<Integer> saveAll(List<T> entidades) throws SQLException;
+    }
+
+    private static <T> void flush(SaveAll<T> saveAll, List<T> bloque) throws SQLException {
+        if (bloque.isEmpty()) return;
+        saveAll.saveAll(bloque);
+        bloque.clear();
+    }
+}
@@ -0,0 +1,329 @@
+package org.EduardoMango.database;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Mantiene el esquema de la base de datos al día.
+ * <p>
+ * Cada migración se aplica una sola vez y en orden; la versión aplicada se guarda
+ * en {@code PRAGMA user_version}. Para cambiar el esquema se agrega una migración
+ * al final de la lista, nunca se modifica una existente.
+ */
+public class SchemaMigrations {
+
+    @FunctionalInterface
+    private interface Migracion {
+        void aplicar(Statement st) throws SQLException;
+    }
+
+    private static final List<Migracion> MIGRACIONES = List.of(
+            // 1: esquema base
+            st -> {
+                st.execute("""
+                        CREATE TABLE IF NOT EXISTS usuarios (
+                            id INTEGER PRIMARY KEY AUTOINCREMENT,
+                            nombre TEXT NOT NULL,
+                            email TEXT UNIQUE NOT NULL
+                        )""");
+                st.execute("""
+                        CREATE TABLE IF NOT EXISTS libros (
+                            id INTEGER PRIMARY KEY AUTOINCREMENT,
+                            titulo TEXT NOT NULL,
+                            autor TEXT NOT NULL,
+                            anio_publicacion INTEGER,
+                            unidades_disponibles INTEGER
+                        )""");
+                st.execute("""
+                        CREATE TABLE IF NOT EXISTS prestamos (
+                            id INTEGER PRIMARY KEY AUTOINCREMENT,
+                            libro_id INTEGER NOT NULL,
+                            usuario_id INTEGER NOT NULL,
+                            fecha_prestamo DATE NOT NULL DEFAULT (DATE('now')),
+                            fecha_devolucion DATE,
+                            FOREIGN KEY (libro_id) REFERENCES libros(id) ON DELETE CASCADE,
+                            FOREIGN KEY (usuario_id) REFERENCES usuarios(id) ON DELETE CASCADE
+                        )""");
+            },
+            // 2: índices de préstamos por libro, por usuario y préstamos activos por usuario
+            st -> {
+                st.execute("CREATE INDEX IF NOT EXISTS idx_prestamos_libro ON prestamos(libro_id)");
+                st.execute("CREATE INDEX IF NOT EXISTS idx_prestamos_usuario ON prestamos(usuario_id)");
+                st.execute("CREATE INDEX IF NOT EXISTS idx_prestamos_usuario_activos ON prestamos(usuario_id) WHERE fecha_devolucion IS NULL");
+            },
+            // 3: índices parciales para paginar préstamos activos y libros disponibles por id
+            st -> {
+                st.execute("CREATE INDEX IF NOT EXISTS idx_prestamos_activos ON prestamos(id) WHERE fecha_devolucion IS NULL");
+                st.execute("CREATE INDEX IF NOT EXISTS idx_libros_disponibles ON libros(id) WHERE unidades_disponibles > 0");
+            },
+            // 4: fechas de préstamos como días desde 1970-01-01 (INTEGER) en lugar de texto,
+            // e índices para consultas por rango de fechas
+            st -> {
+                st.execute("""
+                        CREATE TABLE prestamos_nueva (
+                            id INTEGER PRIMARY KEY AUTOINCREMENT,
+                            libro_id INTEGER NOT NULL,
+                            usuario_id INTEGER NOT NULL,
+                            fecha_prestamo INTEGER NOT NULL DEFAULT (unixepoch() / 86400),
+                            fecha_devolucion INTEGER,
+                            FOREIGN KEY (libro_id) REFERENCES libros(id) ON DELETE CASCADE,
+                            FOREIGN KEY (usuario_id) REFERENCES usuarios(id) ON DELETE CASCADE
+                        )""");
+                st.execute("""
+                        INSERT INTO prestamos_nueva (id, libro_id, usuario_id, fecha_prestamo, fecha_devolucion)
+                        SELECT id, libro_id, usuario_id,
+                               unixepoch(fecha_prestamo) / 86400,
+                               unixepoch(fecha_devolucion) / 86400
+                        FROM prestamos""");
+                st.execute("DROP TABLE prestamos");
+                st.execute("ALTER TABLE prestamos_nueva RENAME TO prestamos");
+                st.execute("CREATE INDEX idx_prestamos_libro ON prestamos(libro_id)");
+                st.execute("CREATE INDEX idx_prestamos_usuario ON prestamos(usuario_id)");
+                st.execute("CREATE INDEX idx_prestamos_usuario_activos ON prestamos(usuario_id) WHERE fecha_devolucion IS NULL");
+                st.execute("CREATE INDEX idx_prestamos_activos ON prestamos(id) WHERE fecha_devolucion IS NULL");
+                st.execute("CREATE INDEX idx_prestamos_fecha_prestamo ON prestamos(fecha_prestamo)");
+                st.execute("CREATE INDEX idx_prestamos_activos_fecha ON prestamos(fecha_prestamo) WHERE fecha_devolucion IS NULL");
+                st.execute("CREATE INDEX idx_prestamos_fecha_devolucion ON prestamos(fecha_devolucion) WHERE fecha_devolucion IS NOT NULL");
+            },
+            // 5: búsqueda de texto completo sobre título y autor de libros (FTS5 con contenido externo),
+            // sincronizada con triggers y con índices de prefijos de 2 y 3 caracteres
+            st -> {
+                st.execute("""
+                        CREATE VIRTUAL TABLE libros_fts USING fts5(
+                            titulo, autor,
+                            content = 'libros', content_rowid = 'id',
+                            tokenize = 'unicode61 remove_diacritics 2',
+                            prefix = '2 3'
+                        )""");
+                st.execute("""
+                        CREATE TRIGGER libros_fts_ai AFTER INSERT ON libros BEGIN
+                            INSERT INTO libros_fts (rowid, titulo, autor) VALUES (new.id, new.titulo, new.autor);
+                        END""");
+                st.execute("""
+                        CREATE TRIGGER libros_fts_ad AFTER DELETE ON libros BEGIN
+                            INSERT INTO libros_fts (libros_fts, rowid, titulo, autor) VALUES ('delete', old.id, old.titulo, old.autor);
+                        END""");
+                st.execute("""
+                        CREATE TRIGGER libros_fts_au AFTER UPDATE OF titulo, autor ON libros BEGIN
+                            INSERT INTO libros_fts (libros_fts, rowid, titulo, autor) VALUES ('delete', old.id, old.titulo, old.autor);
+                            INSERT INTO libros_fts (rowid, titulo, autor) VALUES (new.id, new.titulo, new.autor);
+                        END""");
+                st.execute("INSERT INTO libros_fts (libros_fts) VALUES ('rebuild')");
+            },
+            // 6: posición del log de escritura diferida hasta la que ya se aplicaron las operaciones
+            st -> st.execute("""
+                    CREATE TABLE write_behind_checkpoint (
+                        id INTEGER PRIMARY KEY CHECK (id = 1),
+                        generacion INTEGER NOT NULL,
+                        posicion INTEGER NOT NULL
+                    )"""),
+            // 7: reservas (lista de espera por libro, atendida en orden de id); las fechas en segundos desde 1970
+            st -> {
+                st.execute("""
+                        CREATE TABLE reservas (
+                            id INTEGER PRIMARY KEY AUTOINCREMENT,
+                            libro_id INTEGER NOT NULL,
+                            usuario_id INTEGER NOT NULL,
+                            fecha_reserva INTEGER NOT NULL DEFAULT (unixepoch()),
+                            estado TEXT NOT NULL DEFAULT 'ESPERANDO'
+                                CHECK (estado IN ('ESPERANDO', 'RETENIDA', 'RETIRADA', 'VENCIDA', 'CANCELADA')),
+                            vence INTEGER,
+                            FOREIGN KEY (libro_id) REFERENCES libros(id) ON DELETE CASCADE,
+                            FOREIGN KEY (usuario_id) REFERENCES usuarios(id) ON DELETE CASCADE
+                        )""");
+                st.execute("CREATE INDEX idx_reservas_pendientes ON reservas(libro_id, id) WHERE estado IN ('ESPERANDO', 'RETENIDA')");
+                st.execute("CREATE UNIQUE INDEX idx_reservas_usuario_libro ON reservas(usuario_id, libro_id) WHERE estado IN ('ESPERANDO', 'RETENIDA')");
+                st.execute("CREATE INDEX idx_reservas_retenidas_vence ON reservas(vence) WHERE estado = 'RETENIDA'");
+            },
+            // 8: outbox de notificaciones (una por tipo y préstamo) y clave del último préstamo vencido procesado
+            st -> {
+                st.execute("""
+                        CREATE TABLE notificaciones (
+                            id INTEGER PRIMARY KEY AUTOINCREMENT,
+                            tipo TEXT NOT NULL,
+                            prestamo_id INTEGER NOT NULL,
+                            usuario_id INTEGER NOT NULL,
+                            libro_id INTEGER NOT NULL,
+                            fecha_vencimiento INTEGER NOT NULL,
+                            creada INTEGER NOT NULL DEFAULT (unixepoch()),
+                            enviada INTEGER,
+                            UNIQUE (tipo, prestamo_id)
+                        )""");
+                st.execute("CREATE INDEX idx_notificaciones_pendientes ON notificaciones(id) WHERE enviada IS NULL");
+                st.execute("""
+                        CREATE TABLE vencimientos_checkpoint (
+                            id INTEGER PRIMARY KEY CHECK (id = 1),
+                            fecha_prestamo INTEGER NOT NULL,
+                            prestamo_id INTEGER NOT NULL
+                        )""");
+            },
+            // 9: resúmenes de préstamos y devoluciones por día (días desde 1970) y por mes (aaaamm), por libro y por usuario,
+            // mantenidos por triggers sobre prestamos y cargados con los préstamos existentes
+            st -> {
+                st.execute("""
+                        CREATE TABLE prestamos_libro_dia (
+                            dia INTEGER NOT NULL,
+                            libro_id INTEGER NOT NULL,
+                            prestamos INTEGER NOT NULL DEFAULT 0,
+                            devoluciones INTEGER NOT NULL DEFAULT 0,
+                            PRIMARY KEY (dia, libro_id)
+                        ) WITHOUT ROWID""");
+                st.execute("""
+                        CREATE TABLE prestamos_usuario_dia (
+                            dia INTEGER NOT NULL,
+                            usuario_id INTEGER NOT NULL,
+                            prestamos INTEGER NOT NULL DEFAULT 0,
+                            devoluciones INTEGER NOT NULL DEFAULT 0,
+                            PRIMARY KEY (dia, usuario_id)
+                        ) WITHOUT ROWID""");
+                st.execute("""
+                        CREATE TABLE prestamos_libro_mes (
+                            mes INTEGER NOT NULL,
+                            libro_id INTEGER NOT NULL,
+                            prestamos INTEGER NOT NULL DEFAULT 0,
+                            devoluciones INTEGER NOT NULL DEFAULT 0,
+                            PRIMARY KEY (mes, libro_id)
+                        ) WITHOUT ROWID""");
+                st.execute("""
+                        CREATE TABLE prestamos_usuario_mes (
+                            mes INTEGER NOT NULL,
+                            usuario_id INTEGER NOT NULL,
+                            prestamos INTEGER NOT NULL DEFAULT 0,
+                            devoluciones INTEGER NOT NULL DEFAULT 0,
+                            PRIMARY KEY (mes, usuario_id)
+                        ) WITHOUT ROWID""");
+                st.execute("""
+                        CREATE TRIGGER prestamos_resumen_ai AFTER INSERT ON prestamos BEGIN
+                            INSERT INTO prestamos_libro_dia (dia, libro_id, prestamos) VALUES (new.fecha_prestamo, new.libro_id, 1)
+                                ON CONFLICT (dia, libro_id) DO UPDATE SET prestamos = prestamos + 1;
+                            INSERT INTO prestamos_usuario_dia (dia, usuario_id, prestamos) VALUES (new.fecha_prestamo, new.usuario_id, 1)
+                                ON CONFLICT (dia, usuario_id) DO UPDATE SET prestamos = prestamos + 1;
+                            INSERT INTO prestamos_libro_mes (mes, libro_id, prestamos)
+                                VALUES (CAST(strftime('%Y%m', new.fecha_prestamo * 86400, 'unixepoch') AS INTEGER), new.libro_id, 1)
+                                ON CONFLICT (mes, libro_id) DO UPDATE SET prestamos = prestamos + 1;
+                            INSERT INTO prestamos_usuario_mes (mes, usuario_id, prestamos)
+                                VALUES (CAST(strftime('%Y%m', new.fecha_prestamo * 86400, 'unixepoch') AS INTEGER), new.usuario_id, 1)
+                                ON CONFLICT (mes, usuario_id) DO UPDATE SET prestamos = prestamos + 1;
+                        END""");
+                st.execute("""
+                        CREATE TRIGGER prestamos_resumen_ad AFTER DELETE ON prestamos BEGIN
+                            UPDATE prestamos_libro_dia SET prestamos = prestamos - 1 WHERE dia = old.fecha_prestamo AND libro_id = old.libro_id;
+                            UPDATE prestamos_usuario_dia SET prestamos = prestamos - 1 WHERE dia = old.fecha_prestamo AND usuario_id = old.usuario_id;
+                            UPDATE prestamos_libro_mes SET prestamos = prestamos - 1
+                                WHERE mes = CAST(strftime('%Y%m', old.fecha_prestamo * 86400, 'unixepoch') AS INTEGER) AND libro_id = old.libro_id;
+                            UPDATE prestamos_usuario_mes SET prestamos = prestamos - 1
+                                WHERE mes = CAST(strftime('%Y%m', old.fecha_prestamo * 86400, 'unixepoch') AS INTEGER) AND usuario_id = old.usuario_id;
+                        END""");
+                // Las devoluciones se cuentan en el día en que se devolvió: al insertar un préstamo ya devuelto
+                // (importaciones), al devolver uno activo y, restando, al borrar uno devuelto.
+                for (String evento : List.of(
+                        "prestamos_resumen_ai_devuelto AFTER INSERT ON prestamos WHEN new.fecha_devolucion IS NOT NULL",
+                        "prestamos_resumen_au_devuelto AFTER UPDATE OF fecha_devolucion ON prestamos "
+                                + "WHEN old.fecha_devolucion IS NULL AND new.fecha_devolucion IS NOT NULL")) {
+                    st.execute("CREATE TRIGGER " + evento + """
+                             BEGIN
+                                INSERT INTO prestamos_libro_dia (dia, libro_id, devoluciones) VALUES (new.fecha_devolucion, new.libro_id, 1)
+                                    ON CONFLICT (dia, libro_id) DO UPDATE SET devoluciones = devoluciones + 1;
+                                INSERT INTO prestamos_usuario_dia (dia, usuario_id, devoluciones) VALUES (new.fecha_devolucion, new.usuario_id, 1)
+                                    ON CONFLICT (dia, usuario_id) DO UPDATE SET devoluciones = devoluciones + 1;
+                                INSERT INTO prestamos_libro_mes (mes, libro_id, devoluciones)
+                                    VALUES (CAST(strftime('%Y%m', new.fecha_devolucion * 86400, 'unixepoch') AS INTEGER), new.libro_id, 1)
+                                    ON CONFLICT (mes, libro_id) DO UPDATE SET devoluciones = devoluciones + 1;
+                                INSERT INTO prestamos_usuario_mes (mes, usuario_id, devoluciones)
+                                    VALUES (CAST(strftime('%Y%m', new.fecha_devolucion * 86400, 'unixepoch') AS INTEGER), new.usuario_id, 1)
+                                    ON CONFLICT (mes, usuario_id) DO UPDATE SET devoluciones = devoluciones + 1;
+                            END""");
+                }
+                st.execute("""
+                        CREATE TRIGGER prestamos_resumen_ad_devuelto AFTER DELETE ON prestamos WHEN old.fecha_devolucion IS NOT NULL BEGIN
+                            UPDATE prestamos_libro_dia SET devoluciones = devoluciones - 1 WHERE dia = old.fecha_devolucion AND libro_id = old.libro_id;
+                            UPDATE prestamos_usuario_dia SET devoluciones = devoluciones - 1 WHERE dia = old.fecha_devolucion AND usuario_id = old.usuario_id;
+                            UPDATE prestamos_libro_mes SET devoluciones = devoluciones - 1
+                                WHERE mes = CAST(strftime('%Y%m', old.fecha_devolucion * 86400, 'unixepoch') AS INTEGER) AND libro_id = old.libro_id;
+                            UPDATE prestamos_usuario_mes SET devoluciones = devoluciones - 1
+                                WHERE mes = CAST(strftime('%Y%m', old.fecha_devolucion * 86400, 'unixepoch') AS INTEGER) AND usuario_id = old.usuario_id;
+                        END""");
+                for (String[] entidad : new String[][]{{"libro", "libro_id"}, {"usuario", "usuario_id"}}) {
+                    st.execute("""
+                            INSERT INTO prestamos_%1$s_dia (dia, %2$s, prestamos)
+                            SELECT fecha_prestamo, %2$s, COUNT(*) FROM prestamos GROUP BY fecha_prestamo, %2$s""".formatted(entidad[0], entidad[1]));
+                    st.execute("""
+                            INSERT INTO prestamos_%1$s_dia (dia, %2$s, devoluciones)
+                            SELECT fecha_devolucion, %2$s, COUNT(*) FROM prestamos WHERE fecha_devolucion IS NOT NULL GROUP BY fecha_devolucion, %2$s
+                            ON CONFLICT (dia, %2$s) DO UPDATE SET devoluciones = excluded.devoluciones""".formatted(entidad[0], entidad[1]));
+                    st.execute("""
+                            INSERT INTO prestamos_%1$s_mes (mes, %2$s, prestamos, devoluciones)
+                            SELECT CAST(strftime('%%Y%%m', dia * 86400, 'unixepoch') AS INTEGER) AS mes, %2$s, SUM(prestamos), SUM(devoluciones)
+                            FROM prestamos_%1$s_dia GROUP BY mes, %2$s""".formatted(entidad[0], entidad[1]));
+                }
+            },
+            // 10: fecha_prestamo sin valor por defecto: unixepoch() / 86400 es el día en UTC, no el local que
+            // guarda la aplicación (LocalDate.now()). Se reconstruye la tabla y se vuelven a crear sus índices y triggers.
+            st -> {
+                List<String> indicesYTriggers = new ArrayList<>();
+                try (ResultSet rs = st.executeQuery(
+                        "SELECT sql FROM sqlite_master WHERE tbl_name = 'prestamos' AND type IN ('index', 'trigger') AND sql IS NOT NULL")) {
+                    while (rs.next()) {
+                        indicesYTriggers.add(rs.getString(1));
+                    }
+                }
+                st.execute("""
+                        CREATE TABLE prestamos_nueva (
+                            id INTEGER PRIMARY KEY AUTOINCREMENT,
+                            libro_id INTEGER NOT NULL,
+                            usuario_id INTEGER NOT NULL,
+                            fecha_prestamo INTEGER NOT NULL,
+                            fecha_devolucion INTEGER,
+                            FOREIGN KEY (libro_id) REFERENCES libros(id) ON DELETE CASCADE,
+                            FOREIGN KEY (usuario_id) REFERENCES usuarios(id) ON DELETE CASCADE
+                        )""");
+                st.execute("""
+                        INSERT INTO prestamos_nueva (id, libro_id, usuario_id, fecha_prestamo, fecha_devolucion)
+                        SELECT id, libro_id, usuario_id, fecha_prestamo, fecha_devolucion FROM prestamos""");
+                st.execute("DROP TABLE prestamos");
+                st.execute("ALTER TABLE prestamos_nueva RENAME TO prestamos");
+                for (String sql : indicesYTriggers) {
+                    st.execute(sql);
+                }
+            }
+    );
+
+    private SchemaMigrations() {}
+
+    /**
+     * Aplica, cada una en su propia transacción, las migraciones pendientes.
+     *
+     * @param conn La conexión sobre la que se aplican las migraciones.
+     * @throws SQLException Si alguna migración falla; las anteriores quedan aplicadas.
+     */
+    public static void migrate(Connection conn) throws SQLException {
+        boolean autoCommit = conn.getAutoCommit();
+        try (Statement st = conn.createStatement()) {
+            int version = getVersion(st);
+
+            for (int i = version; i < MIGRACIONES.size(); i++) {
+                conn.setAutoCommit(false);
+                try {
+                    MIGRACIONES.get(i).aplicar(st);
+                    st.execute("PRAGMA user_version = " + (i + 1));
+                    conn.commit();
+                } catch (SQLException e) {
+                    conn.rollback();
+                    throw new SQLException("Error al aplicar la migración " + (i + 1) + ": " + e.getMessage(), e);
+                } finally {
+                    conn.setAutoCommit(autoCommit);
+                }
+            }
+        }
+    }
+
+    private static int getVersion(Statement st) throws SQLException {
+        try (ResultSet rs = st.executeQuery("PRAGMA user_version")) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+}
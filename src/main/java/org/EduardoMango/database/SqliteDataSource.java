@@ -0,0 +1,44 @@
+package org.EduardoMango.database;
+
+import org.sqlite.JDBC;
+import org.sqlite.SQLiteConfig;
+import org.sqlite.SQLiteConnection;
+import org.sqlite.SQLiteDataSource;
+import org.sqlite.jdbc4.JDBC4Connection;
+
+import java.sql.SQLException;
+import java.util.Properties;
+
+/**
+ * DataSource de los pools de Hikari. Crea las mismas conexiones que el driver de SQLite, pero
+ * al cerrarse (cuando Hikari descarta una conexión del pool o se cierra el pool) descartan antes
+ * sus statements de {@link StatementCache}.
+ */
+class SqliteDataSource extends SQLiteDataSource {
+
+    SqliteDataSource(String url, SQLiteConfig config) {
+        super(config);
+        setUrl(url);
+    }
+
+    @Override
+    public SQLiteConnection getConnection(String username, String password) throws SQLException {
+        String url = getUrl().trim();
+        if (!JDBC.isValidURL(url)) throw new SQLException("URL de SQLite inválida: " + url);
+        Properties propiedades = getConfig().toProperties();
+        return new Conexion(url, url.substring(JDBC.PREFIX.length()), propiedades);
+    }
+
+    private static class Conexion extends JDBC4Connection {
+
+        Conexion(String url, String archivo, Properties propiedades) throws SQLException {
+            super(url, archivo, propiedades);
+        }
+
+        @Override
+        public void close() throws SQLException {
+            StatementCache.descartar(this);
+            super.close();
+        }
+    }
+}
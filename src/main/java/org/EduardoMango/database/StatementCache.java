@@ -0,0 +1,101 @@
+package org.EduardoMango.database;
+
+import org.EduardoMango.metrics.MeterId;
+import org.EduardoMango.metrics.MetricsRegistry;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Caché de prepared statements por conexión física del pool.
+ * <p>
+ * SQLite compila cada {@code prepareStatement} a bytecode de su máquina virtual; con una caché
+ * por conexión, la misma consulta se compila una sola vez por conexión y luego solo se
+ * vuelven a cargar los parámetros. Se usa igual que {@link Connection#prepareStatement(String)},
+ * dentro de un try-with-resources:
+ * <pre>{@code
+ * try (Connection conn = DatabaseConnection.getReadConnection();
+ *      PreparedStatement ps = StatementCache.prepare(conn, "SELECT * FROM libros WHERE id = ?")) {
+ *     ...
+ * }
+ * }</pre>
+ * El {@code close()} del statement devuelto no lo cierra: limpia sus parámetros y lo deja en la caché
+ * (ver {@link StatementReutilizable}, que se crea una sola vez por statement cacheado).
+ * Los statements se preparan sobre la conexión física (no sobre el proxy de Hikari, que los cerraría
+ * al devolver la conexión al pool) y se cierran cuando se descartan por LRU o cuando se cierra la
+ * conexión física: las conexiones de {@link SqliteDataSource} llaman a {@link #descartar(Connection)} al cerrarse.
+ * <p>
+ * Cada conexión del pool la usa un solo hilo a la vez, por lo que la caché de cada conexión no
+ * necesita sincronización. El tamaño por conexión se configura con {@code biblioteca.db.statementCacheSize};
+ * con 0 se deshabilita y cada llamada prepara un statement nuevo.
+ */
+public class StatementCache {
+
+    private static final Map<Connection, Map<String, StatementReutilizable>> porConexion = new ConcurrentHashMap<>();
+
+    private static final LongAdder hits = MetricsRegistry.getInstance().counter(MeterId.of("biblioteca_statement_cache_hits_total"));
+    private static final LongAdder misses = MetricsRegistry.getInstance().counter(MeterId.of("biblioteca_statement_cache_misses_total"));
+
+    private StatementCache() {}
+
+    /**
+     * Devuelve un prepared statement para {@code sql} sobre la conexión, reutilizando el de
+     * una llamada anterior con la misma conexión física si existe.
+     *
+     * @param conn La conexión tomada del pool.
+     * @param sql  La sentencia, que debe ser constante (es la clave de la caché).
+     * @return Un statement cuyo {@code close()} lo devuelve a la caché.
+     */
+    public static PreparedStatement prepare(Connection conn, String sql) throws SQLException {
+        int maxSize = DatabaseConnection.getConfig().getStatementCacheSize();
+        if (maxSize <= 0) return conn.prepareStatement(sql);
+
+        Connection fisica = conn.unwrap(Connection.class);
+        Map<String, StatementReutilizable> statements = porConexion.computeIfAbsent(fisica, c -> lru(maxSize));
+
+        StatementReutilizable ps = statements.get(sql);
+        if (ps == null || ps.isClosed()) {
+            misses.increment();
+            ps = new StatementReutilizable(fisica.prepareStatement(sql));
+            statements.put(sql, ps);
+        } else {
+            hits.increment();
+        }
+        return ps;
+    }
+
+    /**
+     * Cierra y olvida los statements de una conexión física; se llama al cerrarse la conexión.
+     */
+    static void descartar(Connection fisica) {
+        Map<String, StatementReutilizable> statements = porConexion.remove(fisica);
+        if (statements == null) return;
+        for (StatementReutilizable ps : statements.values()) {
+            cerrar(ps);
+        }
+    }
+
+    private static Map<String, StatementReutilizable> lru(int maxSize) {
+        return new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, StatementReutilizable> eldest) {
+                if (size() <= maxSize) return false;
+                cerrar(eldest.getValue());
+                return true;
+            }
+        };
+    }
+
+    private static void cerrar(StatementReutilizable ps) {
+        try {
+            ps.cerrar();
+        } catch (SQLException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package org.EduardoMango.entities;
+
+import lombok.*;
+
+/**
+ * Criterios de una búsqueda de libros por texto.
+ * <p>
+ * {@code texto} se busca en título y autor: cada palabra debe aparecer, como palabra completa
+ * o como comienzo de una palabra ("garc mar" encuentra "Gabriel García Márquez"), sin distinguir
+ * mayúsculas ni acentos. Los filtros en null no se aplican.
+ */
+@Getter
+@Builder
+@ToString
+public class BusquedaLibros {
+
+    private String texto;
+    /** Año de publicación mínimo (inclusive). */
+    private Integer anioDesde;
+    /** Año de publicación máximo (inclusive). */
+    private Integer anioHasta;
+    /** Si es true, solo incluye libros con unidades disponibles. */
+    private boolean soloDisponibles;
+    /** Cantidad de resultados a saltear, para paginar. */
+    private int offset;
+    @Builder.Default
+    private int limite = 20;
+}
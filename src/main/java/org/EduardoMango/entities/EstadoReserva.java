@@ -0,0 +1,21 @@
+package org.EduardoMango.entities;
+
+/**
+ * Estado de una reserva. Solo las reservas {@link #ESPERANDO} y {@link #RETENIDA} están pendientes.
+ */
+public enum EstadoReserva {
+    /** En la lista de espera del libro. */
+    ESPERANDO,
+    /** Se le asignó una unidad devuelta, que se guarda para el usuario hasta el vencimiento de la reserva. */
+    RETENIDA,
+    /** El usuario retiró la unidad retenida: se registró el préstamo. */
+    RETIRADA,
+    /** El usuario no retiró la unidad antes del vencimiento y se pasó al siguiente de la lista. */
+    VENCIDA,
+    /** La canceló el usuario, o se dio de baja el usuario o el libro. */
+    CANCELADA;
+
+    public boolean isPendiente() {
+        return this == ESPERANDO || this == RETENIDA;
+    }
+}
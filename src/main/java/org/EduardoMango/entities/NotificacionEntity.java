@@ -0,0 +1,32 @@
+package org.EduardoMango.entities;
+
+import lombok.*;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Notificación pendiente de enviar a un usuario (outbox): se registra en la base junto con el cambio
+ * que la origina, y un proceso aparte la envía y la marca como enviada.
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@ToString
+@Builder
+public class NotificacionEntity {
+
+    /** El préstamo venció sin devolverse. */
+    public static final String PRESTAMO_VENCIDO = "PRESTAMO_VENCIDO";
+
+    private int id;
+    private String tipo;
+    private int prestamo_id;
+    private int usuario_id;
+    private int libro_id;
+    private LocalDate fecha_vencimiento;
+    private LocalDateTime creada;
+    /** Null mientras no se envió. */
+    private LocalDateTime enviada;
+}
@@ -12,9 +12,36 @@ import java.time.LocalDate;
 @Builder
 public class PrestamoEntity {
 
+    /**
+     * Días que dura un préstamo: vence al terminar el día {@code fecha_prestamo + PLAZO_DIAS}.
+     */
+    public static final int PLAZO_DIAS = 14;
+
     private int id;
     private int usuario_id;
     private int libro_id;
+    /** Días en la zona horaria del servidor ({@code LocalDate.now()}), igual que el vencimiento. */
     private LocalDate fecha_prestamo;
     private LocalDate fecha_devolucion;
+
+    /**
+     * Último día del préstamo, o null si todavía no tiene fecha de préstamo.
+     */
+    public LocalDate getFecha_vencimiento() {
+        return fecha_prestamo == null ? null : fecha_prestamo.plusDays(PLAZO_DIAS);
+    }
+
+    /**
+     * Un préstamo está vencido si sigue activo después de su último día.
+     */
+    public boolean isVencido(LocalDate hoy) {
+        return fecha_devolucion == null && fecha_prestamo != null && hoy.isAfter(getFecha_vencimiento());
+    }
+
+    /**
+     * Fecha de préstamo máxima (exclusiva) de los préstamos activos que están vencidos en {@code hoy}.
+     */
+    public static LocalDate prestadosVencidosAntesDe(LocalDate hoy) {
+        return hoy.minusDays(PLAZO_DIAS);
+    }
 }
@@ -0,0 +1,18 @@
+package org.EduardoMango.entities;
+
+import lombok.*;
+
+/**
+ * Posición de un ranking de préstamos: la entidad (libro o usuario)
+ * junto a la cantidad de préstamos que registra.
+ *
+ * @param <T> El tipo de entidad rankeada.
+ */
+@Getter
+@AllArgsConstructor
+@ToString
+public class RankingEntity<T> {
+
+    private T entidad;
+    private long cantidad_prestamos;
+}
@@ -0,0 +1,26 @@
+package org.EduardoMango.entities;
+
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Reserva de un libro sin unidades disponibles. Las reservas de cada libro se atienden
+ * en orden de id (el orden en que se hicieron).
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@ToString
+@Builder
+public class ReservaEntity {
+
+    private int id;
+    private int libro_id;
+    private int usuario_id;
+    private LocalDateTime fecha_reserva;
+    private EstadoReserva estado;
+    /** Hasta cuándo se guarda la unidad retenida; null mientras la reserva espera. */
+    private LocalDateTime vence;
+}
@@ -0,0 +1,147 @@
+package org.EduardoMango.executor;
+
+import org.EduardoMango.database.DatabaseConfig;
+import org.EduardoMango.database.DatabaseConnection;
+import org.EduardoMango.metrics.MeterId;
+import org.EduardoMango.metrics.MetricsRegistry;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Ejecuta solicitudes concurrentes contra los servicios, cada una en su propio virtual thread.
+ * <p>
+ * <ul>
+ * <li>Concurrencia acotada: como mucho {@code biblioteca.executor.maxConcurrent} solicitudes en curso
+ * (por defecto, las conexiones de lectura más la de escritura). Más solicitudes que conexiones
+ * solo esperarían en el pool de Hikari.</li>
+ * <li>Back-pressure: quien envía una solicitud espera hasta {@code biblioteca.executor.admissionTimeoutMillis}
+ * a que se libere un lugar; si no, recibe una {@link SobrecargaException} en lugar de encolarla sin límite.</li>
+ * <li>Timeout por solicitud: {@link #call(Callable)} espera el resultado hasta
+ * {@code biblioteca.executor.requestTimeoutMillis} y luego interrumpe la solicitud. La interrupción corta la
+ * espera de una conexión en Hikari; una consulta que ya está ejecutándose en SQLite termina igual.</li>
+ * </ul>
+ * Las llamadas a SQLite son nativas (JNI) y mientras duran ocupan el carrier thread del virtual thread.
+ * Acotar la concurrencia al tamaño de los pools limita también cuántos carriers pueden quedar ocupados así;
+ * además, ningún monitor {@code synchronized} se mantiene mientras se espera una conexión o una consulta,
+ * para no fijar el carrier durante esas esperas.
+ * <p>
+ * Los singletons de repositorios y servicios se crean al inicializarse su clase, así que las solicitudes
+ * pueden obtenerlos desde cualquier thread sin haberlos creado antes.
+ */
+public class ServiceExecutor implements AutoCloseable {
+
+    private static ServiceExecutor instance;
+
+    private final ExecutorService virtualThreads = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("servicio-", 0).factory());
+    private final Semaphore lugares;
+    private final int maxConcurrent;
+    private final long admisionTimeoutMillis;
+    private final long requestTimeoutMillis;
+
+    private final LongAdder rechazadas;
+    private final LongAdder vencidas;
+
+    public ServiceExecutor(int maxConcurrent, long admisionTimeoutMillis, long requestTimeoutMillis) {
+        this.maxConcurrent = maxConcurrent;
+        this.lugares = new Semaphore(maxConcurrent, true);
+        this.admisionTimeoutMillis = admisionTimeoutMillis;
+        this.requestTimeoutMillis = requestTimeoutMillis;
+
+        MetricsRegistry registry = MetricsRegistry.getInstance();
+        registry.gauge(MeterId.of("biblioteca_executor_en_curso"), () -> this.maxConcurrent - lugares.availablePermits());
+        registry.gauge(MeterId.of("biblioteca_executor_esperando"), lugares::getQueueLength);
+        rechazadas = registry.counter(MeterId.of("biblioteca_executor_rechazadas_total"));
+        vencidas = registry.counter(MeterId.of("biblioteca_executor_timeouts_total"));
+    }
+
+    public static synchronized ServiceExecutor getInstance() {
+        if (instance == null) {
+            instance = desdeConfig();
+        }
+        return instance;
+    }
+
+    private static ServiceExecutor desdeConfig() {
+        int conexiones = DatabaseConnection.getConfig().getReadPoolSize() + 1;
+        return new ServiceExecutor(
+                Integer.parseInt(DatabaseConfig.get("biblioteca.executor.maxConcurrent", String.valueOf(conexiones))),
+                Long.parseLong(DatabaseConfig.get("biblioteca.executor.admissionTimeoutMillis", "1000")),
+                Long.parseLong(DatabaseConfig.get("biblioteca.executor.requestTimeoutMillis", "10000")));
+    }
+
+    /**
+     * Envía una solicitud para ejecutarse en un virtual thread.
+     * Bloquea a quien la envía mientras no haya lugar, hasta el tiempo de admisión.
+     *
+     * @param tarea La solicitud, normalmente una llamada a un servicio.
+     * @return El resultado futuro de la solicitud.
+     * @throws SobrecargaException Si no se liberó un lugar a tiempo.
+     */
+    public <T> Future<T> submit(Callable<T> tarea) throws InterruptedException {
+        if (!lugares.tryAcquire(admisionTimeoutMillis, TimeUnit.MILLISECONDS)) {
+            rechazadas.increment();
+            throw new SobrecargaException("Demasiadas solicitudes en curso (" + maxConcurrent + "), reintente más tarde");
+        }
+        CompletableFuture<T> resultado = new CompletableFuture<>();
+        try {
+            Future<?> ejecucion = virtualThreads.submit(() -> {
+                try {
+                    resultado.complete(tarea.call());
+                } catch (Throwable e) {
+                    resultado.completeExceptionally(e);
+                } finally {
+                    lugares.release();
+                }
+            });
+            // Cancelar el resultado interrumpe el virtual thread que lo ejecuta.
+            resultado.whenComplete((r, e) -> {
+                if (resultado.isCancelled()) ejecucion.cancel(true);
+            });
+        } catch (RuntimeException e) {
+            lugares.release();
+            throw e;
+        }
+        return resultado;
+    }
+
+    /**
+     * Ejecuta una solicitud en un virtual thread y espera su resultado, hasta el timeout por solicitud.
+     *
+     * @param tarea La solicitud, normalmente una llamada a un servicio.
+     * @return El resultado de la solicitud.
+     * @throws SobrecargaException  Si no se liberó un lugar a tiempo.
+     * @throws TimeoutException     Si la solicitud no terminó a tiempo; en ese caso se interrumpe.
+     * @throws ExecutionException   Si la solicitud lanzó una excepción (su causa).
+     */
+    public <T> T call(Callable<T> tarea) throws InterruptedException, ExecutionException, TimeoutException {
+        Future<T> resultado = submit(tarea);
+        try {
+            return resultado.get(requestTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            vencidas.increment();
+            resultado.cancel(true);
+            throw new TimeoutException("La solicitud no terminó en " + requestTimeoutMillis + " ms");
+        } catch (InterruptedException e) {
+            resultado.cancel(true);
+            throw e;
+        }
+    }
+
+    /**
+     * Deja de aceptar solicitudes y espera a que terminen las que están en curso.
+     */
+    @Override
+    public void close() {
+        virtualThreads.close();
+    }
+}
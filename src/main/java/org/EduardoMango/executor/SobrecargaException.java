@@ -0,0 +1,15 @@
+package org.EduardoMango.executor;
+
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Se lanza cuando una solicitud no consigue lugar en el {@link ServiceExecutor} dentro del
+ * tiempo de admisión: hay demasiadas solicitudes en curso para las conexiones disponibles.
+ * Quien la recibe debe reintentar más tarde (por ejemplo, responder HTTP 503).
+ */
+public class SobrecargaException extends RejectedExecutionException {
+
+    public SobrecargaException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,171 @@
+package org.EduardoMango.importer;
+
+import org.EduardoMango.entities.LibroEntity;
+import org.EduardoMango.entities.PrestamoEntity;
+import org.EduardoMango.entities.UsuarioEntity;
+import org.EduardoMango.repositories.IRepository;
+import org.EduardoMango.repositories.LibroRepository;
+import org.EduardoMango.repositories.PrestamoRepository;
+import org.EduardoMango.repositories.UsuarioRepository;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Importa un archivo CSV a una tabla leyendo el archivo línea por línea.
+ * <p>
+ * Las filas se acumulan en bloques de {@code filasPorTransaccion} y cada bloque se inserta con
+ * {@link IRepository#saveAll}, es decir, en una transacción con batches de JDBC. Así el
+ * archivo nunca se carga completo en memoria y el lock de escritura se libera entre bloques.
+ * <p>
+ * El archivo debe estar en UTF-8, separado por comas y con una primera línea de encabezado.
+ * Los campos pueden ir entre comillas dobles; una comilla dentro de un campo se escribe "".
+ *
+ * @param <T> El tipo de entidad a importar.
+ */
+public class CsvImporter<T> {
+
+    public static final int FILAS_POR_TRANSACCION = 50_000;
+
+    private final IRepository<T> repository;
+    private final Function<String[], T> parser;
+    private final int filasPorTransaccion;
+
+    public CsvImporter(IRepository<T> repository, Function<String[], T> parser, int filasPorTransaccion) {
+        if (filasPorTransaccion <= 0) throw new IllegalArgumentException("filasPorTransaccion debe ser positivo");
+        this.repository = repository;
+        this.parser = parser;
+        this.filasPorTransaccion = filasPorTransaccion;
+    }
+
+    /**
+     * Importador de libros. Columnas: titulo, autor, anio_publicacion, unidades_disponibles.
+     */
+    public static CsvImporter<LibroEntity> libros() {
+        return new CsvImporter<>(LibroRepository.getInstance(), c -> LibroEntity.builder()
+                .titulo(c[0])
+                .autor(c[1])
+                .anio_publicacion(c[2].isEmpty() ? null : Integer.parseInt(c[2]))
+                .unidades_disponibles(c[3].isEmpty() ? null : Integer.parseInt(c[3]))
+                .build(), FILAS_POR_TRANSACCION);
+    }
+
+    /**
+     * Importador de usuarios. Columnas: nombre, email.
+     */
+    public static CsvImporter<UsuarioEntity> usuarios() {
+        return new CsvImporter<>(UsuarioRepository.getInstance(), c -> UsuarioEntity.builder()
+                .nombre(c[0])
+                .email(c[1])
+                .build(), FILAS_POR_TRANSACCION);
+    }
+
+    /**
+     * Importador de préstamos históricos; no modifica el stock de los libros.
+     * Columnas: usuario_id, libro_id, fecha_prestamo, fecha_devolucion (fechas ISO, la última opcional).
+     */
+    public static CsvImporter<PrestamoEntity> prestamos() {
+        return new CsvImporter<>(PrestamoRepository.getInstance(), c -> PrestamoEntity.builder()
+                .usuario_id(Integer.parseInt(c[0]))
+                .libro_id(Integer.parseInt(c[1]))
+                .fecha_prestamo(c[2].isEmpty() ? null : LocalDate.parse(c[2]))
+                .fecha_devolucion(c.length < 4 || c[3].isEmpty() ? null : LocalDate.parse(c[3]))
+                .build(), FILAS_POR_TRANSACCION);
+    }
+
+    /**
+     * Importa el archivo completo.
+     *
+     * @param archivo El CSV a importar.
+     * @return La cantidad de filas importadas y el tiempo empleado.
+     * @throws IOException              Si no se puede leer el archivo.
+     * @throws SQLException             Si falla la inserción de un bloque; los bloques anteriores quedan importados.
+     * @throws IllegalArgumentException Si una línea no se puede interpretar; indica el número de línea.
+     */
+    public ResultadoImportacion importar(Path archivo) throws IOException, SQLException {
+        return importar(archivo, entidad -> {});
+    }
+
+    /**
+     * Importa el archivo completo y avisa cada entidad insertada (con su id) después del commit de su bloque.
+     *
+     * @param archivo   El CSV a importar.
+     * @param alGuardar Recibe cada entidad insertada.
+     * @return La cantidad de filas importadas y el tiempo empleado.
+     * @throws IOException              Si no se puede leer el archivo.
+     * @throws SQLException             Si falla la inserción de un bloque; los bloques anteriores quedan importados.
+     * @throws IllegalArgumentException Si una línea no se puede interpretar; indica el número de línea.
+     */
+    public ResultadoImportacion importar(Path archivo, Consumer<? super T> alGuardar) throws IOException, SQLException {
+        long inicio = System.nanoTime();
+        long filas = 0;
+        List<T> bloque = new ArrayList<>(filasPorTransaccion);
+
+        try (BufferedReader reader = Files.newBufferedReader(archivo, StandardCharsets.UTF_8)) {
+            String linea = reader.readLine(); // encabezado
+            long numeroLinea = 1;
+
+            while ((linea = reader.readLine()) != null) {
+                numeroLinea++;
+                if (linea.isBlank()) continue;
+                try {
+                    bloque.add(parser.apply(parseLinea(linea)));
+                } catch (RuntimeException e) {
+                    throw new IllegalArgumentException("Línea " + numeroLinea + " inválida: " + linea, e);
+                }
+                if (bloque.size() == filasPorTransaccion) {
+                    filas += guardar(bloque, alGuardar);
+                }
+            }
+        }
+        if (!bloque.isEmpty()) {
+            filas += guardar(bloque, alGuardar);
+        }
+        return new ResultadoImportacion(filas, System.nanoTime() - inicio);
+    }
+
+    private int guardar(List<T> bloque, Consumer<? super T> alGuardar) throws SQLException {
+        int guardadas = repository.saveAll(bloque).size();
+        bloque.forEach(alGuardar);
+        bloque.clear();
+        return guardadas;
+    }
+
+    static String[] parseLinea(String linea) {
+        List<String> campos = new ArrayList<>();
+        StringBuilder campo = new StringBuilder();
+        boolean entreComillas = false;
+
+        for (int i = 0; i < linea.length(); i++) {
+            char c = linea.charAt(i);
+            if (entreComillas) {
+                if (c == '"' && i + 1 < linea.length() && linea.charAt(i + 1) == '"') {
+                    campo.append('"');
+                    i++;
+                } else if (c == '"') {
+                    entreComillas = false;
+                } else {
+                    campo.append(c);
+                }
+            } else if (c == '"') {
+                entreComillas = true;
+            } else if (c == ',') {
+                campos.add(campo.toString().trim());
+                campo.setLength(0);
+            } else {
+                campo.append(c);
+            }
+        }
+        campos.add(campo.toString().trim());
+        return campos.toArray(String[]::new);
+    }
+}
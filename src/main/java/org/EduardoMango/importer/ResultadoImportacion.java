@@ -0,0 +1,25 @@
+package org.EduardoMango.importer;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Resultado de una importación: cuántas filas se insertaron y en cuánto tiempo.
+ */
+@Getter
+@AllArgsConstructor
+public class ResultadoImportacion {
+
+    private long filas;
+    private long duracionNanos;
+
+    public double getFilasPorSegundo() {
+        return duracionNanos == 0 ? 0 : filas * 1_000_000_000.0 / duracionNanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d filas importadas en %.2f s (%.0f filas/s)",
+                filas, duracionNanos / 1_000_000_000.0, getFilasPorSegundo());
+    }
+}
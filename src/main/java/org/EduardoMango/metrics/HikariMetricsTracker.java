@@ -0,0 +1,49 @@
+package org.EduardoMango.metrics;
+
+import com.zaxxer.hikari.metrics.IMetricsTracker;
+import com.zaxxer.hikari.metrics.MetricsTrackerFactory;
+import com.zaxxer.hikari.metrics.PoolStats;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Publica en el {@link MetricsRegistry} el estado de un pool de Hikari:
+ * conexiones activas, inactivas, totales e hilos esperando (gauges),
+ * el tiempo de espera para obtener una conexión, el tiempo de uso y los timeouts.
+ */
+public class HikariMetricsTracker implements IMetricsTracker {
+
+    public static final MetricsTrackerFactory FACTORY = HikariMetricsTracker::new;
+
+    private final Timer espera;
+    private final Timer uso;
+    private final LongAdder timeouts;
+
+    private HikariMetricsTracker(String pool, PoolStats stats) {
+        MetricsRegistry registry = MetricsRegistry.getInstance();
+        registry.gauge(MeterId.of("biblioteca_pool_conexiones", "pool", pool, "estado", "activas"), stats::getActiveConnections);
+        registry.gauge(MeterId.of("biblioteca_pool_conexiones", "pool", pool, "estado", "inactivas"), stats::getIdleConnections);
+        registry.gauge(MeterId.of("biblioteca_pool_conexiones", "pool", pool, "estado", "total"), stats::getTotalConnections);
+        registry.gauge(MeterId.of("biblioteca_pool_conexiones_max", "pool", pool), stats::getMaxConnections);
+        registry.gauge(MeterId.of("biblioteca_pool_hilos_esperando", "pool", pool), stats::getPendingThreads);
+        espera = registry.timer(MeterId.of("biblioteca_pool_espera_seconds", "pool", pool));
+        uso = registry.timer(MeterId.of("biblioteca_pool_uso_seconds", "pool", pool));
+        timeouts = registry.counter(MeterId.of("biblioteca_pool_timeouts_total", "pool", pool));
+    }
+
+    @Override
+    public void recordConnectionAcquiredNanos(long elapsedAcquiredNanos) {
+        espera.record(elapsedAcquiredNanos);
+    }
+
+    @Override
+    public void recordConnectionUsageMillis(long elapsedBorrowedMillis) {
+        uso.record(TimeUnit.MILLISECONDS.toNanos(elapsedBorrowedMillis));
+    }
+
+    @Override
+    public void recordConnectionTimeout() {
+        timeouts.increment();
+    }
+}
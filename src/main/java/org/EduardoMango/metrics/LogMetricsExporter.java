@@ -0,0 +1,48 @@
+package org.EduardoMango.metrics;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Vuelca periódicamente todas las métricas al log, en formato de texto de Prometheus.
+ */
+public class LogMetricsExporter implements MetricsExporter {
+
+    private static final Logger LOG = Logger.getLogger(LogMetricsExporter.class.getName());
+
+    private final long intervaloSegundos;
+    private ScheduledExecutorService scheduler;
+
+    public LogMetricsExporter(long intervaloSegundos) {
+        this.intervaloSegundos = intervaloSegundos;
+    }
+
+    @Override
+    public void start() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "metrics-log");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleAtFixedRate(this::volcar, intervaloSegundos, intervaloSegundos, TimeUnit.SECONDS);
+    }
+
+    private void volcar() {
+        StringWriter out = new StringWriter();
+        try {
+            PrometheusFormatter.write(MetricsRegistry.getInstance(), out);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        LOG.info("Métricas:\n" + out);
+    }
+
+    @Override
+    public void close() {
+        if (scheduler != null) scheduler.shutdownNow();
+    }
+}
@@ -0,0 +1,29 @@
+package org.EduardoMango.metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Identifica una métrica por su nombre y sus etiquetas.
+ *
+ * @param nombre    El nombre de la métrica, en formato Prometheus ({@code biblioteca_repositorio_seconds}).
+ * @param etiquetas Las etiquetas, ordenadas por clave.
+ */
+public record MeterId(String nombre, Map<String, String> etiquetas) {
+
+    public MeterId {
+        etiquetas = new TreeMap<>(etiquetas);
+    }
+
+    /**
+     * Crea un id a partir de pares clave, valor: {@code of("x_total", "pool", "lectura")}.
+     */
+    public static MeterId of(String nombre, String... etiquetas) {
+        if (etiquetas.length % 2 != 0) throw new IllegalArgumentException("Las etiquetas van de a pares clave, valor");
+        Map<String, String> mapa = new TreeMap<>();
+        for (int i = 0; i < etiquetas.length; i += 2) {
+            mapa.put(etiquetas[i], etiquetas[i + 1]);
+        }
+        return new MeterId(nombre, mapa);
+    }
+}
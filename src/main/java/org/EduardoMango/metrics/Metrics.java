@@ -0,0 +1,218 @@
+package org.EduardoMango.metrics;
+
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Instrumentación de repositorios y servicios.
+ * <p>
+ * Cada método medido es una {@link Operacion} identificada por clase y método, que se registra una
+ * sola vez (como campo estático del decorador que la usa, p. ej. {@code LibroRepositoryConMetricas})
+ * y registra en cada llamada:
+ * <ul>
+ * <li>La duración, en {@code biblioteca_repositorio_seconds} o {@code biblioteca_servicio_seconds}.</li>
+ * <li>Las filas devueltas por los repositorios ({@code biblioteca_repositorio_filas_total}):
+ * el tamaño de la lista devuelta, 1 por un Optional presente, o las filas leídas de un stream.</li>
+ * <li>Los errores, por tipo de excepción ({@code ..._errores_total}); la excepción se relanza.
+ * Los que un servicio atrapa sin relanzar se cuentan con {@link #errorAtrapado}.</li>
+ * </ul>
+ * Un método que devuelve un stream se mide con {@link Operacion#timeStream}: la duración va hasta que
+ * el stream se cierra, porque la consulta se lee a medida que se consume.
+ */
+public class Metrics {
+
+    @FunctionalInterface
+    public interface SqlCall<T> {
+        T call() throws SQLException;
+    }
+
+    @FunctionalInterface
+    public interface SqlRunnable {
+        void run() throws SQLException;
+    }
+
+    private static final String REPOSITORIO = "biblioteca_repositorio";
+    private static final String SERVICIO = "biblioteca_servicio";
+
+    private static final MetricsRegistry registry = MetricsRegistry.getInstance();
+
+    private Metrics() {}
+
+    /**
+     * Registra la operación de un método de repositorio.
+     */
+    public static Operacion repositorio(String clase, String metodo) {
+        return new Operacion(REPOSITORIO, clase, metodo);
+    }
+
+    /**
+     * Registra la operación de un método de servicio.
+     */
+    public static Operacion servicio(String clase, String metodo) {
+        return new Operacion(SERVICIO, clase, metodo);
+    }
+
+    /**
+     * Cuenta en {@code biblioteca_servicio_errores_total} un error que un método de servicio atrapó e informó
+     * sin relanzarlo (los métodos de consola), y que por eso la {@link Operacion} del decorador no ve.
+     */
+    public static void errorAtrapado(String clase, String metodo, Exception e) {
+        contarError(SERVICIO, clase, metodo, e);
+    }
+
+    private static void contarError(String prefijo, String clase, String metodo, Exception e) {
+        registry.counter(MeterId.of(prefijo + "_errores_total",
+                "clase", clase,
+                "metodo", metodo,
+                "excepcion", e.getClass().getSimpleName())).increment();
+    }
+
+    /**
+     * Las métricas de un método, buscadas en el registro una sola vez al crearse.
+     * El contador de filas se crea con la primera llamada que devuelve filas, y el de cada
+     * tipo de error con el primer error de ese tipo.
+     */
+    public static final class Operacion {
+
+        private final String prefijo;
+        private final String clase;
+        private final String metodo;
+        private final Timer timer;
+        private volatile LongAdder filas;
+
+        private Operacion(String prefijo, String clase, String metodo) {
+            this.prefijo = prefijo;
+            this.clase = clase;
+            this.metodo = metodo;
+            this.timer = registry.timer(MeterId.of(prefijo + "_seconds", "clase", clase, "metodo", metodo));
+        }
+
+        /**
+         * Mide un método de repositorio que devuelve un valor.
+         */
+        public <T> T timeSql(SqlCall<T> call) throws SQLException {
+            long inicio = System.nanoTime();
+            try {
+                T resultado = call.call();
+                filas(resultado);
+                return resultado;
+            } catch (SQLException | RuntimeException e) {
+                error(e);
+                throw e;
+            } finally {
+                timer.record(System.nanoTime() - inicio);
+            }
+        }
+
+        /**
+         * Mide un método de repositorio que devuelve un stream, desde la llamada hasta que el stream se cierra.
+         * Cuenta las filas que se consumieron y los errores de la base durante la lectura
+         * (las excepciones no verificadas cuya causa es una SQLException).
+         */
+        public <T> Stream<T> timeStream(SqlCall<Stream<T>> call) throws SQLException {
+            long inicio = System.nanoTime();
+            Stream<T> stream;
+            try {
+                stream = call.call();
+            } catch (SQLException | RuntimeException e) {
+                error(e);
+                timer.record(System.nanoTime() - inicio);
+                throw e;
+            }
+            Spliterator<T> origen = stream.spliterator();
+            long[] leidas = {0};
+            Spliterator<T> medido = new Spliterators.AbstractSpliterator<>(Long.MAX_VALUE, origen.characteristics() & ~Spliterator.SIZED) {
+                @Override
+                public boolean tryAdvance(Consumer<? super T> action) {
+                    try {
+                        if (!origen.tryAdvance(action)) return false;
+                        leidas[0]++;
+                        return true;
+                    } catch (RuntimeException e) {
+                        // Un error de quien consume el stream no es de la base.
+                        if (e.getCause() instanceof SQLException) error(e);
+                        throw e;
+                    }
+                }
+            };
+            return StreamSupport.stream(medido, false).onClose(() -> {
+                try {
+                    stream.close();
+                } catch (RuntimeException e) {
+                    error(e);
+                    throw e;
+                } finally {
+                    filas(leidas[0]);
+                    timer.record(System.nanoTime() - inicio);
+                }
+            });
+        }
+
+        /**
+         * Mide un método de repositorio sin valor de retorno.
+         */
+        public void runSql(SqlRunnable call) throws SQLException {
+            timeSql(() -> {
+                call.run();
+                return null;
+            });
+        }
+
+        /**
+         * Mide un método de servicio que devuelve un valor.
+         */
+        public <T> T time(Supplier<T> call) {
+            long inicio = System.nanoTime();
+            try {
+                return call.get();
+            } catch (RuntimeException e) {
+                error(e);
+                throw e;
+            } finally {
+                timer.record(System.nanoTime() - inicio);
+            }
+        }
+
+        /**
+         * Mide un método de servicio sin valor de retorno.
+         */
+        public void run(Runnable call) {
+            time(() -> {
+                call.run();
+                return null;
+            });
+        }
+
+        private void error(Exception e) {
+            contarError(prefijo, clase, metodo, e);
+        }
+
+        private void filas(Object resultado) {
+            long cantidad = switch (resultado) {
+                case Collection<?> c -> c.size();
+                case Optional<?> o -> o.isPresent() ? 1 : 0;
+                case OptionalInt o -> o.isPresent() ? 1 : 0;
+                case null, default -> -1;
+            };
+            if (cantidad >= 0) filas(cantidad);
+        }
+
+        private void filas(long cantidad) {
+            LongAdder contador = filas;
+            if (contador == null) {
+                contador = registry.counter(MeterId.of(REPOSITORIO + "_filas_total", "clase", clase, "metodo", metodo));
+                filas = contador;
+            }
+            contador.add(cantidad);
+        }
+    }
+}
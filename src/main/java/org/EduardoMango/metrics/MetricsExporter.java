@@ -0,0 +1,45 @@
+package org.EduardoMango.metrics;
+
+import org.EduardoMango.database.DatabaseConfig;
+
+import java.io.IOException;
+import java.util.Locale;
+
+/**
+ * Publica las métricas del {@link MetricsRegistry} hacia afuera de la aplicación.
+ * <p>
+ * El exportador se elige con {@code biblioteca.metrics.exporter}:
+ * <ul>
+ * <li>{@code none} (por defecto): no exporta.</li>
+ * <li>{@code prometheus}: expone {@code http://localhost:<biblioteca.metrics.port>/metrics} (puerto 9464 por defecto).</li>
+ * <li>{@code log}: imprime todas las métricas cada {@code biblioteca.metrics.intervalSeconds} segundos (60 por defecto).</li>
+ * </ul>
+ */
+public interface MetricsExporter extends AutoCloseable {
+
+    void start() throws IOException;
+
+    @Override
+    void close();
+
+    /**
+     * Crea el exportador configurado, sin iniciarlo.
+     */
+    static MetricsExporter fromConfig() {
+        String tipo = DatabaseConfig.get("biblioteca.metrics.exporter", "none").toLowerCase(Locale.ROOT);
+        return switch (tipo) {
+            case "prometheus" -> new PrometheusExporter(
+                    Integer.parseInt(DatabaseConfig.get("biblioteca.metrics.port", "9464")));
+            case "log" -> new LogMetricsExporter(
+                    Long.parseLong(DatabaseConfig.get("biblioteca.metrics.intervalSeconds", "60")));
+            case "none" -> new MetricsExporter() {
+                @Override
+                public void start() {}
+
+                @Override
+                public void close() {}
+            };
+            default -> throw new IllegalArgumentException("Exportador de métricas desconocido: " + tipo);
+        };
+    }
+}
@@ -0,0 +1,51 @@
+package org.EduardoMango.metrics;
+
+import lombok.Getter;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Registro de todas las métricas de la aplicación: timers, contadores y gauges.
+ * Las métricas se crean la primera vez que se piden y se reutilizan después.
+ */
+public class MetricsRegistry {
+
+    @Getter
+    private static final MetricsRegistry instance = new MetricsRegistry();
+
+    private final Map<MeterId, Timer> timers = new ConcurrentHashMap<>();
+    private final Map<MeterId, LongAdder> counters = new ConcurrentHashMap<>();
+    private final Map<MeterId, Supplier<? extends Number>> gauges = new ConcurrentHashMap<>();
+
+    private MetricsRegistry() {}
+
+    public Timer timer(MeterId id) {
+        return timers.computeIfAbsent(id, k -> new Timer());
+    }
+
+    public LongAdder counter(MeterId id) {
+        return counters.computeIfAbsent(id, k -> new LongAdder());
+    }
+
+    /**
+     * Registra un valor que se lee en el momento de exportar. Si ya existía uno con el mismo id, lo reemplaza.
+     */
+    public void gauge(MeterId id, Supplier<? extends Number> valor) {
+        gauges.put(id, valor);
+    }
+
+    public Map<MeterId, Timer> getTimers() {
+        return Map.copyOf(timers);
+    }
+
+    public Map<MeterId, LongAdder> getCounters() {
+        return Map.copyOf(counters);
+    }
+
+    public Map<MeterId, Supplier<? extends Number>> getGauges() {
+        return Map.copyOf(gauges);
+    }
+}
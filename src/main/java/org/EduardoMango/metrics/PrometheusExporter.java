@@ -0,0 +1,42 @@
+package org.EduardoMango.metrics;
+
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Expone las métricas en formato de texto de Prometheus en {@code /metrics}.
+ */
+public class PrometheusExporter implements MetricsExporter {
+
+    private final int puerto;
+    private HttpServer server;
+
+    public PrometheusExporter(int puerto) {
+        this.puerto = puerto;
+    }
+
+    @Override
+    public void start() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(puerto), 0);
+        server.createContext("/metrics", exchange -> {
+            try (exchange) {
+                exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+                exchange.sendResponseHeaders(200, 0);
+                try (Writer out = new OutputStreamWriter(exchange.getResponseBody(), StandardCharsets.UTF_8)) {
+                    PrometheusFormatter.write(MetricsRegistry.getInstance(), out);
+                }
+            }
+        });
+        server.start();
+    }
+
+    @Override
+    public void close() {
+        if (server != null) server.stop(0);
+    }
+}
@@ -0,0 +1,94 @@
+package org.EduardoMango.metrics;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Escribe el contenido del {@link MetricsRegistry} en el formato de texto de Prometheus.
+ * Los timers se exportan como summary (p50, p90, p99, p999, _sum y _count, en segundos).
+ */
+public class PrometheusFormatter {
+
+    private static final double[] CUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    private PrometheusFormatter() {}
+
+    public static void write(MetricsRegistry registry, Writer out) throws IOException {
+        String tipo = null;
+        for (Map.Entry<MeterId, Timer> e : ordenar(registry.getTimers()).entrySet()) {
+            MeterId id = e.getKey();
+            Timer timer = e.getValue();
+            if (!id.nombre().equals(tipo)) {
+                tipo = id.nombre();
+                out.write("# TYPE " + tipo + " summary\n");
+            }
+            for (double q : CUANTILES) {
+                linea(out, id.nombre(), id.etiquetas(), "quantile", String.valueOf(q), timer.percentile(q) / 1e9);
+            }
+            linea(out, id.nombre() + "_sum", id.etiquetas(), null, null, timer.getTotalNanos() / 1e9);
+            linea(out, id.nombre() + "_count", id.etiquetas(), null, null, timer.getCount());
+        }
+
+        tipo = null;
+        for (Map.Entry<MeterId, LongAdder> e : ordenar(registry.getCounters()).entrySet()) {
+            MeterId id = e.getKey();
+            if (!id.nombre().equals(tipo)) {
+                tipo = id.nombre();
+                out.write("# TYPE " + tipo + " counter\n");
+            }
+            linea(out, id.nombre(), id.etiquetas(), null, null, e.getValue().sum());
+        }
+
+        tipo = null;
+        for (Map.Entry<MeterId, Supplier<? extends Number>> e : ordenar(registry.getGauges()).entrySet()) {
+            MeterId id = e.getKey();
+            if (!id.nombre().equals(tipo)) {
+                tipo = id.nombre();
+                out.write("# TYPE " + tipo + " gauge\n");
+            }
+            linea(out, id.nombre(), id.etiquetas(), null, null, e.getValue().get().doubleValue());
+        }
+        out.flush();
+    }
+
+    private static <V> Map<MeterId, V> ordenar(Map<MeterId, V> metricas) {
+        Map<MeterId, V> ordenadas = new TreeMap<>(Comparator.comparing(MeterId::nombre)
+                .thenComparing(id -> id.etiquetas().toString()));
+        ordenadas.putAll(metricas);
+        return ordenadas;
+    }
+
+    private static void linea(Writer out, String nombre, Map<String, String> etiquetas,
+                              String extraClave, String extraValor, double valor) throws IOException {
+        out.write(nombre);
+        if (!etiquetas.isEmpty() || extraClave != null) {
+            out.write('{');
+            boolean primera = true;
+            for (Map.Entry<String, String> e : etiquetas.entrySet()) {
+                if (!primera) out.write(',');
+                etiqueta(out, e.getKey(), e.getValue());
+                primera = false;
+            }
+            if (extraClave != null) {
+                if (!primera) out.write(',');
+                etiqueta(out, extraClave, extraValor);
+            }
+            out.write('}');
+        }
+        out.write(' ');
+        out.write(valor == Math.rint(valor) && !Double.isInfinite(valor) ? String.valueOf((long) valor) : String.valueOf(valor));
+        out.write('\n');
+    }
+
+    private static void etiqueta(Writer out, String clave, String valor) throws IOException {
+        out.write(clave);
+        out.write("=\"");
+        out.write(valor.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n"));
+        out.write('"');
+    }
+}
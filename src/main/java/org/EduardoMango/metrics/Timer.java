@@ -0,0 +1,81 @@
+package org.EduardoMango.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Registra duraciones en un histograma log-lineal para poder calcular percentiles.
+ * <p>
+ * Cada potencia de dos se divide en 16 sub-buckets, así el error relativo de un percentil es
+ * menor al 7% con un arreglo fijo de contadores, sin guardar muestras ni tomar locks.
+ */
+public class Timer {
+
+    private static final int SUB_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int BUCKETS = (64 - SUB_BITS + 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    public void record(long nanos) {
+        if (nanos < 0) nanos = 0;
+        buckets.incrementAndGet(bucket(nanos));
+        count.increment();
+        totalNanos.add(nanos);
+        maxNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getTotalNanos() {
+        return totalNanos.sum();
+    }
+
+    public long getMaxNanos() {
+        return maxNanos.get();
+    }
+
+    /**
+     * Devuelve el percentil pedido, en nanosegundos.
+     *
+     * @param q El cuantil, entre 0 y 1 (0.99 para el p99).
+     * @return El límite inferior del bucket que contiene el percentil, o 0 si no hay registros.
+     */
+    public long percentile(double q) {
+        long[] snapshot = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = buckets.get(i);
+            total += snapshot[i];
+        }
+        if (total == 0) return 0;
+
+        long objetivo = Math.max(1, (long) Math.ceil(q * total));
+        long acumulado = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            acumulado += snapshot[i];
+            if (acumulado >= objetivo) return Math.min(valor(i), getMaxNanos());
+        }
+        return getMaxNanos();
+    }
+
+    static int bucket(long v) {
+        if (v < SUB_BUCKETS) return (int) v;
+        int exponente = 63 - Long.numberOfLeadingZeros(v);
+        int sub = (int) (v >>> (exponente - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return (exponente - SUB_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    static long valor(int bucket) {
+        if (bucket < SUB_BUCKETS) return bucket;
+        int exponente = bucket / SUB_BUCKETS + SUB_BITS - 1;
+        int sub = bucket % SUB_BUCKETS;
+        return (long) (SUB_BUCKETS + sub) << (exponente - SUB_BITS);
+    }
+}
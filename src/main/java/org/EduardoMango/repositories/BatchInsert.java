@@ -0,0 +1,84 @@
+package org.EduardoMango.repositories;
+
+import org.EduardoMango.database.DatabaseConnection;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * Inserción masiva con batching de JDBC.
+ * <p>
+ * Todas las filas se insertan en una única transacción sobre la conexión de escritura,
+ * enviando un batch cada {@code batchSize} filas (configurable con {@code biblioteca.db.batchSize}).
+ * Como dentro de la transacción no hay otro escritor, los ids generados por cada batch
+ * son consecutivos y se obtienen a partir de {@code last_insert_rowid()}.
+ */
+class BatchInsert {
+
+    @FunctionalInterface
+    interface Binder<T> {
+        void bind(PreparedStatement ps, T t) throws SQLException;
+    }
+
+    private BatchInsert() {}
+
+    /**
+     * Inserta todas las entidades y les asigna el id generado.
+     *
+     * @param sql       El INSERT con sus parámetros.
+     * @param entidades Las entidades a insertar.
+     * @param binder    Carga los parámetros del INSERT para una entidad.
+     * @param setId     Asigna a la entidad el id generado.
+     * @return Los ids generados, en el mismo orden que las entidades.
+     */
+    static <T> List<Integer> saveAll(String sql, Collection<T> entidades, Binder<T> binder, ObjIntConsumer<T> setId) throws SQLException {
+        if (entidades.isEmpty()) return List.of();
+        int batchSize = DatabaseConnection.getConfig().getBatchSize();
+
+        return DatabaseConnection.inTransaction(conn -> {
+            List<Integer> ids = new ArrayList<>(entidades.size());
+            List<T> pendientes = new ArrayList<>(Math.min(batchSize, entidades.size()));
+
+            try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                for (T entidad : entidades) {
+                    binder.bind(ps, entidad);
+                    ps.addBatch();
+                    pendientes.add(entidad);
+                    if (pendientes.size() == batchSize) {
+                        ejecutar(conn, ps, pendientes, ids, setId);
+                    }
+                }
+                if (!pendientes.isEmpty()) {
+                    ejecutar(conn, ps, pendientes, ids, setId);
+                }
+            }
+            return ids;
+        });
+    }
+
+    private static <T> void ejecutar(Connection conn, PreparedStatement ps, List<T> pendientes,
+                                     List<Integer> ids, ObjIntConsumer<T> setId) throws SQLException {
+        ps.executeBatch();
+
+        int ultimoId;
+        try (Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery("SELECT last_insert_rowid()")) {
+            rs.next();
+            ultimoId = rs.getInt(1);
+        }
+
+        int id = ultimoId - pendientes.size() + 1;
+        for (T entidad : pendientes) {
+            setId.accept(entidad, id);
+            ids.add(id++);
+        }
+        pendientes.clear();
+    }
+}
@@ -1,10 +1,11 @@
 package org.EduardoMango.repositories;
 
-import org.EduardoMango.entities.UsuarioEntity;
-
 import java.sql.SQLException;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 public interface IRepository<T> {
 
@@ -12,7 +13,51 @@ public interface IRepository<T> {
 
     List<T> findAll() throws SQLException;
 
-    void save(T t) throws SQLException;
+    /**
+     * Recorre todas las filas como un stream respaldado por el ResultSet abierto,
+     * sin cargarlas en memoria. El stream debe cerrarse (try-with-resources)
+     * para liberar la conexión.
+     */
+    Stream<T> streamAll() throws SQLException;
+
+    /**
+     * Obtiene una página usando paginación por clave: las filas con id mayor a
+     * {@code afterId}, ordenadas por id. La página siguiente se pide con el id de la
+     * última fila recibida, así el costo es el mismo sin importar la profundidad.
+     *
+     * @param afterId Id de la última fila de la página anterior (0 para la primera página).
+     * @param limite  Cantidad máxima de filas de la página.
+     */
+    List<T> findPage(int afterId, int limite) throws SQLException;
+
+    /**
+     * Aplica una acción a cada fila a medida que se lee, con memoria constante.
+     *
+     * @throws SQLException Si falla la consulta, la lectura de una fila o el cierre.
+     */
+    default void forEach(Consumer<? super T> action) throws SQLException {
+        try (Stream<T> stream = streamAll()) {
+            stream.forEach(action);
+        } catch (UncheckedSQLException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Inserta la entidad y la devuelve con los valores asignados por la base (id y valores por defecto),
+     * sin necesidad de volver a consultarla.
+     *
+     * @return La misma entidad, completada con los valores generados.
+     */
+    T save(T t) throws SQLException;
+
+    /**
+     * Inserta todas las entidades en una única transacción usando batches de JDBC,
+     * y asigna a cada una el id generado.
+     *
+     * @return Los ids generados, en el mismo orden que las entidades.
+     */
+    List<Integer> saveAll(Collection<T> entidades) throws SQLException;
 
     void delete(int id) throws SQLException;
 }
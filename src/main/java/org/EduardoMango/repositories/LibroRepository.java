@@ -1,6 +1,10 @@
 package org.EduardoMango.repositories;
 
+import org.EduardoMango.cache.CacheStats;
+import org.EduardoMango.cache.EntityCache;
 import org.EduardoMango.database.DatabaseConnection;
+import org.EduardoMango.database.StatementCache;
+import org.EduardoMango.entities.BusquedaLibros;
 import org.EduardoMango.entities.LibroEntity;
 
 import javax.xml.transform.Result;
@@ -9,47 +13,121 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 public class LibroRepository implements IRepository<LibroEntity> {
 
-    private static LibroRepository instance;
+    /**
+     * Columnas que lee {@link #map(ResultSet)}, en el orden de sus índices.
+     * Toda consulta mapeada con {@code map} debe devolverlas primero y en este orden.
+     */
+    static final String COLUMNAS = "id, titulo, autor, anio_publicacion, unidades_disponibles";
 
-    private LibroRepository() {}
+    private static final LibroRepository instance = new LibroRepositoryConMetricas();
+
+    private final EntityCache<LibroEntity> cache = new EntityCache<>("libros",
+            DatabaseConnection.getConfig().getEntityCacheMaxSize(),
+            DatabaseConnection.getConfig().getEntityCacheTtlMillis());
+
+    LibroRepository() {}
 
     public static LibroRepository getInstance() {
-        if (instance == null) {
-            instance = new LibroRepository();
-        }
         return instance;
     }
 
     public void updateStock(LibroEntity libroEntity) throws SQLException {
         try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement ps = conn.prepareStatement("UPDATE libros SET unidades_disponibles = ? WHERE id = ?")) {
+             PreparedStatement ps = StatementCache.prepare(conn, "UPDATE libros SET unidades_disponibles = ? WHERE id = ?")) {
             ps.setInt(1, libroEntity.getUnidades_disponibles());
             ps.setInt(2, libroEntity.getId());
             ps.executeUpdate();
         }
+        cache.invalidate(libroEntity.getId());
+    }
+
+    /**
+     * Descuenta una unidad del stock de un libro solo si tiene unidades disponibles.
+     * La verificación y el descuento se hacen en un único UPDATE condicional,
+     * por lo que dos préstamos concurrentes nunca dejan el stock por debajo de cero.
+     *
+     * Quien la llama debe invalidar el libro en la caché ({@link #invalidate(int)}) después del commit.
+     *
+     * @param conn     La conexión (y transacción) a utilizar.
+     * @param libro_id El ID del libro.
+     * @return true si se descontó la unidad, false si el libro no existe o no tiene stock.
+     */
+    public boolean decrementStock(Connection conn, int libro_id) throws SQLException {
+        try (PreparedStatement ps = StatementCache.prepare(conn, "UPDATE libros SET unidades_disponibles = unidades_disponibles - 1 WHERE id = ? AND unidades_disponibles > 0")) {
+            ps.setInt(1, libro_id);
+            return ps.executeUpdate() == 1;
+        }
+    }
+
+    /**
+     * Devuelve una unidad al stock de un libro.
+     * Quien la llama debe invalidar el libro en la caché ({@link #invalidate(int)}) después del commit.
+     *
+     * @param conn     La conexión (y transacción) a utilizar.
+     * @param libro_id El ID del libro.
+     */
+    public void incrementStock(Connection conn, int libro_id) throws SQLException {
+        try (PreparedStatement ps = StatementCache.prepare(conn, "UPDATE libros SET unidades_disponibles = unidades_disponibles + 1 WHERE id = ?")) {
+            ps.setInt(1, libro_id);
+            ps.executeUpdate();
+        }
+    }
+
+    /**
+     * Suma {@code delta} (positivo o negativo) a las unidades disponibles de un libro, sin bajar de cero.
+     * Quien la llama debe invalidar el libro en la caché ({@link #invalidate(int)}) después del commit.
+     *
+     * @param conn     La conexión (y transacción) a utilizar.
+     * @param libro_id El ID del libro.
+     * @param delta    Las unidades a sumar o restar.
+     */
+    public void ajustarStock(Connection conn, int libro_id, int delta) throws SQLException {
+        try (PreparedStatement ps = StatementCache.prepare(conn, "UPDATE libros SET unidades_disponibles = MAX(COALESCE(unidades_disponibles, 0) + ?, 0) WHERE id = ?")) {
+            ps.setInt(1, delta);
+            ps.setInt(2, libro_id);
+            ps.executeUpdate();
+        }
     }
 
+    /**
+     * Recorre las unidades disponibles de todos los libros, sin crear una entidad por libro.
+     *
+     * @param action Recibe cada id de libro y sus unidades disponibles (0 si no tiene).
+     */
+    public void forEachUnidades(PrestamoRepository.CantidadPorId action) throws SQLException {
+        try (Connection conn = DatabaseConnection.getReadConnection();
+             PreparedStatement ps = StatementCache.prepare(conn, "SELECT id, COALESCE(unidades_disponibles, 0) FROM libros");
+             ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                action.accept(rs.getInt(1), rs.getInt(2));
+            }
+        }
+    }
+
+    /**
+     * Busca por id pasando primero por la caché del repositorio.
+     */
     @Override
     public Optional<LibroEntity> findById(int id) throws SQLException {
-        try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement ps = conn.prepareStatement("SELECT * FROM libros WHERE ID = ?")) {
+        return cache.get(id, this::findByIdEnBase);
+    }
+
+    private Optional<LibroEntity> findByIdEnBase(int id) throws SQLException {
+        try (Connection conn = DatabaseConnection.getReadConnection();
+             PreparedStatement ps = StatementCache.prepare(conn, "SELECT " + COLUMNAS + " FROM libros WHERE ID = ?")) {
 
             ps.setInt(1, id);
 
             try (ResultSet rs = ps.executeQuery()) {
                 if (rs.next()) {
-                    return Optional.of(LibroEntity.builder()
-                            .id(rs.getInt("id"))
-                            .titulo(rs.getString("titulo"))
-                            .autor(rs.getString("autor"))
-                            .anio_publicacion(rs.getInt("anio_publicacion"))
-                            .unidades_disponibles(rs.getInt("unidades_disponibles"))
-                            .build());
+                    return Optional.of(map(rs));
                 }
                 return Optional.empty();
             }
@@ -60,41 +138,145 @@ public class LibroRepository implements IRepository<LibroEntity> {
     public List<LibroEntity> findAll() throws SQLException {
         List<LibroEntity> libros = new ArrayList<>();
 
-        try(Connection conn = DatabaseConnection.getConnection();
-        PreparedStatement ps = conn.prepareStatement("SELECT * FROM libros");
+        try(Connection conn = DatabaseConnection.getReadConnection();
+        PreparedStatement ps = StatementCache.prepare(conn, "SELECT " + COLUMNAS + " FROM libros");
         ResultSet rs = ps.executeQuery()) {
 
             while (rs.next()) {
-                libros.add(LibroEntity.builder()
-                        .id(rs.getInt("id"))
-                        .titulo(rs.getString("titulo"))
-                        .autor(rs.getString("autor"))
-                        .anio_publicacion(rs.getInt("anio_publicacion"))
-                        .unidades_disponibles(rs.getInt("unidades_disponibles"))
-                        .build());
+                libros.add(map(rs));
             }
         }
         return libros;
     }
 
     @Override
-    public void save(LibroEntity libroEntity) throws SQLException {
+    public Stream<LibroEntity> streamAll() throws SQLException {
+        return ResultSetStream.of("SELECT " + COLUMNAS + " FROM libros", LibroRepository::map);
+    }
+
+    @Override
+    public List<LibroEntity> findPage(int afterId, int limite) throws SQLException {
+        return ResultSetStream.list("SELECT " + COLUMNAS + " FROM libros WHERE id > ? ORDER BY id LIMIT ?", LibroRepository::map, afterId, limite);
+    }
+
+    /**
+     * Variante de {@link #findPage(int, int)} que solo incluye libros con unidades disponibles.
+     */
+    public List<LibroEntity> findPageDisponibles(int afterId, int limite) throws SQLException {
+        return ResultSetStream.list("SELECT " + COLUMNAS + " FROM libros WHERE id > ? AND unidades_disponibles > 0 ORDER BY id LIMIT ?", LibroRepository::map, afterId, limite);
+    }
+
+    /**
+     * Busca libros por título y autor con el índice FTS5 {@code libros_fts}.
+     * Los resultados se ordenan por relevancia (bm25, con más peso en el título) y luego por id.
+     * La paginación es por offset: el orden por relevancia no permite paginar por id, y en ambos
+     * casos SQLite debe rankear todas las coincidencias antes de devolver una página.
+     *
+     * @param busqueda El texto y los filtros de la búsqueda.
+     * @return Una página de resultados, vacía si el texto no tiene ninguna palabra.
+     */
+    public List<LibroEntity> search(BusquedaLibros busqueda) throws SQLException {
+        String consulta = consultaFts(busqueda.getTexto());
+        if (consulta.isEmpty()) return List.of();
+
+        return ResultSetStream.list("""
+                SELECT l.id, l.titulo, l.autor, l.anio_publicacion, l.unidades_disponibles
+                FROM libros_fts
+                JOIN libros l ON l.id = libros_fts.rowid
+                WHERE libros_fts MATCH ?
+                  AND (? IS NULL OR l.anio_publicacion >= ?)
+                  AND (? IS NULL OR l.anio_publicacion <= ?)
+                  AND (? = 0 OR l.unidades_disponibles > 0)
+                ORDER BY bm25(libros_fts, 2.0, 1.0), l.id
+                LIMIT ? OFFSET ?""",
+                LibroRepository::map,
+                consulta,
+                busqueda.getAnioDesde(), busqueda.getAnioDesde(),
+                busqueda.getAnioHasta(), busqueda.getAnioHasta(),
+                busqueda.isSoloDisponibles() ? 1 : 0,
+                busqueda.getLimite(), busqueda.getOffset());
+    }
+
+    /**
+     * Convierte el texto ingresado en una consulta FTS5: cada palabra entre comillas (así ningún
+     * carácter se interpreta como operador) y con {@code *} para buscarla también como prefijo.
+     */
+    private static String consultaFts(String texto) {
+        if (texto == null) return "";
+        StringBuilder consulta = new StringBuilder();
+        for (String palabra : texto.split("[^\\p{L}\\p{N}]+")) {
+            if (palabra.isEmpty()) continue;
+            if (!consulta.isEmpty()) consulta.append(' ');
+            consulta.append('"').append(palabra).append("\"*");
+        }
+        return consulta.toString();
+    }
+
+    static LibroEntity map(ResultSet rs) throws SQLException {
+        return new LibroEntity(rs.getInt(1),
+                rs.getString(2),
+                rs.getString(3),
+                rs.getInt(4),
+                rs.getInt(5));
+    }
+
+    @Override
+    public LibroEntity save(LibroEntity libroEntity) throws SQLException {
         try(Connection conn = DatabaseConnection.getConnection();
-        PreparedStatement ps = conn.prepareStatement("INSERT INTO libros (titulo, autor, anio_publicacion, unidades_disponibles) VALUES (?, ?, ?, ?)")) {
+        PreparedStatement ps = StatementCache.prepare(conn, "INSERT INTO libros (titulo, autor, anio_publicacion, unidades_disponibles) VALUES (?, ?, ?, ?) RETURNING id")) {
             ps.setString(1, libroEntity.getTitulo());
             ps.setString(2, libroEntity.getAutor());
-            ps.setInt(3, libroEntity.getAnio_publicacion());
-            ps.setInt(4, libroEntity.getUnidades_disponibles());
-            ps.executeUpdate();
+            ps.setObject(3, libroEntity.getAnio_publicacion());
+            ps.setObject(4, libroEntity.getUnidades_disponibles());
+
+            try (ResultSet rs = ps.executeQuery()) {
+                rs.next();
+                libroEntity.setId(rs.getInt(1));
+            }
         }
+        return libroEntity;
     }
 
     @Override
-    public void delete(int id) throws SQLException  {
-        try(Connection conn = DatabaseConnection.getConnection();
-        PreparedStatement ps = conn.prepareStatement("DELETE FROM libros WHERE id = ?")) {
+    public List<Integer> saveAll(Collection<LibroEntity> libros) throws SQLException {
+        return BatchInsert.saveAll("INSERT INTO libros (titulo, autor, anio_publicacion, unidades_disponibles) VALUES (?, ?, ?, ?)",
+                libros,
+                (ps, libro) -> {
+                    ps.setString(1, libro.getTitulo());
+                    ps.setString(2, libro.getAutor());
+                    ps.setObject(3, libro.getAnio_publicacion());
+                    ps.setObject(4, libro.getUnidades_disponibles());
+                },
+                LibroEntity::setId);
+    }
+
+    /**
+     * Descarta de la caché la entidad con ese id. Lo usan quienes la modifican dentro de
+     * una transacción propia, después del commit.
+     */
+    public void invalidate(int id) {
+        cache.invalidate(id);
+    }
+
+    public CacheStats getCacheStats() {
+        return cache.getStats();
+    }
+
+    /**
+     * Borra el libro usando la conexión (y transacción) dada.
+     */
+    public void delete(Connection conn, int id) throws SQLException {
+        try (PreparedStatement ps = StatementCache.prepare(conn, "DELETE FROM libros WHERE id = ?")) {
             ps.setInt(1, id);
             ps.executeUpdate();
         }
+        cache.invalidate(id);
+    }
+
+    @Override
+    public void delete(int id) throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            delete(conn, id);
+        }
     }
 }
@@ -0,0 +1,104 @@
+package org.EduardoMango.repositories;
+
+import org.EduardoMango.entities.BusquedaLibros;
+import org.EduardoMango.entities.LibroEntity;
+import org.EduardoMango.metrics.Metrics;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+/**
+ * {@link LibroRepository} con métricas: cada método público se mide con una {@link Metrics.Operacion}
+ * registrada una sola vez y delega en la implementación. Es la instancia que devuelve {@link LibroRepository#getInstance()}.
+ */
+class LibroRepositoryConMetricas extends LibroRepository {
+
+    private static final Metrics.Operacion UPDATE_STOCK = Metrics.repositorio("LibroRepository", "updateStock");
+    private static final Metrics.Operacion DECREMENT_STOCK = Metrics.repositorio("LibroRepository", "decrementStock");
+    private static final Metrics.Operacion INCREMENT_STOCK = Metrics.repositorio("LibroRepository", "incrementStock");
+    private static final Metrics.Operacion AJUSTAR_STOCK = Metrics.repositorio("LibroRepository", "ajustarStock");
+    private static final Metrics.Operacion FOR_EACH_UNIDADES = Metrics.repositorio("LibroRepository", "forEachUnidades");
+    private static final Metrics.Operacion FIND_BY_ID = Metrics.repositorio("LibroRepository", "findById");
+    private static final Metrics.Operacion FIND_ALL = Metrics.repositorio("LibroRepository", "findAll");
+    private static final Metrics.Operacion FIND_PAGE = Metrics.repositorio("LibroRepository", "findPage");
+    private static final Metrics.Operacion FIND_PAGE_DISPONIBLES = Metrics.repositorio("LibroRepository", "findPageDisponibles");
+    private static final Metrics.Operacion SEARCH = Metrics.repositorio("LibroRepository", "search");
+    private static final Metrics.Operacion SAVE = Metrics.repositorio("LibroRepository", "save");
+    private static final Metrics.Operacion SAVE_ALL = Metrics.repositorio("LibroRepository", "saveAll");
+    private static final Metrics.Operacion DELETE = Metrics.repositorio("LibroRepository", "delete");
+    private static final Metrics.Operacion STREAM_ALL = Metrics.repositorio("LibroRepository", "streamAll");
+
+    @Override
+    public void updateStock(LibroEntity libroEntity) throws SQLException {
+        UPDATE_STOCK.runSql(() -> super.updateStock(libroEntity));
+    }
+
+    @Override
+    public boolean decrementStock(Connection conn, int libro_id) throws SQLException {
+        return DECREMENT_STOCK.timeSql(() -> super.decrementStock(conn, libro_id));
+    }
+
+    @Override
+    public void incrementStock(Connection conn, int libro_id) throws SQLException {
+        INCREMENT_STOCK.runSql(() -> super.incrementStock(conn, libro_id));
+    }
+
+    @Override
+    public void ajustarStock(Connection conn, int libro_id, int delta) throws SQLException {
+        AJUSTAR_STOCK.runSql(() -> super.ajustarStock(conn, libro_id, delta));
+    }
+
+    @Override
+    public void forEachUnidades(PrestamoRepository.CantidadPorId action) throws SQLException {
+        FOR_EACH_UNIDADES.runSql(() -> super.forEachUnidades(action));
+    }
+
+    @Override
+    public Optional<LibroEntity> findById(int id) throws SQLException {
+        return FIND_BY_ID.timeSql(() -> super.findById(id));
+    }
+
+    @Override
+    public List<LibroEntity> findAll() throws SQLException {
+        return FIND_ALL.timeSql(() -> super.findAll());
+    }
+
+    @Override
+    public List<LibroEntity> findPage(int afterId, int limite) throws SQLException {
+        return FIND_PAGE.timeSql(() -> super.findPage(afterId, limite));
+    }
+
+    @Override
+    public List<LibroEntity> findPageDisponibles(int afterId, int limite) throws SQLException {
+        return FIND_PAGE_DISPONIBLES.timeSql(() -> super.findPageDisponibles(afterId, limite));
+    }
+
+    @Override
+    public List<LibroEntity> search(BusquedaLibros busqueda) throws SQLException {
+        return SEARCH.timeSql(() -> super.search(busqueda));
+    }
+
+    @Override
+    public LibroEntity save(LibroEntity libroEntity) throws SQLException {
+        return SAVE.timeSql(() -> super.save(libroEntity));
+    }
+
+    @Override
+    public List<Integer> saveAll(Collection<LibroEntity> libros) throws SQLException {
+        return SAVE_ALL.timeSql(() -> super.saveAll(libros));
+    }
+
+    @Override
+    public void delete(Connection conn, int id) throws SQLException {
+        DELETE.runSql(() -> super.delete(conn, id));
+    }
+
+    @Override
+    public Stream<LibroEntity> streamAll() throws SQLException {
+        return STREAM_ALL.timeStream(() -> super.streamAll());
+    }
+}
@@ -0,0 +1,106 @@
+package org.EduardoMango.repositories;
+
+import org.EduardoMango.database.DatabaseConnection;
+import org.EduardoMango.database.StatementCache;
+import org.EduardoMango.entities.NotificacionEntity;
+import org.EduardoMango.entities.PrestamoEntity;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Acceso a la tabla de notificaciones (outbox). Cada préstamo tiene a lo sumo una notificación
+ * de cada tipo, por lo que registrar dos veces la misma no tiene efecto.
+ */
+public class NotificacionRepository {
+
+    /**
+     * Columnas que lee {@link #map(ResultSet)}, en el orden de sus índices.
+     */
+    static final String COLUMNAS = "id, tipo, prestamo_id, usuario_id, libro_id, fecha_vencimiento, creada, enviada";
+
+    private static final NotificacionRepository instance = new NotificacionRepositoryConMetricas();
+
+    NotificacionRepository() {}
+
+    public static NotificacionRepository getInstance() {
+        return instance;
+    }
+
+    /**
+     * Registra una notificación {@link NotificacionEntity#PRESTAMO_VENCIDO} por cada préstamo que no la tenga.
+     *
+     * @param conn      La conexión (y transacción) a utilizar.
+     * @param vencidos  Los préstamos vencidos.
+     * @return La cantidad de notificaciones nuevas.
+     */
+    public int saveVencidos(Connection conn, Collection<PrestamoEntity> vencidos) throws SQLException {
+        int nuevas = 0;
+        try (PreparedStatement ps = StatementCache.prepare(conn, """
+                INSERT INTO notificaciones (tipo, prestamo_id, usuario_id, libro_id, fecha_vencimiento)
+                VALUES (?, ?, ?, ?, ?)
+                ON CONFLICT (tipo, prestamo_id) DO NOTHING""")) {
+            for (PrestamoEntity prestamo : vencidos) {
+                ps.setString(1, NotificacionEntity.PRESTAMO_VENCIDO);
+                ps.setInt(2, prestamo.getId());
+                ps.setInt(3, prestamo.getUsuario_id());
+                ps.setInt(4, prestamo.getLibro_id());
+                ps.setLong(5, prestamo.getFecha_vencimiento().toEpochDay());
+                ps.addBatch();
+            }
+            for (int filas : ps.executeBatch()) {
+                nuevas += filas;
+            }
+        }
+        return nuevas;
+    }
+
+    /**
+     * Obtiene una página de notificaciones sin enviar, ordenadas por id, a partir de {@code afterId} (exclusivo).
+     */
+    public List<NotificacionEntity> findPagePendientes(int afterId, int limite) throws SQLException {
+        return ResultSetStream.list(
+                "SELECT " + COLUMNAS + " FROM notificaciones WHERE enviada IS NULL AND id > ? ORDER BY id LIMIT ?",
+                NotificacionRepository::map, afterId, limite);
+    }
+
+    /**
+     * Marca una notificación como enviada.
+     *
+     * @return true si la notificación existía y no estaba enviada.
+     */
+    public boolean marcarEnviada(int id) throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement ps = StatementCache.prepare(conn, "UPDATE notificaciones SET enviada = unixepoch() WHERE id = ? AND enviada IS NULL")) {
+            ps.setInt(1, id);
+            return ps.executeUpdate() == 1;
+        }
+    }
+
+    static NotificacionEntity map(ResultSet rs) throws SQLException {
+        return new NotificacionEntity(rs.getInt(1),
+                rs.getString(2),
+                rs.getInt(3),
+                rs.getInt(4),
+                rs.getInt(5),
+                LocalDate.ofEpochDay(rs.getLong(6)),
+                instante(rs, 7),
+                instante(rs, 8));
+    }
+
+    /**
+     * Lee una fecha y hora guardada como segundos desde 1970-01-01 UTC, o null si la columna es NULL.
+     */
+    private static LocalDateTime instante(ResultSet rs, int columna) throws SQLException {
+        long segundos = rs.getLong(columna);
+        return rs.wasNull() ? null : LocalDateTime.ofInstant(Instant.ofEpochSecond(segundos), ZoneId.systemDefault());
+    }
+}
@@ -0,0 +1,36 @@
+package org.EduardoMango.repositories;
+
+import org.EduardoMango.entities.NotificacionEntity;
+import org.EduardoMango.entities.PrestamoEntity;
+import org.EduardoMango.metrics.Metrics;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * {@link NotificacionRepository} con métricas: cada método público se mide con una {@link Metrics.Operacion}
+ * registrada una sola vez y delega en la implementación. Es la instancia que devuelve {@link NotificacionRepository#getInstance()}.
+ */
+class NotificacionRepositoryConMetricas extends NotificacionRepository {
+
+    private static final Metrics.Operacion SAVE_VENCIDOS = Metrics.repositorio("NotificacionRepository", "saveVencidos");
+    private static final Metrics.Operacion FIND_PAGE_PENDIENTES = Metrics.repositorio("NotificacionRepository", "findPagePendientes");
+    private static final Metrics.Operacion MARCAR_ENVIADA = Metrics.repositorio("NotificacionRepository", "marcarEnviada");
+
+    @Override
+    public int saveVencidos(Connection conn, Collection<PrestamoEntity> vencidos) throws SQLException {
+        return SAVE_VENCIDOS.timeSql(() -> super.saveVencidos(conn, vencidos));
+    }
+
+    @Override
+    public List<NotificacionEntity> findPagePendientes(int afterId, int limite) throws SQLException {
+        return FIND_PAGE_PENDIENTES.timeSql(() -> super.findPagePendientes(afterId, limite));
+    }
+
+    @Override
+    public boolean marcarEnviada(int id) throws SQLException {
+        return MARCAR_ENVIADA.timeSql(() -> super.marcarEnviada(id));
+    }
+}
@@ -1,143 +1,544 @@
 package org.EduardoMango.repositories;
 
 import org.EduardoMango.database.DatabaseConnection;
+import org.EduardoMango.database.StatementCache;
+import org.EduardoMango.entities.LibroEntity;
 import org.EduardoMango.entities.PrestamoEntity;
+import org.EduardoMango.entities.RankingEntity;
+import org.EduardoMango.entities.UsuarioEntity;
 
 import java.sql.*;
 import java.time.LocalDate;
-import java.time.format.DateTimeFormatter;
+import java.time.YearMonth;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.stream.Stream;
 
 public class PrestamoRepository implements IRepository<PrestamoEntity> {
 
-    private static PrestamoRepository instance;
+    /**
+     * Columnas que lee {@link #map(ResultSet)}, en el orden de sus índices.
+     * Toda consulta mapeada con {@code map} debe devolverlas primero y en este orden.
+     */
+    static final String COLUMNAS = "id, usuario_id, libro_id, fecha_prestamo, fecha_devolucion";
 
-    private PrestamoRepository() {}
+    @FunctionalInterface
+    public interface CantidadPorId {
+        void accept(int id, int cantidad);
+    }
+
+    /*
+     * Rankings por cantidad de préstamos: la agregación se resuelve con un GROUP BY sobre prestamos
+     * y solo las filas del ranking se cruzan con la tabla de la entidad. Sin rango de fechas el conteo
+     * se hace solo sobre el índice por libro o por usuario; con rango, sobre el índice por fecha.
+     * Las variantes sin rango no usan ?1 ni ?2.
+     */
+    private static final String TOP_LIBROS = """
+            SELECT l.id, l.titulo, l.autor, l.anio_publicacion, l.unidades_disponibles, t.cantidad
+            FROM (SELECT libro_id, COUNT(*) AS cantidad
+                  FROM prestamos
+                  GROUP BY libro_id
+                  ORDER BY cantidad DESC, libro_id
+                  LIMIT ?3) t
+            JOIN libros l ON l.id = t.libro_id
+            ORDER BY t.cantidad DESC, t.libro_id""";
+    private static final String TOP_LIBROS_RANGO = """
+            SELECT l.id, l.titulo, l.autor, l.anio_publicacion, l.unidades_disponibles, t.cantidad
+            FROM (SELECT libro_id, COUNT(*) AS cantidad
+                  FROM prestamos
+                  WHERE fecha_prestamo BETWEEN ?1 AND ?2
+                  GROUP BY libro_id
+                  ORDER BY cantidad DESC, libro_id
+                  LIMIT ?3) t
+            JOIN libros l ON l.id = t.libro_id
+            ORDER BY t.cantidad DESC, t.libro_id""";
+    private static final String TOP_USUARIOS = """
+            SELECT u.id, u.nombre, u.email, t.cantidad
+            FROM (SELECT usuario_id, COUNT(*) AS cantidad
+                  FROM prestamos
+                  GROUP BY usuario_id
+                  ORDER BY cantidad DESC, usuario_id
+                  LIMIT ?3) t
+            JOIN usuarios u ON u.id = t.usuario_id
+            ORDER BY t.cantidad DESC, t.usuario_id""";
+    private static final String TOP_USUARIOS_RANGO = """
+            SELECT u.id, u.nombre, u.email, t.cantidad
+            FROM (SELECT usuario_id, COUNT(*) AS cantidad
+                  FROM prestamos
+                  WHERE fecha_prestamo BETWEEN ?1 AND ?2
+                  GROUP BY usuario_id
+                  ORDER BY cantidad DESC, usuario_id
+                  LIMIT ?3) t
+            JOIN usuarios u ON u.id = t.usuario_id
+            ORDER BY t.cantidad DESC, t.usuario_id""";
+
+    /** Página de préstamos activos prestados antes de ?1, a partir de la clave (?2, ?3) exclusiva. */
+    private static final String PAGINA_ACTIVOS_PRESTADOS_ANTES_DE = """
+            SELECT %s
+            FROM prestamos
+            WHERE fecha_devolucion IS NULL AND fecha_prestamo < ? AND (fecha_prestamo, id) > (?, ?)
+            ORDER BY fecha_prestamo, id
+            LIMIT ?""".formatted(COLUMNAS);
+
+    private static final PrestamoRepository instance = new PrestamoRepositoryConMetricas();
+
+    PrestamoRepository() {}
 
     public static PrestamoRepository getInstance() {
-        if (instance == null) {
-            instance = new PrestamoRepository();
-        }
         return instance;
     }
 
     @Override
     public Optional<PrestamoEntity> findById(int id) throws SQLException {
-        try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement ps = conn.prepareStatement("SELECT * FROM prestamos WHERE ID = ?")) {
+        try (Connection conn = DatabaseConnection.getReadConnection();
+             PreparedStatement ps = StatementCache.prepare(conn, "SELECT " + COLUMNAS + " FROM prestamos WHERE ID = ?")) {
 
             ps.setInt(1, id);
 
             try (ResultSet rs = ps.executeQuery()) {
                 if (rs.next()) {
-                    PrestamoEntity p = PrestamoEntity.builder()
-                            .id(rs.getInt("id"))
-                            .usuario_id(rs.getInt("usuario_id"))
-                            .libro_id(rs.getInt("libro_id"))
-                            .fecha_prestamo(LocalDate.parse(rs.getString("fecha_prestamo")))
-                            .build();
-                    String fechaDevolucion = rs.getString("fecha_devolucion");
-                    if (fechaDevolucion != null) p.setFecha_devolucion(LocalDate.parse(fechaDevolucion));
-
-                    return Optional.of(p);
+                    return Optional.of(map(rs));
                 }
                 return Optional.empty();
             }
         }
     }
 
-    public void returnPrestamo(int id) throws SQLException {
+    public OptionalInt returnPrestamo(int id) throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            return returnPrestamo(conn, id);
+        }
+    }
 
-        try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement ps = conn.prepareStatement("UPDATE prestamos SET fecha_devolucion = ? WHERE ID = ?")) {
+    /**
+     * Marca un préstamo activo como devuelto en la fecha actual, usando la conexión dada.
+     * Un préstamo que ya fue devuelto no se modifica.
+     *
+     * @param conn La conexión (y transacción) a utilizar.
+     * @param id   El ID del préstamo.
+     * @return El ID del libro prestado, o vacío si el préstamo no existe o ya fue devuelto.
+     */
+    public OptionalInt returnPrestamo(Connection conn, int id) throws SQLException {
+        return returnPrestamo(conn, id, LocalDate.now());
+    }
 
-            LocalDate currentDate = LocalDate.now();
-            DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd");
-            String formattedDate = currentDate.format(formatter);
+    /**
+     * Marca un préstamo activo como devuelto en la fecha indicada, usando la conexión dada.
+     * Un préstamo que ya fue devuelto no se modifica.
+     *
+     * @param conn  La conexión (y transacción) a utilizar.
+     * @param id    El ID del préstamo.
+     * @param fecha La fecha de devolución.
+     * @return El ID del libro prestado, o vacío si el préstamo no existe o ya fue devuelto.
+     */
+    public OptionalInt returnPrestamo(Connection conn, int id, LocalDate fecha) throws SQLException {
+        try (PreparedStatement ps = StatementCache.prepare(conn, "UPDATE prestamos SET fecha_devolucion = ? WHERE id = ? AND fecha_devolucion IS NULL RETURNING libro_id")) {
+            ps.setLong(1, fecha.toEpochDay());
+            ps.setInt(2, id);
 
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? OptionalInt.of(rs.getInt(1)) : OptionalInt.empty();
+            }
+        }
+    }
 
-            ps.setString(1, formattedDate);
-            ps.setInt(2, id);
+    /**
+     * Obtiene los préstamos activos (sin fecha de devolución) de un usuario.
+     * El filtro se resuelve en SQLite sobre el índice parcial de préstamos activos por usuario.
+     *
+     * @param usuario_id El ID del usuario.
+     * @return Los préstamos activos del usuario.
+     */
+    public List<PrestamoEntity> findAllActiveByUsuario(int usuario_id)throws SQLException{
+        List<PrestamoEntity> prestamos = new ArrayList<>();
 
-            ps.executeUpdate();
+        try(Connection conn = DatabaseConnection.getReadConnection();
+        PreparedStatement ps = StatementCache.prepare(conn, "SELECT " + COLUMNAS + " FROM prestamos WHERE usuario_id = ? AND fecha_devolucion IS NULL")){
+            ps.setInt(1, usuario_id);
 
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    prestamos.add(map(rs));
+                }
+            }
         }
+        return prestamos;
     }
 
+    /**
+     * Cuenta los préstamos activos (sin fecha de devolución) de un usuario
+     * sin materializarlos, usando el índice parcial de préstamos activos por usuario.
+     *
+     * @param usuario_id El ID del usuario.
+     * @return La cantidad de préstamos activos del usuario.
+     */
+    public int countActiveByUsuario(int usuario_id) throws SQLException {
+        try (Connection conn = DatabaseConnection.getReadConnection()) {
+            return countActiveByUsuario(conn, usuario_id);
+        }
+    }
 
+    /**
+     * Variante de {@link #countActiveByUsuario(int)} que usa la conexión (y transacción) dada.
+     */
+    public int countActiveByUsuario(Connection conn, int usuario_id) throws SQLException {
+        try (PreparedStatement ps = StatementCache.prepare(conn, "SELECT COUNT(*) FROM prestamos WHERE usuario_id = ? AND fecha_devolucion IS NULL")) {
+            ps.setInt(1, usuario_id);
 
-    public List<PrestamoEntity> findAllActiveByUsuario(int usuario_id)throws SQLException{
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? rs.getInt(1) : 0;
+            }
+        }
+    }
+
+    /**
+     * Obtiene todos los préstamos activos (sin fecha de devolución),
+     * filtrando en la base de datos en lugar de recorrer la tabla completa en Java.
+     *
+     * @return Los préstamos activos.
+     */
+    public List<PrestamoEntity> findAllActivos() throws SQLException {
         List<PrestamoEntity> prestamos = new ArrayList<>();
 
-        try(Connection conn = DatabaseConnection.getConnection();
-        PreparedStatement ps = conn.prepareStatement("SELECT * FROM prestamos WHERE usuario_id = ?")){
-            ps.setInt(1, usuario_id);
+        try (Connection conn = DatabaseConnection.getReadConnection();
+             PreparedStatement ps = StatementCache.prepare(conn, "SELECT " + COLUMNAS + " FROM prestamos WHERE fecha_devolucion IS NULL");
+             ResultSet rs = ps.executeQuery()) {
+
+            while (rs.next()) {
+                prestamos.add(map(rs));
+            }
+        }
+        return prestamos;
+    }
+
+    /**
+     * Obtiene los libros más prestados, ordenados de mayor a menor cantidad de préstamos.
+     * La agregación se resuelve en SQLite con un único GROUP BY sobre prestamos.libro_id;
+     * solo las filas del ranking se cruzan con la tabla libros.
+     *
+     * @param limite Cantidad máxima de posiciones a devolver.
+     * @param desde  Fecha mínima de préstamo (inclusive), o null para no acotar.
+     * @param hasta  Fecha máxima de préstamo (inclusive), o null para no acotar.
+     * @return El ranking de libros con su cantidad de préstamos.
+     */
+    public List<RankingEntity<LibroEntity>> findTopLibros(int limite, LocalDate desde, LocalDate hasta) throws SQLException {
+        List<RankingEntity<LibroEntity>> ranking = new ArrayList<>();
+
+        try (Connection conn = DatabaseConnection.getReadConnection();
+             PreparedStatement ps = StatementCache.prepare(conn, desde == null && hasta == null ? TOP_LIBROS : TOP_LIBROS_RANGO)) {
+
+            setRangoFechas(ps, desde, hasta);
+            ps.setInt(3, limite);
 
             try (ResultSet rs = ps.executeQuery()) {
                 while (rs.next()) {
+                    ranking.add(new RankingEntity<>(LibroRepository.map(rs),
+                            rs.getLong(6)));
+                }
+            }
+        }
+        return ranking;
+    }
+
+    /**
+     * Obtiene los usuarios con más préstamos, ordenados de mayor a menor cantidad de préstamos.
+     * La agregación se resuelve en SQLite con un único GROUP BY sobre prestamos.usuario_id;
+     * solo las filas del ranking se cruzan con la tabla usuarios.
+     *
+     * @param limite Cantidad máxima de posiciones a devolver.
+     * @param desde  Fecha mínima de préstamo (inclusive), o null para no acotar.
+     * @param hasta  Fecha máxima de préstamo (inclusive), o null para no acotar.
+     * @return El ranking de usuarios con su cantidad de préstamos.
+     */
+    public List<RankingEntity<UsuarioEntity>> findTopUsuarios(int limite, LocalDate desde, LocalDate hasta) throws SQLException {
+        List<RankingEntity<UsuarioEntity>> ranking = new ArrayList<>();
+
+        try (Connection conn = DatabaseConnection.getReadConnection();
+             PreparedStatement ps = StatementCache.prepare(conn, desde == null && hasta == null ? TOP_USUARIOS : TOP_USUARIOS_RANGO)) {
+
+            setRangoFechas(ps, desde, hasta);
+            ps.setInt(3, limite);
 
-                    if(rs.getString("fecha_devolucion") == null){
-                        prestamos.add(PrestamoEntity.builder()
-                                .id(rs.getInt("id"))
-                                .usuario_id(rs.getInt("usuario_id"))
-                                .libro_id(rs.getInt("libro_id"))
-                                .fecha_prestamo(LocalDate.parse(rs.getString("fecha_prestamo")))
-                                .build());
-                    }
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    ranking.add(new RankingEntity<>(UsuarioRepository.map(rs),
+                            rs.getLong(4)));
                 }
             }
         }
-        return prestamos;
+        return ranking;
+    }
+
+    /**
+     * Carga el rango de fechas en los parámetros 1 y 2 como días desde 1970-01-01.
+     * Un extremo null se reemplaza por el mínimo o máximo posible, así la condición
+     * {@code fecha_prestamo BETWEEN ?1 AND ?2} siempre puede usar el índice por fecha.
+     */
+    private static void setRangoFechas(PreparedStatement ps, LocalDate desde, LocalDate hasta) throws SQLException {
+        ps.setLong(1, desde == null ? Long.MIN_VALUE : desde.toEpochDay());
+        ps.setLong(2, hasta == null ? Long.MAX_VALUE : hasta.toEpochDay());
     }
 
     @Override
     public List<PrestamoEntity> findAll() throws SQLException {
         List<PrestamoEntity> prestamos = new ArrayList<>();
 
-        try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement ps = conn.prepareStatement("SELECT * FROM prestamos")) {
+        try (Connection conn = DatabaseConnection.getReadConnection();
+             PreparedStatement ps = StatementCache.prepare(conn, "SELECT " + COLUMNAS + " FROM prestamos")) {
 
 
             try (ResultSet rs = ps.executeQuery()) {
                 while (rs.next()) {
+                    prestamos.add(map(rs));
+                }
+            }
+        }
 
-                    PrestamoEntity p = PrestamoEntity.builder()
-                            .id(rs.getInt("id"))
-                            .usuario_id(rs.getInt("usuario_id"))
-                            .libro_id(rs.getInt("libro_id"))
-                            .fecha_prestamo(LocalDate.parse(rs.getString("fecha_prestamo")))
-                            .build();
+        return prestamos;
+    }
 
-                    String fechaDevolucion = rs.getString("fecha_devolucion");
-                    if (fechaDevolucion != null) p.setFecha_devolucion(LocalDate.parse(fechaDevolucion));
-                    prestamos.add(p);
+    @Override
+    public Stream<PrestamoEntity> streamAll() throws SQLException {
+        return ResultSetStream.of("SELECT " + COLUMNAS + " FROM prestamos", PrestamoRepository::map);
+    }
+
+    /**
+     * Recorre los préstamos activos (sin fecha de devolución) como un stream,
+     * sin cargarlos en memoria. El stream debe cerrarse para liberar la conexión.
+     */
+    public Stream<PrestamoEntity> streamActivos() throws SQLException {
+        return ResultSetStream.of("SELECT " + COLUMNAS + " FROM prestamos WHERE fecha_devolucion IS NULL", PrestamoRepository::map);
+    }
+
+    /**
+     * Recorre como un stream, sin cargarlos en memoria, los préstamos activos realizados antes de
+     * {@code prestadosAntesDe}, del más antiguo al más reciente. Usa el índice parcial de préstamos activos por fecha.
+     * El stream debe cerrarse para liberar la conexión.
+     */
+    public Stream<PrestamoEntity> streamActivosPrestadosAntesDe(LocalDate prestadosAntesDe) throws SQLException {
+        return ResultSetStream.of("SELECT " + COLUMNAS + " FROM prestamos WHERE fecha_devolucion IS NULL AND fecha_prestamo < ? ORDER BY fecha_prestamo, id",
+                PrestamoRepository::map, prestadosAntesDe.toEpochDay());
+    }
+
+    /**
+     * Obtiene una página de préstamos activos realizados antes de {@code prestadosAntesDe}, ordenados por
+     * (fecha de préstamo, id) y a partir de la clave ({@code despuesDeFecha}, {@code despuesDeId}) exclusiva.
+     * La página siguiente se pide con la clave del último préstamo recibido. Cada página recorre solo su tramo
+     * del índice parcial de préstamos activos por fecha, sin ordenar.
+     *
+     * @param conn La conexión (y transacción) a utilizar.
+     */
+    public List<PrestamoEntity> findPageActivosPrestadosAntesDe(Connection conn, LocalDate prestadosAntesDe,
+                                                                 LocalDate despuesDeFecha, int despuesDeId, int limite) throws SQLException {
+        List<PrestamoEntity> prestamos = new ArrayList<>(limite);
+        try (PreparedStatement ps = StatementCache.prepare(conn, PAGINA_ACTIVOS_PRESTADOS_ANTES_DE)) {
+            ps.setLong(1, prestadosAntesDe.toEpochDay());
+            ps.setLong(2, despuesDeFecha.toEpochDay());
+            ps.setInt(3, despuesDeId);
+            ps.setInt(4, limite);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    prestamos.add(map(rs));
                 }
             }
         }
-
         return prestamos;
     }
 
+    /**
+     * Obtiene los préstamos realizados entre dos fechas, usando el índice por fecha de préstamo.
+     *
+     * @param desde Fecha mínima de préstamo (inclusive).
+     * @param hasta Fecha máxima de préstamo (inclusive).
+     * @return Los préstamos del rango, ordenados por fecha de préstamo.
+     */
+    public List<PrestamoEntity> findByFechaPrestamo(LocalDate desde, LocalDate hasta) throws SQLException {
+        return ResultSetStream.list("SELECT " + COLUMNAS + " FROM prestamos WHERE fecha_prestamo BETWEEN ? AND ? ORDER BY fecha_prestamo, id",
+                PrestamoRepository::map, desde.toEpochDay(), hasta.toEpochDay());
+    }
+
+    /**
+     * Obtiene los préstamos activos (sin fecha de devolución) realizados en una fecha
+     * igual o anterior a {@code fecha}, es decir, los que siguen prestados desde entonces.
+     * Usa el índice parcial de préstamos activos por fecha.
+     *
+     * @param fecha Fecha máxima de préstamo (inclusive).
+     * @return Los préstamos activos, del más antiguo al más reciente.
+     */
+    public List<PrestamoEntity> findActivosDesde(LocalDate fecha) throws SQLException {
+        return ResultSetStream.list("SELECT " + COLUMNAS + " FROM prestamos WHERE fecha_devolucion IS NULL AND fecha_prestamo <= ? ORDER BY fecha_prestamo, id",
+                PrestamoRepository::map, fecha.toEpochDay());
+    }
+
+    /**
+     * Obtiene los préstamos devueltos durante un mes, usando el índice por fecha de devolución.
+     *
+     * @param mes El mes de devolución.
+     * @return Los préstamos devueltos en el mes, ordenados por fecha de devolución.
+     */
+    public List<PrestamoEntity> findDevueltosEnMes(YearMonth mes) throws SQLException {
+        return ResultSetStream.list("SELECT " + COLUMNAS + " FROM prestamos WHERE fecha_devolucion BETWEEN ? AND ? ORDER BY fecha_devolucion, id",
+                PrestamoRepository::map, mes.atDay(1).toEpochDay(), mes.atEndOfMonth().toEpochDay());
+    }
+
+    @Override
+    public List<PrestamoEntity> findPage(int afterId, int limite) throws SQLException {
+        return ResultSetStream.list("SELECT " + COLUMNAS + " FROM prestamos WHERE id > ? ORDER BY id LIMIT ?", PrestamoRepository::map, afterId, limite);
+    }
+
+    /**
+     * Variante de {@link #findPage(int, int)} que solo incluye préstamos activos (sin fecha de devolución).
+     */
+    public List<PrestamoEntity> findPageActivos(int afterId, int limite) throws SQLException {
+        return ResultSetStream.list("SELECT " + COLUMNAS + " FROM prestamos WHERE id > ? AND fecha_devolucion IS NULL ORDER BY id LIMIT ?", PrestamoRepository::map, afterId, limite);
+    }
+
+    static PrestamoEntity map(ResultSet rs) throws SQLException {
+        return new PrestamoEntity(rs.getInt(1),
+                rs.getInt(2),
+                rs.getInt(3),
+                fecha(rs, 4),
+                fecha(rs, 5));
+    }
+
+    /**
+     * Lee una fecha guardada como días desde 1970-01-01, o null si la columna es NULL.
+     */
+    private static LocalDate fecha(ResultSet rs, int columna) throws SQLException {
+        long epochDay = rs.getLong(columna);
+        return rs.wasNull() ? null : LocalDate.ofEpochDay(epochDay);
+    }
+
     @Override
-    public void save(PrestamoEntity prestamoEntity) throws SQLException {
-        try(Connection con = DatabaseConnection.getConnection();
-            PreparedStatement ps = con.prepareStatement("INSERT INTO prestamos (usuario_id, libro_id, fecha_devolucion) VALUES (?, ?, ?)")) {
+    public PrestamoEntity save(PrestamoEntity prestamoEntity) throws SQLException {
+        try(Connection con = DatabaseConnection.getConnection()) {
+            return save(con, prestamoEntity);
+        }
+    }
+
+    /**
+     * Variante de {@link #save(PrestamoEntity)} que usa la conexión (y transacción) dada.
+     * Devuelve el préstamo con el id asignado por la base y la fecha actual como fecha de préstamo.
+     */
+    public PrestamoEntity save(Connection con, PrestamoEntity prestamoEntity) throws SQLException {
+        // La fecha se pasa desde Java y no con el DEFAULT de la columna, que es el día UTC:
+        // así el préstamo, la devolución y el vencimiento usan el mismo reloj.
+        LocalDate hoy = LocalDate.now();
+        //Fecha de devolucion se deja como nula, ya que no ha sido devuelto al crearse.
+        try(PreparedStatement ps = StatementCache.prepare(con, "INSERT INTO prestamos (usuario_id, libro_id, fecha_prestamo) VALUES (?, ?, ?) RETURNING id")) {
 
             ps.setInt(1, prestamoEntity.getUsuario_id());
             ps.setInt(2, prestamoEntity.getLibro_id());
-            //Fecha de devolucion se deja como nula, ya que no ha sido devuelto al crearse.
-            ps.executeUpdate();
+            ps.setLong(3, hoy.toEpochDay());
+
+            try (ResultSet rs = ps.executeQuery()) {
+                rs.next();
+                prestamoEntity.setId(rs.getInt(1));
+                prestamoEntity.setFecha_prestamo(hoy);
+                prestamoEntity.setFecha_devolucion(null);
+            }
         }
+        return prestamoEntity;
+    }
+
+    /**
+     * Inserta los préstamos tal cual vienen, sin modificar el stock de los libros:
+     * está pensado para importar históricos. Si un préstamo no trae fecha de préstamo
+     * se usa la fecha actual.
+     */
+    @Override
+    public List<Integer> saveAll(Collection<PrestamoEntity> prestamos) throws SQLException {
+        long hoy = LocalDate.now().toEpochDay();
+        return BatchInsert.saveAll("INSERT INTO prestamos (usuario_id, libro_id, fecha_prestamo, fecha_devolucion) VALUES (?, ?, ?, ?)",
+                prestamos,
+                (ps, prestamo) -> {
+                    ps.setInt(1, prestamo.getUsuario_id());
+                    ps.setInt(2, prestamo.getLibro_id());
+                    ps.setLong(3, prestamo.getFecha_prestamo() == null ? hoy : prestamo.getFecha_prestamo().toEpochDay());
+                    ps.setObject(4, prestamo.getFecha_devolucion() == null ? null : prestamo.getFecha_devolucion().toEpochDay());
+                },
+                PrestamoEntity::setId);
     }
 
     @Override
     public void delete(int id) throws SQLException {
+        deleteAndGet(id);
+    }
+
+    /**
+     * Borra un préstamo y devuelve cómo estaba antes de borrarse.
+     *
+     * @param id El ID del préstamo.
+     * @return El préstamo borrado, o vacío si no existía.
+     */
+    public Optional<PrestamoEntity> deleteAndGet(int id) throws SQLException {
         try(Connection conn = DatabaseConnection.getConnection();
-            PreparedStatement ps = conn.prepareStatement("DELETE FROM prestamos WHERE id = ?")){
+            PreparedStatement ps = StatementCache.prepare(conn, "DELETE FROM prestamos WHERE id = ? RETURNING " + COLUMNAS)){
             ps.setInt(1,id);
-            ps.executeUpdate();
+
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? Optional.of(map(rs)) : Optional.empty();
+            }
+        }
+    }
+
+    /**
+     * Borra todos los préstamos de un libro usando la conexión dada, y los devuelve como estaban.
+     * Se usa en la misma transacción que borra el libro, en lugar de la cascada, para saber qué se borró.
+     */
+    public List<PrestamoEntity> deleteByLibro(Connection conn, int libroId) throws SQLException {
+        return deleteWhere(conn, "DELETE FROM prestamos WHERE libro_id = ? RETURNING " + COLUMNAS, libroId);
+    }
+
+    /**
+     * Borra todos los préstamos de un usuario usando la conexión dada, y los devuelve como estaban.
+     * Se usa en la misma transacción que borra el usuario, en lugar de la cascada, para saber qué se borró.
+     */
+    public List<PrestamoEntity> deleteByUsuario(Connection conn, int usuarioId) throws SQLException {
+        return deleteWhere(conn, "DELETE FROM prestamos WHERE usuario_id = ? RETURNING " + COLUMNAS, usuarioId);
+    }
+
+    private static List<PrestamoEntity> deleteWhere(Connection conn, String sql, int id) throws SQLException {
+        List<PrestamoEntity> borrados = new ArrayList<>();
+        try (PreparedStatement ps = StatementCache.prepare(conn, sql)) {
+            ps.setInt(1, id);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    borrados.add(map(rs));
+                }
+            }
+        }
+        return borrados;
+    }
+
+    /**
+     * Cuenta los préstamos (activos y devueltos) de cada libro, recorriendo solo el índice por libro.
+     *
+     * @param action Recibe cada id de libro con al menos un préstamo y su cantidad de préstamos.
+     */
+    public void forEachCantidadPorLibro(CantidadPorId action) throws SQLException {
+        contarPor("SELECT libro_id, COUNT(*) FROM prestamos GROUP BY libro_id", action);
+    }
+
+    /**
+     * Cuenta los préstamos (activos y devueltos) de cada usuario, recorriendo solo el índice por usuario.
+     *
+     * @param action Recibe cada id de usuario con al menos un préstamo y su cantidad de préstamos.
+     */
+    public void forEachCantidadPorUsuario(CantidadPorId action) throws SQLException {
+        contarPor("SELECT usuario_id, COUNT(*) FROM prestamos GROUP BY usuario_id", action);
+    }
+
+    private static void contarPor(String sql, CantidadPorId action) throws SQLException {
+        try (Connection conn = DatabaseConnection.getReadConnection();
+             PreparedStatement ps = StatementCache.prepare(conn, sql);
+             ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                action.accept(rs.getInt(1), rs.getInt(2));
+            }
         }
     }
 }
@@ -0,0 +1,169 @@
+package org.EduardoMango.repositories;
+
+import org.EduardoMango.entities.LibroEntity;
+import org.EduardoMango.entities.PrestamoEntity;
+import org.EduardoMango.entities.RankingEntity;
+import org.EduardoMango.entities.UsuarioEntity;
+import org.EduardoMango.metrics.Metrics;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.stream.Stream;
+
+/**
+ * {@link PrestamoRepository} con métricas: cada método público se mide con una {@link Metrics.Operacion}
+ * registrada una sola vez y delega en la implementación. Es la instancia que devuelve {@link PrestamoRepository#getInstance()}.
+ */
+class PrestamoRepositoryConMetricas extends PrestamoRepository {
+
+    private static final Metrics.Operacion FIND_BY_ID = Metrics.repositorio("PrestamoRepository", "findById");
+    private static final Metrics.Operacion RETURN_PRESTAMO = Metrics.repositorio("PrestamoRepository", "returnPrestamo");
+    private static final Metrics.Operacion FIND_ALL_ACTIVE_BY_USUARIO = Metrics.repositorio("PrestamoRepository", "findAllActiveByUsuario");
+    private static final Metrics.Operacion COUNT_ACTIVE_BY_USUARIO = Metrics.repositorio("PrestamoRepository", "countActiveByUsuario");
+    private static final Metrics.Operacion FIND_ALL_ACTIVOS = Metrics.repositorio("PrestamoRepository", "findAllActivos");
+    private static final Metrics.Operacion FIND_TOP_LIBROS = Metrics.repositorio("PrestamoRepository", "findTopLibros");
+    private static final Metrics.Operacion FIND_TOP_USUARIOS = Metrics.repositorio("PrestamoRepository", "findTopUsuarios");
+    private static final Metrics.Operacion FIND_ALL = Metrics.repositorio("PrestamoRepository", "findAll");
+    private static final Metrics.Operacion FIND_PAGE_ACTIVOS_PRESTADOS_ANTES_DE = Metrics.repositorio("PrestamoRepository", "findPageActivosPrestadosAntesDe");
+    private static final Metrics.Operacion FIND_BY_FECHA_PRESTAMO = Metrics.repositorio("PrestamoRepository", "findByFechaPrestamo");
+    private static final Metrics.Operacion FIND_ACTIVOS_DESDE = Metrics.repositorio("PrestamoRepository", "findActivosDesde");
+    private static final Metrics.Operacion FIND_DEVUELTOS_EN_MES = Metrics.repositorio("PrestamoRepository", "findDevueltosEnMes");
+    private static final Metrics.Operacion FIND_PAGE = Metrics.repositorio("PrestamoRepository", "findPage");
+    private static final Metrics.Operacion FIND_PAGE_ACTIVOS = Metrics.repositorio("PrestamoRepository", "findPageActivos");
+    private static final Metrics.Operacion SAVE = Metrics.repositorio("PrestamoRepository", "save");
+    private static final Metrics.Operacion SAVE_ALL = Metrics.repositorio("PrestamoRepository", "saveAll");
+    private static final Metrics.Operacion DELETE = Metrics.repositorio("PrestamoRepository", "delete");
+    private static final Metrics.Operacion DELETE_BY_LIBRO = Metrics.repositorio("PrestamoRepository", "deleteByLibro");
+    private static final Metrics.Operacion DELETE_BY_USUARIO = Metrics.repositorio("PrestamoRepository", "deleteByUsuario");
+    private static final Metrics.Operacion STREAM_ALL = Metrics.repositorio("PrestamoRepository", "streamAll");
+    private static final Metrics.Operacion STREAM_ACTIVOS = Metrics.repositorio("PrestamoRepository", "streamActivos");
+    private static final Metrics.Operacion STREAM_ACTIVOS_PRESTADOS_ANTES_DE = Metrics.repositorio("PrestamoRepository", "streamActivosPrestadosAntesDe");
+    private static final Metrics.Operacion FOR_EACH_CANTIDAD_POR_LIBRO = Metrics.repositorio("PrestamoRepository", "forEachCantidadPorLibro");
+    private static final Metrics.Operacion FOR_EACH_CANTIDAD_POR_USUARIO = Metrics.repositorio("PrestamoRepository", "forEachCantidadPorUsuario");
+
+    @Override
+    public Optional<PrestamoEntity> findById(int id) throws SQLException {
+        return FIND_BY_ID.timeSql(() -> super.findById(id));
+    }
+
+    @Override
+    public OptionalInt returnPrestamo(Connection conn, int id, LocalDate fecha) throws SQLException {
+        return RETURN_PRESTAMO.timeSql(() -> super.returnPrestamo(conn, id, fecha));
+    }
+
+    @Override
+    public List<PrestamoEntity> findAllActiveByUsuario(int usuario_id) throws SQLException {
+        return FIND_ALL_ACTIVE_BY_USUARIO.timeSql(() -> super.findAllActiveByUsuario(usuario_id));
+    }
+
+    @Override
+    public int countActiveByUsuario(Connection conn, int usuario_id) throws SQLException {
+        return COUNT_ACTIVE_BY_USUARIO.timeSql(() -> super.countActiveByUsuario(conn, usuario_id));
+    }
+
+    @Override
+    public List<PrestamoEntity> findAllActivos() throws SQLException {
+        return FIND_ALL_ACTIVOS.timeSql(() -> super.findAllActivos());
+    }
+
+    @Override
+    public List<RankingEntity<LibroEntity>> findTopLibros(int limite, LocalDate desde, LocalDate hasta) throws SQLException {
+        return FIND_TOP_LIBROS.timeSql(() -> super.findTopLibros(limite, desde, hasta));
+    }
+
+    @Override
+    public List<RankingEntity<UsuarioEntity>> findTopUsuarios(int limite, LocalDate desde, LocalDate hasta) throws SQLException {
+        return FIND_TOP_USUARIOS.timeSql(() -> super.findTopUsuarios(limite, desde, hasta));
+    }
+
+    @Override
+    public List<PrestamoEntity> findAll() throws SQLException {
+        return FIND_ALL.timeSql(() -> super.findAll());
+    }
+
+    @Override
+    public List<PrestamoEntity> findPageActivosPrestadosAntesDe(Connection conn, LocalDate prestadosAntesDe, LocalDate despuesDeFecha, int despuesDeId, int limite) throws SQLException {
+        return FIND_PAGE_ACTIVOS_PRESTADOS_ANTES_DE.timeSql(() -> super.findPageActivosPrestadosAntesDe(conn, prestadosAntesDe, despuesDeFecha, despuesDeId, limite));
+    }
+
+    @Override
+    public List<PrestamoEntity> findByFechaPrestamo(LocalDate desde, LocalDate hasta) throws SQLException {
+        return FIND_BY_FECHA_PRESTAMO.timeSql(() -> super.findByFechaPrestamo(desde, hasta));
+    }
+
+    @Override
+    public List<PrestamoEntity> findActivosDesde(LocalDate fecha) throws SQLException {
+        return FIND_ACTIVOS_DESDE.timeSql(() -> super.findActivosDesde(fecha));
+    }
+
+    @Override
+    public List<PrestamoEntity> findDevueltosEnMes(YearMonth mes) throws SQLException {
+        return FIND_DEVUELTOS_EN_MES.timeSql(() -> super.findDevueltosEnMes(mes));
+    }
+
+    @Override
+    public List<PrestamoEntity> findPage(int afterId, int limite) throws SQLException {
+        return FIND_PAGE.timeSql(() -> super.findPage(afterId, limite));
+    }
+
+    @Override
+    public List<PrestamoEntity> findPageActivos(int afterId, int limite) throws SQLException {
+        return FIND_PAGE_ACTIVOS.timeSql(() -> super.findPageActivos(afterId, limite));
+    }
+
+    @Override
+    public PrestamoEntity save(Connection con, PrestamoEntity prestamoEntity) throws SQLException {
+        return SAVE.timeSql(() -> super.save(con, prestamoEntity));
+    }
+
+    @Override
+    public List<Integer> saveAll(Collection<PrestamoEntity> prestamos) throws SQLException {
+        return SAVE_ALL.timeSql(() -> super.saveAll(prestamos));
+    }
+
+    @Override
+    public Optional<PrestamoEntity> deleteAndGet(int id) throws SQLException {
+        return DELETE.timeSql(() -> super.deleteAndGet(id));
+    }
+
+    @Override
+    public List<PrestamoEntity> deleteByLibro(Connection conn, int libroId) throws SQLException {
+        return DELETE_BY_LIBRO.timeSql(() -> super.deleteByLibro(conn, libroId));
+    }
+
+    @Override
+    public List<PrestamoEntity> deleteByUsuario(Connection conn, int usuarioId) throws SQLException {
+        return DELETE_BY_USUARIO.timeSql(() -> super.deleteByUsuario(conn, usuarioId));
+    }
+
+    @Override
+    public Stream<PrestamoEntity> streamAll() throws SQLException {
+        return STREAM_ALL.timeStream(() -> super.streamAll());
+    }
+
+    @Override
+    public Stream<PrestamoEntity> streamActivos() throws SQLException {
+        return STREAM_ACTIVOS.timeStream(() -> super.streamActivos());
+    }
+
+    @Override
+    public Stream<PrestamoEntity> streamActivosPrestadosAntesDe(LocalDate prestadosAntesDe) throws SQLException {
+        return STREAM_ACTIVOS_PRESTADOS_ANTES_DE.timeStream(() -> super.streamActivosPrestadosAntesDe(prestadosAntesDe));
+    }
+
+    @Override
+    public void forEachCantidadPorLibro(CantidadPorId action) throws SQLException {
+        FOR_EACH_CANTIDAD_POR_LIBRO.runSql(() -> super.forEachCantidadPorLibro(action));
+    }
+
+    @Override
+    public void forEachCantidadPorUsuario(CantidadPorId action) throws SQLException {
+        FOR_EACH_CANTIDAD_POR_USUARIO.runSql(() -> super.forEachCantidadPorUsuario(action));
+    }
+}
@@ -0,0 +1,181 @@
+package org.EduardoMango.repositories;
+
+import org.EduardoMango.database.DatabaseConnection;
+import org.EduardoMango.database.StatementCache;
+import org.EduardoMango.entities.EstadoReserva;
+import org.EduardoMango.entities.ReservaEntity;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+/**
+ * Acceso a la tabla de reservas. Las fechas se guardan como segundos desde 1970-01-01 UTC
+ * y se leen en la zona horaria del sistema.
+ * <p>
+ * Los cambios de estado son UPDATE condicionales sobre el estado anterior, para que dos operaciones
+ * concurrentes sobre la misma reserva (por ejemplo, retirarla y vencerla) no tengan efecto las dos.
+ */
+public class ReservaRepository {
+
+    /**
+     * Columnas que lee {@link #map(ResultSet)}, en el orden de sus índices.
+     */
+    static final String COLUMNAS = "id, libro_id, usuario_id, fecha_reserva, estado, vence";
+
+    private static final String PENDIENTE = "estado IN ('ESPERANDO', 'RETENIDA')";
+
+    private static final ReservaRepository instance = new ReservaRepositoryConMetricas();
+
+    ReservaRepository() {}
+
+    public static ReservaRepository getInstance() {
+        return instance;
+    }
+
+    public Optional<ReservaEntity> findById(int id) throws SQLException {
+        List<ReservaEntity> reservas = consultar("SELECT " + COLUMNAS + " FROM reservas WHERE id = ?", id);
+        return reservas.isEmpty() ? Optional.empty() : Optional.of(reservas.getFirst());
+    }
+
+    /**
+     * Reservas pendientes (esperando o retenidas) de un usuario, en el orden en que se hicieron.
+     */
+    public List<ReservaEntity> findPendientesByUsuario(int usuario_id) throws SQLException {
+        return consultar("SELECT " + COLUMNAS + " FROM reservas WHERE usuario_id = ? AND " + PENDIENTE + " ORDER BY id", usuario_id);
+    }
+
+    /**
+     * Reservas pendientes (esperando o retenidas) de un libro, en el orden en que se atienden.
+     */
+    public List<ReservaEntity> findPendientesByLibro(int libro_id) throws SQLException {
+        return consultar("SELECT " + COLUMNAS + " FROM reservas WHERE libro_id = ? AND " + PENDIENTE + " ORDER BY id", libro_id);
+    }
+
+    /**
+     * Reservas retenidas cuyo vencimiento es anterior o igual a {@code hasta}, de la más antigua a la más nueva.
+     *
+     * @param limite Cantidad máxima de reservas a devolver.
+     */
+    public List<ReservaEntity> findRetenidasVencidas(LocalDateTime hasta, int limite) throws SQLException {
+        return consultar("SELECT " + COLUMNAS + " FROM reservas WHERE estado = 'RETENIDA' AND vence <= ? ORDER BY vence LIMIT ?",
+                segundos(hasta), limite);
+    }
+
+    /**
+     * Recorre todas las reservas pendientes en orden de id, sin cargarlas en una lista.
+     */
+    public void forEachPendiente(Consumer<ReservaEntity> action) throws SQLException {
+        try (Connection conn = DatabaseConnection.getReadConnection();
+             PreparedStatement ps = StatementCache.prepare(conn, "SELECT " + COLUMNAS + " FROM reservas WHERE " + PENDIENTE + " ORDER BY id");
+             ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                action.accept(map(rs));
+            }
+        }
+    }
+
+    /**
+     * Agrega una reserva al final de la lista de espera del libro.
+     *
+     * @param conn La conexión (y transacción) a utilizar.
+     * @return La reserva guardada, con su id y fecha, o vacío si el usuario ya tenía una reserva pendiente de ese libro.
+     */
+    public Optional<ReservaEntity> save(Connection conn, ReservaEntity reserva) throws SQLException {
+        try (PreparedStatement ps = StatementCache.prepare(conn,
+                "INSERT INTO reservas (libro_id, usuario_id) VALUES (?, ?) ON CONFLICT DO NOTHING RETURNING " + COLUMNAS)) {
+            ps.setInt(1, reserva.getLibro_id());
+            ps.setInt(2, reserva.getUsuario_id());
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? Optional.of(map(rs)) : Optional.empty();
+            }
+        }
+    }
+
+    /**
+     * Retiene una unidad para una reserva en espera, hasta {@code vence}.
+     *
+     * @return true si la reserva estaba esperando y quedó retenida.
+     */
+    public boolean retener(Connection conn, int id, LocalDateTime vence) throws SQLException {
+        try (PreparedStatement ps = StatementCache.prepare(conn,
+                "UPDATE reservas SET estado = 'RETENIDA', vence = ? WHERE id = ? AND estado = 'ESPERANDO'")) {
+            ps.setLong(1, segundos(vence));
+            ps.setInt(2, id);
+            return ps.executeUpdate() == 1;
+        }
+    }
+
+    /**
+     * Marca como retirada una reserva retenida que no venció a las {@code ahora}.
+     *
+     * @return true si la reserva estaba retenida y vigente.
+     */
+    public boolean retirar(Connection conn, int id, LocalDateTime ahora) throws SQLException {
+        try (PreparedStatement ps = StatementCache.prepare(conn,
+                "UPDATE reservas SET estado = 'RETIRADA' WHERE id = ? AND estado = 'RETENIDA' AND vence > ?")) {
+            ps.setInt(1, id);
+            ps.setLong(2, segundos(ahora));
+            return ps.executeUpdate() == 1;
+        }
+    }
+
+    /**
+     * Pasa una reserva de {@code desde} a {@code hacia}.
+     *
+     * @return true si la reserva estaba en el estado {@code desde}.
+     */
+    public boolean cambiarEstado(Connection conn, int id, EstadoReserva desde, EstadoReserva hacia) throws SQLException {
+        try (PreparedStatement ps = StatementCache.prepare(conn, "UPDATE reservas SET estado = ? WHERE id = ? AND estado = ?")) {
+            ps.setString(1, hacia.name());
+            ps.setInt(2, id);
+            ps.setString(3, desde.name());
+            return ps.executeUpdate() == 1;
+        }
+    }
+
+    private static List<ReservaEntity> consultar(String sql, Object... params) throws SQLException {
+        List<ReservaEntity> reservas = new ArrayList<>();
+        try (Connection conn = DatabaseConnection.getReadConnection();
+             PreparedStatement ps = StatementCache.prepare(conn, sql)) {
+            for (int i = 0; i < params.length; i++) {
+                ps.setObject(i + 1, params[i]);
+            }
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    reservas.add(map(rs));
+                }
+            }
+        }
+        return reservas;
+    }
+
+    static ReservaEntity map(ResultSet rs) throws SQLException {
+        return new ReservaEntity(rs.getInt(1),
+                rs.getInt(2),
+                rs.getInt(3),
+                fecha(rs, 4),
+                EstadoReserva.valueOf(rs.getString(5)),
+                fecha(rs, 6));
+    }
+
+    /**
+     * Lee una fecha guardada como segundos desde 1970-01-01 UTC, o null si la columna es NULL.
+     */
+    private static LocalDateTime fecha(ResultSet rs, int columna) throws SQLException {
+        long segundos = rs.getLong(columna);
+        return rs.wasNull() ? null : LocalDateTime.ofInstant(Instant.ofEpochSecond(segundos), ZoneId.systemDefault());
+    }
+
+    private static long segundos(LocalDateTime fecha) {
+        return fecha.atZone(ZoneId.systemDefault()).toEpochSecond();
+    }
+}
@@ -0,0 +1,74 @@
+package org.EduardoMango.repositories;
+
+import org.EduardoMango.entities.EstadoReserva;
+import org.EduardoMango.entities.ReservaEntity;
+import org.EduardoMango.metrics.Metrics;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+/**
+ * {@link ReservaRepository} con métricas: cada método público se mide con una {@link Metrics.Operacion}
+ * registrada una sola vez y delega en la implementación. Es la instancia que devuelve {@link ReservaRepository#getInstance()}.
+ */
+class ReservaRepositoryConMetricas extends ReservaRepository {
+
+    private static final Metrics.Operacion FIND_BY_ID = Metrics.repositorio("ReservaRepository", "findById");
+    private static final Metrics.Operacion FIND_PENDIENTES_BY_USUARIO = Metrics.repositorio("ReservaRepository", "findPendientesByUsuario");
+    private static final Metrics.Operacion FIND_PENDIENTES_BY_LIBRO = Metrics.repositorio("ReservaRepository", "findPendientesByLibro");
+    private static final Metrics.Operacion FIND_RETENIDAS_VENCIDAS = Metrics.repositorio("ReservaRepository", "findRetenidasVencidas");
+    private static final Metrics.Operacion FOR_EACH_PENDIENTE = Metrics.repositorio("ReservaRepository", "forEachPendiente");
+    private static final Metrics.Operacion SAVE = Metrics.repositorio("ReservaRepository", "save");
+    private static final Metrics.Operacion RETENER = Metrics.repositorio("ReservaRepository", "retener");
+    private static final Metrics.Operacion RETIRAR = Metrics.repositorio("ReservaRepository", "retirar");
+    private static final Metrics.Operacion CAMBIAR_ESTADO = Metrics.repositorio("ReservaRepository", "cambiarEstado");
+
+    @Override
+    public Optional<ReservaEntity> findById(int id) throws SQLException {
+        return FIND_BY_ID.timeSql(() -> super.findById(id));
+    }
+
+    @Override
+    public List<ReservaEntity> findPendientesByUsuario(int usuario_id) throws SQLException {
+        return FIND_PENDIENTES_BY_USUARIO.timeSql(() -> super.findPendientesByUsuario(usuario_id));
+    }
+
+    @Override
+    public List<ReservaEntity> findPendientesByLibro(int libro_id) throws SQLException {
+        return FIND_PENDIENTES_BY_LIBRO.timeSql(() -> super.findPendientesByLibro(libro_id));
+    }
+
+    @Override
+    public List<ReservaEntity> findRetenidasVencidas(LocalDateTime hasta, int limite) throws SQLException {
+        return FIND_RETENIDAS_VENCIDAS.timeSql(() -> super.findRetenidasVencidas(hasta, limite));
+    }
+
+    @Override
+    public void forEachPendiente(Consumer<ReservaEntity> action) throws SQLException {
+        FOR_EACH_PENDIENTE.runSql(() -> super.forEachPendiente(action));
+    }
+
+    @Override
+    public Optional<ReservaEntity> save(Connection conn, ReservaEntity reserva) throws SQLException {
+        return SAVE.timeSql(() -> super.save(conn, reserva));
+    }
+
+    @Override
+    public boolean retener(Connection conn, int id, LocalDateTime vence) throws SQLException {
+        return RETENER.timeSql(() -> super.retener(conn, id, vence));
+    }
+
+    @Override
+    public boolean retirar(Connection conn, int id, LocalDateTime ahora) throws SQLException {
+        return RETIRAR.timeSql(() -> super.retirar(conn, id, ahora));
+    }
+
+    @Override
+    public boolean cambiarEstado(Connection conn, int id, EstadoReserva desde, EstadoReserva hacia) throws SQLException {
+        return CAMBIAR_ESTADO.timeSql(() -> super.cambiarEstado(conn, id, desde, hacia));
+    }
+}
@@ -0,0 +1,105 @@
+package org.EduardoMango.repositories;
+
+import org.EduardoMango.database.DatabaseConnection;
+import org.EduardoMango.database.StatementCache;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Expone un ResultSet abierto como un {@link Stream}: las filas se leen y mapean a medida
+ * que se consumen, sin cargar la consulta completa en memoria.
+ * <p>
+ * El stream mantiene tomada la conexión hasta que se cierra, por lo que siempre debe
+ * usarse dentro de un try-with-resources. Un error de la base durante la lectura o el cierre
+ * se propaga como {@link UncheckedSQLException}; {@link #list} lo vuelve a lanzar como SQLException.
+ */
+public class ResultSetStream {
+
+    private ResultSetStream() {}
+
+    /**
+     * Ejecuta una consulta sobre una conexión del pool de lectura y devuelve sus filas como stream.
+     *
+     * @param sql    La consulta a ejecutar.
+     * @param mapper La conversión de cada fila a entidad.
+     * @param params Los parámetros de la consulta, en orden.
+     * @return Un stream que, al cerrarse, libera el ResultSet, el statement (ver {@link StatementCache}) y la conexión.
+     */
+    public static <T> Stream<T> of(String sql, RowMapper<T> mapper, Object... params) throws SQLException {
+        Connection conn = DatabaseConnection.getReadConnection();
+        PreparedStatement ps = null;
+        ResultSet rs = null;
+        try {
+            ps = StatementCache.prepare(conn, sql);
+            ps.setFetchSize(DatabaseConnection.getConfig().getFetchSize());
+            for (int i = 0; i < params.length; i++) {
+                ps.setObject(i + 1, params[i]);
+            }
+            rs = ps.executeQuery();
+        } catch (SQLException | RuntimeException e) {
+            SQLException alCerrar = cerrar(rs, ps, conn);
+            if (alCerrar != null) e.addSuppressed(alCerrar);
+            throw e;
+        }
+
+        ResultSet cursor = rs;
+        PreparedStatement statement = ps;
+        Spliterator<T> filas = new Spliterators.AbstractSpliterator<>(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL) {
+            @Override
+            public boolean tryAdvance(Consumer<? super T> action) {
+                try {
+                    if (!cursor.next()) return false;
+                    action.accept(mapper.map(cursor));
+                    return true;
+                } catch (SQLException e) {
+                    throw new UncheckedSQLException(e);
+                }
+            }
+        };
+        return StreamSupport.stream(filas, false)
+                .onClose(() -> {
+                    SQLException alCerrar = cerrar(cursor, statement, conn);
+                    if (alCerrar != null) throw new UncheckedSQLException(alCerrar);
+                });
+    }
+
+    /**
+     * Ejecuta una consulta sobre una conexión del pool de lectura y devuelve todas sus filas en una lista.
+     *
+     * @param sql    La consulta a ejecutar.
+     * @param mapper La conversión de cada fila a entidad.
+     * @param params Los parámetros de la consulta, en orden.
+     * @return Las filas mapeadas, en el orden de la consulta.
+     * @throws SQLException Si falla la consulta, la lectura de una fila o el cierre.
+     */
+    public static <T> List<T> list(String sql, RowMapper<T> mapper, Object... params) throws SQLException {
+        try (Stream<T> filas = of(sql, mapper, params)) {
+            return filas.toList();
+        } catch (UncheckedSQLException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static SQLException cerrar(AutoCloseable... recursos) {
+        SQLException error = null;
+        for (AutoCloseable recurso : recursos) {
+            if (recurso == null) continue;
+            try {
+                recurso.close();
+            } catch (Exception e) {
+                if (error == null) error = e instanceof SQLException sql ? sql : new SQLException(e);
+                else error.addSuppressed(e);
+            }
+        }
+        return error;
+    }
+}
@@ -0,0 +1,189 @@
+package org.EduardoMango.repositories;
+
+import org.EduardoMango.database.DatabaseConnection;
+import org.EduardoMango.database.StatementCache;
+import org.EduardoMango.entities.LibroEntity;
+import org.EduardoMango.entities.RankingEntity;
+import org.EduardoMango.entities.UsuarioEntity;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Consultas de préstamos por período sobre las tablas de resumen ({@code prestamos_libro_dia},
+ * {@code prestamos_usuario_dia}, {@code prestamos_libro_mes} y {@code prestamos_usuario_mes}),
+ * que los triggers de la tabla prestamos mantienen al día en cada préstamo, devolución y borrado.
+ * <p>
+ * Un rango de fechas se resuelve con los resúmenes mensuales para los meses completos que abarca
+ * y con los diarios solo para los días sueltos del principio y del final: un mes se lee como una fila
+ * por libro o usuario con préstamos en ese mes, sin recorrer sus préstamos.
+ * Las fechas de préstamo se agrupan por día y mes tal como se guardan en prestamos (la fecha local del servidor).
+ */
+public class ResumenPrestamosRepository {
+
+    /** Extremos que reemplazan a un desde o hasta null, dentro del rango de meses aaaamm. */
+    private static final LocalDate SIN_DESDE = LocalDate.of(1, 1, 1);
+    private static final LocalDate SIN_HASTA = LocalDate.of(9999, 12, 31);
+
+    /*
+     * Los parámetros ?1 a ?6 son los del Periodo: días sueltos del principio, meses completos
+     * y días sueltos del final. Las filas con 0 préstamos (de préstamos borrados) no cuentan.
+     */
+    private static final String PRESTAMOS_POR_LIBRO = """
+            SELECT libro_id, prestamos FROM prestamos_libro_mes WHERE mes BETWEEN ?3 AND ?4
+            UNION ALL
+            SELECT libro_id, prestamos FROM prestamos_libro_dia WHERE dia BETWEEN ?1 AND ?2 OR dia BETWEEN ?5 AND ?6""";
+    private static final String PRESTAMOS_POR_USUARIO = """
+            SELECT usuario_id, prestamos FROM prestamos_usuario_mes WHERE mes BETWEEN ?3 AND ?4
+            UNION ALL
+            SELECT usuario_id, prestamos FROM prestamos_usuario_dia WHERE dia BETWEEN ?1 AND ?2 OR dia BETWEEN ?5 AND ?6""";
+    private static final String TOP_LIBROS = """
+            SELECT l.id, l.titulo, l.autor, l.anio_publicacion, l.unidades_disponibles, t.cantidad
+            FROM (SELECT libro_id, SUM(prestamos) AS cantidad
+                  FROM (%s)
+                  GROUP BY libro_id
+                  HAVING cantidad > 0
+                  ORDER BY cantidad DESC, libro_id
+                  LIMIT ?7) t
+            JOIN libros l ON l.id = t.libro_id
+            ORDER BY t.cantidad DESC, t.libro_id""".formatted(PRESTAMOS_POR_LIBRO);
+    private static final String TOP_USUARIOS = """
+            SELECT u.id, u.nombre, u.email, t.cantidad
+            FROM (SELECT usuario_id, SUM(prestamos) AS cantidad
+                  FROM (%s)
+                  GROUP BY usuario_id
+                  HAVING cantidad > 0
+                  ORDER BY cantidad DESC, usuario_id
+                  LIMIT ?7) t
+            JOIN usuarios u ON u.id = t.usuario_id
+            ORDER BY t.cantidad DESC, t.usuario_id""".formatted(PRESTAMOS_POR_USUARIO);
+    private static final String PROMEDIO_POR_USUARIO_ACTIVO = """
+            SELECT COUNT(*), SUM(cantidad)
+            FROM (SELECT usuario_id, SUM(prestamos) AS cantidad
+                  FROM (%s)
+                  GROUP BY usuario_id
+                  HAVING cantidad > 0)""".formatted(PRESTAMOS_POR_USUARIO);
+
+    private static final ResumenPrestamosRepository instance = new ResumenPrestamosRepositoryConMetricas();
+
+    /**
+     * Un rango de fechas partido en los días anteriores al primer mes completo,
+     * los meses completos (aaaamm) y los días posteriores al último mes completo.
+     * Un tramo vacío tiene el extremo inicial mayor que el final.
+     */
+    private record Periodo(long diaDesde, long diaAntesDeMeses, int mesDesde, int mesHasta, long diaDespuesDeMeses, long diaHasta) {
+
+        static Periodo of(LocalDate desde, LocalDate hasta) {
+            desde = desde == null ? SIN_DESDE : desde;
+            hasta = hasta == null ? SIN_HASTA : hasta;
+            YearMonth primerMes = desde.getDayOfMonth() == 1 ? YearMonth.from(desde) : YearMonth.from(desde).plusMonths(1);
+            YearMonth ultimoMes = hasta.equals(YearMonth.from(hasta).atEndOfMonth()) ? YearMonth.from(hasta) : YearMonth.from(hasta).minusMonths(1);
+            if (primerMes.isAfter(ultimoMes)) {
+                return new Periodo(desde.toEpochDay(), hasta.toEpochDay(), 1, 0, 1, 0);
+            }
+            return new Periodo(desde.toEpochDay(), primerMes.atDay(1).toEpochDay() - 1,
+                    aaaamm(primerMes), aaaamm(ultimoMes),
+                    ultimoMes.atEndOfMonth().toEpochDay() + 1, hasta.toEpochDay());
+        }
+
+        void cargar(PreparedStatement ps) throws SQLException {
+            ps.setLong(1, diaDesde);
+            ps.setLong(2, diaAntesDeMeses);
+            ps.setInt(3, mesDesde);
+            ps.setInt(4, mesHasta);
+            ps.setLong(5, diaDespuesDeMeses);
+            ps.setLong(6, diaHasta);
+        }
+
+        private static int aaaamm(YearMonth mes) {
+            return mes.getYear() * 100 + mes.getMonthValue();
+        }
+    }
+
+    ResumenPrestamosRepository() {}
+
+    public static ResumenPrestamosRepository getInstance() {
+        return instance;
+    }
+
+    /**
+     * Obtiene los libros más prestados dentro de un rango de fechas de préstamo,
+     * ordenados de mayor a menor cantidad de préstamos.
+     *
+     * @param limite Cantidad máxima de posiciones a devolver.
+     * @param desde  Fecha mínima de préstamo (inclusive), o null para no acotar.
+     * @param hasta  Fecha máxima de préstamo (inclusive), o null para no acotar.
+     * @return El ranking de libros con su cantidad de préstamos.
+     */
+    public List<RankingEntity<LibroEntity>> findTopLibros(int limite, LocalDate desde, LocalDate hasta) throws SQLException {
+        List<RankingEntity<LibroEntity>> ranking = new ArrayList<>();
+
+        try (Connection conn = DatabaseConnection.getReadConnection();
+             PreparedStatement ps = StatementCache.prepare(conn, TOP_LIBROS)) {
+
+            Periodo.of(desde, hasta).cargar(ps);
+            ps.setInt(7, limite);
+
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    ranking.add(new RankingEntity<>(LibroRepository.map(rs), rs.getLong(6)));
+                }
+            }
+        }
+        return ranking;
+    }
+
+    /**
+     * Obtiene los usuarios con más préstamos dentro de un rango de fechas de préstamo,
+     * ordenados de mayor a menor cantidad de préstamos.
+     *
+     * @param limite Cantidad máxima de posiciones a devolver.
+     * @param desde  Fecha mínima de préstamo (inclusive), o null para no acotar.
+     * @param hasta  Fecha máxima de préstamo (inclusive), o null para no acotar.
+     * @return El ranking de usuarios con su cantidad de préstamos.
+     */
+    public List<RankingEntity<UsuarioEntity>> findTopUsuarios(int limite, LocalDate desde, LocalDate hasta) throws SQLException {
+        List<RankingEntity<UsuarioEntity>> ranking = new ArrayList<>();
+
+        try (Connection conn = DatabaseConnection.getReadConnection();
+             PreparedStatement ps = StatementCache.prepare(conn, TOP_USUARIOS)) {
+
+            Periodo.of(desde, hasta).cargar(ps);
+            ps.setInt(7, limite);
+
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    ranking.add(new RankingEntity<>(UsuarioRepository.map(rs), rs.getLong(4)));
+                }
+            }
+        }
+        return ranking;
+    }
+
+    /**
+     * Calcula el promedio de préstamos por usuario activo (con al menos un préstamo) dentro de un rango de fechas.
+     *
+     * @param desde Fecha mínima de préstamo (inclusive), o null para no acotar.
+     * @param hasta Fecha máxima de préstamo (inclusive), o null para no acotar.
+     * @return El promedio, o 0.0 si no hay préstamos en el rango.
+     */
+    public double promedioPorUsuarioActivo(LocalDate desde, LocalDate hasta) throws SQLException {
+        try (Connection conn = DatabaseConnection.getReadConnection();
+             PreparedStatement ps = StatementCache.prepare(conn, PROMEDIO_POR_USUARIO_ACTIVO)) {
+
+            Periodo.of(desde, hasta).cargar(ps);
+
+            try (ResultSet rs = ps.executeQuery()) {
+                rs.next();
+                long usuarios = rs.getLong(1);
+                return usuarios == 0 ? 0.0 : (double) rs.getLong(2) / usuarios;
+            }
+        }
+    }
+}
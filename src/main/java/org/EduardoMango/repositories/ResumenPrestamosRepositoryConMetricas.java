@@ -0,0 +1,36 @@
+package org.EduardoMango.repositories;
+
+import org.EduardoMango.entities.LibroEntity;
+import org.EduardoMango.entities.RankingEntity;
+import org.EduardoMango.entities.UsuarioEntity;
+import org.EduardoMango.metrics.Metrics;
+
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * {@link ResumenPrestamosRepository} con métricas: cada método público se mide con una {@link Metrics.Operacion}
+ * registrada una sola vez y delega en la implementación. Es la instancia que devuelve {@link ResumenPrestamosRepository#getInstance()}.
+ */
+class ResumenPrestamosRepositoryConMetricas extends ResumenPrestamosRepository {
+
+    private static final Metrics.Operacion FIND_TOP_LIBROS = Metrics.repositorio("ResumenPrestamosRepository", "findTopLibros");
+    private static final Metrics.Operacion FIND_TOP_USUARIOS = Metrics.repositorio("ResumenPrestamosRepository", "findTopUsuarios");
+    private static final Metrics.Operacion PROMEDIO_POR_USUARIO_ACTIVO = Metrics.repositorio("ResumenPrestamosRepository", "promedioPorUsuarioActivo");
+
+    @Override
+    public List<RankingEntity<LibroEntity>> findTopLibros(int limite, LocalDate desde, LocalDate hasta) throws SQLException {
+        return FIND_TOP_LIBROS.timeSql(() -> super.findTopLibros(limite, desde, hasta));
+    }
+
+    @Override
+    public List<RankingEntity<UsuarioEntity>> findTopUsuarios(int limite, LocalDate desde, LocalDate hasta) throws SQLException {
+        return FIND_TOP_USUARIOS.timeSql(() -> super.findTopUsuarios(limite, desde, hasta));
+    }
+
+    @Override
+    public double promedioPorUsuarioActivo(LocalDate desde, LocalDate hasta) throws SQLException {
+        return PROMEDIO_POR_USUARIO_ACTIVO.timeSql(() -> super.promedioPorUsuarioActivo(desde, hasta));
+    }
+}
@@ -0,0 +1,15 @@
+package org.EduardoMango.repositories;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Convierte la fila actual de un ResultSet en una entidad.
+ *
+ * @param <T> El tipo de entidad.
+ */
+@FunctionalInterface
+public interface RowMapper<T> {
+
+    T map(ResultSet rs) throws SQLException;
+}
@@ -0,0 +1,20 @@
+package org.EduardoMango.repositories;
+
+import java.sql.SQLException;
+
+/**
+ * Envuelve una SQLException ocurrida donde no se puede declarar, como al avanzar o cerrar
+ * un stream de {@link ResultSetStream}. Los métodos que consumen el stream la vuelven a
+ * lanzar como SQLException con {@link #getCause()}.
+ */
+public class UncheckedSQLException extends RuntimeException {
+
+    public UncheckedSQLException(SQLException cause) {
+        super(cause.getMessage(), cause);
+    }
+
+    @Override
+    public synchronized SQLException getCause() {
+        return (SQLException) super.getCause();
+    }
+}
@@ -1,35 +1,52 @@
 package org.EduardoMango.repositories;
 
+import org.EduardoMango.cache.CacheStats;
+import org.EduardoMango.cache.EntityCache;
 import org.EduardoMango.database.DatabaseConnection;
+import org.EduardoMango.database.StatementCache;
 import org.EduardoMango.entities.UsuarioEntity;
 
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 public class UsuarioRepository implements IRepository<UsuarioEntity> {
 
-    private static UsuarioRepository instance;
+    /**
+     * Columnas que lee {@link #map(ResultSet)}, en el orden de sus índices.
+     * Toda consulta mapeada con {@code map} debe devolverlas primero y en este orden.
+     */
+    static final String COLUMNAS = "id, nombre, email";
 
-    private UsuarioRepository() {}
+    private static final UsuarioRepository instance = new UsuarioRepositoryConMetricas();
+
+    private final EntityCache<UsuarioEntity> cache = new EntityCache<>("usuarios",
+            DatabaseConnection.getConfig().getEntityCacheMaxSize(),
+            DatabaseConnection.getConfig().getEntityCacheTtlMillis());
+
+    UsuarioRepository() {}
 
     public static UsuarioRepository getInstance() {
-        if (instance == null) {
-            instance = new UsuarioRepository();
-        }
         return instance;
     }
+    /**
+     * Busca por id pasando primero por la caché del repositorio.
+     */
     @Override
     public Optional<UsuarioEntity> findById(int id) throws SQLException {
-        try(Connection conn = DatabaseConnection.getConnection();
-        PreparedStatement ps = conn.prepareStatement("SELECT * FROM usuarios WHERE ID = ?")){
+        return cache.get(id, this::findByIdEnBase);
+    }
+
+    private Optional<UsuarioEntity> findByIdEnBase(int id) throws SQLException {
+        try(Connection conn = DatabaseConnection.getReadConnection();
+        PreparedStatement ps = StatementCache.prepare(conn, "SELECT " + COLUMNAS + " FROM usuarios WHERE ID = ?")){
             ps.setInt(1,id);
             try(ResultSet rs = ps.executeQuery()){
                 if (rs.next()){
-                    return Optional.of(new UsuarioEntity(rs.getInt("id"),
-                            rs.getString("nombre"),
-                            rs.getString("email")));
+                    return Optional.of(map(rs));
                 }
             }
         }
@@ -38,14 +55,12 @@ public class UsuarioRepository implements IRepository<UsuarioEntity> {
     @Override
     public List<UsuarioEntity> findAll() throws SQLException {
         List<UsuarioEntity> users = new ArrayList<>();
-        try(Connection conn = DatabaseConnection.getConnection();
-            PreparedStatement st = conn.prepareStatement("SELECT * FROM usuarios")){
+        try(Connection conn = DatabaseConnection.getReadConnection();
+            PreparedStatement st = StatementCache.prepare(conn, "SELECT " + COLUMNAS + " FROM usuarios")){
 
             try(ResultSet rs = st.executeQuery()){
                 while(rs.next()){
-                    users.add(new UsuarioEntity(rs.getInt("id"),
-                            rs.getString("nombre"),
-                            rs.getString("email")));
+                    users.add(map(rs));
                 }
             }
         }
@@ -53,23 +68,122 @@ public class UsuarioRepository implements IRepository<UsuarioEntity> {
         return users;
     }
 
+    /**
+     * Obtiene los usuarios que tienen al menos un préstamo activo
+     * (sin fecha de devolución) con una única consulta EXISTS.
+     *
+     * @return Los usuarios con préstamos activos, ordenados por id.
+     */
+    public List<UsuarioEntity> findAllConPrestamosActivos() throws SQLException {
+        return conPrestamosActivos(0, -1);
+    }
+
+    /**
+     * Obtiene una página de usuarios con préstamos activos usando paginación por clave:
+     * devuelve los usuarios con id mayor a {@code afterId}, ordenados por id.
+     * Para pedir la página siguiente se pasa el id del último usuario recibido.
+     *
+     * @param afterId Id del último usuario de la página anterior (0 para la primera página).
+     * @param limite  Cantidad máxima de usuarios a devolver (negativo para no limitar).
+     * @return Los usuarios de la página, ordenados por id.
+     */
+    public List<UsuarioEntity> findPageConPrestamosActivos(int afterId, int limite) throws SQLException {
+        return conPrestamosActivos(afterId, limite);
+    }
+
+    private List<UsuarioEntity> conPrestamosActivos(int afterId, int limite) throws SQLException {
+        List<UsuarioEntity> users = new ArrayList<>();
+        try(Connection conn = DatabaseConnection.getReadConnection();
+            PreparedStatement ps = StatementCache.prepare(conn, """
+                    SELECT u.id, u.nombre, u.email
+                    FROM usuarios u
+                    WHERE u.id > ?
+                      AND EXISTS (SELECT 1 FROM prestamos p
+                                  WHERE p.usuario_id = u.id AND p.fecha_devolucion IS NULL)
+                    ORDER BY u.id
+                    LIMIT ?""")){
+            ps.setInt(1, afterId);
+            ps.setInt(2, limite);
+
+            try(ResultSet rs = ps.executeQuery()){
+                while(rs.next()){
+                    users.add(map(rs));
+                }
+            }
+        }
+        return users;
+    }
+
+    @Override
+    public Stream<UsuarioEntity> streamAll() throws SQLException {
+        return ResultSetStream.of("SELECT " + COLUMNAS + " FROM usuarios", UsuarioRepository::map);
+    }
+
+    @Override
+    public List<UsuarioEntity> findPage(int afterId, int limite) throws SQLException {
+        return ResultSetStream.list("SELECT " + COLUMNAS + " FROM usuarios WHERE id > ? ORDER BY id LIMIT ?", UsuarioRepository::map, afterId, limite);
+    }
+
+    static UsuarioEntity map(ResultSet rs) throws SQLException {
+        return new UsuarioEntity(rs.getInt(1),
+                rs.getString(2),
+                rs.getString(3));
+    }
+
     @Override
-    public void save(UsuarioEntity usuario) throws SQLException {
+    public UsuarioEntity save(UsuarioEntity usuario) throws SQLException {
         try(Connection con = DatabaseConnection.getConnection();
-            PreparedStatement ps = con.prepareStatement("INSERT INTO usuarios (nombre,email) VALUES (?, ?)")){
+            PreparedStatement ps = StatementCache.prepare(con, "INSERT INTO usuarios (nombre,email) VALUES (?, ?) RETURNING id")){
 
             ps.setString(1, usuario.getNombre());
             ps.setString(2, usuario.getEmail());
+
+            try(ResultSet rs = ps.executeQuery()){
+                rs.next();
+                usuario.setId(rs.getInt(1));
+            }
+        }
+        return usuario;
+    }
+
+    @Override
+    public List<Integer> saveAll(Collection<UsuarioEntity> usuarios) throws SQLException {
+        return BatchInsert.saveAll("INSERT INTO usuarios (nombre, email) VALUES (?, ?)",
+                usuarios,
+                (ps, usuario) -> {
+                    ps.setString(1, usuario.getNombre());
+                    ps.setString(2, usuario.getEmail());
+                },
+                UsuarioEntity::setId);
+    }
+
+    /**
+     * Descarta de la caché la entidad con ese id. Lo usan quienes la modifican dentro de
+     * una transacción propia, después del commit.
+     */
+    public void invalidate(int id) {
+        cache.invalidate(id);
+    }
+
+    public CacheStats getCacheStats() {
+        return cache.getStats();
+    }
+
+    /**
+     * Borra el usuario usando la conexión (y transacción) dada.
+     */
+    public void delete(Connection conn, int id) throws SQLException {
+        try (PreparedStatement ps = StatementCache.prepare(conn, "DELETE FROM usuarios WHERE id = ?")) {
+            ps.setInt(1, id);
             ps.executeUpdate();
         }
+        cache.invalidate(id);
     }
 
     @Override
     public void delete(int id) throws SQLException {
-        try(Connection conn = DatabaseConnection.getConnection();
-        PreparedStatement ps = conn.prepareStatement("DELETE FROM usuarios WHERE id = ?")){
-            ps.setInt(1,id);
-            ps.executeUpdate();
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            delete(conn, id);
         }
     }
 }
@@ -0,0 +1,73 @@
+package org.EduardoMango.repositories;
+
+import org.EduardoMango.entities.UsuarioEntity;
+import org.EduardoMango.metrics.Metrics;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+/**
+ * {@link UsuarioRepository} con métricas: cada método público se mide con una {@link Metrics.Operacion}
+ * registrada una sola vez y delega en la implementación. Es la instancia que devuelve {@link UsuarioRepository#getInstance()}.
+ */
+class UsuarioRepositoryConMetricas extends UsuarioRepository {
+
+    private static final Metrics.Operacion FIND_BY_ID = Metrics.repositorio("UsuarioRepository", "findById");
+    private static final Metrics.Operacion FIND_ALL = Metrics.repositorio("UsuarioRepository", "findAll");
+    private static final Metrics.Operacion FIND_PAGE_CON_PRESTAMOS_ACTIVOS = Metrics.repositorio("UsuarioRepository", "findPageConPrestamosActivos");
+    private static final Metrics.Operacion FIND_PAGE = Metrics.repositorio("UsuarioRepository", "findPage");
+    private static final Metrics.Operacion SAVE = Metrics.repositorio("UsuarioRepository", "save");
+    private static final Metrics.Operacion SAVE_ALL = Metrics.repositorio("UsuarioRepository", "saveAll");
+    private static final Metrics.Operacion DELETE = Metrics.repositorio("UsuarioRepository", "delete");
+    private static final Metrics.Operacion FIND_ALL_CON_PRESTAMOS_ACTIVOS = Metrics.repositorio("UsuarioRepository", "findAllConPrestamosActivos");
+    private static final Metrics.Operacion STREAM_ALL = Metrics.repositorio("UsuarioRepository", "streamAll");
+
+    @Override
+    public Optional<UsuarioEntity> findById(int id) throws SQLException {
+        return FIND_BY_ID.timeSql(() -> super.findById(id));
+    }
+
+    @Override
+    public List<UsuarioEntity> findAll() throws SQLException {
+        return FIND_ALL.timeSql(() -> super.findAll());
+    }
+
+    @Override
+    public List<UsuarioEntity> findPageConPrestamosActivos(int afterId, int limite) throws SQLException {
+        return FIND_PAGE_CON_PRESTAMOS_ACTIVOS.timeSql(() -> super.findPageConPrestamosActivos(afterId, limite));
+    }
+
+    @Override
+    public List<UsuarioEntity> findPage(int afterId, int limite) throws SQLException {
+        return FIND_PAGE.timeSql(() -> super.findPage(afterId, limite));
+    }
+
+    @Override
+    public UsuarioEntity save(UsuarioEntity usuario) throws SQLException {
+        return SAVE.timeSql(() -> super.save(usuario));
+    }
+
+    @Override
+    public List<Integer> saveAll(Collection<UsuarioEntity> usuarios) throws SQLException {
+        return SAVE_ALL.timeSql(() -> super.saveAll(usuarios));
+    }
+
+    @Override
+    public void delete(Connection conn, int id) throws SQLException {
+        DELETE.runSql(() -> super.delete(conn, id));
+    }
+
+    @Override
+    public List<UsuarioEntity> findAllConPrestamosActivos() throws SQLException {
+        return FIND_ALL_CON_PRESTAMOS_ACTIVOS.timeSql(() -> super.findAllConPrestamosActivos());
+    }
+
+    @Override
+    public Stream<UsuarioEntity> streamAll() throws SQLException {
+        return STREAM_ALL.timeStream(() -> super.streamAll());
+    }
+}
@@ -0,0 +1,47 @@
+package org.EduardoMango.services;
+
+import org.EduardoMango.database.DatabaseConfig;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tarea periódica de {@link ReservaService}: vence las reservas retenidas cuyo plazo pasó y asigna a las
+ * listas de espera las unidades que hayan entrado al stock por otros caminos (por ejemplo, aplicadas por
+ * la escritura diferida).
+ * <p>
+ * Se ejecuta cada {@code biblioteca.reservas.barridoSegundos} segundos (60 por defecto; 0 no lo programa).
+ */
+public class BarridoReservas implements AutoCloseable {
+
+    private final long intervaloSegundos;
+    private ScheduledExecutorService scheduler;
+
+    public BarridoReservas(long intervaloSegundos) {
+        this.intervaloSegundos = intervaloSegundos;
+    }
+
+    /**
+     * Crea la tarea con la configuración de {@code biblioteca.reservas.barridoSegundos}, sin iniciarla.
+     */
+    public static BarridoReservas fromConfig() {
+        return new BarridoReservas(Long.parseLong(DatabaseConfig.get("biblioteca.reservas.barridoSegundos", "60")));
+    }
+
+    /**
+     * Programa el barrido cada {@code intervaloSegundos}, empezando después del primer intervalo.
+     */
+    public void start() {
+        if (intervaloSegundos <= 0) return;
+        ReservaService reservaService = ReservaService.getInstance();
+        scheduler = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name("reservas-barrido").daemon().factory());
+        scheduler.scheduleWithFixedDelay(reservaService::barrer, intervaloSegundos, intervaloSegundos, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public void close() {
+        if (scheduler != null) scheduler.shutdownNow();
+    }
+}
@@ -0,0 +1,194 @@
+package org.EduardoMango.services;
+
+import org.EduardoMango.entities.EstadoReserva;
+import org.EduardoMango.entities.ReservaEntity;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Copia en memoria de las reservas pendientes, para que una devolución sepa en O(1) si el libro
+ * tiene lista de espera y a quién le toca, sin consultar la base.
+ * <p>
+ * Mantiene, por libro, una cola de las reservas en espera ordenada por id, y un mapa de las reservas
+ * retenidas por (libro, usuario). {@link ReservaService} la modifica dentro de las mismas transacciones
+ * que cambian las reservas en la base (que se serializan en la única conexión de escritura) y deshace
+ * el cambio si la transacción falla, así el orden en memoria es el mismo que el de los commits.
+ * Cada operación toma un único lock durante unas pocas operaciones en memoria.
+ */
+class ColaReservas {
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Map<Integer, ArrayDeque<ReservaEntity>> esperando = new HashMap<>();
+    private final Map<Long, ReservaEntity> retenidas = new HashMap<>();
+
+    /**
+     * Reemplaza el contenido por las reservas pendientes dadas, en orden de id.
+     */
+    void reemplazar(List<ReservaEntity> pendientes) {
+        lock.lock();
+        try {
+            esperando.clear();
+            retenidas.clear();
+            for (ReservaEntity reserva : pendientes) {
+                if (reserva.getEstado() == EstadoReserva.RETENIDA) {
+                    retenidas.put(clave(reserva.getLibro_id(), reserva.getUsuario_id()), reserva);
+                } else {
+                    esperando.computeIfAbsent(reserva.getLibro_id(), id -> new ArrayDeque<>()).addLast(reserva);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Agrega una reserva en espera en su lugar según el id (al final, salvo que se esté deshaciendo una baja).
+     */
+    void encolar(ReservaEntity reserva) {
+        lock.lock();
+        try {
+            ArrayDeque<ReservaEntity> cola = esperando.computeIfAbsent(reserva.getLibro_id(), id -> new ArrayDeque<>());
+            if (cola.isEmpty() || cola.peekLast().getId() < reserva.getId()) {
+                cola.addLast(reserva);
+            } else if (cola.peekFirst().getId() > reserva.getId()) {
+                cola.addFirst(reserva);
+            } else {
+                List<ReservaEntity> ordenadas = new ArrayList<>(cola);
+                ordenadas.add(reserva);
+                ordenadas.sort((a, b) -> Integer.compare(a.getId(), b.getId()));
+                cola.clear();
+                cola.addAll(ordenadas);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Quita y devuelve la primera reserva en espera del libro, o null si no hay.
+     */
+    ReservaEntity tomarPrimera(int libroId) {
+        lock.lock();
+        try {
+            ArrayDeque<ReservaEntity> cola = esperando.get(libroId);
+            if (cola == null) return null;
+            ReservaEntity primera = cola.pollFirst();
+            if (cola.isEmpty()) esperando.remove(libroId);
+            return primera;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Quita una reserva en espera.
+     *
+     * @return true si estaba en espera.
+     */
+    boolean quitar(ReservaEntity reserva) {
+        lock.lock();
+        try {
+            ArrayDeque<ReservaEntity> cola = esperando.get(reserva.getLibro_id());
+            if (cola == null) return false;
+            for (Iterator<ReservaEntity> it = cola.iterator(); it.hasNext(); ) {
+                if (it.next().getId() == reserva.getId()) {
+                    it.remove();
+                    if (cola.isEmpty()) esperando.remove(reserva.getLibro_id());
+                    return true;
+                }
+            }
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    boolean tieneEspera(int libroId) {
+        lock.lock();
+        try {
+            return esperando.containsKey(libroId);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Posición (desde 1) de una reserva en la lista de espera de su libro, o 0 si no está esperando.
+     */
+    int posicion(ReservaEntity reserva) {
+        lock.lock();
+        try {
+            ArrayDeque<ReservaEntity> cola = esperando.get(reserva.getLibro_id());
+            if (cola == null) return 0;
+            int posicion = 1;
+            for (ReservaEntity enCola : cola) {
+                if (enCola.getId() == reserva.getId()) return posicion;
+                posicion++;
+            }
+            return 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Ids de los libros con al menos una reserva en espera.
+     */
+    List<Integer> librosConEspera() {
+        lock.lock();
+        try {
+            return List.copyOf(esperando.keySet());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void retener(ReservaEntity reserva) {
+        lock.lock();
+        try {
+            retenidas.put(clave(reserva.getLibro_id(), reserva.getUsuario_id()), reserva);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Quita y devuelve la reserva retenida del usuario para el libro, o null si no tiene.
+     */
+    ReservaEntity tomarRetenida(int libroId, int usuarioId) {
+        lock.lock();
+        try {
+            return retenidas.remove(clave(libroId, usuarioId));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Quita una reserva retenida.
+     *
+     * @return true si estaba retenida.
+     */
+    boolean quitarRetenida(ReservaEntity reserva) {
+        lock.lock();
+        try {
+            long clave = clave(reserva.getLibro_id(), reserva.getUsuario_id());
+            ReservaEntity retenida = retenidas.get(clave);
+            if (retenida == null || retenida.getId() != reserva.getId()) return false;
+            retenidas.remove(clave);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static long clave(int libroId, int usuarioId) {
+        return ((long) libroId << 32) | (usuarioId & 0xFFFFFFFFL);
+    }
+}
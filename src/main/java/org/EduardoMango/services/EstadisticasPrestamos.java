@@ -0,0 +1,201 @@
+package org.EduardoMango.services;
+
+import org.EduardoMango.entities.PrestamoEntity;
+import org.EduardoMango.entities.RankingEntity;
+import org.EduardoMango.repositories.PrestamoRepository;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * Estadísticas de préstamos mantenidas en memoria y actualizadas en cada operación,
+ * en lugar de recalcularse recorriendo las tablas en cada consulta.
+ * <p>
+ * Mantiene:
+ * <ul>
+ * <li>La cantidad de préstamos (activos y devueltos) de cada libro y de cada usuario, en arreglos indexados por id.</li>
+ * <li>El total de préstamos y la cantidad de usuarios con al menos un préstamo.</li>
+ * <li>Los rankings de libros y usuarios más prestados, como conjuntos ordenados por (cantidad desc, id).</li>
+ * </ul>
+ * Los servicios la actualizan después de cada commit, en O(log n) por préstamo registrado o borrado.
+ * Los borrados de libros y usuarios descuentan los préstamos que borran con ellos.
+ * Solo se carga completa desde la base al crearse, antes de que los servicios registren operaciones.
+ * <p>
+ * No lleva el stock de los libros: de eso se ocupa {@link IndiceDisponibilidad}.
+ */
+public class EstadisticasPrestamos {
+
+    private static EstadisticasPrestamos instance;
+
+    private final PrestamoRepository prestamoRepository;
+
+    private int[] prestamosPorLibro = new int[0];
+    private int[] prestamosPorUsuario = new int[0];
+    private long totalPrestamos;
+    private int usuariosConPrestamos;
+    /** Claves de {@link #clave(int, int)}: el orden natural es de mayor a menor cantidad y luego por id. */
+    private final TreeSet<Long> rankingLibros = new TreeSet<>();
+    private final TreeSet<Long> rankingUsuarios = new TreeSet<>();
+
+    private EstadisticasPrestamos() {
+        prestamoRepository = PrestamoRepository.getInstance();
+    }
+
+    public static synchronized EstadisticasPrestamos getInstance() {
+        if (instance == null) {
+            instance = new EstadisticasPrestamos();
+            instance.reconstruir();
+        }
+        return instance;
+    }
+
+    /**
+     * Calcula todas las estadísticas desde la base. Solo se llama al crearse.
+     * En caso de ocurrir una SQLException, imprime el mensaje de error y deja las estadísticas anteriores.
+     */
+    private void reconstruir() {
+        // Se lee la base sin tomar el monitor: en un virtual thread, esperar la base dentro
+        // de un bloque synchronized fija el carrier thread y bloquea a las demás operaciones.
+        int[][] porLibro = {new int[0]};
+        int[][] porUsuario = {new int[0]};
+        try {
+            prestamoRepository.forEachCantidadPorLibro((id, cantidad) -> {
+                porLibro[0] = asegurar(porLibro[0], id);
+                porLibro[0][id] = cantidad;
+            });
+            prestamoRepository.forEachCantidadPorUsuario((id, cantidad) -> {
+                porUsuario[0] = asegurar(porUsuario[0], id);
+                porUsuario[0][id] = cantidad;
+            });
+        } catch (SQLException e) {
+            System.out.println(e.getMessage());
+            return;
+        }
+
+        synchronized (this) {
+            reemplazar(porLibro[0], porUsuario[0]);
+        }
+    }
+
+    private void reemplazar(int[] porLibro, int[] porUsuario) {
+        prestamosPorLibro = porLibro;
+        prestamosPorUsuario = porUsuario;
+        totalPrestamos = 0;
+        usuariosConPrestamos = 0;
+        rankingLibros.clear();
+        rankingUsuarios.clear();
+        for (int id = 0; id < prestamosPorLibro.length; id++) {
+            if (prestamosPorLibro[id] > 0) rankingLibros.add(clave(prestamosPorLibro[id], id));
+        }
+        for (int id = 0; id < prestamosPorUsuario.length; id++) {
+            int cantidad = prestamosPorUsuario[id];
+            if (cantidad > 0) {
+                totalPrestamos += cantidad;
+                usuariosConPrestamos++;
+                rankingUsuarios.add(clave(cantidad, id));
+            }
+        }
+    }
+
+    /**
+     * Registra un préstamo nuevo: suma un préstamo al libro y al usuario.
+     */
+    public synchronized void registrarPrestamo(int usuarioId, int libroId) {
+        prestamosPorLibro = asegurar(prestamosPorLibro, libroId);
+        prestamosPorUsuario = asegurar(prestamosPorUsuario, usuarioId);
+        actualizar(rankingLibros, prestamosPorLibro, libroId, +1);
+        if (actualizar(rankingUsuarios, prestamosPorUsuario, usuarioId, +1) == 1) usuariosConPrestamos++;
+        totalPrestamos++;
+    }
+
+    /**
+     * Registra el borrado de un préstamo: resta un préstamo al libro y al usuario.
+     * El stock no cambia, igual que en la base.
+     * <p>
+     * Conmuta con {@link #registrarPrestamo}: si el borrado de un préstamo se registra antes que su alta
+     * (los dos se registran después de sus commits), la cantidad queda negativa hasta que llega el alta.
+     */
+    public synchronized void registrarBorrado(int usuarioId, int libroId) {
+        prestamosPorLibro = asegurar(prestamosPorLibro, libroId);
+        prestamosPorUsuario = asegurar(prestamosPorUsuario, usuarioId);
+        actualizar(rankingLibros, prestamosPorLibro, libroId, -1);
+        if (actualizar(rankingUsuarios, prestamosPorUsuario, usuarioId, -1) == 0) usuariosConPrestamos--;
+        totalPrestamos--;
+    }
+
+    /**
+     * Registra el borrado de varios préstamos, por ejemplo los de un libro o usuario borrado.
+     */
+    public synchronized void registrarBorrados(Collection<PrestamoEntity> prestamos) {
+        for (PrestamoEntity prestamo : prestamos) {
+            registrarBorrado(prestamo.getUsuario_id(), prestamo.getLibro_id());
+        }
+    }
+
+    public synchronized long getTotalPrestamos() {
+        return totalPrestamos;
+    }
+
+    public synchronized int getUsuariosConPrestamos() {
+        return usuariosConPrestamos;
+    }
+
+    /**
+     * Promedio de préstamos por usuario con al menos un préstamo, o 0.0 si no hay préstamos.
+     */
+    public synchronized double getPromedioPorUsuario() {
+        return usuariosConPrestamos == 0 ? 0.0 : (double) totalPrestamos / usuariosConPrestamos;
+    }
+
+    /**
+     * Los {@code limite} libros más prestados, como ranking de ids de libro, de mayor a menor cantidad.
+     */
+    public synchronized List<RankingEntity<Integer>> topLibros(int limite) {
+        return top(rankingLibros, limite);
+    }
+
+    /**
+     * Los {@code limite} usuarios con más préstamos, como ranking de ids de usuario, de mayor a menor cantidad.
+     */
+    public synchronized List<RankingEntity<Integer>> topUsuarios(int limite) {
+        return top(rankingUsuarios, limite);
+    }
+
+    private static List<RankingEntity<Integer>> top(TreeSet<Long> ranking, int limite) {
+        List<RankingEntity<Integer>> top = new ArrayList<>(Math.min(limite, ranking.size()));
+        Iterator<Long> it = ranking.iterator();
+        while (top.size() < limite && it.hasNext()) {
+            long clave = it.next();
+            top.add(new RankingEntity<>((int) clave, Integer.MAX_VALUE - (int) (clave >>> 32)));
+        }
+        return top;
+    }
+
+    /**
+     * Suma {@code delta} a la cantidad del id y reposiciona el id en el ranking.
+     *
+     * @return La cantidad nueva.
+     */
+    private static int actualizar(TreeSet<Long> ranking, int[] cantidades, int id, int delta) {
+        int anterior = cantidades[id];
+        int nueva = anterior + delta;
+        cantidades[id] = nueva;
+        if (anterior > 0) ranking.remove(clave(anterior, id));
+        if (nueva > 0) ranking.add(clave(nueva, id));
+        return nueva;
+    }
+
+    private static long clave(int cantidad, int id) {
+        return ((long) (Integer.MAX_VALUE - cantidad) << 32) | id;
+    }
+
+    private static int[] asegurar(int[] arreglo, int id) {
+        if (id < arreglo.length) return arreglo;
+        return Arrays.copyOf(arreglo, Math.max(id + 1, arreglo.length + (arreglo.length >> 1)));
+    }
+}
@@ -1,15 +1,54 @@
 package org.EduardoMango.services;
 
+import org.EduardoMango.repositories.UncheckedSQLException;
+
 import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
 
 public interface IService <T>{
 
     List<T> findAll();
 
+    /**
+     * Procesa todas las entidades de a una, a medida que se leen de la base,
+     * sin cargarlas todas en memoria.
+     */
+    void forEach(Consumer<? super T> action);
+
+    /**
+     * Igual que {@link #forEach}, pero un error de la base se relanza como {@link UncheckedSQLException}
+     * (aunque ya se hayan procesado entidades) en lugar de imprimirse.
+     */
+    void forEachOrThrow(Consumer<? super T> action);
+
+    /**
+     * Obtiene una página de entidades ordenadas por id, a partir del id {@code afterId} (exclusivo).
+     * La página siguiente se pide pasando el id de la última entidad recibida.
+     */
+    List<T> findPage(int afterId, int limite);
+
     T findById(int id);
 
-    void save(T t);
+    /**
+     * Guarda la entidad y la devuelve con los valores asignados por la base (por ejemplo, su id).
+     *
+     * @return La entidad guardada, o vacío si no se pudo guardar.
+     */
+    Optional<T> save(T t);
+
+    /**
+     * Igual que {@link #save}, pero un error de la base se relanza como {@link UncheckedSQLException}.
+     *
+     * @return La entidad guardada, o vacío si se rechazó (por ejemplo, un préstamo sin stock).
+     */
+    Optional<T> saveOrThrow(T t);
 
     void delete(int id);
 
+    /**
+     * Igual que {@link #delete}, pero un error de la base se relanza como {@link UncheckedSQLException}.
+     */
+    void deleteOrThrow(int id);
+
 }
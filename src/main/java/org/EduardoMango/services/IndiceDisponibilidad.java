@@ -0,0 +1,288 @@
+package org.EduardoMango.services;
+
+import org.EduardoMango.repositories.LibroRepository;
+
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Índice en memoria del stock de los libros, para responder disponibilidad, totales
+ * y listados de libros disponibles sin consultar la base, y para reservar unidades
+ * antes de abrir la transacción de un préstamo.
+ * <p>
+ * Mantiene:
+ * <ul>
+ * <li>Las unidades disponibles de cada libro, en un arreglo indexado por id (los ids son autoincrementales,
+ * así que el arreglo es un mapa de int a int sin objetos por entrada).</li>
+ * <li>Un mapa de bits con los ids de los libros que tienen al menos una unidad, para recorrer los
+ * disponibles en orden de id sin revisar los que no lo están.</li>
+ * <li>El total de unidades y la cantidad de libros disponibles.</li>
+ * </ul>
+ * Concurrencia: el stock de cada libro se modifica bajo uno de {@value #FRANJAS} locks, elegido por id
+ * (lock striping). Los préstamos de libros distintos casi nunca comparten lock y avanzan en paralelo;
+ * los del mismo libro se serializan solo mientras descuentan la unidad. Como varios libros comparten
+ * cada palabra del mapa de bits, los bits se actualizan con CAS. Las consultas de disponibilidad
+ * y los listados leen el mapa de bits sin locks.
+ * <p>
+ * Se carga completo al crearse y los servicios lo actualizan después de cada commit que cambia el stock
+ * (devolución, ajuste, alta y baja de libros); los préstamos descuentan la unidad antes de la transacción
+ * con {@link #reservar(int)} y la devuelven con {@link #liberar(int)} si no se confirman. Las importaciones
+ * masivas registran cada libro insertado, bloque por bloque. La base sigue siendo la que decide si un préstamo se
+ * puede hacer: el índice solo permite rechazar sin abrir una transacción los que seguro no se pueden.
+ */
+public class IndiceDisponibilidad {
+
+    private static IndiceDisponibilidad instance;
+
+    /** Cantidad de locks; potencia de dos. */
+    private static final int FRANJAS = 64;
+
+    private final LibroRepository libroRepository;
+
+    private final ReentrantLock[] franjas = new ReentrantLock[FRANJAS];
+    /** Cada posición se lee y escribe con el lock de su franja; el arreglo se reemplaza con todos los locks. */
+    private volatile int[] unidades = new int[0];
+    private volatile AtomicLongArray disponibles = new AtomicLongArray(0);
+    private final LongAdder totalUnidades = new LongAdder();
+    private final LongAdder cantidadDisponibles = new LongAdder();
+
+    private IndiceDisponibilidad() {
+        libroRepository = LibroRepository.getInstance();
+        for (int i = 0; i < FRANJAS; i++) {
+            franjas[i] = new ReentrantLock();
+        }
+    }
+
+    public static synchronized IndiceDisponibilidad getInstance() {
+        if (instance == null) {
+            instance = new IndiceDisponibilidad();
+            instance.reconstruir();
+        }
+        return instance;
+    }
+
+    /**
+     * Carga el stock de todos los libros desde la base. Solo se llama al crearse: con el índice en uso,
+     * un préstamo o una devolución que se confirmara entre la lectura y el reemplazo se perdería.
+     * En caso de ocurrir una SQLException, imprime el mensaje de error y deja el índice anterior.
+     */
+    private void reconstruir() {
+        // Se lee la base sin tomar los locks, igual que en EstadisticasPrestamos.
+        int[][] leidas = {new int[0]};
+        try {
+            libroRepository.forEachUnidades((id, cantidad) -> {
+                leidas[0] = asegurar(leidas[0], id);
+                leidas[0][id] = Math.max(0, cantidad);
+            });
+        } catch (SQLException e) {
+            System.out.println(e.getMessage());
+            return;
+        }
+
+        int[] nuevas = leidas[0];
+        AtomicLongArray bits = new AtomicLongArray(palabras(nuevas.length));
+        long total = 0;
+        int conStock = 0;
+        for (int id = 0; id < nuevas.length; id++) {
+            if (nuevas[id] > 0) {
+                bits.set(id >>> 6, bits.get(id >>> 6) | (1L << id));
+                total += nuevas[id];
+                conStock++;
+            }
+        }
+
+        bloquearTodas();
+        try {
+            unidades = nuevas;
+            disponibles = bits;
+            totalUnidades.reset();
+            totalUnidades.add(total);
+            cantidadDisponibles.reset();
+            cantidadDisponibles.add(conStock);
+        } finally {
+            desbloquearTodas();
+        }
+    }
+
+    /**
+     * Descuenta una unidad del libro si tiene alguna.
+     *
+     * @return true si se reservó la unidad; false si el libro no tiene unidades disponibles.
+     */
+    public boolean reservar(int libroId) {
+        ReentrantLock lock = franja(libroId);
+        lock.lock();
+        try {
+            int[] actuales = unidades;
+            if (libroId < 0 || libroId >= actuales.length || actuales[libroId] <= 0) return false;
+            fijar(actuales, libroId, actuales[libroId] - 1);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Devuelve una unidad reservada con {@link #reservar(int)} que finalmente no se prestó.
+     */
+    public void liberar(int libroId) {
+        ajustar(libroId, +1);
+    }
+
+    /**
+     * Registra el alta de un libro, o reemplaza sus unidades.
+     */
+    public void registrar(int libroId, Integer cantidad) {
+        modificar(libroId, anterior -> cantidad == null ? 0 : Math.max(0, cantidad));
+    }
+
+    /**
+     * Suma {@code delta} a las unidades de un libro, sin bajar de cero (igual que en la base).
+     */
+    public void ajustar(int libroId, int delta) {
+        modificar(libroId, anterior -> Math.max(0, anterior + delta));
+    }
+
+    /**
+     * Registra la baja de un libro.
+     */
+    public void eliminar(int libroId) {
+        if (libroId >= 0 && libroId < unidades.length) modificar(libroId, anterior -> 0);
+    }
+
+    public boolean isDisponible(int libroId) {
+        AtomicLongArray bits = disponibles;
+        int palabra = libroId >>> 6;
+        return libroId >= 0 && palabra < bits.length() && (bits.get(palabra) & (1L << libroId)) != 0;
+    }
+
+    public int getUnidades(int libroId) {
+        ReentrantLock lock = franja(libroId);
+        lock.lock();
+        try {
+            int[] actuales = unidades;
+            return libroId >= 0 && libroId < actuales.length ? actuales[libroId] : 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Total de unidades disponibles de todos los libros.
+     */
+    public long getTotalUnidades() {
+        return totalUnidades.sum();
+    }
+
+    /**
+     * Cantidad de libros con al menos una unidad disponible.
+     */
+    public int getCantidadDisponibles() {
+        return (int) cantidadDisponibles.sum();
+    }
+
+    /**
+     * Ids de libros disponibles mayores a {@code afterId}, en orden, hasta {@code limite}.
+     * Con {@code limite} mayor o igual a la cantidad de disponibles devuelve todos;
+     * con {@code limite} menor o igual a cero, ninguno.
+     */
+    public int[] idsDisponibles(int afterId, int limite) {
+        if (limite <= 0 || afterId == Integer.MAX_VALUE) return new int[0];
+        AtomicLongArray bits = disponibles;
+        int desde = Math.max(0, afterId + 1);
+        int[] ids = new int[Math.min(limite, Math.max(16, getCantidadDisponibles()))];
+        int n = 0;
+        for (int w = desde >>> 6; w < bits.length() && n < limite; w++) {
+            long palabra = bits.get(w);
+            if (w == desde >>> 6) palabra &= -1L << desde;
+            while (palabra != 0 && n < limite) {
+                if (n == ids.length) ids = Arrays.copyOf(ids, (int) Math.min(limite, ids.length * 2L));
+                ids[n++] = (w << 6) + Long.numberOfTrailingZeros(palabra);
+                palabra &= palabra - 1;
+            }
+        }
+        return n == ids.length ? ids : Arrays.copyOf(ids, n);
+    }
+
+    private void modificar(int libroId, IntUnaryOperator nuevaCantidad) {
+        if (libroId < 0) return; // ningún libro tiene id negativo
+        if (libroId >= unidades.length) crecer(libroId);
+        ReentrantLock lock = franja(libroId);
+        lock.lock();
+        try {
+            int[] actuales = unidades;
+            fijar(actuales, libroId, nuevaCantidad.applyAsInt(actuales[libroId]));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Cambia las unidades de un libro; se llama con el lock de su franja tomado.
+     */
+    private void fijar(int[] actuales, int libroId, int cantidad) {
+        int anterior = actuales[libroId];
+        actuales[libroId] = cantidad;
+        totalUnidades.add(cantidad - anterior);
+        if ((anterior > 0) != (cantidad > 0)) {
+            long bit = 1L << libroId;
+            if (cantidad > 0) {
+                disponibles.accumulateAndGet(libroId >>> 6, bit, (palabra, b) -> palabra | b);
+                cantidadDisponibles.increment();
+            } else {
+                disponibles.accumulateAndGet(libroId >>> 6, ~bit, (palabra, b) -> palabra & b);
+                cantidadDisponibles.decrement();
+            }
+        }
+    }
+
+    /**
+     * Agranda los arreglos para que entre {@code libroId}, con todas las franjas tomadas.
+     */
+    private void crecer(int libroId) {
+        bloquearTodas();
+        try {
+            int[] actuales = unidades;
+            if (libroId < actuales.length) return;
+            int[] nuevas = asegurar(actuales, libroId);
+            AtomicLongArray bits = disponibles;
+            AtomicLongArray nuevosBits = new AtomicLongArray(palabras(nuevas.length));
+            for (int i = 0; i < bits.length(); i++) {
+                nuevosBits.set(i, bits.get(i));
+            }
+            disponibles = nuevosBits;
+            unidades = nuevas;
+        } finally {
+            desbloquearTodas();
+        }
+    }
+
+    private ReentrantLock franja(int libroId) {
+        return franjas[libroId & (FRANJAS - 1)];
+    }
+
+    private void bloquearTodas() {
+        for (ReentrantLock lock : franjas) {
+            lock.lock();
+        }
+    }
+
+    private void desbloquearTodas() {
+        for (int i = FRANJAS - 1; i >= 0; i--) {
+            franjas[i].unlock();
+        }
+    }
+
+    private static int palabras(int bits) {
+        return (bits + 63) >>> 6;
+    }
+
+    private static int[] asegurar(int[] arreglo, int id) {
+        if (id < arreglo.length) return arreglo;
+        return Arrays.copyOf(arreglo, Math.max(id + 1, arreglo.length + (arreglo.length >> 1)));
+    }
+}
@@ -1,27 +1,53 @@
 package org.EduardoMango.services;
 
 import lombok.Getter;
+import org.EduardoMango.database.DatabaseConnection;
+import org.EduardoMango.entities.BusquedaLibros;
 import org.EduardoMango.entities.LibroEntity;
 import org.EduardoMango.entities.PrestamoEntity;
+import org.EduardoMango.entities.RankingEntity;
+import org.EduardoMango.importer.CsvImporter;
+import org.EduardoMango.metrics.Metrics;
 import org.EduardoMango.repositories.LibroRepository;
 import org.EduardoMango.repositories.PrestamoRepository;
+import org.EduardoMango.repositories.ResumenPrestamosRepository;
+import org.EduardoMango.repositories.UncheckedSQLException;
+import org.EduardoMango.writebehind.WriteBehind;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.sql.SQLException;
-import java.util.Comparator;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.function.Consumer;
 
 public class LibroService implements IService<LibroEntity> {
 
     @Getter
-    private static final LibroService instance = new LibroService();
+    private static final LibroService instance = new LibroServiceConMetricas();
 
-    private final PrestamoRepository prestamoRepository;
     private final LibroRepository libroRepository;
+    private final PrestamoRepository prestamoRepository;
+    private final ResumenPrestamosRepository resumenRepository;
+    private final EstadisticasPrestamos estadisticas;
+    private final IndiceDisponibilidad disponibilidad;
+    private final ReservaService reservas;
+    /** Null si la escritura diferida no está habilitada. */
+    private final WriteBehind writeBehind;
 
-    private LibroService() {
+    LibroService() {
         libroRepository = LibroRepository.getInstance();
         prestamoRepository = PrestamoRepository.getInstance();
+        resumenRepository = ResumenPrestamosRepository.getInstance();
+        // Antes que las estadísticas y el índice: al iniciar aplica los ajustes de stock que quedaron en el log.
+        writeBehind = WriteBehind.iniciar();
+        estadisticas = EstadisticasPrestamos.getInstance();
+        disponibilidad = IndiceDisponibilidad.getInstance();
+        reservas = ReservaService.getInstance();
     }
 
 
@@ -30,26 +56,96 @@ public class LibroService implements IService<LibroEntity> {
         try {
             return libroRepository.findAll();
         } catch (SQLException e) {
-            System.out.println(e.getMessage());
+            error("findAll", e);
             return List.of();
         }
     }
 
     /**
-     * Obtiene todos los libros que tienen al menos una unidad disponible.
+     * Obtiene todos los libros que tienen al menos una unidad disponible, ordenados por id.
+     * Los ids salen de {@link IndiceDisponibilidad} y cada libro de la caché del repositorio;
+     * solo los libros que no están en caché se leen de la base.
      * En caso de ocurrir una SQLException, imprime el mensaje de error
      * y devuelve una lista vacía.
      *
      * @return Una lista de objetos LibroEntity que tienen unidades disponibles.
      */
     public List<LibroEntity> findAllDisponible(){
+        return librosPorId(disponibilidad.idsDisponibles(0, Integer.MAX_VALUE), "findAllDisponible");
+    }
+
+    @Override
+    public void forEach(Consumer<? super LibroEntity> action) {
         try {
-            return libroRepository.findAll()
-                    .stream()
-                    .filter(l -> l.getUnidades_disponibles()>0)
-                    .toList();
+            libroRepository.forEach(action);
         } catch (SQLException e) {
-            System.out.println(e.getMessage());
+            error("forEach", e);
+        }
+    }
+
+    @Override
+    public void forEachOrThrow(Consumer<? super LibroEntity> action) {
+        try {
+            libroRepository.forEach(action);
+        } catch (SQLException e) {
+            throw new UncheckedSQLException(e);
+        }
+    }
+
+    @Override
+    public List<LibroEntity> findPage(int afterId, int limite) {
+        try {
+            return libroRepository.findPage(afterId, limite);
+        } catch (SQLException e) {
+            error("findPage", e);
+            return List.of();
+        }
+    }
+
+    /**
+     * Obtiene una página de libros con al menos una unidad disponible, ordenados por id.
+     * Igual que {@link #findAllDisponible()}, los ids salen del índice de disponibilidad.
+     * En caso de ocurrir una SQLException, imprime el mensaje de error
+     * y devuelve una lista vacía.
+     */
+    public List<LibroEntity> findPageDisponibles(int afterId, int limite) {
+        return librosPorId(disponibilidad.idsDisponibles(afterId, limite), "findPageDisponibles");
+    }
+
+    /**
+     * Indica si el libro tiene al menos una unidad disponible, sin consultar la base.
+     */
+    public boolean isDisponible(int id) {
+        return disponibilidad.isDisponible(id);
+    }
+
+    private List<LibroEntity> librosPorId(int[] ids, String metodo) {
+        try {
+            List<LibroEntity> libros = new ArrayList<>(ids.length);
+            for (int id : ids) {
+                libroRepository.findById(id).ifPresent(libros::add);
+            }
+            return libros;
+        } catch (SQLException e) {
+            error(metodo, e);
+            return List.of();
+        }
+    }
+
+    /**
+     * Busca libros por título y autor, con filtros por año de publicación y disponibilidad.
+     * Ver {@link BusquedaLibros} para el formato del texto.
+     * En caso de ocurrir una SQLException, imprime el mensaje de error
+     * y devuelve una lista vacía.
+     *
+     * @param busqueda El texto, los filtros y la página a devolver.
+     * @return Los libros encontrados, del más al menos relevante.
+     */
+    public List<LibroEntity> search(BusquedaLibros busqueda) {
+        try {
+            return libroRepository.search(busqueda);
+        } catch (SQLException e) {
+            error("search", e);
             return List.of();
         }
     }
@@ -64,10 +160,43 @@ public class LibroService implements IService<LibroEntity> {
     }
 
     @Override
-    public void save(LibroEntity libroEntity) {
+    public Optional<LibroEntity> save(LibroEntity libroEntity) {
+        try {
+            return Optional.of(guardar(libroEntity));
+        } catch (SQLException e) {
+            error("save", e);
+            return Optional.empty();
+        }
+    }
+
+    @Override
+    public Optional<LibroEntity> saveOrThrow(LibroEntity libroEntity) {
         try {
-            libroRepository.save(libroEntity);
+            return Optional.of(guardar(libroEntity));
         } catch (SQLException e) {
+            throw new UncheckedSQLException(e);
+        }
+    }
+
+    private LibroEntity guardar(LibroEntity libroEntity) throws SQLException {
+        LibroEntity guardado = libroRepository.save(libroEntity);
+        disponibilidad.registrar(guardado.getId(), guardado.getUnidades_disponibles());
+        return guardado;
+    }
+
+    /**
+     * Importa libros desde un archivo CSV (titulo, autor, anio_publicacion, unidades_disponibles)
+     * con inserciones por lotes, e imprime la cantidad de filas y el rendimiento en filas/s.
+     * En caso de error imprime el mensaje; los bloques ya insertados quedan importados.
+     *
+     * @param archivo El archivo CSV, con encabezado.
+     */
+    public void importarCsv(Path archivo) {
+        try {
+            // Cada bloque se registra en el índice al confirmarse: si falla uno, los anteriores quedan importados.
+            System.out.println(CsvImporter.libros().importar(archivo,
+                    libro -> disponibilidad.registrar(libro.getId(), libro.getUnidades_disponibles())));
+        } catch (IOException | SQLException | IllegalArgumentException e) {
             System.out.println(e.getMessage());
         }
     }
@@ -75,51 +204,180 @@ public class LibroService implements IService<LibroEntity> {
     @Override
     public void delete(int id) {
         try {
-            libroRepository.delete(id);
+            eliminar(id);
         } catch (SQLException e) {
-            System.out.println(e.getMessage());
+            error("delete", e);
+        }
+    }
+
+    @Override
+    public void deleteOrThrow(int id) {
+        try {
+            eliminar(id);
+        } catch (SQLException e) {
+            throw new UncheckedSQLException(e);
+        }
+    }
+
+    private void eliminar(int id) throws SQLException {
+        reservas.cancelarPorLibro(id);
+        // Los préstamos se borran antes que el libro, en la misma transacción, para descontarlos de las estadísticas.
+        List<PrestamoEntity> borrados = DatabaseConnection.inTransaction(conn -> {
+            List<PrestamoEntity> prestamos = prestamoRepository.deleteByLibro(conn, id);
+            libroRepository.delete(conn, id);
+            return prestamos;
+        });
+        disponibilidad.eliminar(id);
+        estadisticas.registrarBorrados(borrados);
+    }
+
+    /**
+     * Suma o resta unidades disponibles a un libro (por ejemplo, al incorporar ejemplares o dar de baja
+     * ejemplares dañados). El stock nunca queda por debajo de cero.
+     * Con la escritura diferida habilitada (y sin fallar), el ajuste se confirma al quedar escrito en el log
+     * y se aplica a la base poco después ({@link WriteBehind}).
+     * Las unidades que se suman pasan primero a las reservas en espera del libro ({@link ReservaService}).
+     * En caso de ocurrir una SQLException, imprime el mensaje de error.
+     *
+     * @param id    El ID del libro.
+     * @param delta Las unidades a sumar (positivo) o restar (negativo).
+     * @throws NoSuchElementException Si el libro no existe.
+     */
+    public void ajustarStock(int id, int delta) {
+        try {
+            ajustar(id, delta);
+        } catch (SQLException | IOException e) {
+            error("ajustarStock", e);
         }
     }
 
+    /**
+     * Igual que {@link #ajustarStock(int, int)}, pero un error de la base se relanza como {@link UncheckedSQLException},
+     * y uno del log de escritura diferida como IllegalStateException.
+     */
+    public void ajustarStockOrThrow(int id, int delta) {
+        try {
+            ajustar(id, delta);
+        } catch (SQLException e) {
+            throw new UncheckedSQLException(e);
+        } catch (IOException e) {
+            throw new IllegalStateException(e.getMessage(), e);
+        }
+    }
+
+    private void ajustar(int id, int delta) throws SQLException, IOException {
+        libroRepository.findById(id).orElseThrow(() -> new NoSuchElementException("El libro no existe"));
+        if (writeBehind != null && writeBehind.isActiva()) {
+            writeBehind.ajustarStock(id, delta);
+        } else {
+            DatabaseConnection.inTransaction(conn -> {
+                libroRepository.ajustarStock(conn, id, delta);
+                return null;
+            });
+            libroRepository.invalidate(id);
+        }
+        disponibilidad.ajustar(id, delta);
+        if (delta > 0) reservas.despachar(id);
+    }
+
     /**
      * Calcula el número total de unidades disponibles de todos los libros.
-     * Este método obtiene todos los libros disponibles y suma sus unidades disponibles.
+     * Se responde en O(1) desde {@link IndiceDisponibilidad}.
      *
      * @return El número total de unidades disponibles de todos los libros.
      */
     public long totalLibrosDisponibles() {
-        return findAllDisponible()
-                .stream()
-                .mapToLong(LibroEntity::getUnidades_disponibles)
-                .sum();
+        return disponibilidad.getTotalUnidades();
+    }
+
+    /**
+     * Obtiene el ranking de los libros más prestados de todos los tiempos.
+     * Las posiciones salen de {@link EstadisticasPrestamos} en O(limite · log n);
+     * solo los libros del ranking se leen de la base (o de la caché).
+     *
+     * @param limite Cantidad máxima de posiciones del ranking.
+     * @return Una lista ordenada de mayor a menor cantidad de préstamos.
+     * Devuelve una lista vacía si ocurre un error al acceder a la base de datos.
+     */
+    public List<RankingEntity<LibroEntity>> findTopPrestados(int limite) {
+        try {
+            List<RankingEntity<LibroEntity>> ranking = new ArrayList<>();
+            for (RankingEntity<Integer> posicion : estadisticas.topLibros(limite)) {
+                libroRepository.findById(posicion.getEntidad())
+                        .ifPresent(libro -> ranking.add(new RankingEntity<>(libro, posicion.getCantidad_prestamos())));
+            }
+            return ranking;
+        } catch (SQLException e) {
+            error("findTopPrestados", e);
+            return List.of();
+        }
+    }
+
+    /**
+     * Obtiene el ranking de los libros más prestados dentro de un rango de fechas.
+     * El conteo se resuelve sobre los resúmenes mensuales y diarios de préstamos por libro
+     * ({@link ResumenPrestamosRepository}), sin recorrer los préstamos del rango.
+     * En caso de ocurrir una SQLException, imprime el mensaje de error
+     * y devuelve una lista vacía.
+     *
+     * @param limite Cantidad máxima de posiciones del ranking.
+     * @param desde  Fecha mínima de préstamo (inclusive), o null para no acotar.
+     * @param hasta  Fecha máxima de préstamo (inclusive), o null para no acotar.
+     * @return Una lista ordenada de mayor a menor cantidad de préstamos.
+     */
+    public List<RankingEntity<LibroEntity>> findTopPrestados(int limite, LocalDate desde, LocalDate hasta) {
+        try {
+            return resumenRepository.findTopLibros(limite, desde, hasta);
+        } catch (SQLException e) {
+            error("findTopPrestados", e);
+            return List.of();
+        }
     }
 
     /**
      * Busca el libro que ha sido prestado el mayor número de veces.
-     * Este método consulta todos los préstamos y todos los libros,
-     * cuenta la cantidad de préstamos para cada libro y devuelve el libro
-     * con el recuento máximo de préstamos.
+     * Es la primera posición del ranking devuelto por {@link #findTopPrestados(int)}.
      *
      * @return El libro que ha sido prestado el mayor número de veces.
-     * @throws NoSuchElementException Si no se encuentra ningún libro en la base de datos
-     * o si ocurre un error al acceder a la base de datos
-     * para obtener los libros y préstamos.
+     * @throws NoSuchElementException Si no hay préstamos registrados en la base de datos
+     * o si ocurre un error al acceder a la base de datos.
      */
     public LibroEntity findByMaxPrestamos() {
+        RankingEntity<Integer> primero = estadisticas.topLibros(1).stream()
+                .findFirst()
+                .orElseThrow(() -> new NoSuchElementException("No se encontraron préstamos en la base de datos."));
         try {
-            List<PrestamoEntity> prestamos = prestamoRepository.findAll();
-            List<LibroEntity> libros = libroRepository.findAll();
-
-            return libros.stream()
-                    .max(Comparator.comparingLong(libro ->
-                            prestamos.stream()
-                                    .filter(p -> p.getLibro_id() == libro.getId())
-                                    .count()
-                    ))
-                    .orElseThrow(() -> new NoSuchElementException("No se encontraron libros en la base de datos."));
+            return libroRepository.findById(primero.getEntidad()).orElseThrow(NoSuchElementException::new);
+        } catch (SQLException e) {
+            throw new NoSuchElementException("Error al acceder a la base de datos para obtener los libros y préstamos.", e);
+        }
+    }
 
+    /**
+     * Busca el libro que fue prestado el mayor número de veces en un mes.
+     * Se lee de los resúmenes mensuales de préstamos por libro.
+     *
+     * @param mes El mes de los préstamos.
+     * @return El libro más prestado del mes.
+     * @throws NoSuchElementException Si no hay préstamos en ese mes
+     * o si ocurre un error al acceder a la base de datos.
+     */
+    public LibroEntity findByMaxPrestamos(YearMonth mes) {
+        try {
+            return resumenRepository.findTopLibros(1, mes.atDay(1), mes.atEndOfMonth()).stream()
+                    .findFirst()
+                    .map(RankingEntity::getEntidad)
+                    .orElseThrow(() -> new NoSuchElementException("No se encontraron préstamos en " + mes + "."));
         } catch (SQLException e) {
             throw new NoSuchElementException("Error al acceder a la base de datos para obtener los libros y préstamos.", e);
         }
     }
+
+    /**
+     * Informa un error atrapado por un método de consola y lo cuenta en las métricas del servicio.
+     */
+    private static void error(String metodo, Exception e) {
+        Metrics.errorAtrapado("LibroService", metodo, e);
+        System.out.println(e.getMessage());
+    }
 }
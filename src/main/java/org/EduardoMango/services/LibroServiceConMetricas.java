@@ -0,0 +1,135 @@
+package org.EduardoMango.services;
+
+import org.EduardoMango.entities.BusquedaLibros;
+import org.EduardoMango.entities.LibroEntity;
+import org.EduardoMango.entities.RankingEntity;
+import org.EduardoMango.metrics.Metrics;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+/**
+ * {@link LibroService} con métricas: cada método público se mide con una {@link Metrics.Operacion}
+ * registrada una sola vez y delega en la implementación. Es la instancia que devuelve {@link LibroService#getInstance()}.
+ */
+class LibroServiceConMetricas extends LibroService {
+
+    private static final Metrics.Operacion FIND_ALL = Metrics.servicio("LibroService", "findAll");
+    private static final Metrics.Operacion FIND_ALL_DISPONIBLE = Metrics.servicio("LibroService", "findAllDisponible");
+    private static final Metrics.Operacion FOR_EACH = Metrics.servicio("LibroService", "forEach");
+    private static final Metrics.Operacion FIND_PAGE = Metrics.servicio("LibroService", "findPage");
+    private static final Metrics.Operacion FIND_PAGE_DISPONIBLES = Metrics.servicio("LibroService", "findPageDisponibles");
+    private static final Metrics.Operacion SEARCH = Metrics.servicio("LibroService", "search");
+    private static final Metrics.Operacion FIND_BY_ID = Metrics.servicio("LibroService", "findById");
+    private static final Metrics.Operacion SAVE = Metrics.servicio("LibroService", "save");
+    private static final Metrics.Operacion IMPORTAR_CSV = Metrics.servicio("LibroService", "importarCsv");
+    private static final Metrics.Operacion DELETE = Metrics.servicio("LibroService", "delete");
+    private static final Metrics.Operacion AJUSTAR_STOCK = Metrics.servicio("LibroService", "ajustarStock");
+    private static final Metrics.Operacion TOTAL_LIBROS_DISPONIBLES = Metrics.servicio("LibroService", "totalLibrosDisponibles");
+    private static final Metrics.Operacion FIND_TOP_PRESTADOS = Metrics.servicio("LibroService", "findTopPrestados");
+    private static final Metrics.Operacion FIND_BY_MAX_PRESTAMOS = Metrics.servicio("LibroService", "findByMaxPrestamos");
+
+    @Override
+    public List<LibroEntity> findAll() {
+        return FIND_ALL.time(() -> super.findAll());
+    }
+
+    @Override
+    public List<LibroEntity> findAllDisponible() {
+        return FIND_ALL_DISPONIBLE.time(() -> super.findAllDisponible());
+    }
+
+    @Override
+    public void forEach(Consumer<? super LibroEntity> action) {
+        FOR_EACH.run(() -> super.forEach(action));
+    }
+
+    @Override
+    public void forEachOrThrow(Consumer<? super LibroEntity> action) {
+        FOR_EACH.run(() -> super.forEachOrThrow(action));
+    }
+
+    @Override
+    public List<LibroEntity> findPage(int afterId, int limite) {
+        return FIND_PAGE.time(() -> super.findPage(afterId, limite));
+    }
+
+    @Override
+    public List<LibroEntity> findPageDisponibles(int afterId, int limite) {
+        return FIND_PAGE_DISPONIBLES.time(() -> super.findPageDisponibles(afterId, limite));
+    }
+
+    @Override
+    public List<LibroEntity> search(BusquedaLibros busqueda) {
+        return SEARCH.time(() -> super.search(busqueda));
+    }
+
+    @Override
+    public LibroEntity findById(int id) {
+        return FIND_BY_ID.time(() -> super.findById(id));
+    }
+
+    @Override
+    public Optional<LibroEntity> save(LibroEntity libroEntity) {
+        return SAVE.time(() -> super.save(libroEntity));
+    }
+
+    @Override
+    public Optional<LibroEntity> saveOrThrow(LibroEntity libroEntity) {
+        return SAVE.time(() -> super.saveOrThrow(libroEntity));
+    }
+
+    @Override
+    public void importarCsv(Path archivo) {
+        IMPORTAR_CSV.run(() -> super.importarCsv(archivo));
+    }
+
+    @Override
+    public void delete(int id) {
+        DELETE.run(() -> super.delete(id));
+    }
+
+    @Override
+    public void deleteOrThrow(int id) {
+        DELETE.run(() -> super.deleteOrThrow(id));
+    }
+
+    @Override
+    public void ajustarStock(int id, int delta) {
+        AJUSTAR_STOCK.run(() -> super.ajustarStock(id, delta));
+    }
+
+    @Override
+    public void ajustarStockOrThrow(int id, int delta) {
+        AJUSTAR_STOCK.run(() -> super.ajustarStockOrThrow(id, delta));
+    }
+
+    @Override
+    public long totalLibrosDisponibles() {
+        return TOTAL_LIBROS_DISPONIBLES.time(() -> super.totalLibrosDisponibles());
+    }
+
+    @Override
+    public List<RankingEntity<LibroEntity>> findTopPrestados(int limite) {
+        return FIND_TOP_PRESTADOS.time(() -> super.findTopPrestados(limite));
+    }
+
+    @Override
+    public List<RankingEntity<LibroEntity>> findTopPrestados(int limite, LocalDate desde, LocalDate hasta) {
+        return FIND_TOP_PRESTADOS.time(() -> super.findTopPrestados(limite, desde, hasta));
+    }
+
+    @Override
+    public LibroEntity findByMaxPrestamos() {
+        return FIND_BY_MAX_PRESTAMOS.time(() -> super.findByMaxPrestamos());
+    }
+
+    @Override
+    public LibroEntity findByMaxPrestamos(YearMonth mes) {
+        return FIND_BY_MAX_PRESTAMOS.time(() -> super.findByMaxPrestamos(mes));
+    }
+}
@@ -0,0 +1,79 @@
+package org.EduardoMango.services;
+
+import lombok.Getter;
+import org.EduardoMango.entities.NotificacionEntity;
+import org.EduardoMango.metrics.Metrics;
+import org.EduardoMango.repositories.NotificacionRepository;
+import org.EduardoMango.repositories.UncheckedSQLException;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Lectura del outbox de notificaciones, para el proceso que las envía: pide las pendientes
+ * por páginas y marca cada una como enviada cuando la entrega.
+ */
+public class NotificacionService {
+
+    @Getter
+    private static final NotificacionService instance = new NotificacionServiceConMetricas();
+
+    private final NotificacionRepository notificacionRepository;
+
+    NotificacionService() {
+        notificacionRepository = NotificacionRepository.getInstance();
+    }
+
+    /**
+     * Obtiene una página de notificaciones sin enviar, ordenadas por id.
+     * En caso de ocurrir una SQLException, imprime el mensaje de error y devuelve una lista vacía.
+     */
+    public List<NotificacionEntity> findPagePendientes(int afterId, int limite) {
+        try {
+            return notificacionRepository.findPagePendientes(afterId, limite);
+        } catch (SQLException e) {
+            error("findPagePendientes", e);
+            return List.of();
+        }
+    }
+
+    /**
+     * Marca una notificación como enviada.
+     * En caso de ocurrir una SQLException, imprime el mensaje de error.
+     *
+     * @throws NoSuchElementException Si la notificación no existe o ya estaba enviada.
+     */
+    public void marcarEnviada(int id) {
+        try {
+            marcar(id);
+        } catch (SQLException e) {
+            error("marcarEnviada", e);
+        }
+    }
+
+    /**
+     * Igual que {@link #marcarEnviada(int)}, pero un error de la base se relanza como {@link UncheckedSQLException}.
+     */
+    public void marcarEnviadaOrThrow(int id) {
+        try {
+            marcar(id);
+        } catch (SQLException e) {
+            throw new UncheckedSQLException(e);
+        }
+    }
+
+    private void marcar(int id) throws SQLException {
+        if (!notificacionRepository.marcarEnviada(id)) {
+            throw new NoSuchElementException("La notificación no existe o ya fue enviada");
+        }
+    }
+
+    /**
+     * Informa un error atrapado por un método de consola y lo cuenta en las métricas del servicio.
+     */
+    private static void error(String metodo, Exception e) {
+        Metrics.errorAtrapado("NotificacionService", metodo, e);
+        System.out.println(e.getMessage());
+    }
+}
@@ -0,0 +1,31 @@
+package org.EduardoMango.services;
+
+import org.EduardoMango.entities.NotificacionEntity;
+import org.EduardoMango.metrics.Metrics;
+
+import java.util.List;
+
+/**
+ * {@link NotificacionService} con métricas: cada método público se mide con una {@link Metrics.Operacion}
+ * registrada una sola vez y delega en la implementación. Es la instancia que devuelve {@link NotificacionService#getInstance()}.
+ */
+class NotificacionServiceConMetricas extends NotificacionService {
+
+    private static final Metrics.Operacion FIND_PAGE_PENDIENTES = Metrics.servicio("NotificacionService", "findPagePendientes");
+    private static final Metrics.Operacion MARCAR_ENVIADA = Metrics.servicio("NotificacionService", "marcarEnviada");
+
+    @Override
+    public List<NotificacionEntity> findPagePendientes(int afterId, int limite) {
+        return FIND_PAGE_PENDIENTES.time(() -> super.findPagePendientes(afterId, limite));
+    }
+
+    @Override
+    public void marcarEnviada(int id) {
+        MARCAR_ENVIADA.run(() -> super.marcarEnviada(id));
+    }
+
+    @Override
+    public void marcarEnviadaOrThrow(int id) {
+        MARCAR_ENVIADA.run(() -> super.marcarEnviadaOrThrow(id));
+    }
+}
@@ -1,31 +1,52 @@
 package org.EduardoMango.services;
 
 import lombok.Getter;
-import org.EduardoMango.entities.LibroEntity;
+import org.EduardoMango.database.DatabaseConnection;
 import org.EduardoMango.entities.PrestamoEntity;
+import org.EduardoMango.entities.ReservaEntity;
 import org.EduardoMango.entities.UsuarioEntity;
+import org.EduardoMango.metrics.Metrics;
 import org.EduardoMango.repositories.LibroRepository;
 import org.EduardoMango.repositories.PrestamoRepository;
+import org.EduardoMango.repositories.ResumenPrestamosRepository;
+import org.EduardoMango.repositories.UncheckedSQLException;
 import org.EduardoMango.repositories.UsuarioRepository;
+import org.EduardoMango.writebehind.WriteBehind;
 
+import java.io.IOException;
 import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.YearMonth;
 import java.util.List;
-import java.util.Map;
 import java.util.NoSuchElementException;
-import java.util.stream.Collectors;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 public class PrestamoService implements IService<PrestamoEntity> {
 
     @Getter
-    private static final PrestamoService instance = new PrestamoService();
+    private static final PrestamoService instance = new PrestamoServiceConMetricas();
     private final PrestamoRepository prestamoRepository;
     private final LibroRepository libroRepository;
     private final UsuarioRepository usuarioRepository;
+    private final ResumenPrestamosRepository resumenRepository;
+    private final EstadisticasPrestamos estadisticas;
+    private final IndiceDisponibilidad disponibilidad;
+    private final ReservaService reservas;
+    /** Null si la escritura diferida no está habilitada. */
+    private final WriteBehind writeBehind;
 
-    private PrestamoService() {
+    PrestamoService() {
         libroRepository = LibroRepository.getInstance();
         prestamoRepository = PrestamoRepository.getInstance();
         usuarioRepository = UsuarioRepository.getInstance();
+        resumenRepository = ResumenPrestamosRepository.getInstance();
+        // Antes que las estadísticas y el índice: al iniciar aplica las devoluciones que quedaron en el log.
+        writeBehind = WriteBehind.iniciar();
+        estadisticas = EstadisticasPrestamos.getInstance();
+        disponibilidad = IndiceDisponibilidad.getInstance();
+        reservas = ReservaService.getInstance();
     }
 
     @Override
@@ -33,34 +54,169 @@ public class PrestamoService implements IService<PrestamoEntity> {
         try {
             return prestamoRepository.findAll();
         } catch (SQLException e) {
-            System.out.println(e.getMessage());
+            error("findAll", e);
             return List.of();
         }
     }
     /**
      * Obtiene una lista de todos los préstamos que aún están activos,
      * es decir, aquellos que no tienen una fecha de devolución registrada.
-     * <p>
-     * Este método realiza los siguientes pasos:
-     * <ol>
-     * <li>Obtiene una lista de todos los préstamos registrados en el sistema.</li>
-     * <li>Filtra esta lista, manteniendo solo aquellos préstamos donde el campo
-     * 'fecha_devolucion' es nulo (indicando que aún no han sido devueltos).</li>
-     * <li>Convierte el resultado del filtro en una nueva lista de entidades PrestamoEntity.</li>
-     * </ol>
-     * En caso de ocurrir una SQLException al intentar obtener todos los préstamos,
-     * imprime el mensaje de error en la consola y devuelve una lista vacía.
+     * El filtro se resuelve en la base de datos.
+     * En caso de ocurrir una SQLException, imprime el mensaje de error
+     * en la consola y devuelve una lista vacía.
      *
      * @return Una lista de objetos PrestamoEntity que representan los préstamos activos.
      */
     public List<PrestamoEntity> findAllActivos() {
         try {
-           return prestamoRepository.findAll()
-                   .stream()
-                   .filter(p -> p.getFecha_devolucion() == null)
-                   .toList();
+           return prestamoRepository.findAllActivos();
         } catch (SQLException e) {
-            System.out.println(e.getMessage());
+            error("findAllActivos", e);
+            return List.of();
+        }
+    }
+
+    @Override
+    public void forEach(Consumer<? super PrestamoEntity> action) {
+        try {
+            prestamoRepository.forEach(action);
+        } catch (SQLException e) {
+            error("forEach", e);
+        }
+    }
+
+    @Override
+    public void forEachOrThrow(Consumer<? super PrestamoEntity> action) {
+        try {
+            prestamoRepository.forEach(action);
+        } catch (SQLException e) {
+            throw new UncheckedSQLException(e);
+        }
+    }
+
+    /**
+     * Procesa los préstamos activos de a uno, a medida que se leen de la base,
+     * sin cargarlos todos en memoria.
+     * En caso de ocurrir una SQLException, imprime el mensaje de error en la consola.
+     */
+    public void forEachActivo(Consumer<? super PrestamoEntity> action) {
+        try {
+            recorrer(prestamoRepository.streamActivos(), action);
+        } catch (SQLException e) {
+            error("forEachActivo", e);
+        }
+    }
+
+    /**
+     * Igual que {@link #forEachActivo(Consumer)}, pero un error de la base se relanza como {@link UncheckedSQLException}.
+     */
+    public void forEachActivoOrThrow(Consumer<? super PrestamoEntity> action) {
+        try {
+            recorrer(prestamoRepository.streamActivos(), action);
+        } catch (SQLException e) {
+            throw new UncheckedSQLException(e);
+        }
+    }
+
+    /**
+     * Procesa de a uno, sin cargarlos todos en memoria, los préstamos vencidos hoy
+     * (activos después de {@link PrestamoEntity#PLAZO_DIAS} días), del más antiguo al más reciente.
+     * Se resuelve sobre el índice parcial de préstamos activos por fecha de préstamo.
+     * En caso de ocurrir una SQLException, imprime el mensaje de error en la consola.
+     */
+    public void forEachVencido(Consumer<? super PrestamoEntity> action) {
+        try {
+            recorrer(streamVencidos(), action);
+        } catch (SQLException e) {
+            error("forEachVencido", e);
+        }
+    }
+
+    /**
+     * Igual que {@link #forEachVencido(Consumer)}, pero un error de la base se relanza como {@link UncheckedSQLException}.
+     */
+    public void forEachVencidoOrThrow(Consumer<? super PrestamoEntity> action) {
+        try {
+            recorrer(streamVencidos(), action);
+        } catch (SQLException e) {
+            throw new UncheckedSQLException(e);
+        }
+    }
+
+    private Stream<PrestamoEntity> streamVencidos() throws SQLException {
+        return prestamoRepository.streamActivosPrestadosAntesDe(PrestamoEntity.prestadosVencidosAntesDe(LocalDate.now()));
+    }
+
+    private static void recorrer(Stream<PrestamoEntity> prestamos, Consumer<? super PrestamoEntity> action) throws SQLException {
+        try (prestamos) {
+            prestamos.forEach(action);
+        } catch (UncheckedSQLException e) {
+            throw e.getCause();
+        }
+    }
+
+    @Override
+    public List<PrestamoEntity> findPage(int afterId, int limite) {
+        try {
+            return prestamoRepository.findPage(afterId, limite);
+        } catch (SQLException e) {
+            error("findPage", e);
+            return List.of();
+        }
+    }
+
+    /**
+     * Obtiene una página de préstamos activos (sin fecha de devolución), ordenados por id.
+     * En caso de ocurrir una SQLException, imprime el mensaje de error
+     * y devuelve una lista vacía.
+     */
+    public List<PrestamoEntity> findPageActivos(int afterId, int limite) {
+        try {
+            return prestamoRepository.findPageActivos(afterId, limite);
+        } catch (SQLException e) {
+            error("findPageActivos", e);
+            return List.of();
+        }
+    }
+
+    /**
+     * Obtiene los préstamos realizados entre dos fechas (inclusive).
+     * En caso de ocurrir una SQLException, imprime el mensaje de error
+     * y devuelve una lista vacía.
+     */
+    public List<PrestamoEntity> findByFechaPrestamo(LocalDate desde, LocalDate hasta) {
+        try {
+            return prestamoRepository.findByFechaPrestamo(desde, hasta);
+        } catch (SQLException e) {
+            error("findByFechaPrestamo", e);
+            return List.of();
+        }
+    }
+
+    /**
+     * Obtiene los préstamos que siguen sin devolver desde {@code fecha} o antes.
+     * En caso de ocurrir una SQLException, imprime el mensaje de error
+     * y devuelve una lista vacía.
+     */
+    public List<PrestamoEntity> findActivosDesde(LocalDate fecha) {
+        try {
+            return prestamoRepository.findActivosDesde(fecha);
+        } catch (SQLException e) {
+            error("findActivosDesde", e);
+            return List.of();
+        }
+    }
+
+    /**
+     * Obtiene los préstamos devueltos durante el mes indicado.
+     * En caso de ocurrir una SQLException, imprime el mensaje de error
+     * y devuelve una lista vacía.
+     */
+    public List<PrestamoEntity> findDevueltosEnMes(YearMonth mes) {
+        try {
+            return prestamoRepository.findDevueltosEnMes(mes);
+        } catch (SQLException e) {
+            error("findDevueltosEnMes", e);
             return List.of();
         }
     }
@@ -74,21 +230,105 @@ public class PrestamoService implements IService<PrestamoEntity> {
         }
     }
 
+    /**
+     * Registra un nuevo préstamo.
+     * <p>
+     * Si el usuario tiene una unidad retenida del libro por una reserva ({@link ReservaService}), el préstamo
+     * la retira: en una transacción marca la reserva como retirada e inserta el préstamo, sin tocar el stock
+     * (la unidad retenida no volvió al stock). Si no, y el libro tiene reservas en espera, se rechaza.
+     * <p>
+     * Primero reserva una unidad del libro en {@link IndiceDisponibilidad}, con el lock del libro:
+     * si no quedan unidades se rechaza sin abrir una transacción, y de varios préstamos concurrentes
+     * del mismo libro solo abren transacción tantos como unidades haya. Después, todo el alta se
+     * ejecuta en una única transacción sobre una sola conexión:
+     * <ol>
+     * <li>Verifica que el usuario no haya alcanzado el máximo de préstamos activos.</li>
+     * <li>Descuenta una unidad del libro con un UPDATE condicional, que falla si no hay stock.</li>
+     * <li>Inserta el préstamo.</li>
+     * </ol>
+     * Si alguna verificación falla no se modifica nada, se libera la unidad reservada e imprime el motivo en la consola.
+     * En caso de ocurrir una SQLException, se deshace la transacción, se libera la unidad e imprime el mensaje de error.
+     *
+     * @param prestamoEntity El préstamo a registrar.
+     * @return El préstamo registrado, con su id y fecha de préstamo, o vacío si no se pudo registrar.
+     */
     @Override
-    public void save(PrestamoEntity prestamoEntity) {
+    public Optional<PrestamoEntity> save(PrestamoEntity prestamoEntity) {
         try {
-            LibroEntity prestado = libroRepository.findById(prestamoEntity.getLibro_id())
-                    .orElseThrow(NoSuchElementException::new);
+            return registrar(prestamoEntity);
+        } catch (SQLException e) {
+            error("save", e);
+            return Optional.empty();
+        }
+    }
 
-            if(prestado.getUnidades_disponibles()>0){
-                prestado.setUnidades_disponibles(prestado.getUnidades_disponibles() - 1);
-                libroRepository.updateStock(prestado);
-                prestamoRepository.save(prestamoEntity);
-            } else {
-                System.out.println("El libro no está disponible");
-            }
+    /**
+     * Igual que {@link #save(PrestamoEntity)}, pero un error de la base se relanza como {@link UncheckedSQLException}:
+     * vacío significa que el préstamo se rechazó.
+     */
+    @Override
+    public Optional<PrestamoEntity> saveOrThrow(PrestamoEntity prestamoEntity) {
+        try {
+            return registrar(prestamoEntity);
         } catch (SQLException e) {
-            System.out.println(e.getMessage());
+            throw new UncheckedSQLException(e);
+        }
+    }
+
+    private Optional<PrestamoEntity> registrar(PrestamoEntity prestamoEntity) throws SQLException {
+        int libroId = prestamoEntity.getLibro_id();
+        ReservaEntity retenida = reservas.tomarRetenida(libroId, prestamoEntity.getUsuario_id());
+        if (retenida != null) return saveRetenido(prestamoEntity, retenida);
+        if (reservas.tieneEspera(libroId)) {
+            System.out.println("El libro tiene reservas en espera");
+            return Optional.empty();
+        }
+        if (!disponibilidad.reservar(libroId)) {
+            System.out.println("El libro no está disponible");
+            return Optional.empty();
+        }
+        Optional<PrestamoEntity> guardado = Optional.empty();
+        try {
+            guardado = DatabaseConnection.inTransaction(conn -> {
+                if (prestamoRepository.countActiveByUsuario(conn, prestamoEntity.getUsuario_id()) >= UsuarioService.MAX_PRESTAMOS_ACTIVOS) {
+                    System.out.println("Limite de prestamos alcanzados");
+                    return Optional.empty();
+                }
+                if (!libroRepository.decrementStock(conn, libroId)) {
+                    System.out.println("El libro no está disponible");
+                    return Optional.empty();
+                }
+                return Optional.of(prestamoRepository.save(conn, prestamoEntity));
+            });
+            if (guardado.isPresent()) {
+                libroRepository.invalidate(libroId);
+                estadisticas.registrarPrestamo(prestamoEntity.getUsuario_id(), libroId);
+            }
+            return guardado;
+        } finally {
+            if (guardado.isEmpty()) disponibilidad.liberar(libroId);
+        }
+    }
+
+    private Optional<PrestamoEntity> saveRetenido(PrestamoEntity prestamoEntity, ReservaEntity retenida) throws SQLException {
+        Optional<PrestamoEntity> guardado = Optional.empty();
+        try {
+            guardado = DatabaseConnection.inTransaction(conn -> {
+                if (prestamoRepository.countActiveByUsuario(conn, prestamoEntity.getUsuario_id()) >= UsuarioService.MAX_PRESTAMOS_ACTIVOS) {
+                    System.out.println("Limite de prestamos alcanzados");
+                    return Optional.empty();
+                }
+                if (!reservas.retirar(conn, retenida)) {
+                    System.out.println("La reserva venció");
+                    return Optional.empty();
+                }
+                return Optional.of(prestamoRepository.save(conn, prestamoEntity));
+            });
+            guardado.ifPresent(p -> estadisticas.registrarPrestamo(p.getUsuario_id(), p.getLibro_id()));
+            return guardado;
+        } finally {
+            // Si venció, el barrido la quita y pasa la unidad a la siguiente reserva.
+            if (guardado.isEmpty()) reservas.devolverRetenida(retenida);
         }
     }
 
@@ -96,88 +336,155 @@ public class PrestamoService implements IService<PrestamoEntity> {
      * Registra la devolución de un préstamo, actualizando el stock del libro
      * y marcando el préstamo como devuelto en la base de datos.
      * <p>
-     * Este método realiza los siguientes pasos:
-     * <ol>
-     * <li>Busca el préstamo por su ID. Si no se encuentra, lanza una NoSuchElementException.</li>
-     * <li>Busca el libro asociado al préstamo a través del ID del libro almacenado en la entidad del préstamo.
-     * Si no se encuentra el libro, lanza una NoSuchElementException.</li>
-     * <li>Incrementa la cantidad de unidades disponibles del libro prestado en uno.</li>
-     * <li>Actualiza el stock del libro en la base de datos.</li>
-     * <li>Marca el préstamo como devuelto en la base de datos, actualizando la fecha de devolución.</li>
-     * </ol>
-     * En caso de ocurrir una SQLException durante cualquiera de estas operaciones,
-     * imprime el mensaje de error en la consola.
+     * Ambas operaciones se ejecutan en una única transacción: el préstamo se marca como
+     * devuelto solo si seguía activo, y recién entonces se devuelve la unidad al stock,
+     * por lo que una devolución repetida no incrementa el stock dos veces. Si el libro tiene
+     * reservas en espera, en lugar de volver al stock la unidad queda retenida para la primera
+     * ({@link ReservaService}).
+     * En caso de ocurrir una SQLException, se deshace la transacción e imprime el mensaje de error.
+     * <p>
+     * Con la escritura diferida habilitada (y sin fallar), verifica que el préstamo siga activo y la devolución
+     * se confirma al quedar escrita en el log; se aplica a la base poco después ({@link WriteBehind}).
+     * Las devoluciones de libros con reservas en espera se hacen igual en forma sincrónica.
      *
      * @param id El ID del préstamo que se está devolviendo.
-     * @throws NoSuchElementException Si no se encuentra el préstamo o el libro asociado.
+     * @throws NoSuchElementException Si el préstamo no existe o ya fue devuelto.
      */
     public void returnPrestamo(int id) {
         try {
+            devolver(id);
+        } catch (SQLException | IOException e) {
+            error("returnPrestamo", e);
+        }
+    }
 
+    /**
+     * Igual que {@link #returnPrestamo(int)}, pero un error de la base se relanza como {@link UncheckedSQLException},
+     * y uno del log de escritura diferida como IllegalStateException.
+     */
+    public void returnPrestamoOrThrow(int id) {
+        try {
+            devolver(id);
+        } catch (SQLException e) {
+            throw new UncheckedSQLException(e);
+        } catch (IOException e) {
+            throw new IllegalStateException(e.getMessage(), e);
+        }
+    }
 
-            PrestamoEntity prestamoEntity = prestamoRepository.findById(id)
-                    .orElseThrow(NoSuchElementException::new);
-            LibroEntity prestado = libroRepository.findById(prestamoEntity.getLibro_id())
-                    .orElseThrow(NoSuchElementException::new);
-
-            prestado.setUnidades_disponibles(prestado.getUnidades_disponibles() + 1);
-            libroRepository.updateStock(prestado);
+    private void devolver(int id) throws SQLException, IOException {
+        if (writeBehind != null && writeBehind.isActiva()) {
+            returnPrestamoDiferido(id);
+        } else if (writeBehind != null && writeBehind.isDevolucionPendiente(id)) {
+            // Devuelto en el log pero sin aplicar: se aplica en el próximo inicio.
+            throw new NoSuchElementException("El préstamo no existe o ya fue devuelto");
+        } else {
+            returnPrestamoSincronico(id);
+        }
+    }
 
-            prestamoRepository.returnPrestamo(id);
+    private void returnPrestamoSincronico(int id) throws SQLException {
+        ReservaEntity[] asignada = {null};
+        try {
+            int libroId = DatabaseConnection.inTransaction(conn -> {
+                int devuelto = prestamoRepository.returnPrestamo(conn, id)
+                        .orElseThrow(() -> new NoSuchElementException("El préstamo no existe o ya fue devuelto"));
+                asignada[0] = reservas.asignarUnidad(conn, devuelto);
+                if (asignada[0] == null) libroRepository.incrementStock(conn, devuelto);
+                return devuelto;
+            });
+            if (asignada[0] == null) {
+                libroRepository.invalidate(libroId);
+                disponibilidad.ajustar(libroId, +1);
+            }
         } catch (SQLException e) {
-            System.out.println(e.getMessage());
+            reservas.deshacerAsignacion(asignada[0]);
+            throw e;
+        }
+    }
+
+    private void returnPrestamoDiferido(int id) throws SQLException, IOException {
+        PrestamoEntity prestamo = prestamoRepository.findById(id)
+                .filter(p -> p.getFecha_devolucion() == null && !writeBehind.isDevolucionPendiente(id))
+                .orElseThrow(() -> new NoSuchElementException("El préstamo no existe o ya fue devuelto"));
+        if (reservas.tieneEspera(prestamo.getLibro_id())) {
+            returnPrestamoSincronico(id);
+            return;
+        }
+        if (!writeBehind.devolver(id)) {
+            throw new NoSuchElementException("El préstamo no existe o ya fue devuelto");
         }
+        disponibilidad.ajustar(prestamo.getLibro_id(), +1);
     }
 
     /**
      * Calcula el promedio de préstamos por cada usuario que ha realizado al menos un préstamo.
-     * <p>
-     * Este método realiza los siguientes pasos:
-     * <ol>
-     * <li>Obtiene una lista de todos los préstamos registrados en el sistema.</li>
-     * <li>Agrupa estos préstamos por el ID del usuario que los realizó y cuenta
-     * cuántos préstamos tiene cada usuario. El resultado se almacena en un
-     * mapa donde la clave es el ID del usuario y el valor es la cantidad de préstamos.</li>
-     * <li>Calcula el total de préstamos sumando la cantidad de préstamos de todos los usuarios
-     * que aparecen en el mapa (es decir, todos los usuarios que han realizado al menos un préstamo).</li>
-     * <li>Determina la cantidad de usuarios distintos que tienen préstamos, que es el tamaño del mapa
-     * de préstamos por usuario.</li>
-     * <li>Finalmente, si hay al menos un usuario con préstamos, calcula el promedio dividiendo el
-     * total de préstamos entre la cantidad de usuarios con préstamos. Si no hay usuarios
-     * con préstamos, devuelve 0.0.</li>
-     * </ol>
+     * Se responde en O(1) desde {@link EstadisticasPrestamos}, sin recorrer los préstamos.
      *
      * @return El promedio de préstamos por usuario que ha realizado al menos un préstamo.
      * Devuelve 0.0 si no hay ningún usuario con préstamos.
      */
     public double promedioPrestamoPorUsuarioConPrestamos(){
-        List<PrestamoEntity> prestamos = findAll();
-
-        Map<Integer, Long> prestamosPorUsuario = prestamos.stream()
-                .collect(Collectors.groupingBy(
-                        PrestamoEntity::getUsuario_id,
-                        Collectors.counting()
-                ));
-
-        long totalPrestamos = prestamosPorUsuario.values().stream()
-                .mapToLong(Long::longValue)
-                .sum();
-
-        int cantidadUsuariosConPrestamos = prestamosPorUsuario.size();
+        return estadisticas.getPromedioPorUsuario();
+    }
 
-        if (cantidadUsuariosConPrestamos == 0) {
+    /**
+     * Calcula el promedio de préstamos por usuario activo (con al menos un préstamo en el rango)
+     * dentro de un rango de fechas de préstamo. Se resuelve sobre los resúmenes mensuales y diarios
+     * de préstamos por usuario, sin recorrer los préstamos.
+     * En caso de ocurrir una SQLException, imprime el mensaje de error y devuelve 0.0.
+     *
+     * @param desde Fecha mínima de préstamo (inclusive), o null para no acotar.
+     * @param hasta Fecha máxima de préstamo (inclusive), o null para no acotar.
+     * @return El promedio, o 0.0 si no hay préstamos en el rango.
+     */
+    public double promedioPrestamoPorUsuarioActivo(LocalDate desde, LocalDate hasta) {
+        try {
+            return resumenRepository.promedioPorUsuarioActivo(desde, hasta);
+        } catch (SQLException e) {
+            error("promedioPrestamoPorUsuarioActivo", e);
             return 0.0;
         }
+    }
 
-        return (double) totalPrestamos / cantidadUsuariosConPrestamos;
+    /**
+     * Promedio de préstamos por usuario activo en los últimos {@code dias} días, contando hoy.
+     *
+     * @see #promedioPrestamoPorUsuarioActivo(LocalDate, LocalDate)
+     */
+    public double promedioPrestamoPorUsuarioActivo(int dias) {
+        LocalDate hoy = LocalDate.now();
+        return promedioPrestamoPorUsuarioActivo(hoy.minusDays(dias - 1L), hoy);
     }
 
     @Override
     public void delete(int id) {
         try {
-            prestamoRepository.delete(id);
+            eliminar(id);
+        } catch (SQLException e) {
+            error("delete", e);
+        }
+    }
+
+    @Override
+    public void deleteOrThrow(int id) {
+        try {
+            eliminar(id);
         } catch (SQLException e) {
-            System.out.println(e.getMessage());
+            throw new UncheckedSQLException(e);
         }
     }
+
+    private void eliminar(int id) throws SQLException {
+        prestamoRepository.deleteAndGet(id)
+                .ifPresent(p -> estadisticas.registrarBorrado(p.getUsuario_id(), p.getLibro_id()));
+    }
+
+    /**
+     * Informa un error atrapado por un método de consola y lo cuenta en las métricas del servicio.
+     */
+    private static void error(String metodo, Exception e) {
+        Metrics.errorAtrapado("PrestamoService", metodo, e);
+        System.out.println(e.getMessage());
+    }
 }
@@ -0,0 +1,144 @@
+package org.EduardoMango.services;
+
+import org.EduardoMango.entities.PrestamoEntity;
+import org.EduardoMango.metrics.Metrics;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+/**
+ * {@link PrestamoService} con métricas: cada método público se mide con una {@link Metrics.Operacion}
+ * registrada una sola vez y delega en la implementación. Es la instancia que devuelve {@link PrestamoService#getInstance()}.
+ */
+class PrestamoServiceConMetricas extends PrestamoService {
+
+    private static final Metrics.Operacion FIND_ALL = Metrics.servicio("PrestamoService", "findAll");
+    private static final Metrics.Operacion FIND_ALL_ACTIVOS = Metrics.servicio("PrestamoService", "findAllActivos");
+    private static final Metrics.Operacion FOR_EACH = Metrics.servicio("PrestamoService", "forEach");
+    private static final Metrics.Operacion FOR_EACH_ACTIVO = Metrics.servicio("PrestamoService", "forEachActivo");
+    private static final Metrics.Operacion FOR_EACH_VENCIDO = Metrics.servicio("PrestamoService", "forEachVencido");
+    private static final Metrics.Operacion FIND_PAGE = Metrics.servicio("PrestamoService", "findPage");
+    private static final Metrics.Operacion FIND_PAGE_ACTIVOS = Metrics.servicio("PrestamoService", "findPageActivos");
+    private static final Metrics.Operacion FIND_BY_FECHA_PRESTAMO = Metrics.servicio("PrestamoService", "findByFechaPrestamo");
+    private static final Metrics.Operacion FIND_ACTIVOS_DESDE = Metrics.servicio("PrestamoService", "findActivosDesde");
+    private static final Metrics.Operacion FIND_DEVUELTOS_EN_MES = Metrics.servicio("PrestamoService", "findDevueltosEnMes");
+    private static final Metrics.Operacion FIND_BY_ID = Metrics.servicio("PrestamoService", "findById");
+    private static final Metrics.Operacion SAVE = Metrics.servicio("PrestamoService", "save");
+    private static final Metrics.Operacion RETURN_PRESTAMO = Metrics.servicio("PrestamoService", "returnPrestamo");
+    private static final Metrics.Operacion PROMEDIO_PRESTAMO_POR_USUARIO_CON_PRESTAMOS = Metrics.servicio("PrestamoService", "promedioPrestamoPorUsuarioConPrestamos");
+    private static final Metrics.Operacion PROMEDIO_PRESTAMO_POR_USUARIO_ACTIVO = Metrics.servicio("PrestamoService", "promedioPrestamoPorUsuarioActivo");
+    private static final Metrics.Operacion DELETE = Metrics.servicio("PrestamoService", "delete");
+
+    @Override
+    public List<PrestamoEntity> findAll() {
+        return FIND_ALL.time(() -> super.findAll());
+    }
+
+    @Override
+    public List<PrestamoEntity> findAllActivos() {
+        return FIND_ALL_ACTIVOS.time(() -> super.findAllActivos());
+    }
+
+    @Override
+    public void forEach(Consumer<? super PrestamoEntity> action) {
+        FOR_EACH.run(() -> super.forEach(action));
+    }
+
+    @Override
+    public void forEachOrThrow(Consumer<? super PrestamoEntity> action) {
+        FOR_EACH.run(() -> super.forEachOrThrow(action));
+    }
+
+    @Override
+    public void forEachActivo(Consumer<? super PrestamoEntity> action) {
+        FOR_EACH_ACTIVO.run(() -> super.forEachActivo(action));
+    }
+
+    @Override
+    public void forEachActivoOrThrow(Consumer<? super PrestamoEntity> action) {
+        FOR_EACH_ACTIVO.run(() -> super.forEachActivoOrThrow(action));
+    }
+
+    @Override
+    public void forEachVencido(Consumer<? super PrestamoEntity> action) {
+        FOR_EACH_VENCIDO.run(() -> super.forEachVencido(action));
+    }
+
+    @Override
+    public void forEachVencidoOrThrow(Consumer<? super PrestamoEntity> action) {
+        FOR_EACH_VENCIDO.run(() -> super.forEachVencidoOrThrow(action));
+    }
+
+    @Override
+    public List<PrestamoEntity> findPage(int afterId, int limite) {
+        return FIND_PAGE.time(() -> super.findPage(afterId, limite));
+    }
+
+    @Override
+    public List<PrestamoEntity> findPageActivos(int afterId, int limite) {
+        return FIND_PAGE_ACTIVOS.time(() -> super.findPageActivos(afterId, limite));
+    }
+
+    @Override
+    public List<PrestamoEntity> findByFechaPrestamo(LocalDate desde, LocalDate hasta) {
+        return FIND_BY_FECHA_PRESTAMO.time(() -> super.findByFechaPrestamo(desde, hasta));
+    }
+
+    @Override
+    public List<PrestamoEntity> findActivosDesde(LocalDate fecha) {
+        return FIND_ACTIVOS_DESDE.time(() -> super.findActivosDesde(fecha));
+    }
+
+    @Override
+    public List<PrestamoEntity> findDevueltosEnMes(YearMonth mes) {
+        return FIND_DEVUELTOS_EN_MES.time(() -> super.findDevueltosEnMes(mes));
+    }
+
+    @Override
+    public PrestamoEntity findById(int id) {
+        return FIND_BY_ID.time(() -> super.findById(id));
+    }
+
+    @Override
+    public Optional<PrestamoEntity> save(PrestamoEntity prestamoEntity) {
+        return SAVE.time(() -> super.save(prestamoEntity));
+    }
+
+    @Override
+    public Optional<PrestamoEntity> saveOrThrow(PrestamoEntity prestamoEntity) {
+        return SAVE.time(() -> super.saveOrThrow(prestamoEntity));
+    }
+
+    @Override
+    public void returnPrestamo(int id) {
+        RETURN_PRESTAMO.run(() -> super.returnPrestamo(id));
+    }
+
+    @Override
+    public void returnPrestamoOrThrow(int id) {
+        RETURN_PRESTAMO.run(() -> super.returnPrestamoOrThrow(id));
+    }
+
+    @Override
+    public double promedioPrestamoPorUsuarioConPrestamos() {
+        return PROMEDIO_PRESTAMO_POR_USUARIO_CON_PRESTAMOS.time(() -> super.promedioPrestamoPorUsuarioConPrestamos());
+    }
+
+    @Override
+    public double promedioPrestamoPorUsuarioActivo(LocalDate desde, LocalDate hasta) {
+        return PROMEDIO_PRESTAMO_POR_USUARIO_ACTIVO.time(() -> super.promedioPrestamoPorUsuarioActivo(desde, hasta));
+    }
+
+    @Override
+    public void delete(int id) {
+        DELETE.run(() -> super.delete(id));
+    }
+
+    @Override
+    public void deleteOrThrow(int id) {
+        DELETE.run(() -> super.deleteOrThrow(id));
+    }
+}
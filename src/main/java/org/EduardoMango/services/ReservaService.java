@@ -0,0 +1,404 @@
+package org.EduardoMango.services;
+
+import lombok.Getter;
+import org.EduardoMango.database.DatabaseConfig;
+import org.EduardoMango.database.DatabaseConnection;
+import org.EduardoMango.entities.EstadoReserva;
+import org.EduardoMango.entities.ReservaEntity;
+import org.EduardoMango.metrics.Metrics;
+import org.EduardoMango.repositories.LibroRepository;
+import org.EduardoMango.repositories.ReservaRepository;
+import org.EduardoMango.repositories.UncheckedSQLException;
+import org.EduardoMango.repositories.UsuarioRepository;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+
+/**
+ * Reservas de libros sin unidades disponibles: una lista de espera por libro, atendida en orden.
+ * <p>
+ * Cuando se devuelve un libro con reservas en espera, la unidad no vuelve al stock: en la misma
+ * transacción se retiene para la primera reserva de la lista hasta su vencimiento
+ * ({@code biblioteca.reservas.retencionHoras}, 48 por defecto). El usuario la retira registrando
+ * el préstamo como siempre ({@link PrestamoService#save}). Si no la retira a tiempo, la reserva vence
+ * y la unidad pasa a la siguiente de la lista, o vuelve al stock si no hay más. Mientras un libro tiene
+ * reservas en espera, solo se presta a quienes tienen una unidad retenida.
+ * <p>
+ * A quién le toca cada unidad se resuelve en memoria con {@link ColaReservas}, en O(1). El barrido
+ * periódico ({@link BarridoReservas}) vence las reservas retenidas y asigna a las listas de espera
+ * las unidades que hayan entrado al stock por otros caminos.
+ */
+public class ReservaService {
+
+    @Getter
+    private static final ReservaService instance = new ReservaServiceConMetricas();
+
+    private static final int VENCIDAS_POR_LOTE = 100;
+
+    private final ReservaRepository reservaRepository;
+    private final LibroRepository libroRepository;
+    private final UsuarioRepository usuarioRepository;
+    private final IndiceDisponibilidad disponibilidad;
+    private final ColaReservas cola = new ColaReservas();
+    private final Duration retencion;
+
+    ReservaService() {
+        reservaRepository = ReservaRepository.getInstance();
+        libroRepository = LibroRepository.getInstance();
+        usuarioRepository = UsuarioRepository.getInstance();
+        disponibilidad = IndiceDisponibilidad.getInstance();
+        retencion = Duration.ofHours(Long.parseLong(DatabaseConfig.get("biblioteca.reservas.retencionHoras", "48")));
+        reconstruir();
+    }
+
+    /**
+     * Vuelve a cargar las reservas pendientes desde la base.
+     * En caso de ocurrir una SQLException, imprime el mensaje de error y deja las anteriores.
+     */
+    public void reconstruir() {
+        List<ReservaEntity> pendientes = new ArrayList<>();
+        try {
+            reservaRepository.forEachPendiente(pendientes::add);
+        } catch (SQLException e) {
+            error("reconstruir", e);
+            return;
+        }
+        cola.reemplazar(pendientes);
+    }
+
+    /**
+     * Agrega al usuario al final de la lista de espera del libro. Si el libro tiene unidades
+     * disponibles y nadie más esperando, la unidad queda retenida para el usuario enseguida.
+     * En caso de ocurrir una SQLException, imprime el mensaje de error.
+     *
+     * @return La reserva, esperando o ya retenida, o vacío si el usuario ya tenía una reserva pendiente del libro.
+     * @throws NoSuchElementException Si el usuario o el libro no existen.
+     */
+    public Optional<ReservaEntity> reservar(int usuarioId, int libroId) {
+        try {
+            return registrar(usuarioId, libroId);
+        } catch (SQLException e) {
+            error("reservar", e);
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Igual que {@link #reservar(int, int)}, pero un error de la base se relanza como {@link UncheckedSQLException}.
+     */
+    public Optional<ReservaEntity> reservarOrThrow(int usuarioId, int libroId) {
+        try {
+            return registrar(usuarioId, libroId);
+        } catch (SQLException e) {
+            throw new UncheckedSQLException(e);
+        }
+    }
+
+    private Optional<ReservaEntity> registrar(int usuarioId, int libroId) throws SQLException {
+        usuarioRepository.findById(usuarioId).orElseThrow(() -> new NoSuchElementException("El usuario no existe"));
+        libroRepository.findById(libroId).orElseThrow(() -> new NoSuchElementException("El libro no existe"));
+
+        ReservaEntity[] encolada = {null};
+        Optional<ReservaEntity> guardada;
+        try {
+            guardada = DatabaseConnection.inTransaction(conn -> {
+                Optional<ReservaEntity> reserva = reservaRepository.save(conn, ReservaEntity.builder()
+                        .libro_id(libroId)
+                        .usuario_id(usuarioId)
+                        .build());
+                reserva.ifPresent(cola::encolar);
+                encolada[0] = reserva.orElse(null);
+                return reserva;
+            });
+        } catch (SQLException e) {
+            if (encolada[0] != null) cola.quitar(encolada[0]);
+            throw e;
+        }
+        if (guardada.isEmpty()) {
+            System.out.println("El usuario ya tiene una reserva pendiente de ese libro");
+            return Optional.empty();
+        }
+        despachar(libroId);
+        return reservaRepository.findById(guardada.get().getId());
+    }
+
+    /**
+     * Cancela una reserva pendiente. Si tenía una unidad retenida, pasa a la siguiente de la lista
+     * o vuelve al stock.
+     * En caso de ocurrir una SQLException, imprime el mensaje de error.
+     *
+     * @throws NoSuchElementException Si la reserva no existe o ya no está pendiente.
+     */
+    public void cancelar(int id) {
+        try {
+            cancelarPendiente(id);
+        } catch (SQLException e) {
+            error("cancelar", e);
+        }
+    }
+
+    /**
+     * Igual que {@link #cancelar(int)}, pero un error de la base se relanza como {@link UncheckedSQLException}.
+     */
+    public void cancelarOrThrow(int id) {
+        try {
+            cancelarPendiente(id);
+        } catch (SQLException e) {
+            throw new UncheckedSQLException(e);
+        }
+    }
+
+    private void cancelarPendiente(int id) throws SQLException {
+        ReservaEntity reserva = reservaRepository.findById(id)
+                .filter(r -> r.getEstado().isPendiente())
+                .orElseThrow(() -> new NoSuchElementException("La reserva no existe o ya no está pendiente"));
+        if (cola.quitar(reserva)) {
+            boolean cancelada;
+            try {
+                cancelada = DatabaseConnection.inTransaction(conn ->
+                        reservaRepository.cambiarEstado(conn, id, EstadoReserva.ESPERANDO, EstadoReserva.CANCELADA));
+            } catch (SQLException e) {
+                cola.encolar(reserva);
+                throw e;
+            }
+            if (!cancelada) throw new NoSuchElementException("La reserva no existe o ya no está pendiente");
+        } else if (!cola.quitarRetenida(reserva) || !liberarRetenida(reserva, EstadoReserva.CANCELADA)) {
+            throw new NoSuchElementException("La reserva no existe o ya no está pendiente");
+        }
+    }
+
+    /**
+     * Cancela todas las reservas pendientes de un usuario, antes de darlo de baja.
+     */
+    public void cancelarPorUsuario(int usuarioId) {
+        try {
+            cancelarTodas(reservaRepository.findPendientesByUsuario(usuarioId));
+        } catch (SQLException e) {
+            error("cancelarPorUsuario", e);
+        }
+    }
+
+    /**
+     * Cancela todas las reservas pendientes de un libro, antes de darlo de baja.
+     */
+    public void cancelarPorLibro(int libroId) {
+        try {
+            cancelarTodas(reservaRepository.findPendientesByLibro(libroId));
+        } catch (SQLException e) {
+            error("cancelarPorLibro", e);
+        }
+    }
+
+    private void cancelarTodas(List<ReservaEntity> reservas) {
+        for (ReservaEntity reserva : reservas) {
+            try {
+                cancelar(reserva.getId());
+            } catch (NoSuchElementException e) {
+                // Se retiró, venció o se canceló mientras tanto.
+            }
+        }
+    }
+
+    public ReservaEntity findById(int id) {
+        try {
+            return reservaRepository.findById(id).orElseThrow(NoSuchElementException::new);
+        } catch (SQLException e) {
+            throw new NoSuchElementException(e);
+        }
+    }
+
+    /**
+     * Obtiene las reservas pendientes (esperando o retenidas) de un usuario, en el orden en que las hizo.
+     * En caso de ocurrir una SQLException, imprime el mensaje de error y devuelve una lista vacía.
+     */
+    public List<ReservaEntity> findPendientesByUsuario(int usuarioId) {
+        try {
+            return reservaRepository.findPendientesByUsuario(usuarioId);
+        } catch (SQLException e) {
+            error("findPendientesByUsuario", e);
+            return List.of();
+        }
+    }
+
+    /**
+     * Posición (desde 1) de la reserva en la lista de espera de su libro, o 0 si no está esperando.
+     */
+    public int posicion(ReservaEntity reserva) {
+        return cola.posicion(reserva);
+    }
+
+    /**
+     * Vence las reservas retenidas cuyo plazo ya pasó, pasando cada unidad a la siguiente reserva
+     * del libro o devolviéndola al stock. Se procesan de a {@value #VENCIDAS_POR_LOTE}.
+     * En caso de ocurrir una SQLException, imprime el mensaje de error.
+     *
+     * @return La cantidad de reservas vencidas.
+     */
+    public int vencerRetenidas() {
+        int vencidas = 0;
+        try {
+            List<ReservaEntity> lote;
+            do {
+                lote = reservaRepository.findRetenidasVencidas(LocalDateTime.now(), VENCIDAS_POR_LOTE);
+                for (ReservaEntity reserva : lote) {
+                    if (cola.quitarRetenida(reserva) && liberarRetenida(reserva, EstadoReserva.VENCIDA)) vencidas++;
+                }
+            } while (lote.size() == VENCIDAS_POR_LOTE);
+        } catch (SQLException e) {
+            error("vencerRetenidas", e);
+        }
+        return vencidas;
+    }
+
+    /**
+     * Mientras el libro tenga unidades disponibles y reservas en espera, retiene una unidad
+     * para la primera reserva de la lista.
+     * En caso de ocurrir una SQLException, imprime el mensaje de error.
+     */
+    public void despachar(int libroId) {
+        while (cola.tieneEspera(libroId) && disponibilidad.reservar(libroId)) {
+            ReservaEntity[] asignada = {null};
+            try {
+                boolean despachada = DatabaseConnection.inTransaction(conn -> {
+                    if (!libroRepository.decrementStock(conn, libroId)) return false;
+                    asignada[0] = asignarUnidad(conn, libroId);
+                    if (asignada[0] == null) libroRepository.incrementStock(conn, libroId);
+                    return asignada[0] != null;
+                });
+                if (!despachada) {
+                    disponibilidad.liberar(libroId);
+                    return;
+                }
+                libroRepository.invalidate(libroId);
+            } catch (SQLException e) {
+                deshacerAsignacion(asignada[0]);
+                disponibilidad.liberar(libroId);
+                error("despachar", e);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Un paso de {@link BarridoReservas}: vence las retenidas y despacha los libros con espera y stock.
+     */
+    void barrer() {
+        try {
+            vencerRetenidas();
+            for (int libroId : cola.librosConEspera()) {
+                if (disponibilidad.isDisponible(libroId)) despachar(libroId);
+            }
+        } catch (RuntimeException e) {
+            // Una excepción cancelaría las siguientes ejecuciones del barrido.
+            System.out.println(e.getMessage());
+        }
+    }
+
+    /**
+     * Quita una reserva retenida (que el llamador ya quitó de la cola) pasándola a {@code estado}, y asigna
+     * la unidad a la siguiente reserva del libro o la devuelve al stock, en una transacción.
+     *
+     * @return true si la reserva seguía retenida en la base.
+     */
+    private boolean liberarRetenida(ReservaEntity retenida, EstadoReserva estado) throws SQLException {
+        int libroId = retenida.getLibro_id();
+        ReservaEntity[] asignada = {null};
+        boolean liberada;
+        try {
+            liberada = DatabaseConnection.inTransaction(conn -> {
+                if (!reservaRepository.cambiarEstado(conn, retenida.getId(), EstadoReserva.RETENIDA, estado)) return false;
+                asignada[0] = asignarUnidad(conn, libroId);
+                if (asignada[0] == null) libroRepository.incrementStock(conn, libroId);
+                return true;
+            });
+        } catch (SQLException | RuntimeException e) {
+            deshacerAsignacion(asignada[0]);
+            cola.retener(retenida);
+            throw e;
+        }
+        if (liberada && asignada[0] == null) {
+            libroRepository.invalidate(libroId);
+            disponibilidad.ajustar(libroId, +1);
+        }
+        return liberada;
+    }
+
+    /**
+     * Si el libro tiene reservas en espera, retiene la unidad que se libera para la primera.
+     * Se llama dentro de la transacción que libera la unidad; si la transacción falla,
+     * el llamador debe deshacer la asignación con {@link #deshacerAsignacion(ReservaEntity)}.
+     *
+     * @return La reserva que quedó retenida, o null si no hay reservas en espera
+     * (el llamador debe devolver la unidad al stock en la misma transacción).
+     */
+    ReservaEntity asignarUnidad(Connection conn, int libroId) throws SQLException {
+        LocalDateTime vence = LocalDateTime.now().plus(retencion);
+        ReservaEntity primera;
+        while ((primera = cola.tomarPrimera(libroId)) != null) {
+            boolean retenida;
+            try {
+                retenida = reservaRepository.retener(conn, primera.getId(), vence);
+            } catch (SQLException e) {
+                cola.encolar(primera);
+                throw e;
+            }
+            if (retenida) {
+                ReservaEntity asignada = new ReservaEntity(primera.getId(), libroId, primera.getUsuario_id(),
+                        primera.getFecha_reserva(), EstadoReserva.RETENIDA, vence);
+                cola.retener(asignada);
+                return asignada;
+            }
+            // En la base ya no estaba esperando: se descarta y se sigue con la próxima.
+        }
+        return null;
+    }
+
+    /**
+     * Vuelve a poner en espera, en su lugar, una reserva asignada en una transacción que falló.
+     */
+    void deshacerAsignacion(ReservaEntity asignada) {
+        if (asignada == null) return;
+        cola.quitarRetenida(asignada);
+        cola.encolar(new ReservaEntity(asignada.getId(), asignada.getLibro_id(), asignada.getUsuario_id(),
+                asignada.getFecha_reserva(), EstadoReserva.ESPERANDO, null));
+    }
+
+    boolean tieneEspera(int libroId) {
+        return cola.tieneEspera(libroId);
+    }
+
+    /**
+     * Quita y devuelve la reserva retenida del usuario para el libro, o null si no tiene.
+     * Si el préstamo no se registra, se devuelve con {@link #devolverRetenida(ReservaEntity)}.
+     */
+    ReservaEntity tomarRetenida(int libroId, int usuarioId) {
+        return cola.tomarRetenida(libroId, usuarioId);
+    }
+
+    void devolverRetenida(ReservaEntity retenida) {
+        cola.retener(retenida);
+    }
+
+    /**
+     * Marca como retirada una reserva retenida, dentro de la transacción que registra el préstamo.
+     *
+     * @return false si la reserva ya venció.
+     */
+    boolean retirar(Connection conn, ReservaEntity retenida) throws SQLException {
+        return reservaRepository.retirar(conn, retenida.getId(), LocalDateTime.now());
+    }
+
+    /**
+     * Informa un error atrapado por un método de consola y lo cuenta en las métricas del servicio.
+     */
+    private static void error(String metodo, Exception e) {
+        Metrics.errorAtrapado("ReservaService", metodo, e);
+        System.out.println(e.getMessage());
+    }
+}
@@ -0,0 +1,73 @@
+package org.EduardoMango.services;
+
+import org.EduardoMango.entities.ReservaEntity;
+import org.EduardoMango.metrics.Metrics;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * {@link ReservaService} con métricas: cada método público se mide con una {@link Metrics.Operacion}
+ * registrada una sola vez y delega en la implementación. Es la instancia que devuelve {@link ReservaService#getInstance()}.
+ */
+class ReservaServiceConMetricas extends ReservaService {
+
+    private static final Metrics.Operacion RESERVAR = Metrics.servicio("ReservaService", "reservar");
+    private static final Metrics.Operacion CANCELAR = Metrics.servicio("ReservaService", "cancelar");
+    private static final Metrics.Operacion CANCELAR_POR_USUARIO = Metrics.servicio("ReservaService", "cancelarPorUsuario");
+    private static final Metrics.Operacion CANCELAR_POR_LIBRO = Metrics.servicio("ReservaService", "cancelarPorLibro");
+    private static final Metrics.Operacion FIND_BY_ID = Metrics.servicio("ReservaService", "findById");
+    private static final Metrics.Operacion FIND_PENDIENTES_BY_USUARIO = Metrics.servicio("ReservaService", "findPendientesByUsuario");
+    private static final Metrics.Operacion VENCER_RETENIDAS = Metrics.servicio("ReservaService", "vencerRetenidas");
+    private static final Metrics.Operacion DESPACHAR = Metrics.servicio("ReservaService", "despachar");
+
+    @Override
+    public Optional<ReservaEntity> reservar(int usuarioId, int libroId) {
+        return RESERVAR.time(() -> super.reservar(usuarioId, libroId));
+    }
+
+    @Override
+    public Optional<ReservaEntity> reservarOrThrow(int usuarioId, int libroId) {
+        return RESERVAR.time(() -> super.reservarOrThrow(usuarioId, libroId));
+    }
+
+    @Override
+    public void cancelar(int id) {
+        CANCELAR.run(() -> super.cancelar(id));
+    }
+
+    @Override
+    public void cancelarOrThrow(int id) {
+        CANCELAR.run(() -> super.cancelarOrThrow(id));
+    }
+
+    @Override
+    public void cancelarPorUsuario(int usuarioId) {
+        CANCELAR_POR_USUARIO.run(() -> super.cancelarPorUsuario(usuarioId));
+    }
+
+    @Override
+    public void cancelarPorLibro(int libroId) {
+        CANCELAR_POR_LIBRO.run(() -> super.cancelarPorLibro(libroId));
+    }
+
+    @Override
+    public ReservaEntity findById(int id) {
+        return FIND_BY_ID.time(() -> super.findById(id));
+    }
+
+    @Override
+    public List<ReservaEntity> findPendientesByUsuario(int usuarioId) {
+        return FIND_PENDIENTES_BY_USUARIO.time(() -> super.findPendientesByUsuario(usuarioId));
+    }
+
+    @Override
+    public int vencerRetenidas() {
+        return VENCER_RETENIDAS.time(() -> super.vencerRetenidas());
+    }
+
+    @Override
+    public void despachar(int libroId) {
+        DESPACHAR.run(() -> super.despachar(libroId));
+    }
+}
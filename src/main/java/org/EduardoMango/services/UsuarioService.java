@@ -1,24 +1,38 @@
 package org.EduardoMango.services;
 
 import lombok.Getter;
+import org.EduardoMango.database.DatabaseConnection;
 import org.EduardoMango.entities.PrestamoEntity;
+import org.EduardoMango.entities.RankingEntity;
 import org.EduardoMango.entities.UsuarioEntity;
+import org.EduardoMango.metrics.Metrics;
 import org.EduardoMango.repositories.PrestamoRepository;
+import org.EduardoMango.repositories.ResumenPrestamosRepository;
+import org.EduardoMango.repositories.UncheckedSQLException;
 import org.EduardoMango.repositories.UsuarioRepository;
 
 import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.YearMonth;
 import java.util.*;
+import java.util.function.Consumer;
 
 public class UsuarioService implements IService<UsuarioEntity>{
 
+    public static final int MAX_PRESTAMOS_ACTIVOS = 5;
+
     @Getter
-    private static final UsuarioService instance = new UsuarioService();
+    private static final UsuarioService instance = new UsuarioServiceConMetricas();
     private final UsuarioRepository usuarioRepository;
     private final PrestamoRepository prestamoRepository;
+    private final ResumenPrestamosRepository resumenRepository;
+    private final EstadisticasPrestamos estadisticas;
 
-    private UsuarioService() {
+    UsuarioService() {
         this.usuarioRepository = UsuarioRepository.getInstance();
         this.prestamoRepository = PrestamoRepository.getInstance();
+        this.resumenRepository = ResumenPrestamosRepository.getInstance();
+        this.estadisticas = EstadisticasPrestamos.getInstance();
     }
 
     @Override
@@ -26,56 +40,100 @@ public class UsuarioService implements IService<UsuarioEntity>{
         try {
             return usuarioRepository.findAll();
         } catch (SQLException e) {
-            System.out.println(e.getMessage());
+            error("findAll", e);
         }
         return List.of();
     }
 
+    /**
+     * Obtiene el ranking de los usuarios con más préstamos de todos los tiempos.
+     * Las posiciones salen de {@link EstadisticasPrestamos} en O(limite · log n);
+     * solo los usuarios del ranking se leen de la base (o de la caché).
+     *
+     * @param limite Cantidad máxima de posiciones del ranking.
+     * @return Una lista ordenada de mayor a menor cantidad de préstamos.
+     * Devuelve una lista vacía si ocurre un error al acceder a la base de datos.
+     */
+    public List<RankingEntity<UsuarioEntity>> findTopPrestamos(int limite) {
+        try {
+            List<RankingEntity<UsuarioEntity>> ranking = new ArrayList<>();
+            for (RankingEntity<Integer> posicion : estadisticas.topUsuarios(limite)) {
+                usuarioRepository.findById(posicion.getEntidad())
+                        .ifPresent(usuario -> ranking.add(new RankingEntity<>(usuario, posicion.getCantidad_prestamos())));
+            }
+            return ranking;
+        } catch (SQLException e) {
+            error("findTopPrestamos", e);
+            return List.of();
+        }
+    }
+
+    /**
+     * Obtiene el ranking de los usuarios con más préstamos dentro de un rango de fechas.
+     * El conteo se resuelve sobre los resúmenes mensuales y diarios de préstamos por usuario
+     * ({@link ResumenPrestamosRepository}), sin recorrer los préstamos del rango.
+     * En caso de ocurrir una SQLException, imprime el mensaje de error
+     * y devuelve una lista vacía.
+     *
+     * @param limite Cantidad máxima de posiciones del ranking.
+     * @param desde  Fecha mínima de préstamo (inclusive), o null para no acotar.
+     * @param hasta  Fecha máxima de préstamo (inclusive), o null para no acotar.
+     * @return Una lista ordenada de mayor a menor cantidad de préstamos.
+     */
+    public List<RankingEntity<UsuarioEntity>> findTopPrestamos(int limite, LocalDate desde, LocalDate hasta) {
+        try {
+            return resumenRepository.findTopUsuarios(limite, desde, hasta);
+        } catch (SQLException e) {
+            error("findTopPrestamos", e);
+            return List.of();
+        }
+    }
+
     /**
      * Busca el usuario que tiene la mayor cantidad de préstamos registrados.
-     * <p>
-     * Este método realiza los siguientes pasos:
-     * <ol>
-     * <li>Obtiene una lista de todos los préstamos registrados en el sistema.</li>
-     * <li>Obtiene una lista de todos los usuarios registrados en el sistema.</li>
-     * <li>Para cada usuario, cuenta la cantidad de préstamos asociados a su ID.</li>
-     * <li>Compara a los usuarios basándose en la cantidad de préstamos que tienen.</li>
-     * <li>Devuelve el usuario con la mayor cantidad de préstamos.</li>
-     * </ol>
+     * Es la primera posición del ranking devuelto por {@link #findTopPrestamos(int)}.
      *
      * @return El usuario que tiene la mayor cantidad de préstamos registrados.
-     * @throws NoSuchElementException Si no se encuentra ningún usuario en la base de datos
-     * o si ocurre un error al acceder a la base de datos para obtener los préstamos y usuarios.
+     * @throws NoSuchElementException Si no hay préstamos registrados en la base de datos
+     * o si ocurre un error al acceder a la base de datos.
      */
     public UsuarioEntity findByMaxPrestamos() {
+        RankingEntity<Integer> primero = estadisticas.topUsuarios(1).stream()
+                .findFirst()
+                .orElseThrow(() -> new NoSuchElementException("No se encontraron préstamos en la base de datos."));
         try {
-            List<PrestamoEntity> prestamos = prestamoRepository.findAll();
-            List<UsuarioEntity> usuarios = usuarioRepository.findAll();
-
-        return usuarios.stream()
-                .max(Comparator.comparingLong(usuario ->
-                        prestamos.stream()
-                                .filter(p -> p.getUsuario_id() == usuario.getId())
-                                .count()
-                ))
-                .orElseThrow(() -> new NoSuchElementException("No se encontraron libros en la base de datos."));
-            } catch (SQLException e) {
-            throw new NoSuchElementException("Error al acceder a la base de datos para obtener los libros y préstamos.", e);
+            return usuarioRepository.findById(primero.getEntidad()).orElseThrow(NoSuchElementException::new);
+        } catch (SQLException e) {
+            throw new NoSuchElementException("Error al acceder a la base de datos para obtener los usuarios y préstamos.", e);
         }
+    }
+
+    /**
+     * Busca el usuario que realizó la mayor cantidad de préstamos en un mes.
+     * Se lee de los resúmenes mensuales de préstamos por usuario.
+     *
+     * @param mes El mes de los préstamos.
+     * @return El usuario con más préstamos en el mes.
+     * @throws NoSuchElementException Si no hay préstamos en ese mes
+     * o si ocurre un error al acceder a la base de datos.
+     */
+    public UsuarioEntity findByMaxPrestamos(YearMonth mes) {
+        try {
+            return resumenRepository.findTopUsuarios(1, mes.atDay(1), mes.atEndOfMonth()).stream()
+                    .findFirst()
+                    .map(RankingEntity::getEntidad)
+                    .orElseThrow(() -> new NoSuchElementException("No se encontraron préstamos en " + mes + "."));
+        } catch (SQLException e) {
+            throw new NoSuchElementException("Error al acceder a la base de datos para obtener los usuarios y préstamos.", e);
         }
+    }
 
 
     /**
-     * Verifica si un usuario tiene menos del máximo permitido de préstamos activos.
-     * El máximo permitido de préstamos activos se considera 5.
-     * <p>
-     * Este método realiza los siguientes pasos:
-     * <ol>
-     * <li>Consulta la base de datos para obtener todos los préstamos activos asociados a un usuario específico (aquellos sin fecha de devolución).</li>
-     * <li>Cuenta la cantidad de préstamos activos encontrados para ese usuario.</li>
-     * <li>Compara la cantidad de préstamos activos con el límite máximo (5).</li>
-     * <li>Devuelve `true` si la cantidad de préstamos activos es menor que el límite, y `false` en caso contrario.</li>
-     * </ol>
+     * Verifica si un usuario tiene menos del máximo permitido de préstamos activos
+     * ({@link #MAX_PRESTAMOS_ACTIVOS}).
+     * La cantidad de préstamos activos se obtiene con un único COUNT indexado,
+     * sin traer los préstamos a memoria.
      *
      * @param idUsuario El ID del usuario a verificar.
      * @return `true` si el usuario tiene menos de 5 préstamos activos, `false` en caso contrario.
@@ -83,11 +141,7 @@ public class UsuarioService implements IService<UsuarioEntity>{
      */
     public boolean isBelowMaxPrestamos(int idUsuario){
         try {
-            int activos = prestamoRepository.findAllActiveByUsuario(idUsuario)
-                    .size();
-
-            return activos < 5;
-
+            return prestamoRepository.countActiveByUsuario(idUsuario) < MAX_PRESTAMOS_ACTIVOS;
         } catch (SQLException e) {
             throw new RuntimeException(e);
         }
@@ -95,37 +149,68 @@ public class UsuarioService implements IService<UsuarioEntity>{
 
     /**
      * Obtiene una lista de todos los usuarios que tienen al menos un préstamo activo.
-     * <p>
-     * Este método realiza los siguientes pasos:
-     * <ol>
-     * <li>Obtiene una lista de todos los usuarios registrados en el sistema.</li>
-     * <li>Para cada usuario, consulta la base de datos para verificar si tiene algún préstamo activo (sin fecha de devolución).</li>
-     * <li>Filtra la lista de usuarios, manteniendo solo aquellos para los cuales se encontraron préstamos activos.</li>
-     * <li>Devuelve una lista de los usuarios que tienen préstamos activos.</li>
-     * </ol>
+     * La búsqueda se resuelve en la base de datos con una única consulta,
+     * sin consultar los préstamos de cada usuario por separado.
      *
      * @return Una lista de objetos UsuarioEntity que tienen al menos un préstamo activo.
      * Devuelve una lista vacía si no hay usuarios con préstamos activos o si ocurre un error al acceder a la base de datos.
      */
     public List<UsuarioEntity> findAllConPrestamosActivos() {
         try {
-            List<UsuarioEntity> usuarios = usuarioRepository.findAll();
+            return usuarioRepository.findAllConPrestamosActivos();
+        } catch (SQLException e) {
+            error("findAllConPrestamosActivos", e);
+        }
+        return List.of();
+    }
 
-            return usuarios.stream()
-                    .filter(u -> {
-                        try {
-                            return !prestamoRepository.findAllActiveByUsuario(u.getId()).isEmpty();
-                        } catch (SQLException e) {
-                            throw new RuntimeException(e);
-                        }
-                    })
-                    .toList();
+    /**
+     * Obtiene una página de usuarios con al menos un préstamo activo.
+     * Las páginas se recorren por clave: se pide la siguiente pasando el id
+     * del último usuario recibido, por lo que el costo no crece con la profundidad.
+     *
+     * @param afterId Id del último usuario de la página anterior (0 para la primera página).
+     * @param limite  Cantidad máxima de usuarios por página.
+     * @return Los usuarios de la página. Devuelve una lista vacía al llegar al final
+     * o si ocurre un error al acceder a la base de datos.
+     */
+    public List<UsuarioEntity> findPageConPrestamosActivos(int afterId, int limite) {
+        try {
+            return usuarioRepository.findPageConPrestamosActivos(afterId, limite);
         } catch (SQLException e) {
-            System.out.println(e.getMessage());
+            error("findPageConPrestamosActivos", e);
         }
         return List.of();
     }
 
+    @Override
+    public void forEach(Consumer<? super UsuarioEntity> action) {
+        try {
+            usuarioRepository.forEach(action);
+        } catch (SQLException e) {
+            error("forEach", e);
+        }
+    }
+
+    @Override
+    public void forEachOrThrow(Consumer<? super UsuarioEntity> action) {
+        try {
+            usuarioRepository.forEach(action);
+        } catch (SQLException e) {
+            throw new UncheckedSQLException(e);
+        }
+    }
+
+    @Override
+    public List<UsuarioEntity> findPage(int afterId, int limite) {
+        try {
+            return usuarioRepository.findPage(afterId, limite);
+        } catch (SQLException e) {
+            error("findPage", e);
+            return List.of();
+        }
+    }
+
     @Override
     public UsuarioEntity findById(int id) {
 
@@ -137,22 +222,63 @@ public class UsuarioService implements IService<UsuarioEntity>{
     }
 
     @Override
-    public void save(UsuarioEntity user) {
+    public Optional<UsuarioEntity> save(UsuarioEntity user) {
         try {
-            usuarioRepository.save(user);
+            UsuarioEntity guardado = usuarioRepository.save(user);
             System.out.println("Usuario guardado correctamente");
+            return Optional.of(guardado);
         } catch (SQLException e) {
-            System.out.println(e.getMessage());
+            error("save", e);
+            return Optional.empty();
+        }
+    }
+
+    @Override
+    public Optional<UsuarioEntity> saveOrThrow(UsuarioEntity user) {
+        try {
+            return Optional.of(usuarioRepository.save(user));
+        } catch (SQLException e) {
+            throw new UncheckedSQLException(e);
         }
     }
 
     @Override
     public void delete(int id) {
         try {
-            usuarioRepository.delete(id);
+            eliminar(id);
             System.out.println("Usuario eliminado correctamente");
         } catch (SQLException e) {
-            System.out.println(e.getMessage());
+            error("delete", e);
+        }
+    }
+
+    @Override
+    public void deleteOrThrow(int id) {
+        try {
+            eliminar(id);
+        } catch (SQLException e) {
+            throw new UncheckedSQLException(e);
         }
     }
+
+    private void eliminar(int id) throws SQLException {
+        // Se obtiene recién acá: ReservaService crea el índice de disponibilidad, que se debe crear
+        // después de aplicar el log de escritura diferida (ver LibroService).
+        ReservaService.getInstance().cancelarPorUsuario(id);
+        // Los préstamos se borran antes que el usuario, en la misma transacción, para descontarlos de las estadísticas.
+        List<PrestamoEntity> borrados = DatabaseConnection.inTransaction(conn -> {
+            List<PrestamoEntity> prestamos = prestamoRepository.deleteByUsuario(conn, id);
+            usuarioRepository.delete(conn, id);
+            return prestamos;
+        });
+        estadisticas.registrarBorrados(borrados);
+    }
+
+    /**
+     * Informa un error atrapado por un método de consola y lo cuenta en las métricas del servicio.
+     */
+    private static void error(String metodo, Exception e) {
+        Metrics.errorAtrapado("UsuarioService", metodo, e);
+        System.out.println(e.getMessage());
+    }
 }
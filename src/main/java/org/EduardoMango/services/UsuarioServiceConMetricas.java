@@ -0,0 +1,110 @@
+package org.EduardoMango.services;
+
+import org.EduardoMango.entities.RankingEntity;
+import org.EduardoMango.entities.UsuarioEntity;
+import org.EduardoMango.metrics.Metrics;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+/**
+ * {@link UsuarioService} con métricas: cada método público se mide con una {@link Metrics.Operacion}
+ * registrada una sola vez y delega en la implementación. Es la instancia que devuelve {@link UsuarioService#getInstance()}.
+ */
+class UsuarioServiceConMetricas extends UsuarioService {
+
+    private static final Metrics.Operacion FIND_ALL = Metrics.servicio("UsuarioService", "findAll");
+    private static final Metrics.Operacion FIND_TOP_PRESTAMOS = Metrics.servicio("UsuarioService", "findTopPrestamos");
+    private static final Metrics.Operacion FIND_BY_MAX_PRESTAMOS = Metrics.servicio("UsuarioService", "findByMaxPrestamos");
+    private static final Metrics.Operacion IS_BELOW_MAX_PRESTAMOS = Metrics.servicio("UsuarioService", "isBelowMaxPrestamos");
+    private static final Metrics.Operacion FIND_ALL_CON_PRESTAMOS_ACTIVOS = Metrics.servicio("UsuarioService", "findAllConPrestamosActivos");
+    private static final Metrics.Operacion FIND_PAGE_CON_PRESTAMOS_ACTIVOS = Metrics.servicio("UsuarioService", "findPageConPrestamosActivos");
+    private static final Metrics.Operacion FOR_EACH = Metrics.servicio("UsuarioService", "forEach");
+    private static final Metrics.Operacion FIND_PAGE = Metrics.servicio("UsuarioService", "findPage");
+    private static final Metrics.Operacion FIND_BY_ID = Metrics.servicio("UsuarioService", "findById");
+    private static final Metrics.Operacion SAVE = Metrics.servicio("UsuarioService", "save");
+    private static final Metrics.Operacion DELETE = Metrics.servicio("UsuarioService", "delete");
+
+    @Override
+    public List<UsuarioEntity> findAll() {
+        return FIND_ALL.time(() -> super.findAll());
+    }
+
+    @Override
+    public List<RankingEntity<UsuarioEntity>> findTopPrestamos(int limite) {
+        return FIND_TOP_PRESTAMOS.time(() -> super.findTopPrestamos(limite));
+    }
+
+    @Override
+    public List<RankingEntity<UsuarioEntity>> findTopPrestamos(int limite, LocalDate desde, LocalDate hasta) {
+        return FIND_TOP_PRESTAMOS.time(() -> super.findTopPrestamos(limite, desde, hasta));
+    }
+
+    @Override
+    public UsuarioEntity findByMaxPrestamos() {
+        return FIND_BY_MAX_PRESTAMOS.time(() -> super.findByMaxPrestamos());
+    }
+
+    @Override
+    public UsuarioEntity findByMaxPrestamos(YearMonth mes) {
+        return FIND_BY_MAX_PRESTAMOS.time(() -> super.findByMaxPrestamos(mes));
+    }
+
+    @Override
+    public boolean isBelowMaxPrestamos(int idUsuario) {
+        return IS_BELOW_MAX_PRESTAMOS.time(() -> super.isBelowMaxPrestamos(idUsuario));
+    }
+
+    @Override
+    public List<UsuarioEntity> findAllConPrestamosActivos() {
+        return FIND_ALL_CON_PRESTAMOS_ACTIVOS.time(() -> super.findAllConPrestamosActivos());
+    }
+
+    @Override
+    public List<UsuarioEntity> findPageConPrestamosActivos(int afterId, int limite) {
+        return FIND_PAGE_CON_PRESTAMOS_ACTIVOS.time(() -> super.findPageConPrestamosActivos(afterId, limite));
+    }
+
+    @Override
+    public void forEach(Consumer<? super UsuarioEntity> action) {
+        FOR_EACH.run(() -> super.forEach(action));
+    }
+
+    @Override
+    public void forEachOrThrow(Consumer<? super UsuarioEntity> action) {
+        FOR_EACH.run(() -> super.forEachOrThrow(action));
+    }
+
+    @Override
+    public List<UsuarioEntity> findPage(int afterId, int limite) {
+        return FIND_PAGE.time(() -> super.findPage(afterId, limite));
+    }
+
+    @Override
+    public UsuarioEntity findById(int id) {
+        return FIND_BY_ID.time(() -> super.findById(id));
+    }
+
+    @Override
+    public Optional<UsuarioEntity> save(UsuarioEntity user) {
+        return SAVE.time(() -> super.save(user));
+    }
+
+    @Override
+    public Optional<UsuarioEntity> saveOrThrow(UsuarioEntity user) {
+        return SAVE.time(() -> super.saveOrThrow(user));
+    }
+
+    @Override
+    public void delete(int id) {
+        DELETE.run(() -> super.delete(id));
+    }
+
+    @Override
+    public void deleteOrThrow(int id) {
+        DELETE.run(() -> super.deleteOrThrow(id));
+    }
+}
@@ -0,0 +1,169 @@
+package org.EduardoMango.vencimientos;
+
+import org.EduardoMango.database.DatabaseConfig;
+import org.EduardoMango.database.DatabaseConnection;
+import org.EduardoMango.database.StatementCache;
+import org.EduardoMango.entities.PrestamoEntity;
+import org.EduardoMango.metrics.MeterId;
+import org.EduardoMango.metrics.Metrics;
+import org.EduardoMango.metrics.MetricsRegistry;
+import org.EduardoMango.repositories.NotificacionRepository;
+import org.EduardoMango.repositories.PrestamoRepository;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Tarea periódica que busca los préstamos vencidos ({@link PrestamoEntity#PLAZO_DIAS}) y registra
+ * una notificación por cada uno en el outbox ({@code notificaciones}), para que otro proceso las envíe.
+ * <p>
+ * Los préstamos se recorren por lotes de {@code biblioteca.vencimientos.lote} (1000 por defecto) en orden
+ * de (fecha de préstamo, id), sobre el índice parcial de préstamos activos por fecha. Cada lote se procesa
+ * en una transacción que inserta sus notificaciones y guarda en {@code vencimientos_checkpoint} la clave del
+ * último préstamo del lote. Así:
+ * <ul>
+ * <li>Nunca se cargan en memoria más préstamos que los de un lote, y entre lotes se libera la conexión de escritura.</li>
+ * <li>Si el proceso se interrumpe, el escaneo siguiente continúa después del último lote confirmado.</li>
+ * <li>Cada escaneo solo recorre los préstamos que vencieron desde el anterior: los préstamos nuevos tienen
+ * fecha de hoy, posterior a la del checkpoint. Los préstamos cargados con fechas pasadas (importaciones)
+ * se notifican después de {@link #reiniciar()}.</li>
+ * </ul>
+ * Se ejecuta cada {@code biblioteca.vencimientos.intervaloMinutos} minutos (60 por defecto; 0 no lo programa).
+ */
+public class EscaneoVencidos implements AutoCloseable {
+
+    private static final LongAdder notificados = MetricsRegistry.getInstance().counter(MeterId.of("biblioteca_vencidos_notificados_total"));
+    private static final Metrics.Operacion ESCANEAR = Metrics.repositorio("EscaneoVencidos", "escanear");
+
+    private record Clave(LocalDate fechaPrestamo, int prestamoId) {}
+
+    private record Lote(int leidos, int notificados, Clave ultima) {}
+
+    private final long intervaloMinutos;
+    private final int tamanoLote;
+    private final PrestamoRepository prestamoRepository = PrestamoRepository.getInstance();
+    private final NotificacionRepository notificacionRepository = NotificacionRepository.getInstance();
+    /** Evita que un escaneo manual y uno programado avancen el checkpoint a la vez. */
+    private final ReentrantLock escaneando = new ReentrantLock();
+    private ScheduledExecutorService scheduler;
+
+    public EscaneoVencidos(long intervaloMinutos, int tamanoLote) {
+        this.intervaloMinutos = intervaloMinutos;
+        this.tamanoLote = tamanoLote;
+    }
+
+    /**
+     * Crea la tarea con la configuración de {@code biblioteca.vencimientos.*}, sin iniciarla.
+     */
+    public static EscaneoVencidos fromConfig() {
+        return new EscaneoVencidos(
+                Long.parseLong(DatabaseConfig.get("biblioteca.vencimientos.intervaloMinutos", "60")),
+                Integer.parseInt(DatabaseConfig.get("biblioteca.vencimientos.lote", "1000")));
+    }
+
+    /**
+     * Programa el escaneo: el primero enseguida y los siguientes cada {@code intervaloMinutos}.
+     */
+    public void start() {
+        if (intervaloMinutos <= 0) return;
+        scheduler = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name("vencimientos-escaneo").daemon().factory());
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                escanear();
+            } catch (SQLException | RuntimeException e) {
+                // Una excepción cancelaría las siguientes ejecuciones.
+                System.out.println(e.getMessage());
+            }
+        }, 0, intervaloMinutos, TimeUnit.MINUTES);
+    }
+
+    /**
+     * Registra las notificaciones de los préstamos vencidos desde el último escaneo.
+     *
+     * @return La cantidad de notificaciones nuevas.
+     */
+    public int escanear() throws SQLException {
+        return ESCANEAR.timeSql(() -> {
+            escaneando.lock();
+            try {
+                LocalDate prestadosAntesDe = PrestamoEntity.prestadosVencidosAntesDe(LocalDate.now());
+                Clave desde = leerCheckpoint();
+                int total = 0;
+                Lote lote;
+                do {
+                    lote = procesarLote(prestadosAntesDe, desde);
+                    total += lote.notificados();
+                    notificados.add(lote.notificados());
+                    desde = lote.ultima();
+                } while (lote.leidos() == tamanoLote);
+                return total;
+            } finally {
+                escaneando.unlock();
+            }
+        });
+    }
+
+    /**
+     * Borra el checkpoint: el próximo escaneo recorre todos los préstamos activos vencidos.
+     * Los que ya tenían su notificación no se vuelven a notificar.
+     */
+    public void reiniciar() throws SQLException {
+        escaneando.lock();
+        try (Connection conn = DatabaseConnection.getConnection();
+             Statement st = conn.createStatement()) {
+            st.executeUpdate("DELETE FROM vencimientos_checkpoint");
+        } finally {
+            escaneando.unlock();
+        }
+    }
+
+    private Lote procesarLote(LocalDate prestadosAntesDe, Clave desde) throws SQLException {
+        return DatabaseConnection.inTransaction(conn -> {
+            List<PrestamoEntity> vencidos = prestamoRepository.findPageActivosPrestadosAntesDe(conn, prestadosAntesDe,
+                    desde.fechaPrestamo(), desde.prestamoId(), tamanoLote);
+            if (vencidos.isEmpty()) return new Lote(0, 0, desde);
+            int nuevas = notificacionRepository.saveVencidos(conn, vencidos);
+            PrestamoEntity ultimo = vencidos.getLast();
+            Clave ultima = new Clave(ultimo.getFecha_prestamo(), ultimo.getId());
+            guardarCheckpoint(conn, ultima);
+            return new Lote(vencidos.size(), nuevas, ultima);
+        });
+    }
+
+    /**
+     * @return La clave del último préstamo procesado, o una anterior a todos si nunca se escaneó.
+     */
+    private static Clave leerCheckpoint() throws SQLException {
+        try (Connection conn = DatabaseConnection.getReadConnection();
+             PreparedStatement ps = conn.prepareStatement("SELECT fecha_prestamo, prestamo_id FROM vencimientos_checkpoint WHERE id = 1");
+             ResultSet rs = ps.executeQuery()) {
+            return rs.next() ? new Clave(LocalDate.ofEpochDay(rs.getLong(1)), rs.getInt(2)) : new Clave(LocalDate.MIN, 0);
+        }
+    }
+
+    private static void guardarCheckpoint(Connection conn, Clave clave) throws SQLException {
+        try (PreparedStatement ps = StatementCache.prepare(conn, """
+                INSERT INTO vencimientos_checkpoint (id, fecha_prestamo, prestamo_id) VALUES (1, ?, ?)
+                ON CONFLICT (id) DO UPDATE SET fecha_prestamo = excluded.fecha_prestamo, prestamo_id = excluded.prestamo_id""")) {
+            ps.setLong(1, clave.fechaPrestamo().toEpochDay());
+            ps.setInt(2, clave.prestamoId());
+            ps.executeUpdate();
+        }
+    }
+
+    @Override
+    public void close() {
+        if (scheduler != null) scheduler.shutdownNow();
+    }
+}
@@ -1,11 +1,18 @@
 package org.EduardoMango.view;
 
+import org.EduardoMango.entities.BusquedaLibros;
 import org.EduardoMango.entities.PrestamoEntity;
+import org.EduardoMango.entities.ReservaEntity;
 import org.EduardoMango.entities.UsuarioEntity;
 import org.EduardoMango.services.LibroService;
 import org.EduardoMango.services.PrestamoService;
+import org.EduardoMango.services.ReservaService;
 import org.EduardoMango.services.UsuarioService;
 
+import java.nio.file.Path;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.NoSuchElementException;
 import java.util.Scanner;
 
 public class Menu {
@@ -13,6 +20,9 @@ public class Menu {
     public static final LibroService libroService = LibroService.getInstance();
     public static final PrestamoService prestamoService = PrestamoService.getInstance();
     public static final UsuarioService usuarioService = UsuarioService.getInstance();
+    public static final ReservaService reservaService = ReservaService.getInstance();
+
+    private static final int PAGE_SIZE = 100;
 
     public static void run(){
 
@@ -33,7 +43,15 @@ public class Menu {
                 case 11 -> visualizarTotalLibrosDisponibles();
                 case 12 -> visualizarUsuarioConMasPrestamos();
                 case 13 -> promedioPrestamosPorUsuarioConPrestamos();
-                case 14 -> System.exit(opc);
+                case 14 -> importarLibros();
+                case 15 -> buscarLibros();
+                case 16 -> reservarLibro();
+                case 17 -> listarReservasDeUsuario();
+                case 18 -> cancelarReserva();
+                case 19 -> listarPrestamosVencidos();
+                case 20 -> visualizarMasPrestadosDelMes();
+                case 21 -> promedioPrestamosPorUsuarioActivo();
+                case 22 -> System.exit(opc);
             }
         }
     }
@@ -55,23 +73,28 @@ public class Menu {
         System.out.println("11. Visualizar total de libros disponibles");
         System.out.println("12. Visualizar usuario con mayor cantidad de prestamos historicos");
         System.out.println("13. Visualizar promedio de prestamos de usuarios con prestamos");
-        System.out.println("14. Salir");
+        System.out.println("14. Importar libros desde CSV");
+        System.out.println("15. Buscar libros por titulo o autor");
+        System.out.println("16. Reservar libro sin unidades disponibles");
+        System.out.println("17. Listar reservas de un usuario");
+        System.out.println("18. Cancelar reserva");
+        System.out.println("19. Listar prestamos vencidos");
+        System.out.println("20. Visualizar libro mas prestado y usuario con mas prestamos de un mes");
+        System.out.println("21. Promedio de prestamos por usuario activo en los ultimos dias");
+        System.out.println("22. Salir");
 
         return sc.nextInt();
     }
 
     public static void listarUsuarios(){
-        usuarioService.findAll()
-                .forEach(System.out::println);
+        usuarioService.forEach(System.out::println);
     }
 
     public static void listarPrestamos(){
-        prestamoService.findAll()
-                .forEach(System.out::println);
+        prestamoService.forEach(System.out::println);
     }
     public static void listarLibros(){
-        libroService.findAll()
-                .forEach(System.out::println);
+        libroService.forEach(System.out::println);
     }
 
     public static void altaUsuario(){
@@ -84,7 +107,8 @@ public class Menu {
         usuarioService.save(UsuarioEntity.builder()
                 .nombre(nombre)
                 .email(email)
-                .id(0).build());
+                .build())
+                .ifPresent(System.out::println);
     }
 
     public static void bajaUsuario(){
@@ -96,14 +120,21 @@ public class Menu {
 
     public static void listarUsuariosConPrestamosActivos(){
         System.out.println("Usuarios con prestamos activos: ");
-        usuarioService.findAllConPrestamosActivos()
-                .forEach(System.out::println);
+        List<UsuarioEntity> pagina = usuarioService.findPageConPrestamosActivos(0, PAGE_SIZE);
+        while (!pagina.isEmpty()) {
+            pagina.forEach(System.out::println);
+            pagina = usuarioService.findPageConPrestamosActivos(pagina.getLast().getId(), PAGE_SIZE);
+        }
     }
 
     public static void listarPrestamosActivos(){
         System.out.println("Prestamos activos: ");
-        prestamoService.findAllActivos()
-                .forEach(System.out::println);
+        prestamoService.forEachActivo(System.out::println);
+    }
+
+    public static void listarPrestamosVencidos(){
+        System.out.println("Prestamos vencidos (plazo de " + PrestamoEntity.PLAZO_DIAS + " dias): ");
+        prestamoService.forEachVencido(p -> System.out.println(p + " vencio el " + p.getFecha_vencimiento()));
     }
 
     public static void generarPrestamo(){
@@ -119,8 +150,8 @@ public class Menu {
             prestamoService.save(PrestamoEntity.builder()
                     .usuario_id(id_usuario)
                     .libro_id(id_libro)
-                    .id(0)
-                    .build());
+                    .build())
+                    .ifPresent(System.out::println);
         }
     }
 
@@ -153,4 +184,74 @@ public class Menu {
         System.out.println("Promedio de prestamos por usuario con prestamos: " + prestamoService.promedioPrestamoPorUsuarioConPrestamos() );
 
     }
+
+    public static void visualizarMasPrestadosDelMes(){
+        Scanner sc = new Scanner(System.in);
+        System.out.println("Ingrese el mes (aaaa-mm): ");
+        YearMonth mes = YearMonth.parse(sc.nextLine().trim());
+        try {
+            System.out.println("Libro mas prestado: " + libroService.findByMaxPrestamos(mes));
+            System.out.println("Usuario con mas prestamos: " + usuarioService.findByMaxPrestamos(mes));
+        } catch (NoSuchElementException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+
+    public static void promedioPrestamosPorUsuarioActivo(){
+        Scanner sc = new Scanner(System.in);
+        System.out.println("Ingrese la cantidad de dias: ");
+        int dias = sc.nextInt();
+        System.out.println("Promedio de prestamos por usuario activo en los ultimos " + dias + " dias: "
+                + prestamoService.promedioPrestamoPorUsuarioActivo(dias));
+    }
+
+    public static void importarLibros(){
+        Scanner sc = new Scanner(System.in);
+        System.out.println("Ingrese la ruta del archivo CSV (titulo,autor,anio_publicacion,unidades_disponibles): ");
+        libroService.importarCsv(Path.of(sc.nextLine()));
+    }
+
+    public static void buscarLibros(){
+        Scanner sc = new Scanner(System.in);
+        System.out.println("Ingrese el titulo o autor a buscar: ");
+        String texto = sc.nextLine();
+        System.out.println("Solo libros disponibles? (s/n): ");
+        boolean soloDisponibles = sc.nextLine().trim().equalsIgnoreCase("s");
+
+        libroService.search(BusquedaLibros.builder()
+                .texto(texto)
+                .soloDisponibles(soloDisponibles)
+                .limite(PAGE_SIZE)
+                .build())
+                .forEach(System.out::println);
+    }
+
+    public static void reservarLibro(){
+        Scanner sc = new Scanner(System.in);
+        System.out.println("Ingrese el id del usuario:");
+        int id_usuario = sc.nextInt();
+        System.out.println("Ingrese el id del libro a reservar");
+        int id_libro = sc.nextInt();
+
+        reservaService.reservar(id_usuario, id_libro).ifPresent(Menu::mostrarReserva);
+    }
+
+    public static void listarReservasDeUsuario(){
+        Scanner sc = new Scanner(System.in);
+        System.out.println("Ingrese el id del usuario:");
+        reservaService.findPendientesByUsuario(sc.nextInt()).forEach(Menu::mostrarReserva);
+    }
+
+    public static void cancelarReserva(){
+        Scanner sc = new Scanner(System.in);
+        System.out.println("Ingrese el id de la reserva a cancelar");
+        reservaService.cancelar(sc.nextInt());
+    }
+
+    private static void mostrarReserva(ReservaEntity reserva){
+        System.out.println(reserva);
+        int posicion = reservaService.posicion(reserva);
+        if (posicion > 0) System.out.println("Posicion en la lista de espera: " + posicion);
+        else if (reserva.getVence() != null) System.out.println("Unidad retenida hasta " + reserva.getVence() + ": registre el prestamo para retirarla");
+    }
 }
@@ -0,0 +1,11 @@
+package org.EduardoMango.writebehind;
+
+/**
+ * Tipos de operación que se pueden diferir. El orden es parte del formato del log: solo se agregan al final.
+ */
+enum Operacion {
+    /** Devolución de un préstamo: id del préstamo y fecha de devolución en días desde 1970-01-01. */
+    DEVOLUCION,
+    /** Ajuste de stock: id del libro y unidades a sumar o restar. */
+    AJUSTE_STOCK
+}
@@ -0,0 +1,366 @@
+package org.EduardoMango.writebehind;
+
+import org.EduardoMango.database.DatabaseConfig;
+import org.EduardoMango.database.DatabaseConnection;
+import org.EduardoMango.database.StatementCache;
+import org.EduardoMango.metrics.MeterId;
+import org.EduardoMango.metrics.MetricsRegistry;
+import org.EduardoMango.metrics.Timer;
+import org.EduardoMango.repositories.LibroRepository;
+import org.EduardoMango.repositories.PrestamoRepository;
+import org.EduardoMango.writebehind.WriteBehindLog.Registro;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalInt;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Escritura diferida (write-behind) de devoluciones y ajustes de stock.
+ * <p>
+ * Con {@code biblioteca.writeBehind.enabled=true}, cada operación se confirma apenas queda escrita en
+ * el log local ({@link WriteBehindLog}, un fsync compartido entre las operaciones concurrentes) y un hilo
+ * en segundo plano la aplica después:
+ * <ul>
+ * <li>Toma todas las operaciones pendientes (hasta {@code biblioteca.writeBehind.maxBatch}) y las aplica en
+ * una sola transacción: una devolución por préstamo, y un único UPDATE por libro con la suma de sus
+ * devoluciones y ajustes.</li>
+ * <li>En la misma transacción guarda hasta qué posición del log se aplicó ({@code write_behind_checkpoint}),
+ * así cada operación se aplica exactamente una vez aunque la aplicación se caiga entre el commit y el log.</li>
+ * <li>Si la base falla, reintenta el mismo lote cada un segundo, hasta {@code biblioteca.writeBehind.maxRetries}
+ * veces seguidas (10 por defecto).</li>
+ * </ul>
+ * Si se agotan los reintentos o falla el log, la escritura diferida queda fallida (si falló el log, el hilo
+ * escritor sigue aplicando las operaciones que ya estaban en disco; si falló la base, termina),
+ * {@link #isActiva()} pasa a false (los servicios vuelven a escribir en forma sincrónica) y la métrica
+ * {@code biblioteca_write_behind_fallida} vale 1. Las operaciones confirmadas que no se aplicaron siguen en el
+ * log y se aplican en el próximo inicio.
+ * Al iniciar se aplican las operaciones del log posteriores al checkpoint (las que quedaron sin aplicar
+ * por una caída) y el log se rota. Hasta que una operación se aplica, las lecturas de la base no la ven:
+ * un préstamo devuelto sigue figurando activo y su libro sin la unidad devuelta durante unos milisegundos.
+ */
+public class WriteBehind implements AutoCloseable {
+
+    private static WriteBehind instance;
+
+    /** Por encima de este tamaño, el log se vacía cuando todo lo escrito ya se aplicó. */
+    private static final long ROTAR_DESDE = 1 << 20;
+
+    private final WriteBehindLog log;
+    private final int maxLote;
+    private final int maxReintentos;
+    private final PrestamoRepository prestamoRepository = PrestamoRepository.getInstance();
+    private final LibroRepository libroRepository = LibroRepository.getInstance();
+
+    private final LinkedBlockingQueue<Registro> cola = new LinkedBlockingQueue<>();
+    /** Préstamos con una devolución confirmada que todavía no se aplicó. */
+    private final Set<Integer> devolucionesPendientes = ConcurrentHashMap.newKeySet();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition aplicado = lock.newCondition();
+    /** Número del último registro aplicado. */
+    private volatile long aplicadoHasta;
+    /** Posición del log hasta la que se aplicó; solo la usa el hilo escritor. */
+    private long posicionAplicada;
+    private volatile boolean cerrado;
+    private volatile boolean fallida;
+    private final Thread escritor;
+
+    private final Timer lotes = MetricsRegistry.getInstance().timer(MeterId.of("biblioteca_write_behind_lote_seconds"));
+    private final LongAdder aplicadas = MetricsRegistry.getInstance().counter(MeterId.of("biblioteca_write_behind_operaciones_total"));
+    private final LongAdder reintentos = MetricsRegistry.getInstance().counter(MeterId.of("biblioteca_write_behind_reintentos_total"));
+
+    private WriteBehind(Path archivo, long generacionNueva, int maxLote, int maxReintentos) throws IOException {
+        this.log = WriteBehindLog.abrir(archivo, generacionNueva, cola::add);
+        this.maxLote = maxLote;
+        this.maxReintentos = maxReintentos;
+        MetricsRegistry.getInstance().gauge(MeterId.of("biblioteca_write_behind_pendientes"), cola::size);
+        MetricsRegistry.getInstance().gauge(MeterId.of("biblioteca_write_behind_fallida"), () -> fallida ? 1 : 0);
+        escritor = Thread.ofPlatform().name("write-behind").daemon().unstarted(this::escribir);
+    }
+
+    /**
+     * Inicia la escritura diferida si está habilitada. Si no lo está pero quedó un log de una ejecución
+     * anterior, aplica sus operaciones pendientes y lo borra.
+     *
+     * @return La escritura diferida, o null si no está habilitada.
+     * @throws IllegalStateException Si no se puede leer el log o aplicar sus operaciones pendientes.
+     */
+    public static synchronized WriteBehind iniciar() {
+        if (instance != null) return instance;
+        DatabaseConfig config = DatabaseConnection.getConfig();
+        Path archivo = Path.of(config.getWriteBehindLog());
+        if (!config.isWriteBehind() && !Files.exists(archivo)) return null;
+
+        try {
+            long[] checkpoint = leerCheckpoint();
+            // Un log nuevo (p. ej. después de deshabilitar y volver a habilitar) empieza después de la generación
+            // del checkpoint, así una posición vieja no se confunde con una del log nuevo.
+            WriteBehind writeBehind = new WriteBehind(archivo, checkpoint[0] + 1, config.getWriteBehindMaxBatch(), config.getWriteBehindMaxRetries());
+            writeBehind.recuperar(checkpoint);
+            if (!config.isWriteBehind()) {
+                writeBehind.log.close();
+                Files.delete(archivo);
+                return null;
+            }
+            writeBehind.escritor.start();
+            Runtime.getRuntime().addShutdownHook(new Thread(writeBehind::close));
+            instance = writeBehind;
+            return instance;
+        } catch (IOException e) {
+            throw new IllegalStateException("No se pudo abrir el log de escritura diferida " + archivo, e);
+        } catch (SQLException e) {
+            throw new IllegalStateException("No se pudieron aplicar las operaciones pendientes del log: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Registra la devolución de un préstamo con la fecha actual. Vuelve cuando la devolución está en el log.
+     *
+     * @param prestamoId El ID del préstamo, que debe estar activo.
+     * @return false si ya había una devolución pendiente de aplicar para el préstamo.
+     */
+    public boolean devolver(int prestamoId) throws IOException {
+        if (!devolucionesPendientes.add(prestamoId)) return false;
+        try {
+            agregar(Operacion.DEVOLUCION, prestamoId, (int) LocalDate.now().toEpochDay());
+            return true;
+        } catch (IOException | RuntimeException e) {
+            devolucionesPendientes.remove(prestamoId);
+            throw e;
+        }
+    }
+
+    /**
+     * Registra un ajuste de stock de un libro. Vuelve cuando el ajuste está en el log.
+     */
+    public void ajustarStock(int libroId, int delta) throws IOException {
+        agregar(Operacion.AJUSTE_STOCK, libroId, delta);
+    }
+
+    /**
+     * Si acepta operaciones: false después de {@link #close()} o si la escritura diferida falló.
+     * Una operación que se agrega mientras falla queda en el log y se aplica en el próximo inicio.
+     */
+    public boolean isActiva() {
+        return !cerrado && !fallida;
+    }
+
+    public boolean isDevolucionPendiente(int prestamoId) {
+        return devolucionesPendientes.contains(prestamoId);
+    }
+
+    /**
+     * Espera a que se apliquen todas las operaciones confirmadas hasta ahora.
+     *
+     * @return false si no se aplicaron dentro del tiempo indicado.
+     */
+    public boolean esperarAplicadas(long timeout, TimeUnit unidad) throws InterruptedException {
+        long objetivo = log.getUltimoNumero();
+        long restante = unidad.toNanos(timeout);
+        lock.lock();
+        try {
+            while (aplicadoHasta < objetivo) {
+                if (restante <= 0) return false;
+                restante = aplicado.awaitNanos(restante);
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Deja de aceptar operaciones, espera a que se apliquen las pendientes (hasta 30 segundos;
+     * las que no se apliquen quedan en el log para el próximo inicio) y cierra el log.
+     */
+    @Override
+    public void close() {
+        if (cerrado) return;
+        cerrado = true;
+        try {
+            escritor.join(TimeUnit.SECONDS.toMillis(30));
+            log.close();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+
+    /**
+     * Si falla el log, la operación no se aplica en esta ejecución (aunque podría haber quedado en el archivo
+     * y aplicarse en el próximo inicio) y la escritura diferida queda fallida.
+     */
+    private void agregar(Operacion operacion, int id, int valor) throws IOException {
+        if (cerrado) throw new IllegalStateException("La escritura diferida está cerrada");
+        if (fallida) throw new IllegalStateException("La escritura diferida falló; las operaciones se aplican en forma sincrónica");
+        try {
+            log.append(operacion, id, valor);
+        } catch (IOException e) {
+            fallar("no se pudo escribir el log: " + e.getMessage());
+            throw e;
+        }
+    }
+
+    private void recuperar(long[] checkpoint) throws IOException, SQLException {
+        long desde = checkpoint[0] == log.getGeneracion() ? checkpoint[1] : WriteBehindLog.ENCABEZADO;
+        List<Registro> pendientes = log.leer(desde);
+        for (int i = 0; i < pendientes.size(); i += maxLote) {
+            aplicar(pendientes.subList(i, Math.min(pendientes.size(), i + maxLote)));
+        }
+        if (!pendientes.isEmpty()) {
+            System.out.println("Escritura diferida: " + pendientes.size() + " operaciones recuperadas del log");
+        }
+        // Con el log vacío, ninguna posición del checkpoint puede quedar por delante de lo que se escriba después.
+        rotar(log.getFin());
+        posicionAplicada = log.getFin();
+        aplicadoHasta = log.getUltimoNumero();
+    }
+
+    private void escribir() {
+        List<Registro> lote = new ArrayList<>(maxLote);
+        int fallosSeguidos = 0;
+        while (true) {
+            try {
+                if (lote.isEmpty()) {
+                    // Al cerrar se termina de vaciar la cola antes de salir.
+                    Registro primero = cola.poll(100, TimeUnit.MILLISECONDS);
+                    if (primero == null) {
+                        if (cerrado) return;
+                        continue;
+                    }
+                    lote.add(primero);
+                    cola.drainTo(lote, maxLote - 1);
+                }
+                aplicar(lote);
+                lote.clear();
+                fallosSeguidos = 0;
+                if (cola.isEmpty() && posicionAplicada > ROTAR_DESDE && rotar(posicionAplicada)) {
+                    posicionAplicada = log.getFin();
+                }
+            } catch (SQLException e) {
+                if (++fallosSeguidos > maxReintentos) {
+                    fallar("la base rechazó el lote " + maxReintentos + " veces seguidas: " + e.getMessage());
+                    return;
+                }
+                reintentos.increment();
+                System.out.println("Escritura diferida: " + e.getMessage() + "; se reintenta");
+                if (cerrado) return;
+                try {
+                    Thread.sleep(1000);
+                } catch (InterruptedException ignorada) {
+                    return;
+                }
+            } catch (InterruptedException e) {
+                return;
+            } catch (IOException | RuntimeException e) {
+                fallar(e.getMessage());
+                return;
+            }
+        }
+    }
+
+    /**
+     * Rota el log si todo lo escrito ya se aplicó. Antes lleva la base a disco: en modo WAL con
+     * {@code synchronous=NORMAL} un commit sobrevive a una caída de la aplicación pero no a un corte de luz,
+     * y después de rotar el log ya no tiene las operaciones para volver a aplicarlas.
+     *
+     * @return Si se rotó el log; no se rota si queda algo sin aplicar o si el checkpoint de la base no se completó.
+     */
+    private boolean rotar(long posicion) throws IOException, SQLException {
+        if (log.getFin() != posicion) return false;
+        try (Connection conn = DatabaseConnection.getConnection();
+             Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery("PRAGMA wal_checkpoint(FULL)")) {
+            // La primera columna es 1 si alguna lectura impidió completar el checkpoint.
+            if (rs.next() && rs.getInt(1) != 0) return false;
+        }
+        return log.rotar(posicion);
+    }
+
+    private void fallar(String motivo) {
+        fallida = true;
+        System.out.println("Escritura diferida fallida (" + motivo + "); las operaciones pendientes se aplican en el próximo inicio");
+    }
+
+    /**
+     * Aplica un lote en una transacción junto con el checkpoint, invalida los libros en la caché
+     * y despierta a quienes esperan en {@link #esperarAplicadas}.
+     */
+    private void aplicar(List<Registro> lote) throws SQLException {
+        long inicio = System.nanoTime();
+        Registro ultimo = lote.getLast();
+        long generacion = log.getGeneracion();
+        Map<Integer, Integer> stockPorLibro = DatabaseConnection.inTransaction(conn -> {
+            Map<Integer, Integer> deltas = new HashMap<>();
+            for (Registro r : lote) {
+                switch (r.operacion()) {
+                    case DEVOLUCION -> {
+                        OptionalInt libroId = prestamoRepository.returnPrestamo(conn, r.id(), LocalDate.ofEpochDay(r.valor()));
+                        if (libroId.isPresent()) deltas.merge(libroId.getAsInt(), 1, Integer::sum);
+                    }
+                    case AJUSTE_STOCK -> deltas.merge(r.id(), r.valor(), Integer::sum);
+                }
+            }
+            for (Map.Entry<Integer, Integer> delta : deltas.entrySet()) {
+                if (delta.getValue() != 0) libroRepository.ajustarStock(conn, delta.getKey(), delta.getValue());
+            }
+            guardarCheckpoint(conn, generacion, ultimo.fin());
+            return deltas;
+        });
+
+        stockPorLibro.keySet().forEach(libroRepository::invalidate);
+        for (Registro r : lote) {
+            if (r.operacion() == Operacion.DEVOLUCION) devolucionesPendientes.remove(r.id());
+        }
+        aplicadas.add(lote.size());
+        lotes.record(System.nanoTime() - inicio);
+
+        posicionAplicada = ultimo.fin();
+        lock.lock();
+        try {
+            aplicadoHasta = ultimo.numero();
+            aplicado.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return La generación y la posición del log hasta la que se aplicó, o {0, 0} si nunca se aplicó nada.
+     */
+    private static long[] leerCheckpoint() throws SQLException {
+        try (Connection conn = DatabaseConnection.getReadConnection();
+             PreparedStatement ps = conn.prepareStatement("SELECT generacion, posicion FROM write_behind_checkpoint WHERE id = 1");
+             ResultSet rs = ps.executeQuery()) {
+            return rs.next() ? new long[]{rs.getLong(1), rs.getLong(2)} : new long[]{0, 0};
+        }
+    }
+
+    private static void guardarCheckpoint(Connection conn, long generacion, long posicion) throws SQLException {
+        try (PreparedStatement ps = StatementCache.prepare(conn, """
+                INSERT INTO write_behind_checkpoint (id, generacion, posicion) VALUES (1, ?, ?)
+                ON CONFLICT (id) DO UPDATE SET generacion = excluded.generacion, posicion = excluded.posicion""")) {
+            ps.setLong(1, generacion);
+            ps.setLong(2, posicion);
+            ps.executeUpdate();
+        }
+    }
+}
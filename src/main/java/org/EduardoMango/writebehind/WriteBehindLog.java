@@ -0,0 +1,276 @@
+package org.EduardoMango.writebehind;
+
+import lombok.Getter;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.zip.CRC32C;
+
+/**
+ * Log en disco de las operaciones diferidas, de solo agregado.
+ * <p>
+ * El archivo empieza con un encabezado (marca, versión y número de generación) seguido de registros de
+ * largo fijo: tipo (1 byte), id (4), valor (4) y un CRC32C (4) de los campos anteriores. Un registro
+ * incompleto o con CRC inválido al final del archivo es una escritura cortada por una caída: se descarta
+ * junto con lo que le sigue.
+ * <p>
+ * {@link #append} vuelve recién cuando el registro está en disco ({@code fsync}). Los registros que se
+ * agregan mientras otro hilo hace el fsync se sincronizan juntos en el siguiente (group commit), así
+ * muchas devoluciones concurrentes comparten un mismo fsync. Cada registro se entrega a quien lo aplica
+ * recién cuando está en disco; si un fsync falla, el log no acepta más registros y los que no llegaron a
+ * sincronizarse no se entregan.
+ * <p>
+ * Cuando todo lo escrito ya se aplicó a la base, el log se vacía con {@link #rotar(long)}, que incrementa la
+ * generación: así una posición guardada de la generación anterior no se confunde con una de la nueva.
+ * El log vacío se escribe en un archivo aparte que reemplaza al anterior con un rename atómico, así una
+ * caída durante la rotación deja el log anterior entero o el nuevo con su encabezado, nunca uno a medias.
+ */
+class WriteBehindLog implements Closeable {
+
+    private static final int MARCA = 0x4257424C; // "BWBL"
+    private static final int VERSION = 1;
+    static final int ENCABEZADO = 16;
+    static final int LARGO_REGISTRO = 13;
+
+    /**
+     * Un registro del log, la posición del archivo donde termina y su número: los registros se numeran
+     * de forma creciente desde que se abre el log, sin reiniciar al rotar.
+     */
+    record Registro(Operacion operacion, int id, int valor, long fin, long numero) {}
+
+    private final Path archivo;
+    private final Consumer<Registro> alSincronizar;
+    /** Registros escritos que todavía no están en disco, en el orden del archivo. */
+    private final ConcurrentLinkedQueue<Registro> sinSincronizar = new ConcurrentLinkedQueue<>();
+    /** Se reemplaza al rotar, con los dos locks tomados. */
+    private FileChannel canal;
+    /** Toma el lock quien escribe; garantiza que los registros quedan en el archivo en el orden de {@link #append}. */
+    private final ReentrantLock escritura = new ReentrantLock();
+    private final ReentrantLock sincronizacion = new ReentrantLock();
+    @Getter
+    private long generacion;
+    private volatile long fin;
+    private volatile long sincronizadoHasta;
+    private volatile long ultimoNumero;
+    /** El error del primer fsync que falló; desde entonces el log no acepta registros. */
+    private volatile IOException falloSincronizacion;
+
+    private WriteBehindLog(Path archivo, Consumer<Registro> alSincronizar, FileChannel canal, long generacion, long fin) {
+        this.archivo = archivo;
+        this.alSincronizar = alSincronizar;
+        this.canal = canal;
+        this.generacion = generacion;
+        this.fin = fin;
+        this.sincronizadoHasta = fin;
+    }
+
+    /**
+     * Abre el log, o lo crea vacío si no existe.
+     *
+     * @param generacionNueva La generación del log si hay que crearlo.
+     * @param alSincronizar    Recibe cada registro agregado con {@link #append} cuando ya está en disco,
+     *                         en el mismo orden que en el archivo.
+     */
+    static WriteBehindLog abrir(Path archivo, long generacionNueva, Consumer<Registro> alSincronizar) throws IOException {
+        // Un log nuevo que quedó de una rotación cortada antes del rename: el log vigente sigue siendo el anterior.
+        Files.deleteIfExists(archivoRotado(archivo));
+        FileChannel canal = FileChannel.open(archivo, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            if (canal.size() < ENCABEZADO) {
+                escribirEncabezado(canal, generacionNueva);
+                return new WriteBehindLog(archivo, alSincronizar, canal, generacionNueva, ENCABEZADO);
+            }
+            ByteBuffer encabezado = ByteBuffer.allocate(ENCABEZADO);
+            canal.read(encabezado, 0);
+            encabezado.flip();
+            if (encabezado.getInt() != MARCA || encabezado.getInt() != VERSION) {
+                throw new IOException(archivo + " no es un log de escritura diferida");
+            }
+            return new WriteBehindLog(archivo, alSincronizar, canal, encabezado.getLong(), canal.size());
+        } catch (IOException | RuntimeException e) {
+            canal.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Lee los registros válidos a partir de {@code desde} y descarta lo que sigue al último válido.
+     */
+    List<Registro> leer(long desde) throws IOException {
+        List<Registro> registros = new ArrayList<>();
+        long pos = Math.max(desde, ENCABEZADO);
+        ByteBuffer buffer = ByteBuffer.allocate(LARGO_REGISTRO);
+        while (pos + LARGO_REGISTRO <= fin) {
+            buffer.clear();
+            canal.read(buffer, pos);
+            buffer.flip();
+            byte tipo = buffer.get();
+            int id = buffer.getInt();
+            int valor = buffer.getInt();
+            int crc = buffer.getInt();
+            if (crc != crc(tipo, id, valor) || tipo < 0 || tipo >= Operacion.values().length) break;
+            pos += LARGO_REGISTRO;
+            registros.add(new Registro(Operacion.values()[tipo], id, valor, pos, ++ultimoNumero));
+        }
+        if (pos < fin) {
+            canal.truncate(pos);
+            canal.force(false);
+            fin = pos;
+            sincronizadoHasta = pos;
+        }
+        return registros;
+    }
+
+    /**
+     * Agrega un registro y espera a que esté en disco.
+     *
+     * @return El registro agregado.
+     * @throws IOException Si falla la escritura o el fsync, o si ya había fallado un fsync anterior.
+     */
+    Registro append(Operacion operacion, int id, int valor) throws IOException {
+        Registro registro;
+        escritura.lock();
+        try {
+            verificarSincronizacion();
+            ByteBuffer buffer = ByteBuffer.allocate(LARGO_REGISTRO);
+            buffer.put((byte) operacion.ordinal()).putInt(id).putInt(valor).putInt(crc((byte) operacion.ordinal(), id, valor));
+            buffer.flip();
+            long pos = fin;
+            while (buffer.hasRemaining()) pos += canal.write(buffer, pos);
+            registro = new Registro(operacion, id, valor, pos, ultimoNumero + 1);
+            // Antes de publicar el fin: un fsync que lo cubre entrega también este registro.
+            sinSincronizar.add(registro);
+            ultimoNumero = registro.numero();
+            fin = pos;
+        } finally {
+            escritura.unlock();
+        }
+        sincronizar(registro.fin());
+        return registro;
+    }
+
+    /**
+     * Espera a que el archivo esté en disco al menos hasta {@code posicion}. Un solo hilo hace el fsync;
+     * los que llegan mientras tanto esperan el lock y, si el fsync anterior ya los cubrió, no hacen otro.
+     * Después del fsync entrega los registros que cubrió.
+     */
+    private void sincronizar(long posicion) throws IOException {
+        if (sincronizadoHasta >= posicion) return;
+        sincronizacion.lock();
+        try {
+            if (sincronizadoHasta >= posicion) return;
+            // Después de un fsync fallido, uno que funcione no garantiza que lo anterior esté en disco.
+            verificarSincronizacion();
+            long hasta = fin;
+            try {
+                canal.force(false);
+            } catch (IOException e) {
+                falloSincronizacion = e;
+                throw e;
+            }
+            Registro registro;
+            while ((registro = sinSincronizar.peek()) != null && registro.fin() <= hasta) {
+                alSincronizar.accept(sinSincronizar.poll());
+            }
+            sincronizadoHasta = hasta;
+        } finally {
+            sincronizacion.unlock();
+        }
+    }
+
+    private void verificarSincronizacion() throws IOException {
+        IOException fallo = falloSincronizacion;
+        if (fallo != null) throw new IOException("El log de escritura diferida no se pudo sincronizar: " + fallo.getMessage(), fallo);
+    }
+
+    long getFin() {
+        return fin;
+    }
+
+    /**
+     * El número del último registro leído o agregado.
+     */
+    long getUltimoNumero() {
+        return ultimoNumero;
+    }
+
+    /**
+     * Vacía el log e incrementa la generación, solo si no se escribió nada después de la posición {@code aplicadoHasta}.
+     *
+     * @return Si se rotó el log.
+     */
+    boolean rotar(long aplicadoHasta) throws IOException {
+        escritura.lock();
+        sincronizacion.lock();
+        try {
+            if (fin != aplicadoHasta) return false;
+            Path rotado = archivoRotado(archivo);
+            FileChannel nuevo = FileChannel.open(rotado, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+            try {
+                escribirEncabezado(nuevo, generacion + 1);
+                Files.move(rotado, archivo, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (IOException | RuntimeException e) {
+                nuevo.close();
+                Files.deleteIfExists(rotado);
+                throw e;
+            }
+            sincronizarDirectorio(archivo);
+            canal.close();
+            canal = nuevo;
+            generacion++;
+            fin = ENCABEZADO;
+            sincronizadoHasta = ENCABEZADO;
+            return true;
+        } finally {
+            sincronizacion.unlock();
+            escritura.unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        canal.close();
+    }
+
+    private static Path archivoRotado(Path archivo) {
+        return archivo.resolveSibling(archivo.getFileName() + ".rotado");
+    }
+
+    /**
+     * Lleva a disco el rename del log. Algunos sistemas (Windows) no permiten abrir un directorio:
+     * ahí el rename queda a cargo del sistema de archivos.
+     */
+    private static void sincronizarDirectorio(Path archivo) {
+        Path directorio = archivo.toAbsolutePath().getParent();
+        try (FileChannel canal = FileChannel.open(directorio, StandardOpenOption.READ)) {
+            canal.force(true);
+        } catch (IOException e) {
+            // Sin fsync del directorio, la durabilidad del rename queda a cargo del sistema de archivos.
+        }
+    }
+
+    private static void escribirEncabezado(FileChannel canal, long generacion) throws IOException {
+        ByteBuffer encabezado = ByteBuffer.allocate(ENCABEZADO).putInt(MARCA).putInt(VERSION).putLong(generacion);
+        encabezado.flip();
+        canal.write(encabezado, 0);
+        canal.force(true);
+    }
+
+    private static int crc(byte tipo, int id, int valor) {
+        CRC32C crc = new CRC32C();
+        crc.update(ByteBuffer.allocate(9).put(tipo).putInt(id).putInt(valor).flip());
+        return (int) crc.getValue();
+    }
+}